@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2012, 2015 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package uk.ac.diamond.scisoft.analysis.plotclient;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+import uk.ac.diamond.scisoft.analysis.plotclient.connection.IPlotConnection;
+import uk.ac.diamond.scisoft.analysis.plotserver.DataBean;
+import uk.ac.diamond.scisoft.analysis.plotserver.GuiBean;
+import uk.ac.diamond.scisoft.analysis.plotserver.GuiParameters;
+
+/**
+ * Test the merging and dropping of plot events
+ */
+public class PlotEventQueueTest {
+
+	private static PlotEvent data(boolean append) {
+		DataBean bean = new DataBean();
+		if (append) {
+			bean.putGuiParameter(GuiParameters.PLOTOPERATION, IPlotConnection.PLOTOP_APPEND);
+		}
+		PlotEvent evt = new PlotEvent();
+		evt.setDataBean(bean);
+		if (append) {
+			evt.setGuiBean(new GuiBean());
+		}
+		return evt;
+	}
+
+	private static PlotEvent gui(GuiParameters key) {
+		GuiBean bean = new GuiBean();
+		bean.put(key, "value");
+		PlotEvent evt = new PlotEvent();
+		evt.setStashedGuiBean(bean);
+		evt.setGuiBean(bean.copy());
+		return evt;
+	}
+
+	@Test
+	public void testLatestDataKept() throws InterruptedException {
+		PlotEventQueue q = new PlotEventQueue(10);
+		PlotEvent last = null;
+		for (int i = 0; i < 5; i++) {
+			last = data(false);
+			q.offer(last);
+		}
+		assertEquals(1, q.size());
+		assertEquals(4, q.getCoalesced());
+		assertSame(last.getDataBean(), q.take().getDataBean());
+	}
+
+	@Test
+	public void testAppendsKept() throws InterruptedException {
+		PlotEventQueue q = new PlotEventQueue(10);
+		PlotEvent[] events = new PlotEvent[5];
+		for (int i = 0; i < events.length; i++) {
+			events[i] = data(true);
+			q.offer(events[i]);
+		}
+		q.offer(data(false)); // not merged into an append
+		assertEquals(6, q.size());
+		assertEquals(0, q.getCoalesced());
+		for (PlotEvent e : events) {
+			assertSame(e.getDataBean(), q.take().getDataBean());
+		}
+	}
+
+	@Test
+	public void testGuiNotMergedIntoData() {
+		PlotEventQueue q = new PlotEventQueue(10);
+		q.offer(data(false));
+		q.offer(gui(GuiParameters.TITLE));
+		q.offer(data(false));
+		q.offer(gui(GuiParameters.TITLE));
+		q.offer(gui(GuiParameters.PLOTMODE));
+		assertEquals(4, q.size());
+	}
+
+	@Test
+	public void testOldestDataDropped() throws InterruptedException {
+		PlotEventQueue q = new PlotEventQueue(2);
+		PlotEvent first = data(false);
+		q.offer(first);
+		q.offer(gui(GuiParameters.ROICLEARALL));
+		PlotEvent second = data(false);
+		q.offer(second);
+		assertEquals(1, q.getDropped());
+		assertEquals(2, q.size());
+		assertEquals(GuiParameters.ROICLEARALL, q.take().getStashedGuiBean().keySet().iterator().next());
+		assertSame(second, q.take());
+	}
+}
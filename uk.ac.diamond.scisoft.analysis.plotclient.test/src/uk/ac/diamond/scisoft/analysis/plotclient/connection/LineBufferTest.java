@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2012, 2015 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package uk.ac.diamond.scisoft.analysis.plotclient.connection;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.eclipse.january.dataset.Dataset;
+import org.eclipse.january.dataset.DatasetFactory;
+import org.junit.Test;
+
+/**
+ * Test the buffer of a line which has points appended to it
+ */
+public class LineBufferTest {
+
+	private static double[] values(Dataset d) {
+		double[] v = new double[d.getSize()];
+		for (int i = 0; i < v.length; i++) {
+			v[i] = d.getDouble(i);
+		}
+		return v;
+	}
+
+	@Test
+	public void testAppend() {
+		LineBuffer b = new LineBuffer(null, null, "x", "y");
+		assertEquals(0, b.getSize());
+
+		b.append(DatasetFactory.createFromObject(new double[] {0, 1, 2}), DatasetFactory.createFromObject(new double[] {5, 7, 6}));
+		b.append(DatasetFactory.createFromObject(new double[] {3, 4}), DatasetFactory.createFromObject(new double[] {-1, 9}));
+		assertEquals(5, b.getSize());
+		assertArrayEquals(new double[] {0, 1, 2, 3, 4}, values(b.getX()), 0);
+		assertArrayEquals(new double[] {5, 7, 6, -1, 9}, values(b.getY()), 0);
+		assertEquals("x", b.getX().getName());
+		assertEquals("y", b.getY().getName());
+		assertArrayEquals(new double[] {3, 4, -1, 9}, b.getAddedRange(), 0);
+	}
+
+	@Test
+	public void testAppendWithoutX() {
+		LineBuffer b = new LineBuffer(null, DatasetFactory.createFromObject(new double[] {1, 2}), null, "y");
+		b.append(null, DatasetFactory.createFromObject(new double[] {3, 4}));
+		assertArrayEquals(new double[] {0, 1, 2, 3}, values(b.getX()), 0);
+		assertArrayEquals(new double[] {1, 2, 3, 4}, values(b.getY()), 0);
+	}
+
+	@Test
+	public void testGrow() {
+		LineBuffer b = new LineBuffer(null, null, "x", "y");
+		Dataset first = null;
+		final int batch = 50;
+		for (int i = 0; i < 20; i++) {
+			Dataset x = DatasetFactory.createRange(i * batch, (i + 1) * batch, 1, Dataset.FLOAT64);
+			b.append(x, x.clone().imultiply(2));
+			if (first == null) {
+				first = b.getY();
+			}
+		}
+		assertEquals(20 * batch, b.getSize());
+		double[] x = values(b.getX());
+		double[] y = values(b.getY());
+		for (int i = 0; i < x.length; i++) {
+			assertEquals(i, x[i], 0);
+			assertEquals(2 * i, y[i], 0);
+		}
+
+		// lines given to traces before the arrays grew are left as they were
+		assertEquals(batch, first.getSize());
+		assertEquals(2 * (batch - 1), first.getDouble(batch - 1), 0);
+	}
+
+	@Test
+	public void testReplaceAfterAppend() {
+		LineBuffer b = new LineBuffer(null, null, "x", "y");
+		b.append(DatasetFactory.createFromObject(new double[] {0, 1, 2}), DatasetFactory.createFromObject(new double[] {3, 4, 5}));
+		Dataset oldY = b.getY();
+
+		// line replaced by a full update then appended to again
+		Dataset rx = DatasetFactory.createFromObject(new double[] {10, 11});
+		Dataset ry = DatasetFactory.createFromObject(new double[] {-2, -3});
+		LineBuffer r = new LineBuffer(rx, ry, "x", "y");
+		assertEquals(2, r.getSize());
+		r.append(DatasetFactory.createFromObject(new double[] {12}), DatasetFactory.createFromObject(new double[] {-4}));
+		assertArrayEquals(new double[] {10, 11, 12}, values(r.getX()), 0);
+		assertArrayEquals(new double[] {-2, -3, -4}, values(r.getY()), 0);
+		assertArrayEquals(new double[] {12, 12, -4, -4}, r.getAddedRange(), 0);
+
+		// replacement does not touch the data it was given or the old line
+		assertArrayEquals(new double[] {10, 11}, values(rx), 0);
+		assertArrayEquals(new double[] {3, 4, 5}, values(oldY), 0);
+	}
+}
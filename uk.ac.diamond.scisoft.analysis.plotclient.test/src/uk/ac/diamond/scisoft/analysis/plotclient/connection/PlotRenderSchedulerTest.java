@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) 2012, 2015 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package uk.ac.diamond.scisoft.analysis.plotclient.connection;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Test the frame rate of the plot render scheduler is read from its system property
+ */
+public class PlotRenderSchedulerTest {
+
+	@After
+	public void clearProperty() {
+		System.clearProperty(PlotRenderScheduler.FRAME_RATE_PROPERTY);
+	}
+
+	@Test
+	public void testDefaultFrameRate() {
+		assertEquals(PlotRenderScheduler.DEFAULT_FRAME_RATE, PlotRenderScheduler.getFrameRateProperty());
+	}
+
+	@Test
+	public void testFrameRateProperty() {
+		System.setProperty(PlotRenderScheduler.FRAME_RATE_PROPERTY, "10");
+		assertEquals(10, PlotRenderScheduler.getFrameRateProperty());
+		assertEquals(10, new PlotRenderScheduler(PlotRenderScheduler.getFrameRateProperty()).getFrameRate());
+	}
+
+	@Test
+	public void testBadFrameRateProperty() {
+		System.setProperty(PlotRenderScheduler.FRAME_RATE_PROPERTY, "fast");
+		assertEquals(PlotRenderScheduler.DEFAULT_FRAME_RATE, PlotRenderScheduler.getFrameRateProperty());
+		System.setProperty(PlotRenderScheduler.FRAME_RATE_PROPERTY, "0");
+		assertEquals(PlotRenderScheduler.DEFAULT_FRAME_RATE, PlotRenderScheduler.getFrameRateProperty());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testFrameRateMustBePositive() {
+		new PlotRenderScheduler(-1);
+	}
+}
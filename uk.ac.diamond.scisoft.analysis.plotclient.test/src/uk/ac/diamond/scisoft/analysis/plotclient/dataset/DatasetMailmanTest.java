@@ -0,0 +1,192 @@
+/*
+ * Copyright (c) 2012, 2015 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package uk.ac.diamond.scisoft.analysis.plotclient.dataset;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.eclipse.january.dataset.IDataset;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Test the mailboxes of the dataset mailman
+ */
+public class DatasetMailmanTest {
+
+	private static final long TIMEOUT = 5; // seconds
+
+	private final DatasetMailman mailman = new DatasetMailman();
+
+	/**
+	 * Keeps the mail it receives, waiting for the gate to open before taking any
+	 */
+	private static class Receiver implements IDataMailListener {
+		private final BlockingQueue<DataMailEvent> received = new LinkedBlockingQueue<DataMailEvent>();
+		private final CountDownLatch entered = new CountDownLatch(1);
+		private final CountDownLatch gate;
+		private final AtomicInteger count = new AtomicInteger();
+
+		Receiver(CountDownLatch gate) {
+			this.gate = gate;
+		}
+
+		@Override
+		public void mailReceived(DataMailEvent evt) {
+			entered.countDown();
+			try {
+				gate.await(TIMEOUT, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			count.incrementAndGet();
+			received.add(evt);
+		}
+
+		DataMailEvent take() throws InterruptedException {
+			final DataMailEvent evt = received.poll(TIMEOUT, TimeUnit.SECONDS);
+			assertNotNull("No mail received", evt);
+			return evt;
+		}
+	}
+
+	/**
+	 * @return data whose only key tells apart the mail sent for a name
+	 */
+	private static Map<String, IDataset> data(String version) {
+		return Collections.singletonMap(version, (IDataset) null);
+	}
+
+	private static String versionOf(DataMailEvent evt) {
+		return evt.getData().keySet().iterator().next();
+	}
+
+	@After
+	public void clear() {
+		mailman.clear();
+	}
+
+	@Test
+	public void testLatestKeptPerName() throws InterruptedException {
+		final CountDownLatch gate = new CountDownLatch(1);
+		final Receiver receiver = new Receiver(gate);
+		mailman.addMailListener(receiver);
+
+		mailman.send("a", data("1")); // held by the listener until the gate opens
+		assertTrue(receiver.entered.await(TIMEOUT, TimeUnit.SECONDS));
+		mailman.send("a", data("2"));
+		mailman.send("b", data("1"));
+		mailman.send("a", data("3"));
+		gate.countDown();
+
+		DataMailEvent evt = receiver.take();
+		assertEquals("a", evt.getFullName());
+		assertEquals("1", versionOf(evt));
+		evt = receiver.take();
+		assertEquals("a", evt.getFullName());
+		assertEquals("3", versionOf(evt));
+		evt = receiver.take();
+		assertEquals("b", evt.getFullName());
+		assertEquals("1", versionOf(evt));
+		assertNull(receiver.received.poll(100, TimeUnit.MILLISECONDS));
+		assertEquals(1, mailman.getDroppedMail());
+	}
+
+	@Test
+	public void testOrderForEachReceiver() throws InterruptedException {
+		final CountDownLatch gate = new CountDownLatch(0);
+		final List<Receiver> receivers = new ArrayList<Receiver>();
+		for (int i = 0; i < 4; i++) {
+			final Receiver r = new Receiver(gate);
+			receivers.add(r);
+			mailman.addMailListener(r);
+		}
+
+		final int n = 200;
+		for (int i = 0; i < n; i++) {
+			mailman.send("data" + i, data(String.valueOf(i)));
+		}
+		for (Receiver r : receivers) {
+			for (int i = 0; i < n; i++) {
+				assertEquals("data" + i, r.take().getFullName());
+			}
+		}
+		assertEquals(0, mailman.getDroppedMail());
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void testDataNotModifiable() throws InterruptedException {
+		final Receiver receiver = new Receiver(new CountDownLatch(0));
+		mailman.addMailListener(receiver);
+		mailman.send("a", data("1"));
+		receiver.take().getData().put("2", null);
+	}
+
+	@Test
+	public void testConcurrentSendAndRemove() throws InterruptedException {
+		final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		final AtomicInteger sent = new AtomicInteger();
+		final Thread[] senders = new Thread[4];
+		final CountDownLatch stop = new CountDownLatch(1);
+		for (int i = 0; i < senders.length; i++) {
+			final String name = "sender" + i;
+			senders[i] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						while (stop.getCount() > 0) {
+							mailman.send(name, data(String.valueOf(sent.incrementAndGet())));
+						}
+					} catch (Throwable e) {
+						failure.compareAndSet(null, e);
+					}
+				}
+			}, name);
+			senders[i].start();
+		}
+
+		try {
+			final CountDownLatch open = new CountDownLatch(0);
+			for (int i = 0; i < 200; i++) {
+				final Receiver r = new Receiver(open);
+				mailman.addMailListener(r);
+				Thread.sleep(1);
+				mailman.removeMailListener(r);
+				final int taken = r.count.get();
+				Thread.sleep(1);
+				assertTrue("Mail received after removal", r.count.get() <= taken + 1); // one may be in delivery
+			}
+
+			// a listener which stays is still sent mail
+			final Receiver last = new Receiver(open);
+			mailman.addMailListener(last);
+			assertNotNull(last.take());
+		} finally {
+			stop.countDown();
+			for (Thread t : senders) {
+				t.join(TimeUnit.SECONDS.toMillis(TIMEOUT));
+			}
+		}
+		assertNull(failure.get());
+		assertTrue(sent.get() > 0);
+	}
+}
@@ -24,8 +24,6 @@ import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.Set;
 import java.util.UUID;
-import java.util.concurrent.BlockingDeque;
-import java.util.concurrent.LinkedBlockingDeque;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -48,7 +46,7 @@ public class BeanScriptingManagerImpl implements IBeanScriptingManager, IObserve
 	private final PlotServer    server;
 	private ScriptingConnection window;
 	private String              viewName;
-	private BlockingDeque<PlotEvent> queue;
+	private PlotEventQueue      queue;
 	private UUID                plotID;
 
 	private Set<IObserver>   dataObservers;
@@ -65,8 +63,8 @@ public class BeanScriptingManagerImpl implements IBeanScriptingManager, IObserve
 		this.plotID = UUID.randomUUID();
 		logger.info("Plot view uuid: {}", plotID);
 
-		// Blocking queue to which we add plot update events.
-		this.queue = new LinkedBlockingDeque<PlotEvent>(25);
+		// Blocking queue to which we add plot update events, which are coalesced rather than dropped
+		this.queue = new PlotEventQueue(25);
 		
 		this.dataObservers = Collections.synchronizedSet(new LinkedHashSet<IObserver>());
 	}
@@ -99,6 +97,10 @@ public class BeanScriptingManagerImpl implements IBeanScriptingManager, IObserve
 				while (!window.getPlottingSystem().isDisposed()) {
 					try {
 						PlotEvent event = queue.take();
+						if (event.getDataBean() != null && event.getGuiBean() == null) {
+							// fetched now so that updates which came in while busy share one round trip
+							event.setGuiBean(getGUIBean());
+						}
 						if (event.getStashedGuiBean()==null && event.getGuiBean()==null) {
 							// This event is not of interest
 							continue;
@@ -189,19 +191,15 @@ public class BeanScriptingManagerImpl implements IBeanScriptingManager, IObserve
 
 		if (changeCode instanceof String && changeCode.equals(viewName)) {
 			logger.debug("Getting a plot data update for {}; thd {} {}",  viewName, thd.getId(), thd.getName());
-			GuiBean guiBean = getGUIBean();
+			// the bean is kept in the event so it is not fetched again when taken
+			final DataBean dataBean = getData();
+			if (dataBean == null)
+				return;
 			final PlotEvent evt = new PlotEvent();
-			try {
-				DataBean dataBean = getPlotServer().getData(viewName);
-				if (dataBean != null) {
-					dataBean = dataBean.copy(); // need to make a (shallow) copy otherwise changes get out of sync
-					logger.info("BSM copied data bean ({}) {}", dataBean.getData().size(), dataBean);
-				}
-				evt.setDataBean(dataBean);
-			} catch (Exception e) {
-				logger.error("There has been an issue retrieving the databean from the plotserver", e);
+			evt.setDataBean(dataBean);
+			if (PlotEventQueue.isAppend(dataBean)) { // plotted with the GUI state of its points
+				evt.setGuiBean(getGUIBean());
 			}
-			evt.setGuiBean(guiBean);
 			offer(evt);
 		} else if (changeCode instanceof GuiUpdate) {
 			GuiUpdate gu = (GuiUpdate) changeCode;
@@ -229,6 +227,20 @@ public class BeanScriptingManagerImpl implements IBeanScriptingManager, IObserve
 	}
 
 
+	private DataBean getData() {
+		DataBean dataBean = null;
+		try {
+			dataBean = getPlotServer().getData(viewName);
+			if (dataBean != null) {
+				dataBean = dataBean.copy(); // need to make a (shallow) copy otherwise changes get out of sync
+				logger.debug("BSM copied data bean ({}) {}", dataBean.getData().size(), dataBean);
+			}
+		} catch (Exception e) {
+			logger.error("There has been an issue retrieving the databean from the plotserver", e);
+		}
+		return dataBean;
+	}
+
 	/**
 	 * Get gui information from plot server
 	 */
@@ -308,26 +320,42 @@ public class BeanScriptingManagerImpl implements IBeanScriptingManager, IObserve
 			dataObservers.clear();
 		}
 		queue.clear();
-		queue.add(new PlotEvent());
+		queue.offer(new PlotEvent());
 		getPlotServer().deleteIObserver(this);
 	}
 
 	/**
-	 * Tries to put plot event into queue or 
-	 * drops some events from the queue
-	 * 
-	 * TODO dropping of events should be done if
-	 * the event is a plot update. Region events
-	 * should never be dropped.
+	 * Puts plot event into queue. Data updates are merged into
+	 * a data update at the end of the queue and GUI updates
+	 * into a GUI update if that does not change the regions. If
+	 * the queue is full the oldest data update is dropped;
+	 * region events are never dropped.
 	 * 
 	 * @param evt
 	 */
-	public synchronized void offer(PlotEvent evt) {
-		if (queue.offer(evt)) return;
-		queue.remove(); // drop the head - TODO FIXME not region events!
-		if (!queue.offer(evt)) {
-			throw new RuntimeException("Cannot offer plot events to queue!");
-		}
+	public void offer(PlotEvent evt) {
+		queue.offer(evt);
+	}
+
+	/**
+	 * @return number of plot events offered
+	 */
+	public long getEventsReceived() {
+		return queue.getReceived();
+	}
+
+	/**
+	 * @return number of plot events merged into an event already queued
+	 */
+	public long getEventsCoalesced() {
+		return queue.getCoalesced();
+	}
+
+	/**
+	 * @return number of data updates dropped because the queue was full
+	 */
+	public long getEventsDropped() {
+		return queue.getDropped();
 	}
 
 }
@@ -12,6 +12,7 @@ package uk.ac.diamond.scisoft.analysis.plotclient;
 import org.eclipse.dawnsci.plotting.api.IPlottingSystem;
 import org.eclipse.ui.IWorkbenchPage;
 
+import uk.ac.diamond.scisoft.analysis.plotclient.rpc.RunInDisplayThread;
 import uk.ac.diamond.scisoft.analysis.plotserver.IPlotWindowManagerRMI;
 
 /**
@@ -61,6 +62,7 @@ public interface IPlotWindowManager {
 	 *            to duplicate
 	 * @return name of the newly duplicated and opened view
 	 */
+	@RunInDisplayThread
 	public String openDuplicateView(IWorkbenchPage page, String viewName);
 
 	/**
@@ -73,6 +75,7 @@ public interface IPlotWindowManager {
 	 *            to open, or <code>null</code> to open a newly named plot window
 	 * @return name of the opened view
 	 */
+	@RunInDisplayThread
 	public String openView(IWorkbenchPage page, String viewName);
 
 	/**
@@ -80,6 +83,7 @@ public interface IPlotWindowManager {
 	 * 
 	 * @return list of views
 	 */
+	@RunInDisplayThread
 	public String[] getOpenViews();
 
 	/**
@@ -90,6 +94,7 @@ public interface IPlotWindowManager {
 	 * @param viewName
 	 *            to duplicate
 	 */
+	@RunInDisplayThread
 	public void clearPlottingSystem(IPlottingSystem<?> plottingSystem, String viewName);
 
 }
@@ -0,0 +1,162 @@
+/*-
+ * Copyright 2014 Diamond Light Source Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.ac.diamond.scisoft.analysis.plotclient;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+
+import uk.ac.diamond.scisoft.analysis.plotclient.connection.IPlotConnection;
+import uk.ac.diamond.scisoft.analysis.plotclient.connection.PlotRenderScheduler;
+import uk.ac.diamond.scisoft.analysis.plotserver.DataBean;
+import uk.ac.diamond.scisoft.analysis.plotserver.GuiBean;
+import uk.ac.diamond.scisoft.analysis.plotserver.GuiParameters;
+
+/**
+ * Queue of plot events for one view which coalesces events rather than
+ * dropping them.
+ * <p>
+ * Events are taken in the order they were offered. A data update which
+ * replaces the plot, offered straight after another one, takes its place as
+ * only the latest data needs to be plotted; the GUI state for it is fetched
+ * when it is taken. Data updates which append points are kept. A GUI update
+ * offered straight after another GUI update is merged into it unless that
+ * would change what the ROIs end up as. When the queue is full the oldest
+ * data update is dropped; GUI updates, which carry the ROIs, and data
+ * updates which append points are never dropped so the queue may grow
+ * past its capacity if they cannot be merged.
+ */
+class PlotEventQueue {
+
+	private final int capacity;
+	private final ArrayDeque<PlotEvent> events;
+
+	private long received;
+	private long coalesced;
+	private long dropped;
+
+	/**
+	 * @param capacity number of events to hold before data updates are dropped
+	 */
+	PlotEventQueue(int capacity) {
+		this.capacity = capacity;
+		this.events = new ArrayDeque<PlotEvent>(capacity);
+	}
+
+	/**
+	 * Adds an event, merging it into the last event if possible
+	 * @param evt
+	 */
+	synchronized void offer(PlotEvent evt) {
+		received++;
+		final PlotEvent last = events.peekLast();
+		if (last != null && merge(last, evt)) {
+			coalesced++;
+			return;
+		}
+		if (events.size() >= capacity)
+			dropOldestDataUpdate();
+		events.addLast(evt);
+		notify();
+	}
+
+	/**
+	 * Waits for the next event
+	 * @return event
+	 * @throws InterruptedException
+	 */
+	synchronized PlotEvent take() throws InterruptedException {
+		while (events.isEmpty())
+			wait();
+		return events.removeFirst();
+	}
+
+	synchronized void clear() {
+		events.clear();
+	}
+
+	synchronized int size() {
+		return events.size();
+	}
+
+	synchronized long getReceived() {
+		return received;
+	}
+
+	synchronized long getCoalesced() {
+		return coalesced;
+	}
+
+	synchronized long getDropped() {
+		return dropped;
+	}
+
+	private void dropOldestDataUpdate() {
+		final Iterator<PlotEvent> it = events.iterator();
+		while (it.hasNext()) {
+			if (isDataOnly(it.next())) {
+				it.remove();
+				dropped++;
+				return;
+			}
+		}
+	}
+
+	/**
+	 * @return true if evt only has data which replaces the plot, data
+	 * updates which append points cannot be dropped or merged
+	 */
+	private static boolean isDataOnly(PlotEvent evt) {
+		return evt.getDataBean() != null && evt.getStashedGuiBean() == null && !isAppend(evt.getDataBean());
+	}
+
+	/**
+	 * @param bean
+	 * @return true if the bean holds points to append to the lines plotted
+	 */
+	static boolean isAppend(DataBean bean) {
+		final GuiBean gb = bean == null ? null : bean.getGuiParameters();
+		return gb != null && IPlotConnection.PLOTOP_APPEND.equals(gb.get(GuiParameters.PLOTOPERATION));
+	}
+
+	private static boolean isGuiOnly(PlotEvent evt) {
+		return evt.getDataBean() == null && evt.getStashedGuiBean() != null;
+	}
+
+	/**
+	 * @param last event at the end of the queue, changed if merged
+	 * @param evt new event
+	 * @return true if evt was merged into last
+	 */
+	private static boolean merge(PlotEvent last, PlotEvent evt) {
+		if (isDataOnly(evt)) {
+			if (!isDataOnly(last))
+				return false;
+			// only the latest data is plotted
+			last.setDataBean(evt.getDataBean());
+			return true;
+		}
+
+		if (isGuiOnly(last) && isGuiOnly(evt) && PlotRenderScheduler.canMerge(last.getStashedGuiBean(), evt.getStashedGuiBean())) {
+			final GuiBean merged = last.getStashedGuiBean().copy(); // offered beans may be shared with other views
+			merged.merge(evt.getStashedGuiBean());
+			last.setStashedGuiBean(merged);
+			last.setGuiBean(evt.getGuiBean());
+			return true;
+		}
+		return false;
+	}
+}
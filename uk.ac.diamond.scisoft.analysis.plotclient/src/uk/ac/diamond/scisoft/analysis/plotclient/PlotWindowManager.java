@@ -41,7 +41,7 @@ import org.slf4j.LoggerFactory;
 import uk.ac.diamond.scisoft.analysis.AnalysisRpcServerProvider;
 import uk.ac.diamond.scisoft.analysis.PlotServer;
 import uk.ac.diamond.scisoft.analysis.PlotServerProvider;
-import uk.ac.diamond.scisoft.analysis.plotclient.rpc.AnalysisRpcSyncExecDispatcher;
+import uk.ac.diamond.scisoft.analysis.plotclient.rpc.AnalysisRpcDispatcher;
 import uk.ac.diamond.scisoft.analysis.plotserver.DataBean;
 import uk.ac.diamond.scisoft.analysis.plotserver.GuiBean;
 import org.apache.commons.lang.StringUtils;
@@ -75,7 +75,7 @@ public class PlotWindowManager implements IPlotWindowManager, IObservable, IIsBe
 
 			try {
 				// register as an RPC service
-				IAnalysisRpcHandler dispatcher = new AnalysisRpcSyncExecDispatcher(IPlotWindowManager.class, manager);
+				IAnalysisRpcHandler dispatcher = new AnalysisRpcDispatcher(IPlotWindowManager.class, manager);
 				AnalysisRpcServerProvider.getInstance().addHandler(RPC_WINDOW_SERVICE_NAME, dispatcher);
 			} catch (Exception e) {
 				logger.warn("Not registered PlotWindowManager as RPC service - but might be disabled");
@@ -287,6 +287,14 @@ public class ROIManager implements IROIListener, IRegionListener {
 		lock.unlock();
 	}
 
+	/**
+	 * Sends a GUI bean back to the plot server
+	 * @param bean
+	 */
+	public void sendGUIInfo(GuiBean bean) {
+		server.sendGUIInfo(bean);
+	}
+
 	/**
 	 * Method to update roiMap when region name is changed through the UI
 	 * This is done by comparing the list of regions in the plottingSystem
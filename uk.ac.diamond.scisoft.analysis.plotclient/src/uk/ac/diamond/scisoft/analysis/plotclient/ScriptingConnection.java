@@ -277,14 +277,8 @@ public class ScriptingConnection implements IObservable {
 		}
 
 		if (plotConnection != null && (bean.containsKey(GuiParameters.ROICLEARALL) || bean.containsKey(GuiParameters.ROIDATA) || bean.containsKey(GuiParameters.ROIDATALIST))) {
-			try {
-				// lock ROI manager
-				getRoiManager().acquireLock();
-				plotConnection.processGUIUpdate(bean);
-			} finally {
-				// release ROI manager
-				getRoiManager().releaseLock();
-			}
+			// the ROI manager is locked by the connection while it sets the regions
+			plotConnection.processGUIUpdate(bean);
 		}
 
 		if (bean.containsKey(GuiParameters.QUIET_UPDATE)) {
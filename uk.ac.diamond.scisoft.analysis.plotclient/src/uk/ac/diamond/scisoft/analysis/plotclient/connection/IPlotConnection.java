@@ -11,12 +11,20 @@ package uk.ac.diamond.scisoft.analysis.plotclient.connection;
 
 import uk.ac.diamond.scisoft.analysis.plotserver.DataBean;
 import uk.ac.diamond.scisoft.analysis.plotserver.GuiBean;
+import uk.ac.diamond.scisoft.analysis.plotserver.GuiParameters;
 
 /**
  * Generic interface for Plotting UI attached to different Plotters
  */
 public interface IPlotConnection {
 
+	/**
+	 * Value of {@link GuiParameters#PLOTOPERATION} in the GUI parameters of a data bean
+	 * which holds only the points to add to the ends of lines already plotted, named as
+	 * the lines. Lines which are not plotted yet are started with the points.
+	 */
+	public static final String PLOTOP_APPEND = "APPEND";
+
 	/**
 	 * Process a plot update
 	 * 
@@ -38,7 +46,7 @@ public interface IPlotConnection {
 	public void deactivate(boolean leaveSidePlotOpen);
 
 	/**
-	 * Process a GUI update. Implement this synchronously
+	 * Process a GUI update. Implement this without waiting for the display thread
 	 * @param guiBean
 	 */
 	public void processGUIUpdate(GuiBean guiBean);
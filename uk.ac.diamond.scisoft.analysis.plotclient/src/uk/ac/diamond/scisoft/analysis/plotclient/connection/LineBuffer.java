@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2012, 2015 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package uk.ac.diamond.scisoft.analysis.plotclient.connection;
+
+import org.eclipse.january.dataset.Dataset;
+import org.eclipse.january.dataset.DatasetFactory;
+import org.eclipse.january.dataset.DatasetUtils;
+import org.eclipse.january.dataset.DoubleDataset;
+import org.eclipse.january.dataset.IDataset;
+
+/**
+ * Holds the x and y values of a line which has points added to its end.
+ * <p>
+ * The values are kept in arrays with room to spare, which are doubled when
+ * full, so adding points costs time in proportion to the number added. The
+ * line is given to its trace as views of the filled part of the arrays.
+ */
+class LineBuffer {
+
+	private static final int MIN_CAPACITY = 64;
+
+	private final String xName;
+	private final String yName;
+	private DoubleDataset x;
+	private DoubleDataset y;
+	private int size;
+
+	// range of the values last added
+	private double xMin, xMax, yMin, yMax;
+
+	/**
+	 * @param x0 values already plotted, may be null
+	 * @param y0 values already plotted, may be null
+	 * @param xName
+	 * @param yName
+	 */
+	LineBuffer(IDataset x0, IDataset y0, String xName, String yName) {
+		this.xName = xName;
+		this.yName = yName;
+		final int n = y0 == null ? 0 : y0.getSize();
+		final int capacity = Math.max(MIN_CAPACITY, 2 * n);
+		x = DatasetFactory.zeros(DoubleDataset.class, capacity);
+		y = DatasetFactory.zeros(DoubleDataset.class, capacity);
+		if (n > 0)
+			append(x0, y0);
+	}
+
+	/**
+	 * @return number of points
+	 */
+	int getSize() {
+		return size;
+	}
+
+	/**
+	 * Adds points to the end of the line. If x is null the points are
+	 * numbered on from the last point
+	 * @param nx
+	 * @param ny
+	 */
+	void append(IDataset nx, IDataset ny) {
+		final int n = ny.getSize();
+		ensureCapacity(size + n);
+		final double[] xd = x.getData();
+		final double[] yd = y.getData();
+		xMin = yMin = Double.POSITIVE_INFINITY;
+		xMax = yMax = Double.NEGATIVE_INFINITY;
+		final Dataset dx = nx == null ? null : flatten(nx);
+		final Dataset dy = flatten(ny);
+		for (int i = 0; i < n; i++) {
+			final double vx = dx == null ? size : dx.getDouble(i);
+			final double vy = dy.getDouble(i);
+			xd[size] = vx;
+			yd[size] = vy;
+			size++;
+			if (vx < xMin)
+				xMin = vx;
+			if (vx > xMax)
+				xMax = vx;
+			if (vy < yMin)
+				yMin = vy;
+			if (vy > yMax)
+				yMax = vy;
+		}
+	}
+
+	private static Dataset flatten(IDataset d) {
+		final Dataset ds = DatasetUtils.convertToDataset(d);
+		return ds.getRank() == 1 ? ds : ds.flatten();
+	}
+
+	private void ensureCapacity(int n) {
+		final int capacity = x.getSize();
+		if (n <= capacity)
+			return;
+		final int c = Math.max(n, 2 * capacity);
+		final DoubleDataset nx = DatasetFactory.zeros(DoubleDataset.class, c);
+		final DoubleDataset ny = DatasetFactory.zeros(DoubleDataset.class, c);
+		System.arraycopy(x.getData(), 0, nx.getData(), 0, size);
+		System.arraycopy(y.getData(), 0, ny.getData(), 0, size);
+		x = nx;
+		y = ny;
+	}
+
+	/**
+	 * @return view of x values
+	 */
+	Dataset getX() {
+		return view(x, xName);
+	}
+
+	/**
+	 * @return view of y values
+	 */
+	Dataset getY() {
+		return view(y, yName);
+	}
+
+	private Dataset view(DoubleDataset d, String name) {
+		final Dataset v = d.getSliceView(new int[] {0}, new int[] {size}, null);
+		v.setName(name);
+		return v;
+	}
+
+	/**
+	 * @return minimum and maximum x and y of the points last added
+	 */
+	double[] getAddedRange() {
+		return new double[] {xMin, xMax, yMin, yMax};
+	}
+}
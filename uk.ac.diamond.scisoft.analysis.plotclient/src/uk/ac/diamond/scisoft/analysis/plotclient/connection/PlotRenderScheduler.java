@@ -0,0 +1,250 @@
+/*
+ * Copyright (c) 2012, 2015 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package uk.ac.diamond.scisoft.analysis.plotclient.connection;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.eclipse.dawnsci.plotting.api.IPlottingSystem;
+import org.eclipse.swt.widgets.Display;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import uk.ac.diamond.scisoft.analysis.plotserver.GuiBean;
+import uk.ac.diamond.scisoft.analysis.plotserver.GuiParameters;
+
+/**
+ * Runs the UI work of the plot connections of a plotting system at no more
+ * than a given frame rate, which is read from the system property
+ * {@value #FRAME_RATE_PROPERTY} when the scheduler is created and is
+ * {@value #DEFAULT_FRAME_RATE} frames a second if that is not set.
+ * <p>
+ * Updates are posted from any thread without waiting for the display. They
+ * are run in the order they were posted in the next frame, which is one
+ * runnable on the display thread. A data update posted straight after
+ * another one replaces it, as only the latest data needs to be shown, and
+ * a GUI update posted straight after another is merged into it when that
+ * gives the same regions as running both.
+ */
+public class PlotRenderScheduler {
+
+	private static final Logger logger = LoggerFactory.getLogger(PlotRenderScheduler.class);
+
+	public static final String FRAME_RATE_PROPERTY = "uk.ac.diamond.scisoft.analysis.plotclient.frameRate";
+	public static final int DEFAULT_FRAME_RATE = 25;
+
+	private static final Map<IPlottingSystem<?>, PlotRenderScheduler> schedulers = new WeakHashMap<IPlottingSystem<?>, PlotRenderScheduler>();
+
+	/**
+	 * Updates the GUI of a plot with a bean, called in the display thread
+	 */
+	public interface IGuiUpdater {
+		public void update(GuiBean bean);
+	}
+
+	/**
+	 * @param plottingSystem
+	 * @return scheduler shared by the connections of the plotting system
+	 */
+	public static PlotRenderScheduler getScheduler(IPlottingSystem<?> plottingSystem) {
+		synchronized (schedulers) {
+			PlotRenderScheduler scheduler = schedulers.get(plottingSystem);
+			if (scheduler == null) {
+				scheduler = new PlotRenderScheduler();
+				schedulers.put(plottingSystem, scheduler);
+			}
+			return scheduler;
+		}
+	}
+
+	/**
+	 * ROIs are cleared before they are set when a bean is processed, and the
+	 * plot mode is set before either, so beans are only merged when that
+	 * gives the same result as processing them one after the other
+	 * @param older
+	 * @param newer
+	 * @return true if newer can be merged into older
+	 */
+	public static boolean canMerge(GuiBean older, GuiBean newer) {
+		if (newer.containsKey(GuiParameters.ROICLEARALL))
+			return false;
+		final boolean olderROI = hasROI(older);
+		if (olderROI && hasROI(newer))
+			return false;
+		if (olderROI && newer.containsKey(GuiParameters.PLOTMODE))
+			return false;
+		return !older.containsKey(GuiParameters.QUIET_UPDATE) && !newer.containsKey(GuiParameters.QUIET_UPDATE);
+	}
+
+	private static boolean hasROI(GuiBean bean) {
+		return bean.containsKey(GuiParameters.ROICLEARALL) || bean.containsKey(GuiParameters.ROIDATA)
+				|| bean.containsKey(GuiParameters.ROIDATALIST);
+	}
+
+	private final List<Update> pending = new ArrayList<Update>();
+	private final Runnable frame = new Runnable() {
+		@Override
+		public void run() {
+			runFrame();
+		}
+	};
+	private final long framePeriod;
+	private long lastFrame;
+	private boolean scheduled;
+	private long skipped;
+
+	private PlotRenderScheduler() {
+		this(getFrameRateProperty());
+	}
+
+	/**
+	 * @param rate maximum number of frames a second
+	 */
+	PlotRenderScheduler(int rate) {
+		if (rate <= 0)
+			throw new IllegalArgumentException("Frame rate must be positive");
+		framePeriod = 1000000000L / rate;
+	}
+
+	/**
+	 * @return frame rate from the system property, or the default if it is not set or not a positive number
+	 */
+	static int getFrameRateProperty() {
+		final String value = System.getProperty(FRAME_RATE_PROPERTY);
+		if (value == null)
+			return DEFAULT_FRAME_RATE;
+		try {
+			final int rate = Integer.parseInt(value.trim());
+			if (rate > 0)
+				return rate;
+		} catch (NumberFormatException e) {
+			// fall through to the default
+		}
+		logger.warn("Frame rate {} of {} is not a positive number so {} is used", value, FRAME_RATE_PROPERTY, DEFAULT_FRAME_RATE);
+		return DEFAULT_FRAME_RATE;
+	}
+
+	/**
+	 * @return maximum number of frames a second
+	 */
+	public int getFrameRate() {
+		return (int) (1000000000L / framePeriod);
+	}
+
+	/**
+	 * @return number of data updates replaced by later ones before they were shown
+	 */
+	public synchronized long getSkippedFrames() {
+		return skipped;
+	}
+
+	/**
+	 * Posts a data update which shows all the data
+	 * @param render run in the display thread
+	 */
+	public void postData(Runnable render) {
+		postData(render, true);
+	}
+
+	/**
+	 * Posts a data update
+	 * @param render run in the display thread
+	 * @param replace true if the update shows all the data, in which case it replaces
+	 * a data update which has not been run if nothing was posted after it, false if it
+	 * adds to what is shown
+	 */
+	public void postData(Runnable render, boolean replace) {
+		synchronized (this) {
+			final Update last = pending.isEmpty() ? null : pending.get(pending.size() - 1);
+			if (replace && last != null && last.render != null) {
+				last.render = render;
+				skipped++;
+				return;
+			}
+			pending.add(new Update(render, null, null));
+		}
+		schedule();
+	}
+
+	/**
+	 * Posts a GUI update, merging it into a GUI update which has not been
+	 * run if nothing was posted after it and it can be merged
+	 * @param bean which may be changed by this
+	 * @param updater run in the display thread
+	 */
+	public void postGUI(GuiBean bean, IGuiUpdater updater) {
+		synchronized (this) {
+			final Update last = pending.isEmpty() ? null : pending.get(pending.size() - 1);
+			if (last != null && last.bean != null && canMerge(last.bean, bean)) {
+				last.bean.merge(bean);
+				last.updater = updater;
+				return;
+			}
+			pending.add(new Update(null, bean, updater));
+		}
+		schedule();
+	}
+
+	private void schedule() {
+		synchronized (this) {
+			if (scheduled)
+				return;
+			scheduled = true;
+		}
+		final Display display = Display.getDefault();
+		if (display.isDisposed())
+			return;
+		display.asyncExec(frame);
+	}
+
+	/**
+	 * Runs all pending updates if a frame period has passed since the
+	 * last frame, otherwise waits for the rest of the period
+	 */
+	private void runFrame() {
+		final long now = System.nanoTime();
+		final List<Update> updates;
+		synchronized (this) {
+			final long wait = lastFrame + framePeriod - now;
+			if (lastFrame != 0 && wait > 0) {
+				Display.getCurrent().timerExec((int) Math.max(1, wait / 1000000), frame);
+				return;
+			}
+			lastFrame = now;
+			scheduled = false;
+			updates = new ArrayList<Update>(pending);
+			pending.clear();
+		}
+		for (Update u : updates) {
+			try {
+				if (u.render != null) {
+					u.render.run();
+				} else {
+					u.updater.update(u.bean);
+				}
+			} catch (Exception e) {
+				logger.error("Could not update plot", e);
+			}
+		}
+	}
+
+	private static class Update {
+		private Runnable render;
+		private final GuiBean bean;
+		private IGuiUpdater updater;
+
+		private Update(Runnable render, GuiBean bean, IGuiUpdater updater) {
+			this.render = render;
+			this.bean = bean;
+			this.updater = updater;
+		}
+	}
+}
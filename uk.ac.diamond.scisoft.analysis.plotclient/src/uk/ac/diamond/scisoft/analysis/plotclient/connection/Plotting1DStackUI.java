@@ -21,7 +21,6 @@ import org.eclipse.dawnsci.plotting.api.trace.ILineStackTrace;
 import org.eclipse.dawnsci.plotting.api.trace.ITrace;
 import org.eclipse.january.dataset.Dataset;
 import org.eclipse.january.dataset.IDataset;
-import org.eclipse.swt.widgets.Display;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -52,7 +51,7 @@ class Plotting1DStackUI extends AbstractPlotConnection {
 	@Override
 	public void processPlotUpdate(final DataBean dbPlot, boolean isUpdate) {
 
-		Display.getDefault().asyncExec(new Runnable() {
+		PlotRenderScheduler.getScheduler(plottingSystem).postData(new Runnable() {
 			@Override
 			public void run() {
 				List<DatasetWithAxisInformation> plotData = dbPlot.getData();
@@ -9,7 +9,9 @@
 package uk.ac.diamond.scisoft.analysis.plotclient.connection;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -24,7 +26,6 @@ import org.eclipse.dawnsci.plotting.api.trace.ITrace;
 import org.eclipse.january.dataset.Dataset;
 import org.eclipse.january.dataset.DatasetUtils;
 import org.eclipse.january.dataset.IDataset;
-import org.eclipse.swt.widgets.Display;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -44,6 +45,11 @@ class Plotting1DUI extends PlottingGUIUpdate {
 	private static final int LEGEND_LIMIT = 5; // maximum number of lines for legend otherwise it is not shown
 	private static final int TITLE_LIMIT = 3; // maximum number of lines for title to show
 
+	/**
+	 * Lines which have had points appended, only used in the display thread
+	 */
+	private final Map<ILineTrace, LineBuffer> buffers = new HashMap<>();
+
 	/**
 	 * Constructor of a plotting 1D 
 	 * @param plottingSystem plotting system
@@ -58,9 +64,23 @@ class Plotting1DUI extends PlottingGUIUpdate {
 		if (plotData == null)
 			return;
 
-		Display.getDefault().asyncExec(new Runnable() {
+		final GuiBean pb = dbPlot.getGuiParameters();
+		final Object op = pb == null ? null : pb.get(GuiParameters.PLOTOPERATION);
+		if (PLOTOP_APPEND.equals(op)) {
+			PlotRenderScheduler.getScheduler(plottingSystem).postData(new Runnable() {
+				@Override
+				public void run() {
+					appendPlot(dbPlot, plotData);
+				}
+			}, false);
+			return;
+		}
+
+		final boolean adding = GuiParameters.PLOTOP_ADD.equals(op);
+		PlotRenderScheduler.getScheduler(plottingSystem).postData(new Runnable() {
 			@Override
 			public void run() {
+				buffers.clear(); // lines are replaced
 				GuiBean gb = dbPlot.getGuiParameters();
 				String title = gb == null ? null : (String) gb.get(GuiParameters.TITLE);
 				boolean hasTitle = title != null;
@@ -70,6 +90,18 @@ class Plotting1DUI extends PlottingGUIUpdate {
 				int traces = oldTraces.size();
 				boolean useOldTraces = false;
 				final int plots = plotData.size();
+				final Map<List<String>, DatasetWithAxisInformation> newLines = new HashMap<>(); // by y and x names
+				for (DatasetWithAxisInformation d : plotData) {
+					String nyn = d.getData().getName();
+					Dataset nx = dbPlot.getAxis(d.getAxisMap().getAxisID()[0]);
+					String nxn = nx == null ? null : nx.getName();
+					if (nyn != null && nxn != null) {
+						List<String> key = Arrays.asList(nyn, nxn);
+						if (!newLines.containsKey(key)) {
+							newLines.put(key, d);
+						}
+					}
+				}
 				if (GuiParameters.PLOTOP_NONE.equals(plotOperation) || GuiParameters.PLOTOP_UPDATE.equals(plotOperation)) {
 					plottingSystem.setShowLegend(plots <= LEGEND_LIMIT);
 
@@ -81,17 +113,8 @@ class Plotting1DUI extends PlottingGUIUpdate {
 								String oyn = t.getName();
 								Dataset ox = DatasetUtils.convertToDataset(((ILineTrace) t).getXData());
 								String oxn = ox == null ? null : ox.getName();
-								if (oyn != null && oxn != null) {
-									for (DatasetWithAxisInformation d : plotData) {
-										String nyn = d.getData().getName();
-										String nxn = dbPlot.getAxis(d.getAxisMap().getAxisID()[0]).getName();
-										if (oyn.equals(nyn)) {
-											if (oxn.equals(nxn)) {
-												nt++;
-												break;
-											}
-										}
-									}
+								if (oyn != null && oxn != null && newLines.containsKey(Arrays.asList(oyn, oxn))) {
+									nt++;
 								}
 							}
 						}
@@ -130,19 +153,11 @@ class Plotting1DUI extends PlottingGUIUpdate {
 							String oyn = lt.getName();
 							Dataset x = DatasetUtils.convertToDataset(lt.getXData());
 							String oxn = x == null ? null : x.getName();
-							for (DatasetWithAxisInformation d : plotData) {
-								Dataset ny = d.getData();
-								String nyn = ny.getName();
-								Dataset nx = dbPlot.getAxis(d.getAxisMap().getAxisID()[0]);
-								String nxn = nx.getName();
-								if (oyn != null && oyn.equals(nyn)) {
-									if (oxn != null && oxn.equals(nxn)) {
-										lt.setData(nx, ny);
-										lt.repaint();
-										used = true;
-										break;
-									}
-								}
+							DatasetWithAxisInformation d = oyn == null || oxn == null ? null : newLines.get(Arrays.asList(oyn, oxn));
+							if (d != null) {
+								lt.setData(dbPlot.getAxis(d.getAxisMap().getAxisID()[0]), d.getData());
+								lt.repaint();
+								used = true;
 							}
 							if (!used)
 								unused.add(t);
@@ -290,7 +305,90 @@ class Plotting1DUI extends PlottingGUIUpdate {
 					logger.debug("Plot 1D created");
 				}
 			}
-		});
+		}, !adding); // lines which are added cannot be skipped
+	}
+
+	/**
+	 * Adds the points in the bean to the ends of the lines of the same name,
+	 * or to new lines, and widens the axes to show them
+	 */
+	private void appendPlot(DataBean dbPlot, List<DatasetWithAxisInformation> plotData) {
+		final boolean rescale = plottingSystem.isRescale();
+		double[] range = null;
+		for (DatasetWithAxisInformation d : plotData) {
+			Dataset ny = d.getData();
+			Dataset nx = dbPlot.getAxis(d.getAxisMap().getAxisID()[0]);
+			String nyn = ny.getName();
+			if (nyn == null || isEmpty(nyn)) {
+				logger.warn("Cannot append to a line without a name");
+				continue;
+			}
+
+			ITrace t = plottingSystem.getTrace(nyn);
+			ILineTrace lt;
+			if (t instanceof ILineTrace) {
+				lt = (ILineTrace) t;
+			} else {
+				lt = plottingSystem.createLineTrace(nyn);
+				lt.setTraceType(TraceType.SOLID_LINE);
+				plottingSystem.addTrace(lt);
+			}
+
+			LineBuffer b = buffers.get(lt);
+			IDataset oy = lt.getYData();
+			if (b == null || b.getSize() != (oy == null ? 0 : oy.getSize())) { // line was set elsewhere
+				IDataset ox = lt.getXData();
+				b = new LineBuffer(ox, oy, nx == null ? (ox == null ? null : ox.getName()) : nx.getName(), nyn);
+				buffers.put(lt, b);
+			}
+			if (ny.getSize() == 0) {
+				continue;
+			}
+			b.append(nx, ny);
+			lt.setData(b.getX(), b.getY());
+			lt.repaint();
+
+			double[] r = b.getAddedRange();
+			if (range == null) {
+				range = r;
+			} else {
+				range[0] = Math.min(range[0], r[0]);
+				range[1] = Math.max(range[1], r[1]);
+				range[2] = Math.min(range[2], r[2]);
+				range[3] = Math.max(range[3], r[3]);
+			}
+		}
+
+		if (rescale && range != null) {
+			widenAxis(plottingSystem.getSelectedXAxis(), range[0], range[1]);
+			widenAxis(plottingSystem.getSelectedYAxis(), range[2], range[3]);
+		}
+		logger.debug("Plot 1D appended");
+	}
+
+	/**
+	 * Widens the axis just enough to show the values, so the lines
+	 * are not looked at again
+	 */
+	private static void widenAxis(IAxis axis, double min, double max) {
+		if (axis == null || Double.isNaN(min) || Double.isInfinite(min) || Double.isNaN(max) || Double.isInfinite(max)) {
+			return;
+		}
+		double lower = axis.getLower();
+		double upper = axis.getUpper();
+		final boolean inverted = lower > upper;
+		double lo = Math.min(lower, upper);
+		double hi = Math.max(lower, upper);
+		if (min >= lo && max <= hi) {
+			return;
+		}
+		lo = Math.min(lo, min);
+		hi = Math.max(hi, max);
+		if (inverted) {
+			axis.setRange(hi, lo);
+		} else {
+			axis.setRange(lo, hi);
+		}
 	}
 
 	private static boolean isEmpty(String s) {
@@ -20,7 +20,6 @@ import org.eclipse.dawnsci.plotting.api.region.IRegion;
 import org.eclipse.dawnsci.plotting.api.region.IRegionService;
 import org.eclipse.dawnsci.plotting.api.region.RegionUtils;
 import org.eclipse.dawnsci.plotting.api.region.IRegion.RegionType;
-import org.eclipse.swt.widgets.Display;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -42,150 +41,167 @@ public class PlottingGUIUpdate extends AbstractPlotConnection {
 		this.plottingSystem = plottingSystem;
 	}
 
+	/**
+	 * Updates the regions in the display thread without waiting for it
+	 */
 	@Override
-	public void processGUIUpdate(final GuiBean guiBean) {
+	public void processGUIUpdate(final GuiBean bean) {
 		
-		logger.debug("There is a guiBean update: {}", guiBean);
+		logger.debug("There is a guiBean update: {}", bean);
 
-		Display.getDefault().syncExec(new Runnable() {
+		final GuiBean copy = bean.copy(); // the caller may change its bean
+		bean.remove(GuiParameters.ROICLEARALL);
+		PlotRenderScheduler.getScheduler(plottingSystem).postGUI(copy, new PlotRenderScheduler.IGuiUpdater() {
 			@Override
-			public void run() {
-//				TODO investigate why this is called when there is a really small time between 2 plot updates
-//				System.err.println("Should not be called!!!");
-				final Boolean clearAll = (Boolean) guiBean.remove(GuiParameters.ROICLEARALL);
-				if (clearAll != null && clearAll) {
-					plottingSystem.clearRegions();
+			public void update(GuiBean guiBean) {
+				final boolean quiet = guiBean.containsKey(GuiParameters.QUIET_UPDATE);
+				try {
+					// stop ROI manager broadcasting the regions set here
+					manager.acquireLock();
+					updateRegions(guiBean);
+				} finally {
+					manager.releaseLock();
 				}
+				if (!quiet && guiBean.containsKey(GuiParameters.QUIET_UPDATE)) {
+					manager.sendGUIInfo(guiBean); // a region has been named
+				}
+			}
+		});
+	}
+
+	private void updateRegions(final GuiBean guiBean) {
+		final Boolean clearAll = (Boolean) guiBean.remove(GuiParameters.ROICLEARALL);
+		if (clearAll != null && clearAll) {
+			plottingSystem.clearRegions();
+		}
 
-				final IROI roi = (IROI) guiBean.get(GuiParameters.ROIDATA);
-				IROI croi = manager.getROI();
-				ROIList<? extends IROI> list = (ROIList<?>) guiBean.get(GuiParameters.ROIDATALIST);
+		final IROI roi = (IROI) guiBean.get(GuiParameters.ROIDATA);
+		IROI croi = manager.getROI();
+		ROIList<? extends IROI> list = (ROIList<?>) guiBean.get(GuiParameters.ROIDATALIST);
 
-				if (roi != null)
-					logger.trace("R: {}", roi.getName());
-				if (list != null) {
-					for (IROI r : list)
-						logger.trace("L: {}", r.getName());
+		if (roi != null)
+			logger.trace("R: {}", roi.getName());
+		if (list != null) {
+			for (IROI r : list)
+				logger.trace("L: {}", r.getName());
+		}
+		// Same as in SidePlotProfile with onSwitch = false, i.e.:
+		// logic is for each GUI parameter
+		//     if null and parameter exists
+		//         delete parameter
+		//         signal updating of parameter
+		//     else if same class
+		//         replace parameter
+		//         signal updating of parameter
+
+		String rName = null;
+		if (roi == null) { // this indicates to remove the current ROI
+			if (croi != null) {
+				final IRegion r = plottingSystem.getRegion(croi.getName());
+				if (r != null) {
+					plottingSystem.removeRegion(r);
 				}
-				// Same as in SidePlotProfile with onSwitch = false, i.e.:
-				// logic is for each GUI parameter
-				//     if null and parameter exists
-				//         delete parameter
-				//         signal updating of parameter
-				//     else if same class
-				//         replace parameter
-				//         signal updating of parameter
-
-				String rName = null;
-				if (roi == null) { // this indicates to remove the current ROI
-					if (croi != null) {
-						final IRegion r = plottingSystem.getRegion(croi.getName());
-						if (r != null) {
-							plottingSystem.removeRegion(r);
+				croi = null;
+			}
+		} else {
+			rName = roi.getName(); // overwrite name if necessary
+			if (rName != null && rName.trim().length() == 0) {
+				rName = null;
+			}
+			boolean found = false; // found existing?
+			if (croi != null) {
+				if (roi.getClass().equals(croi.getClass())) { // replace current ROI
+					String cn = croi.getName();
+					final IRegion reg = plottingSystem.getRegion(cn);
+					if (reg != null) {
+						if (rName != null) {
+							plottingSystem.renameRegion(reg, rName);
+						} else {
+							roi.setName(cn);
+							rName = cn;
 						}
-						croi = null;
+						
+						reg.setFromServer(true);
+						if (!reg.getCoordinateSystem().isDisposed())
+							reg.setROI(roi);
+						found = true;
 					}
 				} else {
-					rName = roi.getName(); // overwrite name if necessary
-					if (rName != null && rName.trim().length() == 0) {
-						rName = null;
-					}
-					boolean found = false; // found existing?
-					if (croi != null) {
-						if (roi.getClass().equals(croi.getClass())) { // replace current ROI
-							String cn = croi.getName();
-							final IRegion reg = plottingSystem.getRegion(cn);
-							if (reg != null) {
-								if (rName != null) {
-									plottingSystem.renameRegion(reg, rName);
-								} else {
-									roi.setName(cn);
-									rName = cn;
-								}
-								
-								reg.setFromServer(true);
-								if (!reg.getCoordinateSystem().isDisposed())
-									reg.setROI(roi);
-								found = true;
-							}
-						} else {
-							if (rName != null) {
-								final IRegion reg = plottingSystem.getRegion(rName);
-								if (reg != null) {
-									reg.setFromServer(true);
-									reg.setROI(roi);
-									found = true;
-								}
-							}
+					if (rName != null) {
+						final IRegion reg = plottingSystem.getRegion(rName);
+						if (reg != null) {
+							reg.setFromServer(true);
+							reg.setROI(roi);
+							found = true;
 						}
 					}
-					if (!found) { // create new region
-						if (list == null) {
-							list = ROIUtils.createNewROIList(roi);
-							list.add(roi);
-						} else {
-							if (list.size() > 0) {
-								if (list.get(0).getClass().equals(roi.getClass())) {
-									if (!list.contains(roi)) {
-										list.add(roi);
-									}
-								}
-							} else {
+				}
+			}
+			if (!found) { // create new region
+				if (list == null) {
+					list = ROIUtils.createNewROIList(roi);
+					list.add(roi);
+				} else {
+					if (list.size() > 0) {
+						if (list.get(0).getClass().equals(roi.getClass())) {
+							if (!list.contains(roi)) {
 								list.add(roi);
 							}
 						}
-						createRegion(roi, guiBean);
-						croi = roi;
+					} else {
+						list.add(roi);
 					}
 				}
+				createRegion(roi, guiBean);
+				croi = roi;
+			}
+		}
 
-				final Set<String> names = new HashSet<String>(); // names of ROIs
-				if (rName != null) { // add existing ROI
-					names.add(rName);
-				}
-				if (list != null) {
-					for (IROI r : list) {
-						String n = r.getName();
-						if (n != null && n.trim().length() > 0) {
-							names.add(n);
-						}
-					}
+		final Set<String> names = new HashSet<String>(); // names of ROIs
+		if (rName != null) { // add existing ROI
+			names.add(rName);
+		}
+		if (list != null) {
+			for (IROI r : list) {
+				String n = r.getName();
+				if (n != null && n.trim().length() > 0) {
+					names.add(n);
 				}
+			}
+		}
 
-				final Collection<IRegion> regions = plottingSystem.getRegions();
-				Set<String> regNames = new HashSet<String>(); // regions not removed
-				for (IRegion reg : regions) { // clear all regions not listed
-					String regName = reg.getName();
-					if (!names.contains(regName)) {
-						plottingSystem.removeRegion(reg);
-					} else {
-						regNames.add(regName);
-					}
+		final Collection<IRegion> regions = plottingSystem.getRegions();
+		Set<String> regNames = new HashSet<String>(); // regions not removed
+		for (IRegion reg : regions) { // clear all regions not listed
+			String regName = reg.getName();
+			if (!names.contains(regName)) {
+				plottingSystem.removeRegion(reg);
+			} else {
+				regNames.add(regName);
+			}
+		}
+		if (list != null) {
+			for (IROI r : list) {
+				String n = r.getName();
+				if (r == croi || r == roi || n.equals(rName)) {
+					continue; // no need to update current region
 				}
-				if (list != null) {
-					for (IROI r : list) {
-						String n = r.getName();
-						if (r == croi || r == roi || n.equals(rName)) {
-							continue; // no need to update current region
-						}
 
-						if (regNames.contains(n)) { // update ROI
-							IRegion region = plottingSystem.getRegion(n);
-							if (region != null)
-								region.setROI(r);
-						} else { // or add new region that has not been listed
-							IRegion reg = plottingSystem.getRegion(n);
-							if (reg == null) {
-								createRegion(r, guiBean);
-							} else {
-								reg.setFromServer(true);
-								reg.setROI(r);
-							}
-						}
+				if (regNames.contains(n)) { // update ROI
+					IRegion region = plottingSystem.getRegion(n);
+					if (region != null)
+						region.setROI(r);
+				} else { // or add new region that has not been listed
+					IRegion reg = plottingSystem.getRegion(n);
+					if (reg == null) {
+						createRegion(r, guiBean);
+					} else {
+						reg.setFromServer(true);
+						reg.setROI(r);
 					}
 				}
 			}
-		});
+		}
 	}
 
 	private IRegion createRegion(IROI roib, GuiBean guiBean) {
@@ -1,7 +1,7 @@
 package uk.ac.diamond.scisoft.analysis.plotclient.dataset;
 
+import java.util.Collections;
 import java.util.EventObject;
-import java.util.HashMap;
 import java.util.Map;
 
 import org.eclipse.january.dataset.IDataset;
@@ -23,15 +23,26 @@ public class DataMailEvent extends EventObject {
 	private Map<String, IDataset> data;
 	private String                fullName;
 
+	/**
+	 * @param source
+	 * @param fullName
+	 * @param data which is not copied
+	 */
 	public DataMailEvent(Object source, String fullName, Map<String, IDataset> data) {
 		super(source);
 		this.fullName = fullName;
 		this.data = data;
 	}
 
+	/**
+	 * The map is an unmodifiable view of the data, not a copy, so a listener which
+	 * wants to change it must copy it first. The datasets are shared with other
+	 * listeners too, so must not be changed either.
+	 * @return unmodifiable view of the data
+	 */
 	public Map<String, IDataset> getData() {
 		if (data==null) return null;
-		return new HashMap<String, IDataset>(data);
+		return Collections.unmodifiableMap(data);
 	}
 
 	public IDataset get(String name) {
@@ -10,9 +10,17 @@
 package uk.ac.diamond.scisoft.analysis.plotclient.dataset;
 
 import java.io.Serializable;
-import java.util.HashSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.eclipse.dawnsci.analysis.api.RMIClientProvider;
 import org.eclipse.dawnsci.analysis.api.RMIServerProvider;
@@ -22,7 +30,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import uk.ac.diamond.scisoft.analysis.AnalysisRpcServerProvider;
-import uk.ac.diamond.scisoft.analysis.plotclient.rpc.AnalysisRpcSyncExecDispatcher;
+import uk.ac.diamond.scisoft.analysis.plotclient.rpc.AnalysisRpcDispatcher;
 
 
 /**
@@ -34,6 +42,14 @@ import uk.ac.diamond.scisoft.analysis.plotclient.rpc.AnalysisRpcSyncExecDispatch
  * Then if the user uses jython(RMI) or Python(RPC) they can connect to
  * this mailman and send data back into the Java GUI. 
  * 
+ * Each listener has its own mailbox and is sent mail in order on a
+ * shared pool of threads, so a slow listener does not hold up the
+ * others or the sender. All listeners are given the same unmodifiable
+ * map of datasets, see {@link DataMailEvent#getData()}, which must not
+ * be changed. If a listener has not yet been given
+ * mail for a dataset name when newer mail for that name arrives, the
+ * older mail is dropped.
+ * 
  * @author Matthew Gerring
  *
  */
@@ -68,7 +84,7 @@ public class DatasetMailman implements IDatasetMailman, Serializable {
 
 			// register as an RPC service for Python
 			try {
-				IAnalysisRpcHandler dispatcher = new AnalysisRpcSyncExecDispatcher(IDatasetMailman.class, manager);
+				IAnalysisRpcHandler dispatcher = new AnalysisRpcDispatcher(IDatasetMailman.class, manager);
 				AnalysisRpcServerProvider.getInstance().addHandler(RPC_DATASET_SERVICE_NAME, dispatcher);
 			} catch (Exception e) {
 				logger.warn("Not registered IDatasetManager as RPC service - but might be disabled");
@@ -104,23 +120,44 @@ public class DatasetMailman implements IDatasetMailman, Serializable {
 	}
 
 
-	private DatasetMailman() {
-		
+	DatasetMailman() {
+		// package-private for tests, otherwise use getLocalManager
 	}
 
-	private Set<IDataMailListener> listeners;
+	private static final ExecutorService postmen = Executors.newCachedThreadPool(new ThreadFactory() {
+		private final AtomicInteger count = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, "Dataset mailman " + count.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		}
+	});
+
+	private final CopyOnWriteArrayList<Mailbox> mailboxes = new CopyOnWriteArrayList<Mailbox>();
+	private final AtomicLong dropped = new AtomicLong();
 
 	@Override
 	public void send(String datasetName, Map<String, IDataset> data) {
 		
-		if (listeners==null) return;
+		if (mailboxes.isEmpty()) return;
 		
-		final DataMailEvent evt = new DataMailEvent(this, datasetName, data);
-		for (Object listener : listeners) {
-			((IDataMailListener)listener).mailReceived(evt);
+		// one map shared by all listeners
+		final Map<String, IDataset> shared = data == null ? null : Collections.unmodifiableMap(new HashMap<String, IDataset>(data));
+		final DataMailEvent evt = new DataMailEvent(this, datasetName, shared);
+		for (Mailbox box : mailboxes) {
+			box.post(evt);
 		}
 	}
 
+	/**
+	 * @return number of mails not given to a listener as newer mail of the same name came first
+	 */
+	public long getDroppedMail() {
+		return dropped.get();
+	}
+
 	@Override
 	public IDataset get(String name) {
 		// TODO Auto-generated method stub
@@ -128,19 +165,83 @@ public class DatasetMailman implements IDatasetMailman, Serializable {
 	}
 
 	@Override
-	public void addMailListener(IDataMailListener l) {
-		if (listeners==null) listeners = new HashSet<IDataMailListener>();
-		listeners.add(l);
+	public synchronized void addMailListener(IDataMailListener l) {
+		for (Mailbox box : mailboxes) {
+			if (box.listener.equals(l)) return;
+		}
+		mailboxes.add(new Mailbox(l));
 	}
 
 	@Override
-	public void removeMailListener(IDataMailListener l) {
-		if (listeners==null) return;
-		listeners.remove(l);
+	public synchronized void removeMailListener(IDataMailListener l) {
+		for (Mailbox box : mailboxes) {
+			if (box.listener.equals(l)) {
+				box.close();
+				mailboxes.remove(box);
+				return;
+			}
+		}
 	}
 
 	@Override
-	public void clear() {
-		listeners.clear();
+	public synchronized void clear() {
+		for (Mailbox box : mailboxes) {
+			box.close();
+		}
+		mailboxes.clear();
+	}
+
+	/**
+	 * Mail waiting for a listener, by dataset name
+	 */
+	private class Mailbox implements Runnable, Serializable {
+		private static final long serialVersionUID = -2837464118342951735L;
+
+		private final IDataMailListener listener;
+		private final LinkedHashMap<String, DataMailEvent> pending = new LinkedHashMap<String, DataMailEvent>();
+		private boolean delivering;
+		private boolean closed;
+
+		private Mailbox(IDataMailListener listener) {
+			this.listener = listener;
+		}
+
+		private void post(DataMailEvent evt) {
+			synchronized (this) {
+				if (closed) return;
+				if (pending.put(evt.getFullName(), evt) != null) {
+					dropped.incrementAndGet();
+				}
+				if (delivering) return;
+				delivering = true;
+			}
+			postmen.execute(this);
+		}
+
+		private synchronized void close() {
+			closed = true;
+			pending.clear();
+		}
+
+		@Override
+		public void run() {
+			while (true) {
+				DataMailEvent evt;
+				synchronized (this) {
+					final Iterator<DataMailEvent> it = pending.values().iterator();
+					if (!it.hasNext()) {
+						delivering = false;
+						return;
+					}
+					evt = it.next();
+					it.remove();
+				}
+				try {
+					listener.mailReceived(evt);
+				} catch (Exception e) {
+					logger.error("Listener could not take mail {}", evt.getFullName(), e);
+				}
+			}
+		}
 	}
 }
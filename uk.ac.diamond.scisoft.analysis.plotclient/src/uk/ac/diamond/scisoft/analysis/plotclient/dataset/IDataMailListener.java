@@ -6,7 +6,8 @@ import java.util.EventListener;
 public interface IDataMailListener extends EventListener, Serializable {
 
 	/**
-	 * Called when python client sends us some data.
+	 * Called when python client sends us some data. This is not called in the
+	 * UI thread.
 	 * @param evt
 	 */
 	public void mailReceived(DataMailEvent evt);
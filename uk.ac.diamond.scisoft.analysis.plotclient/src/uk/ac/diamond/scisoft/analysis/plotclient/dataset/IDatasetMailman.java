@@ -6,6 +6,8 @@ import java.util.Map;
 
 import org.eclipse.january.dataset.IDataset;
 
+import uk.ac.diamond.scisoft.analysis.plotclient.rpc.FireAndForget;
+
 public interface IDatasetMailman extends Remote {
 
 	public static final String RPC_DATASET_SERVICE_NAME = "DatasetManager";
@@ -32,6 +34,7 @@ public interface IDatasetMailman extends Remote {
 	 * Send some data from python to java
 	 * @param data
 	 */
+	@FireAndForget
 	public void send(String datasetName, Map<String, IDataset> data) throws RemoteException;
 	
 	/**
@@ -0,0 +1,194 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package uk.ac.diamond.scisoft.analysis.plotclient.rpc;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.swt.widgets.Display;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import uk.ac.diamond.scisoft.analysis.rpc.AnalysisRpcGenericInstanceDispatcher;
+
+/**
+ * Invokes methods on an instance class, only going to the UI thread for the methods which need it.
+ * <p>
+ * Methods annotated with {@link RunInDisplayThread}, on the delegate class or the interfaces of
+ * the instance, are run with {@link Display#syncExec(Runnable)}. Others are run in the thread of
+ * the RPC server which took the call, so do not wait for the UI. Methods annotated with
+ * {@link FireAndForget} return straight away and are run later, in the display thread with
+ * {@link Display#asyncExec(Runnable)} or on a shared pool of worker threads, in the order they
+ * were called.
+ */
+public class AnalysisRpcDispatcher extends AnalysisRpcGenericInstanceDispatcher {
+
+	private static final Logger logger = LoggerFactory.getLogger(AnalysisRpcDispatcher.class);
+
+	private static final ExecutorService workers = Executors.newCachedThreadPool(new ThreadFactory() {
+		private final AtomicInteger count = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, "Analysis RPC worker " + count.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		}
+	});
+
+	private static final int ANY = 0;
+	private static final int DISPLAY = 1;
+	private static final int LATER = 2;
+
+	private final Class<?> delegate;
+	private final Map<Method, Integer> modes = new ConcurrentHashMap<Method, Integer>();
+	private final ArrayDeque<Runnable> later = new ArrayDeque<Runnable>();
+	private boolean running;
+
+	/**
+	 * @see AnalysisRpcGenericInstanceDispatcher#AnalysisRpcGenericInstanceDispatcher(Class, Object)
+	 */
+	public AnalysisRpcDispatcher(Class<?> delegate, Object instance) {
+		super(delegate, instance);
+		this.delegate = delegate;
+	}
+
+	/**
+	 * @see AnalysisRpcGenericInstanceDispatcher#getDispatcher(Object)
+	 */
+	public static AnalysisRpcDispatcher getDispatcher(Object instance) {
+		return new AnalysisRpcDispatcher(instance.getClass(), instance);
+	}
+
+	@Override
+	protected Object invoke(final Method method, final Object instance, final Object[] args) throws Exception {
+		final int mode = getMode(method, instance);
+		final boolean display = (mode & DISPLAY) != 0;
+		if ((mode & LATER) != 0) {
+			final Runnable call = new Runnable() {
+				@Override
+				public void run() {
+					try {
+						method.invoke(instance, args);
+					} catch (InvocationTargetException e) {
+						logger.error("Call of {} failed", method.getName(), e.getCause());
+					} catch (Exception e) {
+						logger.error("Could not call {}", method.getName(), e);
+					}
+				}
+			};
+			if (display) {
+				asyncExec(call);
+			} else {
+				execute(call);
+			}
+			return null;
+		}
+
+		if (!display) {
+			return method.invoke(instance, args);
+		}
+
+		final Object[] ret = new Object[1];
+		final Exception[] exp = new Exception[1];
+		syncExec(new Runnable() {
+
+			@Override
+			public void run() {
+				try {
+					ret[0] = method.invoke(instance, args);
+				} catch (Exception e) {
+					exp[0] = e;
+				}
+			}
+		});
+
+		if (exp[0] != null) {
+			throw exp[0];
+		}
+		return ret[0];
+	}
+
+	private int getMode(Method method, Object instance) {
+		Integer mode = modes.get(method);
+		if (mode == null) {
+			int m = ANY;
+			if (isAnnotated(method, instance, RunInDisplayThread.class))
+				m |= DISPLAY;
+			if (isAnnotated(method, instance, FireAndForget.class))
+				m |= LATER;
+			mode = m;
+			modes.put(method, mode);
+		}
+		return mode;
+	}
+
+	private boolean isAnnotated(Method method, Object instance, Class<? extends Annotation> annotation) {
+		if (method.isAnnotationPresent(annotation))
+			return true;
+		for (Class<?> c = instance.getClass(); c != null; c = c.getSuperclass()) {
+			for (Class<?> i : c.getInterfaces()) {
+				if (i == delegate)
+					continue;
+				try {
+					if (i.getMethod(method.getName(), method.getParameterTypes()).isAnnotationPresent(annotation))
+						return true;
+				} catch (NoSuchMethodException e) {
+					// not in this interface
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Runs calls one after another on the worker pool
+	 */
+	private void execute(Runnable call) {
+		synchronized (later) {
+			later.add(call);
+			if (running)
+				return;
+			running = true;
+		}
+		workers.execute(new Runnable() {
+			@Override
+			public void run() {
+				while (true) {
+					Runnable r;
+					synchronized (later) {
+						r = later.poll();
+						if (r == null) {
+							running = false;
+							return;
+						}
+					}
+					r.run();
+				}
+			}
+		});
+	}
+
+	protected void syncExec(Runnable r) {
+		Display.getDefault().syncExec(r);
+	}
+
+	protected void asyncExec(Runnable r) {
+		Display.getDefault().asyncExec(r);
+	}
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package uk.ac.diamond.scisoft.analysis.rcp.polling;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+import org.eclipse.january.dataset.Dataset;
+import org.eclipse.january.dataset.DatasetFactory;
+import org.eclipse.january.dataset.DatasetUtils;
+import org.eclipse.january.dataset.IDataset;
+
+/**
+ * Keeps the sum of the last few images added.
+ *
+ * The images are kept in a ring so that when an image is added the one
+ * which drops out of the window is taken off the sum, rather than adding
+ * up the whole window again. Images may be kept as floats, which is
+ * exact for detector counts up to 2^24 and half the size of doubles, the
+ * sum is always kept as doubles. The sum is worked out again from the
+ * images once every window of images to stop rounding errors building up
+ * for non integer data.
+ */
+class ImageAccumulator {
+
+	private final int              window;
+	private final int              imageType;
+	private final ArrayDeque<Dataset> images;
+
+	private Dataset sum;
+	private int     removedSinceSum;
+
+	/**
+	 * @param window maximum number of images to sum
+	 * @param floatImages true to keep the images as floats rather than doubles
+	 */
+	ImageAccumulator(int window, boolean floatImages) {
+		this.window    = Math.max(1, window);
+		this.imageType = floatImages ? Dataset.FLOAT32 : Dataset.FLOAT64;
+		this.images    = new ArrayDeque<Dataset>(this.window);
+	}
+
+	int getWindow() {
+		return window;
+	}
+
+	boolean isFloatImages() {
+		return imageType==Dataset.FLOAT32;
+	}
+
+	int size() {
+		return images.size();
+	}
+
+	/**
+	 * Adds an image, taking the oldest image off the sum if the window is full.
+	 * If the image is not the same shape as those already added the sum starts again.
+	 * @param image
+	 */
+	void add(IDataset image) {
+
+		final Dataset kept = DatasetUtils.cast(image, imageType);
+		if (sum!=null && !Arrays.equals(sum.getShape(), kept.getShape())) clear();
+		if (sum==null) sum = DatasetFactory.zeros(kept.getShape(), Dataset.FLOAT64);
+
+		if (images.size()==window) {
+			sum.isubtract(images.removeFirst());
+			removedSinceSum++;
+		}
+		images.addLast(kept);
+
+		if (removedSinceSum>=window) {
+			sum.fill(0);
+			for (Dataset i : images) sum.iadd(i);
+			removedSinceSum = 0;
+		} else {
+			sum.iadd(kept);
+		}
+	}
+
+	/**
+	 * @return a copy of the sum of the images in the window, or null if there are none
+	 */
+	Dataset getSum() {
+		return sum!=null ? sum.clone() : null;
+	}
+
+	void clear() {
+		images.clear();
+		sum             = null;
+		removedSinceSum = 0;
+	}
+}
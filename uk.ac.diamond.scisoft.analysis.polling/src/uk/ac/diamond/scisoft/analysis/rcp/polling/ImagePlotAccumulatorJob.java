@@ -13,39 +13,62 @@ import java.util.ArrayList;
 
 import org.eclipse.dawnsci.analysis.api.io.IDataHolder;
 import org.eclipse.january.dataset.Dataset;
-import org.eclipse.january.dataset.DatasetFactory;
-import org.eclipse.january.dataset.IDataset;
 
 import uk.ac.diamond.scisoft.analysis.SDAPlotter;
 import uk.ac.diamond.scisoft.analysis.io.LoaderFactory;
 import uk.ac.diamond.sda.polling.jobs.FilenameReaderUpdateOnlyJob;
 
+/**
+ * Plots the sum of the last MaxImagesToAccumulate images in the drop file.
+ * 
+ * Only the images added to the drop file since the last poll are loaded, they
+ * are added to an ImageAccumulator which takes off the images which drop out of
+ * the window. Set AccumulateAsFloat=true to keep the images as floats.
+ */
 public class ImagePlotAccumulatorJob extends FilenameReaderUpdateOnlyJob {
 
 	private static final Object PLOT_VIEW_NAME = "PlotViewName";
 	private static final Object MAX_IMAGES_TO_ACCUMULATE = "MaxImagesToAccumulate";
+	private static final Object ACCUMULATE_AS_FLOAT = "AccumulateAsFloat";
+
+	private ImageAccumulator accumulator;
+
+	/**
+	 * Index in the drop file of the next image to add to the accumulator.
+	 */
+	private int nextImage;
 	
 	@Override
 	protected void processFile(ArrayList<String> filenames) {
+		processFile(filenames, 0);
+	}
+
+	@Override
+	protected void processFile(ArrayList<String> filenames, int firstNew) {
 		try {	
-			// get the end of the list
-			int listEnd = filenames.size()-1;
-
-			ArrayList<IDataset> images = new ArrayList<IDataset>();
-			
-			int position = 0;
-			while (listEnd-position >= 0 && position < Integer.parseInt(getJobParameters().get(MAX_IMAGES_TO_ACCUMULATE))) {
-				IDataHolder data = LoaderFactory.getData(filenames.get(listEnd-position));
-				images.add(data.getDataset(0));
-				position++;
-			}			
-				
-			Dataset accumulator =  DatasetFactory.zeros(images.get(0).getShape(), Dataset.ARRAYFLOAT64);
-			for(int i = 0; i < images.size(); i++) {
-				accumulator.iadd(images.get(i));
+			final int     max         = Integer.parseInt(getJobParameters().get(MAX_IMAGES_TO_ACCUMULATE));
+			final boolean floatImages = Boolean.parseBoolean(getJobParameters().get(ACCUMULATE_AS_FLOAT));
+			if (accumulator==null || accumulator.getWindow()!=max || accumulator.isFloatImages()!=floatImages) {
+				accumulator = new ImageAccumulator(max, floatImages);
+				nextImage   = 0;
 			}
-			
-			SDAPlotter.imagePlot(getJobParameters().get(PLOT_VIEW_NAME), accumulator);
+
+			// The drop file was started again, or an image already added was changed
+			if (firstNew<nextImage) {
+				accumulator.clear();
+				nextImage = 0;
+			}
+
+			// only load the images which are new and in the window
+			int position = Math.max(nextImage, filenames.size()-accumulator.getWindow());
+			for (; position < filenames.size(); position++) {
+				IDataHolder data = LoaderFactory.getData(filenames.get(position));
+				accumulator.add(data.getDataset(0));
+				nextImage = position+1;
+			}
+
+			final Dataset sum = accumulator.getSum();
+			if (sum!=null) SDAPlotter.imagePlot(getJobParameters().get(PLOT_VIEW_NAME), sum);
 		} catch (Exception e) {
 			e.printStackTrace();
 		}
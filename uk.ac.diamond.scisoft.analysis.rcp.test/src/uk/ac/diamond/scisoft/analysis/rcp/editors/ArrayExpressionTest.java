@@ -0,0 +1,195 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package uk.ac.diamond.scisoft.analysis.rcp.editors;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.eclipse.january.dataset.Dataset;
+import org.eclipse.january.dataset.DatasetFactory;
+import org.eclipse.january.dataset.IDataset;
+import org.junit.Test;
+import org.nfunk.jep.JEP;
+import org.nfunk.jep.ParseException;
+import org.nfunk.jep.type.Complex;
+
+/**
+ * Compares compiled expressions with JEP evaluating each item, as
+ * CompareFilesEditor does for expressions which cannot be compiled.
+ */
+public class ArrayExpressionTest {
+
+	private static final double[] X = { -3, -2, -1.5, -1, -0.5, 0, 0.25, 0.5, 1, 1.5, 2, 3, 10 };
+	private static final double[] Y = { 2, -1, 0, 0.5, -0.5, 0, 3, 1, -2, 1.5, 0.5, -3, 4 };
+
+	private static JEP parse(String expression) {
+		JEP jep = new JEP();
+		jep.setAllowUndeclared(true);
+		jep.addStandardFunctions();
+		jep.parseExpression(expression);
+		assertFalse(jep.getErrorInfo(), jep.hasError());
+		return jep;
+	}
+
+	private static double[] valuesOf(String name, double[] x, double[] y) {
+		if (name.equals("x"))
+			return x;
+		if (name.equals("y"))
+			return y;
+		throw new IllegalArgumentException("No values for variable " + name);
+	}
+
+	/**
+	 * Checks each item of compiled expression is what JEP gives, or NaN where
+	 * JEP gives a complex number
+	 */
+	private static void check(String expression, int[] shape, double[] x, double[] y) throws ParseException {
+		JEP jep = parse(expression);
+		ArrayExpression e = ArrayExpression.compile(jep);
+		assertNotNull("Could not compile " + expression, e);
+
+		String[] vars = e.getVariables();
+		IDataset[] values = new IDataset[vars.length];
+		for (int i = 0; i < vars.length; i++) {
+			values[i] = DatasetFactory.createFromObject(valuesOf(vars[i], x, y), shape);
+		}
+		Dataset result = e.evaluate(shape, values);
+		assertArrayEquals(shape, result.getShape());
+
+		int[] pos = new int[shape.length];
+		for (int i = 0; i < x.length; i++) {
+			for (String v : vars) {
+				jep.setVarValue(v, valuesOf(v, x, y)[i]);
+			}
+			Object expected = jep.evaluate(jep.getTopNode());
+			String msg = expression + " with x=" + x[i] + ", y=" + y[i];
+			int k = i;
+			for (int j = shape.length - 1; j >= 0; j--) {
+				pos[j] = k % shape[j];
+				k /= shape[j];
+			}
+			double actual = result.getDouble(pos);
+			if (expected instanceof Complex) {
+				assertTrue(msg + " gave " + actual + " not NaN", Double.isNaN(actual));
+			} else {
+				double d = ((Number) expected).doubleValue();
+				assertEquals(msg, d, actual, 1e-12 * Math.max(1, Math.abs(d)));
+			}
+		}
+	}
+
+	private static void check(String expression) throws ParseException {
+		check(expression, new int[] { X.length }, X, Y);
+	}
+
+	@Test
+	public void testBinaryOperators() throws ParseException {
+		check("x + y");
+		check("x - y");
+		check("x * y");
+		check("x / y");
+		check("x % y");
+		check("x ^ 2");
+		check("x ^ y");
+		check("x < y");
+		check("x > y");
+		check("x <= y");
+		check("x >= y");
+		check("x == y");
+		check("x != y");
+		check("x && y");
+		check("x || y");
+	}
+
+	@Test
+	public void testUnaryOperators() throws ParseException {
+		check("-x");
+		check("-(x - y)");
+		check("x * -y");
+		check("!x");
+		check("!(x > y)");
+	}
+
+	@Test
+	public void testPrecedence() throws ParseException {
+		check("x + y * 2 - x / 4");
+		check("-x ^ 2");
+		check("(x + 1) * (y - 1) ^ 2 / 3");
+		check("x > 0 && y > 0 || x == y");
+	}
+
+	@Test
+	public void testFunctions() throws ParseException {
+		String[] unary = { "sin", "cos", "tan", "asin", "acos", "atan", "sinh", "cosh", "tanh", "asinh", "acosh",
+				"atanh", "exp", "abs", "round", "floor", "ceil" };
+		for (String f : unary) {
+			check(f + "(x)");
+		}
+		check("atan2(x, y)");
+		check("mod(x, y)");
+	}
+
+	@Test
+	public void testIfAndSum() throws ParseException {
+		check("if(x > y, x, y)");
+		check("if(x - y, 1, -1)");
+		check("sum(x)");
+		check("sum(x, y)");
+		check("sum(x, y, 2, -x * y)");
+	}
+
+	@Test
+	public void testLogarithms() throws ParseException {
+		check("log(x)");
+		check("ln(x)");
+		check("log(100) + ln(x * x + 1)");
+	}
+
+	@Test
+	public void testComplexIsNaN() throws ParseException {
+		check("sqrt(x)");
+		check("ln(x)");
+		check("log(y)");
+		check("x ^ 0.5");
+		check("asin(2 * x)");
+		check("acosh(x)");
+		check("atanh(x)");
+	}
+
+	@Test
+	public void testChunksInParallel() throws ParseException {
+		int[] shape = { 300, 250 };
+		int n = shape[0] * shape[1];
+		double[] x = new double[n];
+		double[] y = new double[n];
+		for (int i = 0; i < n; i++) {
+			x[i] = (i % 997) / 100. - 5;
+			y[i] = (i % 13) - 6;
+		}
+		check("if(x > y, sqrt(abs(x)), -y) * 2 + sum(x, y) / 3", shape, x, y);
+	}
+
+	@Test
+	public void testVariablesInOrderOfUse() {
+		ArrayExpression e = ArrayExpression.compile(parse("y * x + y"));
+		assertArrayEquals(new String[] { "y", "x" }, e.getVariables());
+	}
+
+	@Test
+	public void testUnsupported() {
+		assertNull(ArrayExpression.compile(parse("rand()")));
+		assertNull(ArrayExpression.compile(parse("x + binom(4, 2)")));
+		assertNull(ArrayExpression.compile(parse("str(x)")));
+	}
+}
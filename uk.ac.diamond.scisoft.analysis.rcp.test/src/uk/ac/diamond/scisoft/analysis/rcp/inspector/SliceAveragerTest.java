@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package uk.ac.diamond.scisoft.analysis.rcp.inspector;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import org.eclipse.january.DatasetException;
+import org.eclipse.january.dataset.Dataset;
+import org.eclipse.january.dataset.DatasetFactory;
+import org.eclipse.january.dataset.DoubleDataset;
+import org.eclipse.january.dataset.Slice;
+import org.eclipse.january.dataset.SliceND;
+import org.junit.Test;
+
+/**
+ * Compares averages read in blocks with the mean of the whole slice, for
+ * slices which do not split evenly into blocks
+ */
+public class SliceAveragerTest {
+
+	private static Dataset createData(int... shape) {
+		int size = 1;
+		for (int s : shape) {
+			size *= s;
+		}
+		return DatasetFactory.createRange(DoubleDataset.class, 0, size, 1).reshape(shape);
+	}
+
+	/**
+	 * Checks the blocks cover the slice and their average is its mean
+	 */
+	private static void check(SliceAverager averager, Dataset data, Slice[] slices, boolean[] average)
+			throws DatasetException {
+		final SliceND slice = new SliceND(data.getShape(), slices);
+		long items = 0;
+		for (int b = 0; b < averager.total; b++) {
+			items += new SliceND(data.getShape(), averager.getBlockSlices(b)).getSize();
+		}
+		assertEquals(slice.getSize(), items);
+
+		Dataset expected = data.getSlice(slices);
+		for (int d = average.length - 1; d >= 0; d--) {
+			if (average[d])
+				expected = expected.mean(d);
+		}
+		final Dataset actual = averager.average(null, null);
+		assertNotNull(actual);
+		for (int i = 0; i < average.length; i++) {
+			assertEquals(average[i] ? 1 : slice.getShape()[i], actual.getShape()[i]);
+		}
+		assertEquals(expected.getSize(), actual.getSize());
+		final Dataset e = expected.flatten();
+		final Dataset a = actual.flatten();
+		for (int i = 0; i < e.getSize(); i++) {
+			assertEquals(e.getDouble(i), a.getDouble(i), 1e-9);
+		}
+	}
+
+	@Test
+	public void testRunOfFrames() throws DatasetException {
+		final Dataset data = createData(7, 5, 6);
+		final Slice[] slices = { new Slice(), new Slice(), new Slice() };
+		final boolean[] average = { true, false, false };
+		final SliceAverager averager = new SliceAverager(data, slices, average, 4 * 30);
+		assertEquals(0, averager.blockDim);
+		assertEquals(0, averager.outerDims.length);
+		assertEquals(4, averager.blockLength);
+		assertEquals(2, averager.total);
+		check(averager, data, slices, average);
+	}
+
+	@Test
+	public void testOuterDimensions() throws DatasetException {
+		final Dataset data = createData(5, 3, 4, 6);
+		final Slice[] slices = { new Slice(), new Slice(), new Slice(), new Slice() };
+		final boolean[] average = { true, true, false, false };
+		final SliceAverager averager = new SliceAverager(data, slices, average, 2 * 24);
+		assertEquals(1, averager.blockDim);
+		assertArrayEquals(new int[] { 0 }, averager.outerDims);
+		assertEquals(2, averager.blockLength);
+		assertEquals(5 * 2, averager.total);
+		check(averager, data, slices, average);
+	}
+
+	@Test
+	public void testInnerDimensionsTakenWhole() throws DatasetException {
+		final Dataset data = createData(7, 4, 3, 5);
+		final Slice[] slices = { new Slice(), new Slice(), new Slice(), new Slice() };
+		final boolean[] average = { true, false, true, true };
+		final SliceAverager averager = new SliceAverager(data, slices, average, 3 * 60);
+		assertEquals(0, averager.blockDim);
+		assertEquals(3, averager.blockLength);
+		assertEquals(3, averager.total);
+		check(averager, data, slices, average);
+	}
+
+	@Test
+	public void testSteppedSlices() throws DatasetException {
+		final Dataset data = createData(9, 4, 10);
+		final Slice[] slices = { new Slice(null, null, -2), new Slice(1, 4), new Slice(1, 9, 3) };
+		final boolean[] average = { true, false, true };
+		final SliceAverager averager = new SliceAverager(data, slices, average, 2 * 3 * 3);
+		assertEquals(0, averager.blockDim);
+		assertEquals(2, averager.blockLength);
+		assertEquals(3, averager.total);
+		check(averager, data, slices, average);
+	}
+
+	@Test
+	public void testWholeSliceInOneBlock() throws DatasetException {
+		final Dataset data = createData(6, 5, 4);
+		final Slice[] slices = { new Slice(5, null, -1), new Slice(), new Slice(null, null, 2) };
+		final boolean[] average = { true, true, false };
+		final SliceAverager averager = new SliceAverager(data, slices, average);
+		assertEquals(1, averager.total);
+		check(averager, data, slices, average);
+	}
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package uk.ac.diamond.scisoft.analysis.rcp.plotting.rpc;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.dawnsci.analysis.api.rpc.IAnalysisRpcHandler;
+import org.eclipse.january.dataset.DatasetFactory;
+import org.eclipse.january.dataset.IDataset;
+import org.eclipse.swt.widgets.Display;
+import org.junit.Assert;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import uk.ac.diamond.scisoft.analysis.plotclient.dataset.IDataMailListener;
+import uk.ac.diamond.scisoft.analysis.plotclient.dataset.IDatasetMailman;
+import uk.ac.diamond.scisoft.analysis.plotclient.rpc.AnalysisRpcDispatcher;
+import uk.ac.diamond.scisoft.analysis.plotclient.rpc.AnalysisRpcSyncExecDispatcher;
+
+/**
+ * Measures how many RPC calls a second get through a dispatcher while the UI thread is busy.
+ * <p>
+ * Client threads stand in for remote Python clients and call the dispatcher as the RPC server
+ * does. The test thread, which is the UI thread, keeps busy and only handles a runnable from
+ * the display queue now and then.
+ */
+public class AnalysisRpcDispatcherPluginTest {
+
+	private static final Logger logger = LoggerFactory.getLogger(AnalysisRpcDispatcherPluginTest.class);
+
+	private static final int CLIENTS = 4;
+	private static final int CALLS = 50; // per client
+	private static final long BUSY_MILLIS = 20; // between runnables handled by UI
+
+	/**
+	 * Stand-in mailman which counts the mail
+	 */
+	private static class CountingMailman implements IDatasetMailman {
+		private final AtomicInteger received = new AtomicInteger();
+
+		@Override
+		public void addMailListener(IDataMailListener l) {
+		}
+
+		@Override
+		public void removeMailListener(IDataMailListener l) {
+		}
+
+		@Override
+		public void clear() {
+		}
+
+		@Override
+		public void send(String datasetName, Map<String, IDataset> data) {
+			received.incrementAndGet();
+		}
+
+		@Override
+		public IDataset get(String name) {
+			return null;
+		}
+	}
+
+	@Test
+	public void testSendThroughputWithBusyUI() throws Exception {
+		CountingMailman syncMailman = new CountingMailman();
+		double syncRate = callsPerSecond(new AnalysisRpcSyncExecDispatcher(IDatasetMailman.class, syncMailman));
+		Assert.assertEquals(CLIENTS * CALLS, syncMailman.received.get());
+
+		CountingMailman mailman = new CountingMailman();
+		double rate = callsPerSecond(new AnalysisRpcDispatcher(IDatasetMailman.class, mailman));
+		long end = System.currentTimeMillis() + 10000;
+		while (mailman.received.get() < CLIENTS * CALLS && System.currentTimeMillis() < end) {
+			Thread.sleep(10);
+		}
+		Assert.assertEquals(CLIENTS * CALLS, mailman.received.get());
+
+		logger.info("Calls a second with busy UI: {} in UI thread, {} with dispatcher", syncRate, rate);
+		Assert.assertTrue("Dispatcher should not wait for busy UI", rate > syncRate);
+	}
+
+	private double callsPerSecond(final IAnalysisRpcHandler handler) throws Exception {
+		final Map<String, IDataset> data = new HashMap<String, IDataset>();
+		data.put("x", DatasetFactory.createRange(10));
+		final Object[] args = new Object[] {"send", "data", data};
+
+		final AtomicInteger done = new AtomicInteger();
+		final Exception[] exp = new Exception[1];
+		Thread[] clients = new Thread[CLIENTS];
+		for (int i = 0; i < CLIENTS; i++) {
+			clients[i] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						for (int j = 0; j < CALLS; j++) {
+							handler.run(args);
+						}
+					} catch (Exception e) {
+						exp[0] = e;
+					} finally {
+						done.incrementAndGet();
+					}
+				}
+			}, "Stand-in RPC client " + i);
+		}
+
+		final Display display = Display.getCurrent();
+		long start = System.nanoTime();
+		for (Thread t : clients) {
+			t.start();
+		}
+		while (done.get() < CLIENTS) {
+			Thread.sleep(BUSY_MILLIS); // UI is busy
+			if (display != null) {
+				display.readAndDispatch();
+			}
+		}
+		long time = System.nanoTime() - start;
+		if (exp[0] != null) {
+			throw exp[0];
+		}
+		return CLIENTS * CALLS * 1e9 / time;
+	}
+}
@@ -27,6 +27,7 @@ import org.slf4j.LoggerFactory;
 import uk.ac.diamond.scisoft.analysis.AnalysisRpcServerProvider;
 import uk.ac.diamond.scisoft.analysis.PlotServer;
 import uk.ac.diamond.scisoft.analysis.PlotServerProvider;
+import uk.ac.diamond.scisoft.analysis.rcp.imagegrid.PlotServerSWTImageGrid;
 import uk.ac.diamond.scisoft.analysis.rcp.preference.PreferenceConstants;
 
 /**
@@ -86,6 +87,7 @@ public class AnalysisRCPActivator extends AbstractUIPlugin implements ServerPort
 
 	@Override
 	public void stop(BundleContext context) throws Exception {
+		PlotServerSWTImageGrid.closeThumbnailPack();
 		plugin = null;
 
 		if (isGDA()) {
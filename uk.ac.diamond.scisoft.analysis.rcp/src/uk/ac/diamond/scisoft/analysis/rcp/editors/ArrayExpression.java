@@ -0,0 +1,624 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package uk.ac.diamond.scisoft.analysis.rcp.editors;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.january.dataset.Dataset;
+import org.eclipse.january.dataset.DatasetFactory;
+import org.eclipse.january.dataset.DatasetUtils;
+import org.eclipse.january.dataset.DoubleDataset;
+import org.eclipse.january.dataset.IDataset;
+import org.eclipse.january.dataset.IndexIterator;
+import org.nfunk.jep.ASTConstant;
+import org.nfunk.jep.ASTFunNode;
+import org.nfunk.jep.ASTVarNode;
+import org.nfunk.jep.JEP;
+import org.nfunk.jep.Node;
+
+/**
+ * JEP expression compiled into a tree of operations on arrays of doubles.
+ * <p>
+ * The parse tree of a JEP expression is turned into operations, each of which
+ * works on a chunk of items at a time, so an expression over datasets costs a
+ * few passes over primitive arrays rather than a call of the JEP evaluator for
+ * each item. Large datasets are split into chunks which are evaluated in
+ * parallel. Only the operators and standard functions of JEP with real
+ * arguments are supported; {@link #compile(JEP)} returns null for any other
+ * expression, which must then be evaluated by JEP.
+ */
+class ArrayExpression {
+
+	private static final int CHUNK = 1 << 14; // items evaluated at a time
+	private static final int THREADS = Math.max(1, Runtime.getRuntime().availableProcessors());
+
+	private static final ExecutorService workers = Executors.newCachedThreadPool(new ThreadFactory() {
+		private final AtomicInteger count = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, "Array expression " + count.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		}
+	});
+
+	private final String[] variables;
+	private final Op root;
+	private final int slots; // number of buffers used by operations
+
+	private ArrayExpression(String[] variables, Op root, int slots) {
+		this.variables = variables;
+		this.root = root;
+		this.slots = slots;
+	}
+
+	/**
+	 * @param jep with parsed expression
+	 * @return compiled expression or null if expression has an operator or function which is not supported
+	 */
+	static ArrayExpression compile(JEP jep) {
+		final Node top = jep.getTopNode();
+		if (top == null || jep.hasError())
+			return null;
+
+		final Compiler c = new Compiler();
+		final Op root = c.compile(top);
+		if (root == null)
+			return null;
+		return new ArrayExpression(c.variables.toArray(new String[c.variables.size()]), root, c.slots);
+	}
+
+	/**
+	 * @return names of variables in the order their values are given to {@link #evaluate(int[], IDataset[])}
+	 */
+	String[] getVariables() {
+		return variables;
+	}
+
+	/**
+	 * @param shape of result
+	 * @param values of variables, which must have the same size as the result
+	 * @return result
+	 */
+	Dataset evaluate(int[] shape, IDataset[] values) {
+		if (values.length != variables.length)
+			throw new IllegalArgumentException("Need a dataset for each variable in expression");
+
+		final DoubleDataset result = DatasetFactory.zeros(DoubleDataset.class, shape);
+		final int size = result.getSize();
+		final double[][] data = new double[values.length][];
+		for (int i = 0; i < values.length; i++) {
+			if (values[i].getSize() != size)
+				throw new IllegalArgumentException("Datasets of variable " + variables[i] + " has wrong size");
+			data[i] = toDoubles(values[i]);
+		}
+
+		final double[] out = result.getData();
+		final int chunks = (size + CHUNK - 1) / CHUNK;
+		final int threads = Math.min(THREADS, chunks);
+		if (threads <= 1) {
+			evaluateChunks(data, out, new AtomicInteger(), chunks);
+			return result;
+		}
+
+		final AtomicInteger next = new AtomicInteger();
+		final List<Future<?>> futures = new ArrayList<Future<?>>();
+		for (int i = 1; i < threads; i++) {
+			futures.add(workers.submit(new Runnable() {
+				@Override
+				public void run() {
+					evaluateChunks(data, out, next, chunks);
+				}
+			}));
+		}
+		evaluateChunks(data, out, next, chunks);
+		for (Future<?> f : futures) {
+			try {
+				f.get();
+			} catch (Exception e) {
+				throw new IllegalStateException("Could not evaluate expression", e);
+			}
+		}
+		return result;
+	}
+
+	private void evaluateChunks(double[][] data, double[] out, AtomicInteger next, int chunks) {
+		final double[][] buffers = new double[slots][CHUNK];
+		int c;
+		while ((c = next.getAndIncrement()) < chunks) {
+			final int from = c * CHUNK;
+			final int n = Math.min(CHUNK, out.length - from);
+			root.eval(data, from, n, buffers);
+			System.arraycopy(buffers[root.slot], 0, out, from, n);
+		}
+	}
+
+	private static double[] toDoubles(IDataset d) {
+		final Dataset a = DatasetUtils.convertToDataset(d);
+		final double[] values = new double[a.getSize()];
+		final IndexIterator it = a.getIterator();
+		int i = 0;
+		while (it.hasNext()) {
+			values[i++] = a.getElementDoubleAbs(it.index);
+		}
+		return values;
+	}
+
+	/**
+	 * Operation which puts its values for a chunk in its buffer
+	 */
+	private abstract static class Op {
+		final int slot;
+
+		Op(int slot) {
+			this.slot = slot;
+		}
+
+		/**
+		 * @param data values of variables
+		 * @param from index of first item of chunk
+		 * @param n number of items in chunk
+		 * @param buffers for chunk
+		 */
+		abstract void eval(double[][] data, int from, int n, double[][] buffers);
+	}
+
+	private static class Constant extends Op {
+		private final double value;
+
+		Constant(int slot, double value) {
+			super(slot);
+			this.value = value;
+		}
+
+		@Override
+		void eval(double[][] data, int from, int n, double[][] buffers) {
+			Arrays.fill(buffers[slot], 0, n, value);
+		}
+	}
+
+	private static class Variable extends Op {
+		private final int index;
+
+		Variable(int slot, int index) {
+			super(slot);
+			this.index = index;
+		}
+
+		@Override
+		void eval(double[][] data, int from, int n, double[][] buffers) {
+			System.arraycopy(data[index], from, buffers[slot], 0, n);
+		}
+	}
+
+	private abstract static class Unary extends Op {
+		private final Op a;
+
+		Unary(int slot, Op a) {
+			super(slot);
+			this.a = a;
+		}
+
+		@Override
+		void eval(double[][] data, int from, int n, double[][] buffers) {
+			a.eval(data, from, n, buffers);
+			final double[] x = buffers[a.slot];
+			final double[] o = buffers[slot];
+			for (int i = 0; i < n; i++) {
+				o[i] = apply(x[i]);
+			}
+		}
+
+		abstract double apply(double x);
+	}
+
+	private abstract static class Binary extends Op {
+		private final Op a;
+		private final Op b;
+
+		Binary(int slot, Op a, Op b) {
+			super(slot);
+			this.a = a;
+			this.b = b;
+		}
+
+		@Override
+		void eval(double[][] data, int from, int n, double[][] buffers) {
+			a.eval(data, from, n, buffers);
+			b.eval(data, from, n, buffers);
+			final double[] x = buffers[a.slot];
+			final double[] y = buffers[b.slot];
+			final double[] o = buffers[slot];
+			for (int i = 0; i < n; i++) {
+				o[i] = apply(x[i], y[i]);
+			}
+		}
+
+		abstract double apply(double x, double y);
+	}
+
+	private static class Sum extends Op {
+		private final Op[] args;
+
+		Sum(int slot, Op[] args) {
+			super(slot);
+			this.args = args;
+		}
+
+		@Override
+		void eval(double[][] data, int from, int n, double[][] buffers) {
+			final double[] o = buffers[slot];
+			Arrays.fill(o, 0, n, 0);
+			for (Op a : args) {
+				a.eval(data, from, n, buffers);
+				final double[] x = buffers[a.slot];
+				for (int i = 0; i < n; i++) {
+					o[i] += x[i];
+				}
+			}
+		}
+	}
+
+	private static class If extends Op {
+		private final Op condition;
+		private final Op a;
+		private final Op b;
+
+		If(int slot, Op condition, Op a, Op b) {
+			super(slot);
+			this.condition = condition;
+			this.a = a;
+			this.b = b;
+		}
+
+		@Override
+		void eval(double[][] data, int from, int n, double[][] buffers) {
+			condition.eval(data, from, n, buffers);
+			a.eval(data, from, n, buffers);
+			b.eval(data, from, n, buffers);
+			final double[] c = buffers[condition.slot];
+			final double[] x = buffers[a.slot];
+			final double[] y = buffers[b.slot];
+			final double[] o = buffers[slot];
+			for (int i = 0; i < n; i++) {
+				o[i] = c[i] > 0 ? x[i] : y[i];
+			}
+		}
+	}
+
+	/**
+	 * Turns a JEP parse tree into operations, giving each a buffer of its own
+	 */
+	private static class Compiler {
+		private final List<String> variables = new ArrayList<String>();
+		private int slots;
+
+		private Op compile(Node node) {
+			if (node instanceof ASTConstant) {
+				final Object v = ((ASTConstant) node).getValue();
+				return v instanceof Number ? new Constant(slots++, ((Number) v).doubleValue()) : null;
+			}
+			if (node instanceof ASTVarNode) {
+				final String name = ((ASTVarNode) node).getName();
+				int index = variables.indexOf(name);
+				if (index < 0) {
+					index = variables.size();
+					variables.add(name);
+				}
+				return new Variable(slots++, index);
+			}
+			final int n = node.jjtGetNumChildren();
+			if (!(node instanceof ASTFunNode)) {
+				return n == 1 ? compile(node.jjtGetChild(0)) : null;
+			}
+
+			final Op[] args = new Op[n];
+			for (int i = 0; i < n; i++) {
+				args[i] = compile(node.jjtGetChild(i));
+				if (args[i] == null)
+					return null;
+			}
+			final String name = ((ASTFunNode) node).getName();
+			if (name.equals("sum") && n > 0)
+				return new Sum(slots++, args);
+			if (name.equals("if") && n == 3)
+				return new If(slots++, args[0], args[1], args[2]);
+			if (n == 1)
+				return unary(name, args[0]);
+			if (n == 2)
+				return binary(name, args[0], args[1]);
+			return null;
+		}
+
+		private Op unary(String name, Op a) {
+			final int s = slots++;
+			switch (name) {
+			case "UMinus":
+				return new Unary(s, a) {
+					@Override
+					double apply(double x) {
+						return -x;
+					}
+				};
+			case "!":
+				return new Unary(s, a) {
+					@Override
+					double apply(double x) {
+						return x == 0 ? 1 : 0;
+					}
+				};
+			case "sin":
+				return new Unary(s, a) {
+					@Override
+					double apply(double x) {
+						return Math.sin(x);
+					}
+				};
+			case "cos":
+				return new Unary(s, a) {
+					@Override
+					double apply(double x) {
+						return Math.cos(x);
+					}
+				};
+			case "tan":
+				return new Unary(s, a) {
+					@Override
+					double apply(double x) {
+						return Math.tan(x);
+					}
+				};
+			case "asin":
+				return new Unary(s, a) {
+					@Override
+					double apply(double x) {
+						return Math.asin(x);
+					}
+				};
+			case "acos":
+				return new Unary(s, a) {
+					@Override
+					double apply(double x) {
+						return Math.acos(x);
+					}
+				};
+			case "atan":
+				return new Unary(s, a) {
+					@Override
+					double apply(double x) {
+						return Math.atan(x);
+					}
+				};
+			case "sinh":
+				return new Unary(s, a) {
+					@Override
+					double apply(double x) {
+						return Math.sinh(x);
+					}
+				};
+			case "cosh":
+				return new Unary(s, a) {
+					@Override
+					double apply(double x) {
+						return Math.cosh(x);
+					}
+				};
+			case "tanh":
+				return new Unary(s, a) {
+					@Override
+					double apply(double x) {
+						return Math.tanh(x);
+					}
+				};
+			case "asinh":
+				return new Unary(s, a) {
+					@Override
+					double apply(double x) {
+						return Math.log(x + Math.sqrt(x * x + 1));
+					}
+				};
+			case "acosh":
+				return new Unary(s, a) {
+					@Override
+					double apply(double x) {
+						return Math.log(x + Math.sqrt(x * x - 1));
+					}
+				};
+			case "atanh":
+				return new Unary(s, a) {
+					@Override
+					double apply(double x) {
+						return x > -1 && x < 1 ? 0.5 * Math.log((1 + x) / (1 - x)) : Double.NaN; // complex in JEP
+					}
+				};
+			case "ln":
+				return new Unary(s, a) {
+					@Override
+					double apply(double x) {
+						return Math.log(x);
+					}
+				};
+			case "log":
+				return new Unary(s, a) {
+					@Override
+					double apply(double x) {
+						return Math.log10(x);
+					}
+				};
+			case "exp":
+				return new Unary(s, a) {
+					@Override
+					double apply(double x) {
+						return Math.exp(x);
+					}
+				};
+			case "sqrt":
+				return new Unary(s, a) {
+					@Override
+					double apply(double x) {
+						return Math.sqrt(x);
+					}
+				};
+			case "abs":
+				return new Unary(s, a) {
+					@Override
+					double apply(double x) {
+						return Math.abs(x);
+					}
+				};
+			case "round":
+				return new Unary(s, a) {
+					@Override
+					double apply(double x) {
+						return Math.rint(x); // as JEP, halves go to even
+					}
+				};
+			case "floor":
+				return new Unary(s, a) {
+					@Override
+					double apply(double x) {
+						return Math.floor(x);
+					}
+				};
+			case "ceil":
+				return new Unary(s, a) {
+					@Override
+					double apply(double x) {
+						return Math.ceil(x);
+					}
+				};
+			default:
+				return null;
+			}
+		}
+
+		private Op binary(String name, Op a, Op b) {
+			final int s = slots++;
+			switch (name) {
+			case "+":
+				return new Binary(s, a, b) {
+					@Override
+					double apply(double x, double y) {
+						return x + y;
+					}
+				};
+			case "-":
+				return new Binary(s, a, b) {
+					@Override
+					double apply(double x, double y) {
+						return x - y;
+					}
+				};
+			case "*":
+				return new Binary(s, a, b) {
+					@Override
+					double apply(double x, double y) {
+						return x * y;
+					}
+				};
+			case "/":
+				return new Binary(s, a, b) {
+					@Override
+					double apply(double x, double y) {
+						return x / y;
+					}
+				};
+			case "%":
+			case "mod":
+				return new Binary(s, a, b) {
+					@Override
+					double apply(double x, double y) {
+						return x % y;
+					}
+				};
+			case "^":
+				return new Binary(s, a, b) {
+					@Override
+					double apply(double x, double y) {
+						return Math.pow(x, y);
+					}
+				};
+			case "atan2":
+				return new Binary(s, a, b) {
+					@Override
+					double apply(double x, double y) {
+						return Math.atan2(x, y);
+					}
+				};
+			case "<":
+				return new Binary(s, a, b) {
+					@Override
+					double apply(double x, double y) {
+						return x < y ? 1 : 0;
+					}
+				};
+			case ">":
+				return new Binary(s, a, b) {
+					@Override
+					double apply(double x, double y) {
+						return x > y ? 1 : 0;
+					}
+				};
+			case "<=":
+				return new Binary(s, a, b) {
+					@Override
+					double apply(double x, double y) {
+						return x <= y ? 1 : 0;
+					}
+				};
+			case ">=":
+				return new Binary(s, a, b) {
+					@Override
+					double apply(double x, double y) {
+						return x >= y ? 1 : 0;
+					}
+				};
+			case "==":
+				return new Binary(s, a, b) {
+					@Override
+					double apply(double x, double y) {
+						return x == y ? 1 : 0;
+					}
+				};
+			case "!=":
+				return new Binary(s, a, b) {
+					@Override
+					double apply(double x, double y) {
+						return x != y ? 1 : 0;
+					}
+				};
+			case "&&":
+				return new Binary(s, a, b) {
+					@Override
+					double apply(double x, double y) {
+						return x != 0 && y != 0 ? 1 : 0;
+					}
+				};
+			case "||":
+				return new Binary(s, a, b) {
+					@Override
+					double apply(double x, double y) {
+						return x != 0 || y != 0 ? 1 : 0;
+					}
+				};
+			default:
+				return null;
+			}
+		}
+	}
+}
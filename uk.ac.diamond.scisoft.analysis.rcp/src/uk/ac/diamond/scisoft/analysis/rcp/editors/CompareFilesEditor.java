@@ -19,11 +19,21 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.SortedMap;
 import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.runtime.IConfigurationElement;
@@ -41,6 +51,7 @@ import org.eclipse.january.dataset.DTypeUtils;
 import org.eclipse.january.dataset.Dataset;
 import org.eclipse.january.dataset.DatasetFactory;
 import org.eclipse.january.dataset.DatasetUtils;
+import org.eclipse.january.dataset.DoubleDataset;
 import org.eclipse.january.dataset.IDataset;
 import org.eclipse.january.dataset.ILazyDataset;
 import org.eclipse.january.dataset.IMetadataProvider;
@@ -1551,6 +1562,286 @@ public class CompareFilesEditor extends EditorPart implements ISelectionChangedL
 		IDX, ADD, AVR, MUL, MAX, MIN;
 	}
 
+	/**
+	 * Combines slices of datasets, one from each file, with a maths operation.
+	 * <p>
+	 * A few slices are read at once on worker threads while those already read are
+	 * combined into a buffer of doubles. The reader threads are shared by all loaders.
+	 * The last results, up to {@link #CACHE_BYTES}, are kept so going back to a slice
+	 * does not read all the files again.
+	 */
+	private static class MathOpLoader implements ILazyLoader {
+		private static final int READERS = 4; // slices read at once
+		private static final long CACHE_BYTES = 64L << 20; // bytes of results kept
+
+		private static final ExecutorService readers = Executors.newFixedThreadPool(READERS, new ThreadFactory() {
+			private final AtomicInteger count = new AtomicInteger();
+
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "Compare files reader " + count.incrementAndGet());
+				t.setDaemon(true);
+				return t;
+			}
+		});
+
+		private final MathOp mathOp;
+		private final List<ILazyDataset> dataList;
+		// guarded by results
+		private final Map<String, Dataset> results = new LinkedHashMap<String, Dataset>(16, 0.75f, true);
+		private long cachedBytes;
+
+		public MathOpLoader(MathOp mathOp, List<ILazyDataset> dataList) {
+			this.mathOp = mathOp;
+			this.dataList = dataList;
+		}
+
+		@Override
+		public boolean isFileReadable() {
+			return true;
+		}
+
+		@Override
+		public Dataset getDataset(IMonitor mon, SliceND slice) throws IOException {
+			final String key = Arrays.toString(slice.getStart()) + Arrays.toString(slice.getStop())
+					+ Arrays.toString(slice.getStep());
+			synchronized (results) {
+				Dataset r = results.get(key);
+				if (r != null) {
+					return r.clone();
+				}
+			}
+
+			Dataset r = combine(mon, slice);
+			if (r != null) {
+				cache(key, r.clone());
+			}
+			return r;
+		}
+
+		private void cache(String key, Dataset r) {
+			final long n = r.getNbytes();
+			if (n > CACHE_BYTES) {
+				return;
+			}
+			synchronized (results) {
+				final Dataset old = results.remove(key);
+				if (old != null) {
+					cachedBytes -= old.getNbytes();
+				}
+				final Iterator<Dataset> it = results.values().iterator();
+				while (cachedBytes + n > CACHE_BYTES && it.hasNext()) {
+					cachedBytes -= it.next().getNbytes();
+					it.remove();
+				}
+				results.put(key, r);
+				cachedBytes += n;
+			}
+		}
+
+		private Dataset combine(IMonitor mon, final SliceND slice) throws IOException {
+			final int n = dataList.size();
+			final CompletionService<Dataset> read = new ExecutorCompletionService<Dataset>(readers);
+			final List<Future<Dataset>> futures = new ArrayList<Future<Dataset>>();
+			int submitted = 0;
+			Combiner combiner = null;
+			try {
+				for (; submitted < n && submitted < READERS; submitted++) {
+					futures.add(read.submit(new SliceReader(dataList.get(submitted), slice)));
+				}
+				for (int taken = 0; taken < n; taken++) {
+					Dataset tmpData = read.take().get();
+					if (mon != null && mon.isCancelled()) {
+						throw new IOException("Combining files was cancelled");
+					}
+					if (submitted < n) {
+						futures.add(read.submit(new SliceReader(dataList.get(submitted++), slice)));
+					}
+					if (combiner == null) {
+						combiner = tmpData.getElementsPerItem() == 1 ? new BufferCombiner(mathOp, tmpData)
+								: new DatasetCombiner(mathOp, tmpData);
+					}
+					combiner.add(tmpData);
+					if (mon != null) {
+						mon.worked(1);
+					}
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException(e);
+			} catch (ExecutionException e) {
+				throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+			} finally {
+				for (Future<Dataset> f : futures) {
+					f.cancel(true);
+				}
+			}
+			return combiner == null ? null : combiner.getResult(n);
+		}
+	}
+
+	private static class SliceReader implements Callable<Dataset> {
+		private final ILazyDataset lazy;
+		private final SliceND slice;
+
+		public SliceReader(ILazyDataset lazy, SliceND slice) {
+			this.lazy = lazy;
+			this.slice = slice;
+		}
+
+		@Override
+		public Dataset call() throws Exception {
+			try {
+				return DatasetUtils.convertToDataset(lazy.getSlice(slice));
+			} catch (DatasetException e) {
+				throw new IOException(e);
+			}
+		}
+	}
+
+	private interface Combiner {
+		public void add(Dataset data) throws IOException;
+
+		/**
+		 * @param n number of datasets added
+		 * @return result
+		 */
+		public Dataset getResult(int n);
+	}
+
+	/**
+	 * Combines datasets of single items into a buffer of doubles
+	 */
+	private static class BufferCombiner implements Combiner {
+		private final MathOp mathOp;
+		private final int dtype;
+		private final DoubleDataset result;
+		private final double[] acc;
+
+		public BufferCombiner(MathOp mathOp, Dataset first) {
+			this.mathOp = mathOp;
+			dtype = first.getDType();
+			result = DatasetFactory.zeros(DoubleDataset.class, first.getShape());
+			acc = result.getData();
+			switch (mathOp) {
+			case MUL:
+				Arrays.fill(acc, 1);
+				break;
+			case MAX:
+				Arrays.fill(acc, Double.NEGATIVE_INFINITY);
+				break;
+			case MIN:
+				Arrays.fill(acc, Double.POSITIVE_INFINITY);
+				break;
+			default:
+				break;
+			}
+		}
+
+		@Override
+		public void add(Dataset data) throws IOException {
+			if (data.getSize() != acc.length) {
+				throw new IOException("Datasets to combine must have the same shape");
+			}
+			final IndexIterator it = data.getIterator();
+			int i = 0;
+			switch (mathOp) {
+			case ADD:
+			case AVR:
+				while (it.hasNext()) {
+					acc[i++] += data.getElementDoubleAbs(it.index);
+				}
+				break;
+			case MUL:
+				while (it.hasNext()) {
+					acc[i++] *= data.getElementDoubleAbs(it.index);
+				}
+				break;
+			case MAX:
+				while (it.hasNext()) {
+					final double v = data.getElementDoubleAbs(it.index);
+					if (v > acc[i] || Double.isNaN(v)) // NaN kept once found, as Maths.maximum
+						acc[i] = v;
+					i++;
+				}
+				break;
+			case MIN:
+				while (it.hasNext()) {
+					final double v = data.getElementDoubleAbs(it.index);
+					if (v < acc[i] || Double.isNaN(v)) // NaN kept once found, as Maths.minimum
+						acc[i] = v;
+					i++;
+				}
+				break;
+			default:
+				break;
+			}
+		}
+
+		@Override
+		public Dataset getResult(int n) {
+			if (mathOp == MathOp.AVR) {
+				for (int i = 0; i < acc.length; i++) {
+					acc[i] /= n;
+				}
+			}
+			return dtype == Dataset.FLOAT64 ? result : DatasetUtils.cast(result, dtype);
+		}
+	}
+
+	/**
+	 * Combines datasets of compound items, such as RGB images, with dataset operations
+	 */
+	private static class DatasetCombiner implements Combiner {
+		private final MathOp mathOp;
+		private Dataset accDataset;
+
+		public DatasetCombiner(MathOp mathOp, Dataset first) {
+			this.mathOp = mathOp;
+			switch (mathOp) {
+			case MUL:
+				accDataset = DatasetFactory.ones(first.getShape(), first.getDType());
+				break;
+			case MAX:
+			case MIN:
+				accDataset = first.clone();
+				break;
+			default:
+				accDataset = DatasetFactory.zeros(first.getShape(), first.getDType());
+				break;
+			}
+		}
+
+		@Override
+		public void add(Dataset data) {
+			switch (mathOp) {
+			case ADD:
+			case AVR:
+				accDataset.iadd(data);
+				break;
+			case MUL:
+				accDataset.imultiply(data);
+				break;
+			case MAX:
+				accDataset = Maths.maximum(data, accDataset);
+				break;
+			case MIN:
+				accDataset = Maths.minimum(data, accDataset);
+				break;
+			default:
+				break;
+			}
+		}
+
+		@Override
+		public Dataset getResult(int n) {
+			if (mathOp == MathOp.AVR) {
+				accDataset.idivide(n);
+			}
+			return accDataset;
+		}
+	}
+
 	private class SelectedObject {
 		boolean hasMV = false;
 		boolean use = true;
@@ -1789,6 +2080,7 @@ public class CompareFilesEditor extends EditorPart implements ISelectionChangedL
 		
 		private SymbolTable symbolTable;
 		private JEP jepParser, eval;
+		private ArrayExpression expression;
 		
 		public SelectedNode(int index, String str) {
 			resetJep();
@@ -1887,6 +2179,7 @@ public class CompareFilesEditor extends EditorPart implements ISelectionChangedL
 			resetJep();
 			jepParser.parseExpression(str);
 			eval.parseExpression(str);
+			expression = ArrayExpression.compile(eval);
 			symbolTable = jepParser.getSymbolTable();
 			f = str;
 		}
@@ -1918,10 +2211,36 @@ public class CompareFilesEditor extends EditorPart implements ISelectionChangedL
 				return hasData();
 			}
 			
-			@SuppressWarnings("unchecked")
 			@Override
 			public Dataset getDataset(IMonitor mon, SliceND slice) throws IOException {
-				
+				final ArrayExpression e = expression;
+				if (e == null) {
+					return evaluateEachItem(slice);
+				}
+
+				String[] vars = e.getVariables();
+				IDataset[] values = new IDataset[vars.length];
+				int[] sliceShape = slice.getShape();
+				for (int i = 0; i < vars.length; i++) {
+					ILazyDataset lzd = varMapping.get(vars[i]);	// TODO: This only works for SelectedFile objects
+					try {
+						values[i] = lzd.getSlice(slice);
+					} catch (DatasetException ex) {
+						throw new IOException(ex);
+					}
+					// All datasets and slices should have the same shape
+					if (i == 0) {
+						sliceShape = values[i].getShape();
+					}
+				}
+				return e.evaluate(sliceShape, values);
+			}
+
+			/**
+			 * Evaluate expression with JEP for each item, for expressions which cannot be compiled
+			 */
+			@SuppressWarnings("unchecked")
+			private Dataset evaluateEachItem(SliceND slice) throws IOException {
 				SymbolTable evalSymbolTable = eval.getSymbolTable();
 				HashMap<String, IDataset> dataSlices = new HashMap<String, IDataset>();
 				Iterator<String> itr = evalSymbolTable.keySet().iterator();
@@ -1978,70 +2297,7 @@ public class CompareFilesEditor extends EditorPart implements ISelectionChangedL
 				return dataList;
 			default:
 				ILazyDataset refData = dataList.get(0);
-				ILazyLoader processingLoader = new ILazyLoader() {
-
-					@Override
-					public boolean isFileReadable() {
-						return true;
-					}
-
-					@Override
-					public Dataset getDataset(IMonitor mon, SliceND slice)
-							throws IOException {
-						Dataset accDataset = null;
-						for (int idx = 0; idx < dataList.size(); idx++) {
-							Dataset tmpData;
-							try {
-								tmpData = DatasetUtils.convertToDataset(dataList.get(idx).getSlice(slice));
-							} catch (DatasetException e) {
-								throw new IOException(e);
-							}
-							if (accDataset == null) {
-								switch (mathOp) {
-								case ADD:
-								case AVR:
-									accDataset = DatasetFactory.zeros(tmpData.getShape(), tmpData.getDType());
-									break;
-								case MUL:
-									accDataset = DatasetFactory.ones(tmpData.getShape(), tmpData.getDType());
-									break;
-								case MAX:
-								case MIN:
-									accDataset = DatasetFactory.zeros(tmpData.getShape(), tmpData.getDType());
-									IndexIterator iter = accDataset.getIterator();
-									tmpData.fillDataset(accDataset, iter);
-									break;
-								default:
-									break;
-								}
-							}
-							if (accDataset == null) {
-								return null;
-							}
-							switch (mathOp) {
-							case ADD:
-							case AVR:
-								accDataset.iadd(tmpData);
-								break;
-							case MUL:
-								accDataset.imultiply(tmpData);
-								break;
-							case MAX:
-								accDataset = Maths.maximum(tmpData, accDataset);
-								break;
-							case MIN:
-								accDataset = Maths.minimum(tmpData, accDataset);
-								break;
-							default:
-								break;
-							}
-						}
-						if (accDataset != null && mathOp.equals(MathOp.AVR)) {
-							accDataset.idivide(dataList.size());
-						}
-						return accDataset;
-					}
-				};
+				ILazyLoader processingLoader = new MathOpLoader(mathOp, dataList);
 				List<ILazyDataset> res = new ArrayList<ILazyDataset>();
 				res.add(new LazyDataset(varMap.getName(), DTypeUtils.getDType(refData), refData
 						.getShape(), processingLoader));
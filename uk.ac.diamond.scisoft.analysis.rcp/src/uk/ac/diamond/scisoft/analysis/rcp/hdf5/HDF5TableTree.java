@@ -11,7 +11,10 @@ package uk.ac.diamond.scisoft.analysis.rcp.hdf5;
 
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.Map;
+import java.util.Map.Entry;
 
 import org.dawb.common.ui.selection.SelectedTreeItemInfo;
 import org.dawb.common.ui.selection.SelectionUtils;
@@ -255,6 +258,16 @@ public class HDF5TableTree extends Composite implements ISelectionProvider {
 		}
 	}
 
+	/**
+	 * Add items for nodes which have been added to the tree since the children of
+	 * the items shown were counted. Other items are left alone
+	 */
+	public void showAddedNodes() {
+		if (tViewer != null && !isDisposed() && tViewer.getContentProvider() instanceof HDF5LazyContentProvider) {
+			((HDF5LazyContentProvider) tViewer.getContentProvider()).updateChangedChildCounts();
+		}
+	}
+
 
 	/**
 	 * @return selection
@@ -311,6 +324,7 @@ public class HDF5TableTree extends Composite implements ISelectionProvider {
 class HDF5LazyContentProvider implements ILazyTreeContentProvider {
 	private TreeViewer viewer;
 	private TreeFilter filter;
+	private Map<Object, Integer> counts = new HashMap<Object, Integer>(); // child counts given to viewer
 
 	public HDF5LazyContentProvider(TreeViewer treeViewer, TreeFilter treeFilter) {
 		filter = treeFilter;
@@ -331,11 +345,29 @@ class HDF5LazyContentProvider implements ILazyTreeContentProvider {
 	public void updateChildCount(Object element, int currentChildCount) {
 		// count number of nodes that will not be filtered out
 		int count = HDF5TableTree.countChildren(element, filter);
+		counts.put(element, count);
 		if (count != currentChildCount) {
 			viewer.setChildCount(element, count);
 		}
 	}
 
+	/**
+	 * Set child counts of elements which have changed since they were given to the viewer
+	 */
+	public void updateChangedChildCounts() {
+		Map<Object, Integer> changed = new HashMap<Object, Integer>();
+		for (Entry<Object, Integer> e : counts.entrySet()) {
+			int count = HDF5TableTree.countChildren(e.getKey(), filter);
+			if (count != e.getValue()) {
+				changed.put(e.getKey(), count);
+			}
+		}
+		counts.putAll(changed);
+		for (Entry<Object, Integer> e : changed.entrySet()) { // viewer may count children again
+			viewer.setChildCount(e.getKey(), e.getValue());
+		}
+	}
+
 	@Override
 	public void updateElement(Object parent, final int index) {
 		if (parent instanceof Attribute) {
@@ -388,6 +420,7 @@ class HDF5LazyContentProvider implements ILazyTreeContentProvider {
 
 	@Override
 	public void inputChanged(Viewer viewer, Object oldInput, Object newInput) {
+		counts.clear();
 	}
 }
 
@@ -13,6 +13,10 @@ import java.util.HashSet;
 import java.util.Set;
 
 import org.dawb.common.ui.util.EclipseUtils;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.dawnsci.analysis.api.io.IDataHolder;
 import org.eclipse.dawnsci.analysis.api.io.IFileLoader;
 import org.eclipse.dawnsci.analysis.api.tree.DataNode;
@@ -80,6 +84,8 @@ public class HDF5TreeExplorer extends AbstractExplorer implements ISelectionProv
 
 	private HDF5Loader loader = null;
 
+	private Runnable updater = null;
+
 	public HDF5TreeExplorer(Composite parent, IWorkbenchPartSite partSite, ISelectionChangedListener valueSelect) {
 		super(parent, partSite, valueSelect);
 
@@ -269,6 +275,9 @@ public class HDF5TreeExplorer extends AbstractExplorer implements ISelectionProv
 	public void dispose() {
 		if (loader != null)
 			loader.stopAsyncLoading();
+		if (updater != null && !display.isDisposed())
+			display.timerExec(-1, updater);
+		updater = null;
 
 		cListeners.clear();
 		tree = null;
@@ -298,7 +307,7 @@ public class HDF5TreeExplorer extends AbstractExplorer implements ISelectionProv
 		return LoaderFactory.getData(LoaderFactory.getLoaderClass(extension), fileName, true, mon);
 	}
 
-	private static final long REFRESH_PERIOD = 1000L; // time between refreshing in milliseconds
+	private static final int FRAME_PERIOD = 100; // time between showing added nodes in milliseconds
 
 	@Override
 	public void loadFileAndDisplay(String fileName, IMonitor mon) throws Exception {
@@ -324,34 +333,50 @@ public class HDF5TreeExplorer extends AbstractExplorer implements ISelectionProv
 		}
 	}
 
+	/**
+	 * Show nodes as an asynchronous loader adds them to the tree, then update the data holder
+	 * when it is done. The nodes added in each frame are shown together by adding items to
+	 * the items already shown, rather than refreshing the whole tree. This stops when the
+	 * explorer is disposed
+	 * @param holder
+	 * @param loader
+	 */
 	public void startUpdateThread(final IDataHolder holder, final IFileLoader loader) {
-		if (holder == null || loader == null)
+		if (holder == null || loader == null || display == null)
 			return;
 
-		new Thread(new Runnable() { // wait till loader completion whilst periodically refreshing viewer
+		final Runnable frame = new Runnable() {
 			@Override
 			public void run() {
-				while (loader.isLoading()) {
-					try {
-						Thread.sleep(REFRESH_PERIOD);
-						refreshTree();
-					} catch (InterruptedException e) {
-					}
+				if (updater != this || isDisposed())
+					return;
+
+				boolean loading = loader.isLoading();
+				tableTree.showAddedNodes();
+				if (loading) {
+					display.timerExec(FRAME_PERIOD, this);
+					return;
 				}
-				refreshTree();
-				HDF5Loader.updateDataHolder(holder, true);
-			}
-		}).start();
-	}
 
-	private void refreshTree() {
-		if (display == null)
-			return;
-
-		display.syncExec(new Runnable() {
+				updater = null;
+				Job job = new Job("Update data holder") {
+					@Override
+					protected IStatus run(IProgressMonitor monitor) {
+						HDF5Loader.updateDataHolder(holder, true);
+						return Status.OK_STATUS;
+					}
+				};
+				job.setSystem(true);
+				job.schedule();
+			}
+		};
+		display.asyncExec(new Runnable() {
 			@Override
 			public void run() {
-				tableTree.refresh();
+				if (updater != null)
+					display.timerExec(-1, updater);
+				updater = frame;
+				frame.run();
 			}
 		});
 	}
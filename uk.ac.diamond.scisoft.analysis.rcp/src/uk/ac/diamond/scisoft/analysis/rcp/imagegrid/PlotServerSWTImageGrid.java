@@ -9,11 +9,16 @@
 
 package uk.ac.diamond.scisoft.analysis.rcp.imagegrid;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 
 import org.dawb.common.ui.util.EclipseUtils;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.events.MouseEvent;
 import org.eclipse.swt.graphics.Rectangle;
@@ -27,9 +32,12 @@ import uk.ac.diamond.scisoft.analysis.PlotServerProvider;
 import uk.ac.diamond.scisoft.analysis.plotserver.FileOperationBean;
 import uk.ac.diamond.scisoft.analysis.plotserver.GuiBean;
 import uk.ac.diamond.scisoft.analysis.plotserver.GuiParameters;
+import uk.ac.diamond.scisoft.analysis.rcp.AnalysisRCPActivator;
 import uk.ac.diamond.scisoft.analysis.rcp.views.ImageExplorerView;
 import uk.ac.diamond.scisoft.imagegrid.SWTImageGrid;
 import uk.ac.diamond.scisoft.imagegrid.gridentry.GridEntryMonitor;
+import uk.ac.diamond.scisoft.imagegrid.thumbnail.ThumbnailPack;
+import uk.ac.diamond.scisoft.imagegrid.thumbnail.ThumbnailStore;
 
 /**
  * An SWTImageGrid that uses the plot server/guibean mechanism
@@ -39,6 +47,10 @@ public class PlotServerSWTImageGrid extends SWTImageGrid {
 	private static final Logger logger = LoggerFactory.getLogger(PlotServerSWTImageGrid.class);
 
 	private static final String DEFAULTPLOTVIEW = "Dataset Plot";
+	private static final String THUMBNAIL_PACK = "thumbnails.pack";
+	private static final long THUMBNAIL_PACK_SIZE = 512L * 1024 * 1024;
+	private static boolean thumbnailPackOpened = false;
+	private static Job openPackJob = null;
 	private List<String> plotViews; 
 	private String viewName = null;
 	private boolean usePlotServer = true;
@@ -75,8 +87,56 @@ public class PlotServerSWTImageGrid extends SWTImageGrid {
 		}
 	}
 
+	/**
+	 * Keeps the thumbnails of all image grids in the plug-in state location so
+	 * that folders opened again do not have their images read again. The pack
+	 * is opened in the background as its index is read from it.
+	 */
+	private static synchronized void openThumbnailPack() {
+		if (thumbnailPackOpened || AnalysisRCPActivator.getDefault() == null)
+			return;
+		thumbnailPackOpened = true;
+		final File file = AnalysisRCPActivator.getDefault().getStateLocation().append(THUMBNAIL_PACK).toFile();
+		Job job = new Job("Open thumbnail pack") {
+			@Override
+			protected IStatus run(IProgressMonitor monitor) {
+				try {
+					ThumbnailStore.getDefault().setPack(new ThumbnailPack(file, THUMBNAIL_PACK_SIZE));
+				} catch (Exception e) {
+					logger.error("Cannot open thumbnail pack {}", file, e);
+				}
+				return Status.OK_STATUS;
+			}
+		};
+		job.setSystem(true);
+		job.schedule();
+		openPackJob = job;
+	}
+
+	/**
+	 * Closes the thumbnail pack, waiting for it to be opened if that is still going on.
+	 * Called when the plug-in stops.
+	 */
+	public static void closeThumbnailPack() {
+		final Job job;
+		synchronized (PlotServerSWTImageGrid.class) {
+			job = openPackJob;
+			openPackJob = null;
+		}
+		if (job != null) {
+			job.cancel();
+			try {
+				job.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		ThumbnailStore.getDefault().setPack(null);
+	}
+
 	@Override
 	protected void setGridEntryMonitor() {
+		openThumbnailPack();
 		Rectangle rect = canvas.getClientArea();
 		int maxNumImagesInMemory = MAXMEMORYUSAGE / (MAXTHUMBWIDTH * MAXTHUMBHEIGHT * 4);
 		int visWidth = rect.width / MINTHUMBWIDTH;
@@ -54,10 +54,6 @@ public class PlotServerThumbnailLoadService extends ThumbnailLoadService impleme
 		this.viewName = viewName;
 	}
 
-	private void undoBlock() {
-		locker.release();
-	}
-
 	@SuppressWarnings("unused")
 	private void requestImageFromServer(AbstractGridEntry entry) {
 		GuiBean bean = new GuiBean();
@@ -66,19 +62,17 @@ public class PlotServerThumbnailLoadService extends ThumbnailLoadService impleme
 		files.add(entry.getFilename());
 		fopBean.setFiles(files);
 		bean.put(GuiParameters.FILEOPERATION, fopBean);
+		currentProcessEntry = entry;
 		try {
 			plotServer.updateGui(viewName, bean);
 		} catch (Exception e) {
-			locker.release();
 			e.printStackTrace();
 		}
 	}
 
 	@Override
-	protected void loadAndCreateThumbnailImage(AbstractGridEntry entry) {
-		IDataset ds = ImageThumbnailLoader.loadImage(entry.getFilename(), entry.getAdditionalInfo(), true, false);
-		entry.createImage(ds);
-		locker.release();
+	protected IDataset loadThumbnail(AbstractGridEntry entry) {
+		return ImageThumbnailLoader.loadImage(entry.getFilename(), entry.getAdditionalInfo(), true, false);
 	}
 
 	@Override
@@ -104,8 +98,6 @@ public class PlotServerThumbnailLoadService extends ThumbnailLoadService impleme
 				}
 			} catch (Exception e) {
 				e.printStackTrace();
-			} finally {
-				undoBlock();
 			}
 		}
 	}
@@ -63,6 +63,7 @@ import uk.ac.diamond.scisoft.analysis.axis.AxisChoice;
 import uk.ac.diamond.scisoft.analysis.rcp.editors.CompareFilesEditor;
 import uk.ac.diamond.scisoft.analysis.rcp.explorers.AbstractExplorer;
 import uk.ac.diamond.scisoft.analysis.rcp.inspector.DatasetSelection.InspectorType;
+import uk.ac.diamond.scisoft.analysis.rcp.inspector.SliceAverager.IPartialAverage;
 import uk.ac.diamond.scisoft.analysis.rcp.views.DatasetTableView;
 import uk.ac.diamond.scisoft.analysis.rcp.views.ImageExplorerView;
 
@@ -773,100 +774,49 @@ class PlotTab extends ATab {
 	}
 
 	protected Dataset slicedAndReorderData(IMonitor monitor, Slice[] slices, boolean[] average, int[] order, IMetadata meta) {
-		Dataset reorderedData = null;
-		Dataset slicedData = null;
-		
-		if (ArrayUtils.contains(average, true)) {
-			Dataset averagedData = null;
-			Dataset averagedError = null;
-			List<Integer> axs = new ArrayList<Integer>();
-			int[] slicesShape = new int[slices.length];
-			int resDim = 0;
-			for (int idx = 0; idx < slices.length; idx++) {
-				slicesShape[idx] = slices[idx].getNumSteps();
-				if (!average[idx]) {
-					axs.add(idx);
-					if (slicesShape[idx] > 1)
-						resDim++;
-				} 
-			}
+		return slicedAndReorderData(monitor, slices, average, order, meta, null);
+	}
 
-			// For 1D data preload last averaged dimension into memory to reduce number of data slicing calls 
-			int meanAxis = -1;
-			if (resDim == 1) {
-				meanAxis = slicesShape.length - 1;
-				while (meanAxis >= 0 && !average[meanAxis])
-					meanAxis--;
-				if (meanAxis != -1)
-					axs.add(meanAxis);
-			}
+	/**
+	 * Slice data, averaging over dimensions if needed, and reorder it
+	 * @param monitor
+	 * @param slices
+	 * @param average
+	 * @param order
+	 * @param meta
+	 * @param partial can be null, shown partial averages which have been reordered
+	 * @return reordered data or null if it could not be sliced or averaging was cancelled
+	 */
+	protected Dataset slicedAndReorderData(IMonitor monitor, Slice[] slices, boolean[] average, final int[] order,
+			final IMetadata meta, final IPartialAverage partial) {
+		Dataset slicedData = null;
 
-			PositionIterator pitr = new PositionIterator(slicesShape, ArrayUtils.toPrimitive(axs.toArray(new Integer[0])));
-			int sliceIdx = 0;
-			while (pitr.hasNext()) {
-				int[] ppos = pitr.getPos();
-				Slice[] tmpSlices = new Slice[slices.length];
-				for (int idx = 0; idx < ppos.length; idx++) {
-					if (axs.contains(idx)) {
-						tmpSlices[idx] = slices[idx].clone();
-					} else {
-						Integer step = slices[idx].getStep();
-						Integer start = slices[idx].getStart() == null ? step*ppos[idx] : slices[idx].getStart() + step*ppos[idx];
-						Integer stop = start + step;
-						tmpSlices[idx] = new Slice(start, stop, step);
-					}
-				}
-				
-				try {
-					Dataset tmpSlice = DatasetUtils.convertToDataset(dataset.getSlice(tmpSlices));
-					Dataset errSlice = tmpSlice.getErrorBuffer(); // TODO remove when done internally
-					tmpSlice.setErrors(null);
-					if (meanAxis != -1) {
-						int[] tmpShape = tmpSlice.getShape();
-						tmpShape[meanAxis] = 1;
-						tmpSlice = tmpSlice.mean(meanAxis);
-						tmpSlice.setShape(tmpShape);
-						if (errSlice != null) {
-							int[] errShape = errSlice.getShape();
-							if (errShape[meanAxis] > 1) {
-								errShape[meanAxis] = 1;
-								Dataset n = errSlice.count(meanAxis);
-								errSlice = errSlice.mean(meanAxis);
-								errSlice.idivide(n);
-								errSlice.setShape(errShape);
-							}
-						}
-					}
-					if (averagedData != null)
-						averagedData.iadd(tmpSlice);
-					else
-						averagedData = tmpSlice;
-
-					if (errSlice != null) {
-						if (averagedError != null)
-							averagedError.iadd(errSlice);
-						else
-							averagedError = errSlice;
+		if (ArrayUtils.contains(average, true)) {
+			SliceAverager averager = new SliceAverager(dataset, slices, average);
+			try {
+				slicedData = averager.average(monitor, partial == null ? null : new IPartialAverage() {
+					@Override
+					public void show(Dataset average, int done, int total) {
+						Dataset reorderedData = reorderData(average, order, meta);
+						if (reorderedData != null)
+							partial.show(reorderedData, done, total);
 					}
-				} catch (DatasetException e) {
-				}
-
-				sliceIdx++;
-			}
-			if (averagedData == null)
-				return null;
-			slicedData = averagedData.idivide(sliceIdx);
-			if (averagedError != null) {
-				slicedData.setErrorBuffer(averagedError.idivide(sliceIdx * sliceIdx));
+				});
+			} catch (DatasetException e) {
+				logger.error("Could not average slice of data", e);
+				logger.error("Tried to get slices: {}", Arrays.toString(slices));
 			}
 		} else {
 			slicedData = sliceData(monitor, slices);
 		}
-		
+
+		return reorderData(slicedData, order, meta);
+	}
+
+	private Dataset reorderData(Dataset slicedData, int[] order, IMetadata meta) {
 		if (slicedData == null) return null;
-	
-		
-		reorderedData = slicedData.getTransposedView(order);
+
+		Dataset reorderedData = slicedData.getTransposedView(order);
 		reorderedData.squeeze();
 		if (reorderedData.getSize() < 1)
 			return null;
@@ -963,7 +913,7 @@ class PlotTab extends ATab {
 
 		int[] order = getOrder(daxes.size());
 		// FIXME: Image, surface and volume plots can't work with multidimensional axis data
-		List<? extends IDataset> slicedAxes = sliceAxes(getChosenAxes(), slices, average, order);
+		final List<? extends IDataset> slicedAxes = sliceAxes(getChosenAxes(), slices, average, order);
 
 		if (itype == InspectorType.IMAGE || itype == InspectorType.SURFACE || itype == InspectorType.IMAGEXP  || itype == InspectorType.MULTIIMAGES) {
 			// note that the DataSet plotter's 2D image/surface mode is row-major
@@ -980,7 +930,18 @@ class PlotTab extends ATab {
 		
 		switch(itype) {
 		case LINE:
-			reorderedData = slicedAndReorderData(monitor, slices, average, order, meta);
+			reorderedData = slicedAndReorderData(monitor, slices, average, order, meta, new IPartialAverage() {
+				@Override
+				public void show(Dataset partial, int done, int total) {
+					if (isRankBad(partial, 1))
+						return;
+					try {
+						SDAPlotter.updatePlot(PLOTNAME, slicedAxes.get(0), partial);
+					} catch (Exception e) {
+						logger.debug("Could not plot partial average", e);
+					}
+				}
+			});
 			if (isRankBad(reorderedData, 1)) {
 				try {
 					SDAPlotter.clearPlot(PLOTNAME);
@@ -1059,7 +1020,18 @@ class PlotTab extends ATab {
 			break;
 		case IMAGE:
 		case SURFACE:
-			reorderedData = slicedAndReorderData(monitor, slices, average, order, meta);
+			reorderedData = slicedAndReorderData(monitor, slices, average, order, meta, new IPartialAverage() {
+				@Override
+				public void show(Dataset partial, int done, int total) {
+					if (itype != InspectorType.IMAGE || isRankBad(partial, 2)) // surfaces are too slow to redraw
+						return;
+					try {
+						SDAPlotter.imagePlot(PLOTNAME, make1DAxisSlice(slicedAxes, 0), make1DAxisSlice(slicedAxes, 1), partial);
+					} catch (Exception e) {
+						logger.debug("Could not plot partial average", e);
+					}
+				}
+			});
 			if (isRankBad(reorderedData, 2)) {
 				try {
 					SDAPlotter.clearPlot(PLOTNAME);
@@ -1347,19 +1319,19 @@ class DataTab extends PlotTab {
 			swapFirstTwoInOrder(order);
 		}
 
-		final Dataset reorderedData = slicedAndReorderData(monitor, slices, average, order, null);
+		// only average is read here, otherwise table reads values as they are shown
+		final ILazyDataset reorderedData = ArrayUtils.contains(average, true) ?
+				slicedAndReorderData(monitor, slices, average, order, null) : dataset.getSliceView(slices).getTransposedView(order);
 		if (reorderedData == null) return;
-		
+
 		reorderedData.setName(dataset.getName());
-		reorderedData.squeeze();
-		if (reorderedData.getSize() < 1)
+		final int[] shape = squeezeShape(reorderedData.getShape(), 2);
+		if (shape == null || reorderedData.getSize() < 1)
 			return;
+		reorderedData.setShape(shape);
 
 		switch (itype) {
 		case DATA1D:
-			if (isRankBad(reorderedData, 2))
-				return;
-
 			final IDataset rAxisSlice = make1DAxisSlice(slicedAxes, 0);
 
 			composite.getDisplay().asyncExec(new Runnable() {
@@ -1368,14 +1340,11 @@ class DataTab extends PlotTab {
 					DatasetTableView tableView = getDatasetTableView();
 					if (tableView == null)
 						return;
-					tableView.setData(reorderedData.reshape(reorderedData.getShape()[0], 1), rAxisSlice, null);
+					tableView.setData(reorderedData, rAxisSlice, null);
 				}
 			});
 			break;
 		case DATA2D:
-			if (isRankBad(reorderedData, 2))
-				return;
-
 			final IDataset yAxisSlice = make1DAxisSlice(slicedAxes, 0);
 			final IDataset xAxisSlice = make1DAxisSlice(slicedAxes, 1);
 
@@ -1405,6 +1374,25 @@ class DataTab extends PlotTab {
 		}
 	}
 
+	/**
+	 * @param shape
+	 * @param rank
+	 * @return shape without dimensions of one and padded with ones to rank, or null if it has a greater rank
+	 */
+	private static int[] squeezeShape(int[] shape, int rank) {
+		int[] s = new int[rank];
+		Arrays.fill(s, 1);
+		int r = 0;
+		for (int l : shape) {
+			if (l == 1)
+				continue;
+			if (r == rank)
+				return null;
+			s[r++] = l;
+		}
+		return s;
+	}
+
 	private DatasetTableView getDatasetTableView() {
 		DatasetTableView view = null;
 
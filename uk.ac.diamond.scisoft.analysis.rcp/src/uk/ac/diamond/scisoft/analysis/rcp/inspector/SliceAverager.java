@@ -0,0 +1,382 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package uk.ac.diamond.scisoft.analysis.rcp.inspector;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.january.DatasetException;
+import org.eclipse.january.IMonitor;
+import org.eclipse.january.dataset.Dataset;
+import org.eclipse.january.dataset.DatasetFactory;
+import org.eclipse.january.dataset.DatasetUtils;
+import org.eclipse.january.dataset.DoubleDataset;
+import org.eclipse.january.dataset.ILazyDataset;
+import org.eclipse.january.dataset.IndexIterator;
+import org.eclipse.january.dataset.Slice;
+import org.eclipse.january.dataset.SliceND;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Averages a slice of a lazy dataset over some of its dimensions.
+ * <p>
+ * The slice is read in blocks, each of which spans all the dimensions which
+ * are not averaged, whole inner averaged dimensions and as many positions of
+ * the next averaged dimension as fit in {@link #BLOCK_SIZE} items. For a stack
+ * of frames averaged over its frames this reads a run of whole frames at a
+ * time, which is how detector files are chunked. Blocks are read and summed on
+ * a few worker threads, each with its own accumulator which is added to the
+ * total now and then, so partial averages can be shown while it runs.
+ */
+class SliceAverager {
+	private static final Logger logger = LoggerFactory.getLogger(SliceAverager.class);
+
+	private static final int BLOCK_SIZE = 1 << 22; // items read at a time
+	private static final long PARTIAL_PERIOD = 500; // milliseconds between partial averages
+	private static final int THREADS = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+	private static final ExecutorService workers = Executors.newCachedThreadPool(new ThreadFactory() {
+		private final AtomicInteger count = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, "Slice averager " + count.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		}
+	});
+
+	/**
+	 * Shows partial averages, called in the thread which started the averaging
+	 */
+	interface IPartialAverage {
+		/**
+		 * @param average average of blocks read so far
+		 * @param done number of blocks read
+		 * @param total number of blocks
+		 */
+		public void show(Dataset average, int done, int total);
+	}
+
+	private final ILazyDataset dataset;
+	private final int[] starts; // of slice, normalised
+	private final int[] steps;
+	private final int[] shape; // of slice
+	private final int[] resultShape; // with averaged dimensions of one
+	final int[] outerDims; // averaged dimensions iterated over one position at a time
+	final int blockDim; // averaged dimension read in runs
+	final int blockLength;
+	private final int blocksPerRun;
+	private final int[] averagedDims; // in descending order
+	private final int size; // of result
+	final int total; // number of blocks
+
+	private final AtomicInteger next = new AtomicInteger();
+	private volatile boolean stopped;
+
+	// guarded by this
+	private double[] sum;
+	private double[] errorSum;
+	private long count; // averaged positions in sums
+	private int done;
+	private int running;
+	private DatasetException failure;
+
+	/**
+	 * @param dataset
+	 * @param slices of dataset
+	 * @param average true for each dimension to average over
+	 */
+	SliceAverager(ILazyDataset dataset, Slice[] slices, boolean[] average) {
+		this(dataset, slices, average, BLOCK_SIZE);
+	}
+
+	/**
+	 * @param dataset
+	 * @param slices of dataset
+	 * @param average true for each dimension to average over
+	 * @param blockSize items read at a time
+	 */
+	SliceAverager(ILazyDataset dataset, Slice[] slices, boolean[] average, int blockSize) {
+		this.dataset = dataset;
+		final SliceND slice = new SliceND(dataset.getShape(), slices);
+		starts = slice.getStart();
+		steps = slice.getStep();
+		final int rank = slices.length;
+		shape = new int[rank];
+		resultShape = new int[rank];
+		int n = 0;
+		int s = 1;
+		for (int i = 0; i < rank; i++) {
+			shape[i] = slice.getShape()[i];
+			if (average[i]) {
+				resultShape[i] = 1;
+				n++;
+			} else {
+				resultShape[i] = shape[i];
+				s *= shape[i];
+			}
+		}
+		size = s;
+
+		averagedDims = new int[n];
+		for (int i = rank - 1, j = 0; i >= 0; i--) {
+			if (average[i])
+				averagedDims[j++] = i;
+		}
+
+		// take in whole averaged dimensions from the inside out while they fit
+		long items = size;
+		int j = 0;
+		while (j < n - 1 && items * shape[averagedDims[j]] <= blockSize) {
+			items *= shape[averagedDims[j++]];
+		}
+		blockDim = averagedDims[j];
+		blockLength = (int) Math.max(1, Math.min(shape[blockDim], blockSize / items));
+		blocksPerRun = (shape[blockDim] + blockLength - 1) / blockLength;
+
+		outerDims = new int[n - j - 1];
+		int outer = 1;
+		for (int k = 0; k < outerDims.length; k++) {
+			outerDims[k] = averagedDims[j + 1 + k];
+			outer *= shape[outerDims[k]];
+		}
+		total = outer * blocksPerRun;
+	}
+
+	/**
+	 * Averages the slice, waiting until it is done
+	 * @param monitor can be null, checked for cancellation and told of each block read
+	 * @param partial can be null
+	 * @return average with errors, if any, or null if cancelled
+	 * @throws DatasetException if a block could not be read
+	 */
+	Dataset average(IMonitor monitor, IPartialAverage partial) throws DatasetException {
+		if (size == 0 || total == 0)
+			return null;
+
+		final int threads = Math.min(THREADS, total);
+		synchronized (this) {
+			running = threads;
+		}
+		for (int i = 0; i < threads; i++) {
+			workers.execute(new Runnable() {
+				@Override
+				public void run() {
+					sumBlocks();
+				}
+			});
+		}
+
+		boolean interrupted = false;
+		int reported = 0;
+		int shown = 0;
+		long lastShown = System.currentTimeMillis();
+		while (true) {
+			final boolean finished;
+			final int d;
+			synchronized (this) {
+				if (running > 0) {
+					try {
+						wait(PARTIAL_PERIOD);
+					} catch (InterruptedException e) {
+						interrupted = true; // set again once the workers have stopped
+						stopped = true;
+					}
+				}
+				finished = running == 0;
+				d = done;
+			}
+
+			if (monitor != null) {
+				monitor.worked(d - reported);
+				reported = d;
+				if (monitor.isCancelled())
+					stopped = true;
+			}
+			if (finished)
+				break;
+
+			final long now = System.currentTimeMillis();
+			if (partial != null && !stopped && d > shown && now - lastShown >= PARTIAL_PERIOD) {
+				final Dataset p = getAverage();
+				if (p != null) {
+					partial.show(p, d, total);
+				}
+				shown = d;
+				lastShown = now;
+			}
+		}
+
+		if (interrupted)
+			Thread.currentThread().interrupt();
+		synchronized (this) {
+			if (failure != null)
+				throw failure;
+			if (stopped)
+				return null;
+		}
+		return getAverage();
+	}
+
+	/**
+	 * Run by each worker thread until there are no blocks left
+	 */
+	private void sumBlocks() {
+		double[] blockSum = null;
+		double[] blockErrorSum = null;
+		long blockCount = 0;
+		long lastFlush = System.currentTimeMillis();
+		try {
+			int b;
+			while (!stopped && (b = next.getAndIncrement()) < total) {
+				Dataset data = DatasetUtils.convertToDataset(dataset.getSlice(getBlockSlices(b)));
+				Dataset errors = data.getErrorBuffer();
+				data.setErrors(null);
+				blockCount += data.getSize() / size;
+
+				if (blockSum == null)
+					blockSum = new double[size];
+				add(blockSum, data);
+				if (errors != null) {
+					if (blockErrorSum == null)
+						blockErrorSum = new double[size];
+					add(blockErrorSum, errors);
+				}
+
+				final long now = System.currentTimeMillis();
+				synchronized (this) {
+					if (now - lastFlush >= PARTIAL_PERIOD / 2) {
+						flush(blockSum, blockErrorSum, blockCount);
+						blockCount = 0;
+						lastFlush = now;
+					}
+					done++;
+					notifyAll();
+				}
+			}
+		} catch (DatasetException e) {
+			synchronized (this) {
+				if (failure == null)
+					failure = e;
+			}
+			stopped = true;
+		} catch (Exception e) {
+			logger.error("Could not average slice", e);
+			synchronized (this) {
+				if (failure == null)
+					failure = new DatasetException(e);
+			}
+			stopped = true;
+		} finally {
+			synchronized (this) {
+				flush(blockSum, blockErrorSum, blockCount);
+				running--;
+				notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * Adds the sums of a worker to the total and clears them
+	 */
+	private synchronized void flush(double[] blockSum, double[] blockErrorSum, long blockCount) {
+		if (blockSum != null && blockCount > 0) {
+			if (sum == null) {
+				sum = new double[size];
+			}
+			for (int i = 0; i < size; i++) {
+				sum[i] += blockSum[i];
+				blockSum[i] = 0;
+			}
+			if (blockErrorSum != null) {
+				if (errorSum == null) {
+					errorSum = new double[size];
+				}
+				for (int i = 0; i < size; i++) {
+					errorSum[i] += blockErrorSum[i];
+					blockErrorSum[i] = 0;
+				}
+			}
+			count += blockCount;
+		}
+	}
+
+	/**
+	 * Sums a block over the averaged dimensions and adds it to an accumulator
+	 */
+	private void add(double[] acc, Dataset block) {
+		Dataset s = block;
+		for (int d : averagedDims) { // descending so dimensions do not shift
+			s = s.sum(d);
+		}
+		final IndexIterator it = s.getIterator();
+		int i = 0;
+		while (it.hasNext()) {
+			acc[i++] += s.getElementDoubleAbs(it.index);
+		}
+	}
+
+	/**
+	 * @param b block index
+	 * @return slices of dataset for block
+	 */
+	Slice[] getBlockSlices(int b) {
+		final Slice[] bs = new Slice[shape.length];
+		for (int i = 0; i < shape.length; i++) {
+			setSlice(bs, i, 0, shape[i]);
+		}
+
+		int pos = b / blocksPerRun;
+		for (int d : outerDims) {
+			setSlice(bs, d, pos % shape[d], 1);
+			pos /= shape[d];
+		}
+		final int from = (b % blocksPerRun) * blockLength;
+		setSlice(bs, blockDim, from, Math.min(blockLength, shape[blockDim] - from));
+		return bs;
+	}
+
+	private void setSlice(Slice[] bs, int d, int from, int n) {
+		final int step = steps[d];
+		final int start = starts[d] + step * from;
+		final int stop = start + step * n;
+		bs[d] = new Slice(start, stop < 0 ? null : stop, step); // a negative stop would count from the end
+	}
+
+	/**
+	 * @return average of sums so far
+	 */
+	private synchronized Dataset getAverage() {
+		if (sum == null || count == 0)
+			return null;
+
+		final DoubleDataset average = DatasetFactory.zeros(DoubleDataset.class, resultShape);
+		final double[] a = average.getData();
+		for (int i = 0; i < size; i++) {
+			a[i] = sum[i] / count;
+		}
+		if (errorSum != null) {
+			final DoubleDataset errors = DatasetFactory.zeros(DoubleDataset.class, resultShape);
+			final double[] e = errors.getData();
+			final double n2 = (double) count * count;
+			for (int i = 0; i < size; i++) {
+				e[i] = errorSum[i] / n2;
+			}
+			average.setErrorBuffer(errors);
+		}
+		average.setName(dataset.getName());
+		return average;
+	}
+
+}
@@ -10,11 +10,21 @@
 package uk.ac.diamond.scisoft.analysis.rcp.views;
 
 import java.io.PrintStream;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Status;
+import org.eclipse.january.dataset.Dataset;
+import org.eclipse.january.dataset.DatasetUtils;
 import org.eclipse.january.dataset.IDataset;
+import org.eclipse.january.dataset.ILazyDataset;
+import org.eclipse.january.dataset.IndexIterator;
 import org.eclipse.jface.action.Action;
 import org.eclipse.jface.action.IToolBarManager;
 import org.eclipse.jface.dialogs.ErrorDialog;
@@ -55,12 +65,14 @@ import org.eclipse.swt.widgets.FileDialog;
 import org.eclipse.swt.widgets.Shell;
 import org.eclipse.ui.IActionBars;
 import org.eclipse.ui.part.ViewPart;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import uk.ac.diamond.scisoft.analysis.rcp.AnalysisRCPActivator;
 import uk.ac.diamond.scisoft.analysis.rcp.explorers.AbstractExplorer;
 
 /**
- * Display a 2D dataset
+ * Display a 2D dataset, which is read in tiles as it is shown
  */
 public class DatasetTableView extends ViewPart {
 	public static final String ID = "uk.ac.diamond.scisoft.analysis.rcp.views.DatasetTableView";
@@ -83,12 +95,13 @@ public class DatasetTableView extends ViewPart {
 	 * Set dataset for table view
 	 * 
 	 * @param dataset
+	 *            can be lazy, in which case only the values shown are read
 	 * @param rows
 	 *            values for row header, can be null
 	 * @param cols
 	 *            values for column header, can be null
 	 */
-	public void setData(IDataset dataset, IDataset rows, IDataset cols) {
+	public void setData(ILazyDataset dataset, IDataset rows, IDataset cols) {
 		if (dataset.getRank() != 2)
 			return;
 
@@ -183,7 +196,7 @@ class DatasetGridLayerStack extends DefaultGridLayer {
 	private boolean colsCustom = false;
 	
 
-	public DatasetGridLayerStack(IDataset dataset, IDataset rows, IDataset cols) {
+	public DatasetGridLayerStack(ILazyDataset dataset, IDataset rows, IDataset cols) {
 		super(true);
 		if (rows != null && rows.getName().startsWith(AbstractExplorer.DIM_PREFIX))
 			rows = null;
@@ -202,7 +215,7 @@ class DatasetGridLayerStack extends DefaultGridLayer {
 		configureFreeze(rowsCustom, colsCustom);
 	}
 
-	public void setData(IDataset dataset, IDataset rows, IDataset cols) {
+	public void setData(ILazyDataset dataset, IDataset rows, IDataset cols) {
 		if (rows != null && rows.getName().startsWith(AbstractExplorer.DIM_PREFIX))
 			rows = null;
 		rowsCustom = rows != null;
@@ -446,7 +459,7 @@ class DatasetRowProvider implements IDataProvider {
 }
 
 class DatasetContentProvider implements IDataProvider {
-	IDataset data;
+	DatasetTiles data;
 	IDataset drow;
 	IDataset dcol;
 	int[] shape;
@@ -458,7 +471,7 @@ class DatasetContentProvider implements IDataProvider {
 	 * @param row
 	 * @param column
 	 */
-	public DatasetContentProvider(IDataset dataset, IDataset row, IDataset column) {
+	public DatasetContentProvider(ILazyDataset dataset, IDataset row, IDataset column) {
 		setData(dataset, row, column);
 	}
 
@@ -467,8 +480,8 @@ class DatasetContentProvider implements IDataProvider {
 	 * @param row
 	 * @param column
 	 */
-	public void setData(IDataset dataset, IDataset row, IDataset column) {
-		data = dataset;
+	public void setData(ILazyDataset dataset, IDataset row, IDataset column) {
+		data = new DatasetTiles(dataset);
 		drow = row;
 		dcol = column;
 		shape = dataset.getShape();
@@ -490,7 +503,7 @@ class DatasetContentProvider implements IDataProvider {
 	@Override
 	public Object getDataValue(int col, int row) {
 		if (row != 0 && col != 0) {
-			return data.getObject(row - roffset, col - coffset);
+			return data.getValue(row - roffset, col - coffset);
 		}
 		if (row == 0) {
 			if (col == 0) {
@@ -502,20 +515,20 @@ class DatasetContentProvider implements IDataProvider {
 				}
 				if (coffset != 0)
 					return drow.getObject(0);
-				return data.getObject(0, 0);
+				return data.getValue(0, 0);
 			}
 			final int c = col - coffset;
 			if (roffset != 0) {
 				return dcol.getObject(c);
 			}
-			return data.getObject(0, c);
+			return data.getValue(0, c);
 		}
 		if (col == 0) {
 			final int r = row - roffset;
 			if (coffset != 0) {
 				return drow.getObject(r);
 			}
-			return data.getObject(r, 0);
+			return data.getValue(r, 0);
 		}
 
 		throw new IllegalStateException("Should not have got here!");
@@ -531,6 +544,212 @@ class DatasetContentProvider implements IDataProvider {
 	}
 }
 
+/**
+ * Values of a 2D lazy dataset, read in tiles as they are asked for.
+ * <p>
+ * Numbers are kept in arrays of doubles and other values in datasets. The most
+ * recently used tiles are kept, and the next tile in the direction of scrolling
+ * is read in the background. A tile which could not be read is kept too, so its
+ * cells show a placeholder rather than reading it again, until the table is given
+ * another dataset.
+ */
+class DatasetTiles {
+	private static final Logger logger = LoggerFactory.getLogger(DatasetTiles.class);
+
+	static final int TILE_ROWS = 256;
+	static final int TILE_COLUMNS = 64;
+	private static final int CACHED = 64; // tiles kept
+
+	private static final ExecutorService prefetcher = Executors.newSingleThreadExecutor(new ThreadFactory() {
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, "Dataset table prefetch");
+			t.setDaemon(true);
+			return t;
+		}
+	});
+
+	private static final int DOUBLE = 0;
+	private static final int FLOAT = 1;
+	private static final int INT = 2;
+	private static final int OBJECT = 3; // kept as dataset
+
+	static final String UNREADABLE = "Not available";
+	private static final Tile FAILED = new Tile();
+
+	private final ILazyDataset data;
+	private final int rows;
+	private final int columns;
+	private final int kind;
+	private final Map<Long, Tile> tiles = new LinkedHashMap<Long, Tile>(CACHED, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Long, Tile> eldest) {
+			return size() > CACHED;
+		}
+	};
+	private final Set<Long> fetching = new HashSet<Long>(); // guarded by tiles
+	private int lastTileRow = 0;
+	private int lastTileColumn = 0;
+
+	/**
+	 * @param dataset of rank 2
+	 */
+	public DatasetTiles(ILazyDataset dataset) {
+		data = dataset;
+		int[] shape = dataset.getShape();
+		rows = shape[0];
+		columns = shape[1];
+
+		Class<?> c = dataset.getElementsPerItem() == 1 ? dataset.getElementClass() : null;
+		if (c == Double.class) {
+			kind = DOUBLE;
+		} else if (c == Float.class) {
+			kind = FLOAT;
+		} else if (c == Integer.class || c == Short.class || c == Byte.class) {
+			kind = INT;
+		} else {
+			kind = OBJECT;
+		}
+	}
+
+	/**
+	 * @param row
+	 * @param col
+	 * @return value or {@link #UNREADABLE} if it could not be read
+	 */
+	public Object getValue(int row, int col) {
+		final int tr = row / TILE_ROWS;
+		final int tc = col / TILE_COLUMNS;
+		Tile t = getTile(tr, tc);
+		prefetch(tr, tc);
+		return t.getValue(row - tr * TILE_ROWS, col - tc * TILE_COLUMNS);
+	}
+
+	private static long key(int tr, int tc) {
+		return ((long) tr << 32) | tc;
+	}
+
+	private Tile getTile(int tr, int tc) {
+		final Long k = key(tr, tc);
+		synchronized (tiles) {
+			Tile t = tiles.get(k);
+			if (t != null)
+				return t;
+		}
+		Tile t = readTile(tr, tc);
+		synchronized (tiles) {
+			tiles.put(k, t);
+		}
+		return t;
+	}
+
+	/**
+	 * Read the next tile along if the last value asked for was in another tile
+	 */
+	private void prefetch(int tr, int tc) {
+		int nr = tr;
+		int nc = tc;
+		if (tr > lastTileRow) {
+			nr = tr + 1;
+		} else if (tr < lastTileRow) {
+			nr = tr - 1;
+		}
+		if (tc > lastTileColumn) {
+			nc = tc + 1;
+		} else if (tc < lastTileColumn) {
+			nc = tc - 1;
+		}
+		lastTileRow = tr;
+		lastTileColumn = tc;
+		if ((nr == tr && nc == tc) || nr < 0 || nc < 0 || nr * TILE_ROWS >= rows || nc * TILE_COLUMNS >= columns)
+			return;
+
+		final int fr = nr;
+		final int fc = nc;
+		final Long k = key(fr, fc);
+		synchronized (tiles) {
+			if (tiles.containsKey(k) || !fetching.add(k))
+				return;
+		}
+		prefetcher.execute(new Runnable() {
+			@Override
+			public void run() {
+				Tile t = readTile(fr, fc);
+				synchronized (tiles) {
+					fetching.remove(k);
+					tiles.put(k, t);
+				}
+			}
+		});
+	}
+
+	/**
+	 * @return tile, or {@link #FAILED} if it could not be read
+	 */
+	private Tile readTile(int tr, int tc) {
+		final int[] start = new int[] { tr * TILE_ROWS, tc * TILE_COLUMNS };
+		final int[] stop = new int[] { Math.min(rows, start[0] + TILE_ROWS), Math.min(columns, start[1] + TILE_COLUMNS) };
+		try {
+			Dataset d = DatasetUtils.convertToDataset(data.getSlice(start, stop, null));
+			return new Tile(d, kind);
+		} catch (Exception e) {
+			logger.error("Could not read values of table from {}", data.getName(), e);
+		}
+		return FAILED;
+	}
+
+	private static class Tile {
+		private final int kind;
+		private final int columns;
+		private final double[] values;
+		private final Dataset dataset;
+
+		/**
+		 * Tile which could not be read
+		 */
+		private Tile() {
+			kind = OBJECT;
+			columns = 0;
+			values = null;
+			dataset = null;
+		}
+
+		public Tile(Dataset d, int kind) {
+			this.kind = kind;
+			columns = d.getShapeRef()[1];
+			if (kind == OBJECT) {
+				values = null;
+				dataset = d;
+			} else {
+				values = new double[d.getSize()];
+				dataset = null;
+				IndexIterator it = d.getIterator();
+				int i = 0;
+				while (it.hasNext()) {
+					values[i++] = d.getElementDoubleAbs(it.index);
+				}
+			}
+		}
+
+		public Object getValue(int row, int col) {
+			if (dataset != null)
+				return dataset.getObject(row, col);
+			if (values == null)
+				return UNREADABLE;
+
+			final double v = values[row * columns + col];
+			switch (kind) {
+			case FLOAT:
+				return (float) v;
+			case INT:
+				return (int) v;
+			default:
+				return v;
+			}
+		}
+	}
+}
+
 class ExportSelectionCommand extends AbstractContextFreeCommand {
 	private Shell shell;
 
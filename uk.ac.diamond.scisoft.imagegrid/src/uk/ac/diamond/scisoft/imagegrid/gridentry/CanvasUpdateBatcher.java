@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2012-2016 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package uk.ac.diamond.scisoft.imagegrid.gridentry;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.eclipse.swt.SWTException;
+import org.eclipse.swt.widgets.Canvas;
+import org.eclipse.swt.widgets.Display;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Hands thumbnails from the loading threads to the UI thread in batches.
+ *
+ * Updates posted from any thread are run together in one asyncExec and each
+ * canvas they belong to is redrawn once afterwards. A batch stops after
+ * MAX_BATCH_TIME so that the UI stays responsive, the rest are run in the
+ * next one.
+ */
+final class CanvasUpdateBatcher {
+
+	private static final Logger logger = LoggerFactory.getLogger(CanvasUpdateBatcher.class);
+
+	private static final long MAX_BATCH_TIME = 40; // ms
+
+	private static final ConcurrentLinkedQueue<Update> updates = new ConcurrentLinkedQueue<Update>();
+	private static final AtomicBoolean scheduled = new AtomicBoolean(false);
+	private static final Runnable runUpdates = new Runnable() {
+		@Override
+		public void run() {
+			runUpdates();
+		}
+	};
+
+	private CanvasUpdateBatcher() {
+	}
+
+	/**
+	 * Runs update in the UI thread with other updates and then redraws canvas
+	 * @param canvas
+	 * @param update
+	 */
+	static void post(Canvas canvas, Runnable update) {
+		updates.add(new Update(canvas, update));
+		if (!scheduled.compareAndSet(false, true))
+			return;
+		try {
+			canvas.getDisplay().asyncExec(runUpdates);
+		} catch (SWTException e) { // canvas or display disposed
+			scheduled.set(false);
+		}
+	}
+
+	private static void runUpdates() {
+		final long end = System.currentTimeMillis() + MAX_BATCH_TIME;
+		final Set<Canvas> redraw = Collections.newSetFromMap(new IdentityHashMap<Canvas, Boolean>());
+		Update update;
+		while ((update = updates.poll()) != null) {
+			if (update.canvas.isDisposed())
+				continue;
+			try {
+				update.update.run();
+			} catch (Exception e) {
+				logger.error("Cannot update image grid", e);
+			}
+			redraw.add(update.canvas);
+			if (System.currentTimeMillis() > end)
+				break;
+		}
+		for (Canvas canvas : redraw) {
+			if (!canvas.isDisposed())
+				canvas.redraw();
+		}
+
+		scheduled.set(false);
+		if (!updates.isEmpty() && scheduled.compareAndSet(false, true))
+			Display.getCurrent().asyncExec(runUpdates);
+	}
+
+	private static class Update {
+		private final Canvas canvas;
+		private final Runnable update;
+
+		private Update(Canvas canvas, Runnable update) {
+			this.canvas = canvas;
+			this.update = update;
+		}
+	}
+}
@@ -10,8 +10,14 @@
 package uk.ac.diamond.scisoft.imagegrid.gridentry;
 
 import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import uk.ac.diamond.scisoft.imagegrid.AbstractImageGrid;
 import uk.ac.diamond.scisoft.imagegrid.thumbnail.IThumbnailLoadService;
@@ -46,9 +52,19 @@ public class GridEntryMonitor {
 	    }
 		fullCacheArea = new Rectangle(0,0,xDim,yDim);
 		
-		execSvc = Executors.newFixedThreadPool(2);
 		this.service = service;
-		execSvc.execute(service);		
+		int threads = service.getThreadCount();
+		execSvc = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+			private final AtomicInteger count = new AtomicInteger();
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "Thumbnail loader " + count.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		for (int i = 0; i < threads; i++)
+			execSvc.execute(service);
 	}
 	
 	public void resizeDisplayArea(int newWidth, int newHeight) {
@@ -145,7 +161,62 @@ public class GridEntryMonitor {
 		totalGridArea.setBounds(0,0,newWidth,newHeight);
 	}
 	
+	/**
+	 * Entries which are no longer in view are moved to the low priority queue
+	 * if they are still in the cache area and cancelled otherwise
+	 */
+	private void demoteOldPrimary(Rectangle oldInnerCacheArea, Rectangle newFullCacheArea) {
+		for (int y = oldInnerCacheArea.y; y < oldInnerCacheArea.y+oldInnerCacheArea.height; y++)
+			for (int x = oldInnerCacheArea.x; x < oldInnerCacheArea.x+oldInnerCacheArea.width; x++) {
+				if (innerCacheArea.contains(x, y))
+					continue;
+				AbstractGridEntry entry = grid.getGridEntry(x, y);
+				if (entry == null)
+					continue;
+				if (newFullCacheArea.contains(x, y)) {
+					if (entry.isDeactivated() && entry.getStatus() != AbstractGridEntry.INVALIDSTATUS)
+						service.addLoadJob(entry, false);
+				} else {
+					service.cancelLoadJob(entry);
+				}
+		}
+	}
+
+	/**
+	 * Queues the entries in area which are not in view, nearest to the view first
+	 */
+	private void loadSecondary(Rectangle area) {
+		List<int[]> positions = new ArrayList<int[]>();
+		for (int ry = 0; ry < area.height; ry++) {
+			for (int rx = 0; rx < area.width; rx++) {
+				int xPos = rx + area.x;
+				int yPos = ry + area.y;
+				if (!innerCacheArea.contains(xPos, yPos))
+					positions.add(new int[] {xPos, yPos, distanceToView(xPos, yPos)});
+			}
+		}
+		Collections.sort(positions, new Comparator<int[]>() {
+			@Override
+			public int compare(int[] a, int[] b) {
+				return Integer.compare(a[2], b[2]);
+			}
+		});
+		for (int[] pos : positions) {
+			AbstractGridEntry entry = grid.getGridEntry(pos[0], pos[1]);
+			if (entry != null && entry.isDeactivated()) {
+				service.addLoadJob(entry, false);
+			}
+		}
+	}
+
+	private int distanceToView(int x, int y) {
+		int dx = Math.max(Math.max(innerCacheArea.x - x, x - (innerCacheArea.x + innerCacheArea.width - 1)), 0);
+		int dy = Math.max(Math.max(innerCacheArea.y - y, y - (innerCacheArea.y + innerCacheArea.height - 1)), 0);
+		return Math.max(dx, dy);
+	}
+
 	public void updateMonitorPosition(int x, int y) {
+		Rectangle oldInnerCacheArea = new Rectangle(innerCacheArea);
 		innerCacheArea.setLocation(x, y);
 		// Check if we are outside the fullCacheArea
 //		if (!fullCacheArea.contains(innerCacheArea)) {
@@ -162,6 +233,7 @@ public class GridEntryMonitor {
 		if (fcy < 0) fcy = 0;
 		if (fullCacheArea.height >= totalGridArea.height) fcy = 0;
 		Rectangle newFullCacheArea = new Rectangle(fcx,fcy,fullCacheArea.width,fullCacheArea.height);
+		demoteOldPrimary(oldInnerCacheArea, newFullCacheArea);
 		if (!fullCacheArea.contains(newFullCacheArea)) {
 			service.clearLowPriorityQueue();
 			// compute out of cache areas
@@ -174,25 +246,16 @@ public class GridEntryMonitor {
 						int xPos = rx + purgeArea.x;
 						int yPos = ry + purgeArea.y;
 						AbstractGridEntry entry = grid.getGridEntry(xPos, yPos);
-						if (entry != null)
+						if (entry != null) {
+							service.cancelLoadJob(entry);
 							entry.deActivate();
+						}
 					}
 				}					
 			}
 			// compute new need to cache areas and load
 			// entries
-			for (int ry = 0; ry < newFullCacheArea.height; ry++) {
-				for (int rx = 0; rx < newFullCacheArea.width; rx++) {
-					int xPos = rx + newFullCacheArea.x;
-					int yPos = ry + newFullCacheArea.y;
-					if (!innerCacheArea.contains(xPos, yPos)) {
-						AbstractGridEntry entry = grid.getGridEntry(xPos, yPos);
-						if (entry != null && entry.isDeactivated()) {
-							service.addLoadJob(entry, false);
-						}
-					}
-				}
-			}
+			loadSecondary(newFullCacheArea);
 		}
 		fullCacheArea = newFullCacheArea;
 	}
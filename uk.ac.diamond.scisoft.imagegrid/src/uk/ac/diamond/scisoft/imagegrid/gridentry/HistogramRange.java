@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 2012-2016 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package uk.ac.diamond.scisoft.imagegrid.gridentry;
+
+import java.util.Arrays;
+
+import org.eclipse.january.dataset.Dataset;
+import org.eclipse.january.dataset.IndexIterator;
+
+/**
+ * Works out the range of values to map a thumbnail with.
+ *
+ * The quantiles are found from a histogram rather than by sorting, so the
+ * image is read twice, once for the minimum and maximum and once to fill
+ * the histogram, and never copied. Integer images whose range fits in
+ * the histogram get one bin per value, which gives the same quantiles as
+ * sorting. Otherwise values are taken to be spread evenly in their bin.
+ * Each item of a compound dataset, such as the red, green and blue of an
+ * RGB image, has its own histogram and the widest range is returned.
+ * Values which are not finite are left out.
+ */
+final class HistogramRange {
+
+	private static final int MAX_BINS = 4096;
+
+	private HistogramRange() {
+	}
+
+	/**
+	 * @param ds image
+	 * @param loThreshold quantile for the lower end of the range, 0 or less for the minimum
+	 * @param hiThreshold quantile for the upper end of the range, 1 or more for the maximum
+	 * @return lower and upper end of range
+	 */
+	static double[] getRange(Dataset ds, double loThreshold, double hiThreshold) {
+		final int items = ds.getElementsPerItem();
+		final double[] min = new double[items];
+		final double[] max = new double[items];
+		final long[] count = new long[items];
+		Arrays.fill(min, Double.POSITIVE_INFINITY);
+		Arrays.fill(max, Double.NEGATIVE_INFINITY);
+
+		IndexIterator it = ds.getIterator();
+		while (it.hasNext()) {
+			for (int i = 0; i < items; i++) {
+				final double v = ds.getElementDoubleAbs(it.index + i);
+				if (Double.isNaN(v) || Double.isInfinite(v))
+					continue;
+				if (v < min[i])
+					min[i] = v;
+				if (v > max[i])
+					max[i] = v;
+				count[i]++;
+			}
+		}
+
+		final boolean lo = loThreshold > 0;
+		final boolean hi = hiThreshold < 1;
+		final Histogram[] histograms = new Histogram[items];
+		if (lo || hi) {
+			final boolean integer = !ds.hasFloatingPointElements();
+			for (int i = 0; i < items; i++) {
+				if (count[i] > 0 && max[i] > min[i])
+					histograms[i] = new Histogram(min[i], max[i], integer);
+			}
+			it = ds.getIterator();
+			while (it.hasNext()) {
+				for (int i = 0; i < items; i++) {
+					if (histograms[i] != null)
+						histograms[i].add(ds.getElementDoubleAbs(it.index + i));
+				}
+			}
+		}
+
+		double rangeMin = Double.POSITIVE_INFINITY;
+		double rangeMax = Double.NEGATIVE_INFINITY;
+		for (int i = 0; i < items; i++) {
+			if (count[i] == 0)
+				continue;
+			final double l = lo && histograms[i] != null ? histograms[i].quantile(loThreshold) : min[i];
+			final double h = hi && histograms[i] != null ? histograms[i].quantile(hiThreshold) : max[i];
+			if (l < rangeMin)
+				rangeMin = l;
+			if (h > rangeMax)
+				rangeMax = h;
+		}
+		if (rangeMin > rangeMax) { // nothing finite
+			rangeMin = 0;
+			rangeMax = 0;
+		}
+		return new double[] {rangeMin, rangeMax};
+	}
+
+	private static class Histogram {
+		private final double min;
+		private final double max;
+		private final double width;
+		private final boolean exact;
+		private final long[] bins;
+		private long total;
+
+		Histogram(double min, double max, boolean integer) {
+			this.min = min;
+			this.max = max;
+			final double range = max - min;
+			exact = integer && range < MAX_BINS;
+			bins = new long[exact ? (int) range + 1 : MAX_BINS];
+			width = exact ? 1 : range / MAX_BINS;
+		}
+
+		void add(double v) {
+			if (Double.isNaN(v) || Double.isInfinite(v))
+				return;
+			int b = (int) ((v - min) / width);
+			if (b >= bins.length)
+				b = bins.length - 1;
+			else if (b < 0)
+				b = 0;
+			bins[b]++;
+			total++;
+		}
+
+		/**
+		 * Interpolates between the values either side of the quantile, as in Stats.quantile
+		 */
+		double quantile(double q) {
+			final double position = q * (total - 1);
+			final long rank = (long) Math.floor(position);
+			final double v = valueAt(rank);
+			final double fraction = position - rank;
+			if (fraction == 0 || rank + 1 >= total)
+				return v;
+			return v + fraction * (valueAt(rank + 1) - v);
+		}
+
+		/**
+		 * @param rank of value in sorted order, starting from 0
+		 */
+		private double valueAt(long rank) {
+			long before = 0;
+			for (int b = 0; b < bins.length; b++) {
+				final long n = bins[b];
+				if (rank < before + n) {
+					if (exact)
+						return min + b;
+					final double v = min + (b + (rank - before + 0.5) / n) * width;
+					return Math.min(v, max);
+				}
+				before += n;
+			}
+			return max;
+		}
+	}
+}
@@ -10,21 +10,18 @@
 package uk.ac.diamond.scisoft.imagegrid.gridentry;
 
 import java.awt.Dimension;
-import java.io.IOException;
+import java.io.File;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.dawnsci.plotting.services.util.SWTImageUtils;
 import org.eclipse.dawnsci.plotting.api.histogram.IPaletteService;
 import org.eclipse.january.dataset.Dataset;
 import org.eclipse.january.dataset.DatasetUtils;
 import org.eclipse.january.dataset.IDataset;
-import org.eclipse.january.dataset.RGBDataset;
-import org.eclipse.january.dataset.Stats;
-import org.eclipse.swt.SWT;
 import org.eclipse.swt.graphics.Color;
 import org.eclipse.swt.graphics.GC;
 import org.eclipse.swt.graphics.Image;
 import org.eclipse.swt.graphics.ImageData;
-import org.eclipse.swt.graphics.ImageLoader;
 import org.eclipse.swt.graphics.PaletteData;
 import org.eclipse.swt.graphics.RGB;
 import org.eclipse.swt.widgets.Canvas;
@@ -33,6 +30,7 @@ import org.slf4j.LoggerFactory;
 
 import uk.ac.diamond.scisoft.analysis.plotserver.DatasetWithAxisInformation;
 import uk.ac.diamond.scisoft.imagegrid.ServiceHolder;
+import uk.ac.diamond.scisoft.imagegrid.thumbnail.ThumbnailStore;
 
 /**
  * SWT Image implementation of a ImageGridEntry
@@ -46,7 +44,7 @@ public class SWTGridEntry extends AbstractGridEntry {
 	private static Color green = null;
 	private static Color red = null;
 	private static Color blue = null;
-	private static long lastREDRAWinMillis = 0; 
+	private static final AtomicLong storeIds = new AtomicLong();
 	
 	private Image gridImage;
 	private Dimension imageDim;
@@ -55,10 +53,23 @@ public class SWTGridEntry extends AbstractGridEntry {
 	@SuppressWarnings("unused")
 	private int colourMapChoice = 0;
 	private PaletteData paletteData;
+	private String colourScheme;
+	/**
+	 * Tells apart stored thumbnails of entries whose data is not read from their file
+	 */
+	private final long storeId = storeIds.incrementAndGet();
 	/**
 	 * palette service used to retrieved the colour scheme
 	 */
 	private IPaletteService pservice;
+	/**
+	 * true while an image handed to the UI thread is still wanted
+	 */
+	private volatile boolean imagePending = false;
+	/**
+	 * key of the thumbnail of the version of the file last loaded, null until loaded
+	 */
+	private volatile ThumbnailStore.Key thumbnailKey = null;
 
 	public SWTGridEntry(String filename) {
 		super(filename);
@@ -76,6 +87,7 @@ public class SWTGridEntry extends AbstractGridEntry {
 		this(filename,additional);
 		this.canvas = canvas;
 		this.colourMapChoice = colourMapChoice;
+		this.colourScheme = String.valueOf(colourMapChoice);
 		this.loThreshold = loThreshold;
 		this.hiThreshold = hiThreshold;
 	}
@@ -87,6 +99,7 @@ public class SWTGridEntry extends AbstractGridEntry {
 		if (pservice == null)
 			pservice = ServiceHolder.getPaletteService();
 		this.paletteData = pservice.getDirectPaletteData(colorScheme);
+		this.colourScheme = colorScheme;
 		this.loThreshold = loThreshold;
 		this.hiThreshold = hiThreshold;
 	}
@@ -95,15 +108,28 @@ public class SWTGridEntry extends AbstractGridEntry {
 	public void setNewfilename(String newFilename) {
 		this.filename = newFilename;
 		this.additionalInfo = null;
-		if (gridImage != null)
+		imagePending = false;
+		thumbnailKey = null;
+		if (gridImage != null) {
 			gridImage.dispose();
-		if (thumbnailFilename != null) {
-			java.io.File imageFile = new java.io.File(thumbnailFilename);
-			imageFile.delete();
-			thumbnailFilename = null;
+			gridImage = null;
 		}
 	}
 
+	/**
+	 * Reads the modification time and size of the file, so called in a loading thread
+	 * @return key of the thumbnail of the current version of the file
+	 */
+	private ThumbnailStore.Key readThumbnailKey() {
+		if (additionalInfo != null || filename == null) {
+			return new ThumbnailStore.Key(filename, colourScheme, loThreshold, hiThreshold,
+					additionalInfo == null ? 0 : storeId);
+		}
+		final File file = new File(filename);
+		return new ThumbnailStore.Key(filename, file.lastModified(), file.length(), colourScheme, loThreshold,
+				hiThreshold);
+	}
+
 	@Override
 	public void setStatus(int newStatus) {
 		status = newStatus;
@@ -112,44 +138,39 @@ public class SWTGridEntry extends AbstractGridEntry {
 
 	@Override
 	public void deActivate() {
+		imagePending = false;
 		if (gridImage != null) {
-			try {
-				if (thumbnailFilename == null) {
-					java.io.File  file = java.io.File.createTempFile("tmp_thumb", ".png");
-					file.deleteOnExit(); // We try to ensure that the thing does get removed.
-					
-					thumbnailFilename = file.getAbsolutePath();
-					ImageLoader loader = new ImageLoader();
-					loader.data = new ImageData[]{gridImage.getImageData()};
-					loader.save(thumbnailFilename, SWT.IMAGE_PNG);
-				}
-			} catch (IOException e) {
-				logger.error("Cannot cache thubnail in image explorer", e);
-			} 
-			
+			// the thumbnail was put in the store when it was created
 			gridImage.dispose();
 			gridImage = null;
 		}
 	}
 
-	public void loadThumbImage() {
+	/**
+	 * Takes the thumbnail from the store in the calling thread and hands it to the UI thread
+	 * @return false if the thumbnail is not in the store
+	 */
+	public boolean loadThumbImage() {
 		if (gridImage == null) {
 			
-			if (canvas.isDisposed() || isDisposed) return;
-			canvas.getDisplay().asyncExec(new Runnable() {
+			if (canvas.isDisposed() || isDisposed) return true;
+			thumbnailKey = readThumbnailKey();
+			final ImageData imgD = ThumbnailStore.getDefault().get(thumbnailKey);
+			if (imgD == null) return false;
+			imagePending = true;
+			CanvasUpdateBatcher.post(canvas, new Runnable() {
 				@Override
 				public void run() {
-					gridImage = new Image(canvas.getDisplay(),thumbnailFilename);
-					// make sure system doesn't get flooded with redraw requests
-					if (System.currentTimeMillis()-lastREDRAWinMillis > 20) {
-						canvas.redraw();
-						lastREDRAWinMillis = System.currentTimeMillis();
-					}
+					if (!imagePending || isDisposed) return;
+					imagePending = false;
+					imageDim = new Dimension(imgD.width, imgD.height);
+					setImage(new Image(canvas.getDisplay(), imgD));
 				}
 			});
 		} else {
 			logger.warn("Something is wrong");
 		}
+		return true;
 	}
 
 	@Override
@@ -157,148 +178,51 @@ public class SWTGridEntry extends AbstractGridEntry {
 		return gridImage == null;
 	}
 
+	/**
+	 * Maps the data to an image in the calling thread and hands the image to the UI thread
+	 */
 	@Override
 	public void createImage(final IDataset ids) {
 		
-		final Dataset ds = DatasetUtils.convertToDataset(ids);
-		
 		if (canvas.isDisposed() || isDisposed) return;
-		canvas.getDisplay().asyncExec(new Runnable() {
+		final Dataset ds = DatasetUtils.convertToDataset(ids);
+		final int[] shape = ds.getShape();
+		if (shape.length != 2) {
+			setStatus(INVALIDSTATUS);
+			return;
+		}
+		final ImageData imgD;
+		try {
+			double[] m = HistogramRange.getRange(ds, loThreshold, hiThreshold);
+			imgD = SWTImageUtils.createImageData(ds, m[0], m[1], paletteData);
+			ThumbnailStore.Key key = thumbnailKey;
+			if (key == null) {
+				key = thumbnailKey = readThumbnailKey();
+			}
+			ThumbnailStore.getDefault().put(key, imgD);
+		} catch (Exception e) {
+			setStatus(INVALIDSTATUS);
+			logger.debug(e.getMessage());
+			return;
+		}
+		imagePending = true;
+		CanvasUpdateBatcher.post(canvas, new Runnable() {
 			@Override
 			public void run() {
-				final int[] shape = ds.getShape();
-				try {
-					if (shape.length == 2) {
-						double[] m;
-						if (hiThreshold < 1) {
-							if (loThreshold > 0) {
-								if (ds instanceof RGBDataset) {
-									RGBDataset rgb = (RGBDataset) ds;
-									m = Stats.quantile(rgb.createRedDataset(Dataset.INT16), loThreshold, hiThreshold);
-									double[] t = Stats.quantile(rgb.createGreenDataset(Dataset.INT16), loThreshold, hiThreshold);
-									if (m[0] > t[0])
-										m[0] = t[0];
-									if (m[1] < t[1])
-										m[1] = t[1];
-									t = Stats.quantile(rgb.createBlueDataset(Dataset.INT16), loThreshold, hiThreshold);
-									if (m[0] > t[0])
-										m[0] = t[0];
-									if (m[1] < t[1])
-										m[1] = t[1];
-								} else {
-									m = Stats.quantile(ds, loThreshold, hiThreshold);
-								}
-							} else {
-								if (ds instanceof RGBDataset) {
-									RGBDataset rgb = (RGBDataset) ds;
-									Dataset c = rgb.createRedDataset(Dataset.INT16);
-									double min = c.min().doubleValue();
-									double max = Stats.quantile(c, hiThreshold);
-									double t;
-
-									c = rgb.createGreenDataset(Dataset.INT16);
-									t = c.min().doubleValue();
-									if (min > t)
-										min = t;
-									t = Stats.quantile(c, hiThreshold);
-									if (max < t)
-										max = t;
-
-									c = rgb.createBlueDataset(Dataset.INT16);
-									t = c.min().doubleValue();
-									if (min > t)
-										min = t;
-									t = Stats.quantile(c, hiThreshold);
-									if (max < t)
-										max = t;
-
-									m = new double[] {min, max};
-								} else {
-									m = new double[] {ds.min().doubleValue(), Stats.quantile(ds, hiThreshold)};
-								}
-							}
-						} else {
-							if (loThreshold > 0) {
-								if (ds instanceof RGBDataset) {
-									RGBDataset rgb = (RGBDataset) ds;
-									Dataset c = rgb.createRedDataset(Dataset.INT16);
-									double min = Stats.quantile(c, loThreshold);
-									double max = c.max().doubleValue();
-									double t;
-
-									c = rgb.createGreenDataset(Dataset.INT16);
-									t = Stats.quantile(c, loThreshold);
-									if (min > t)
-										min = t;
-									t = c.max().doubleValue();
-									if (max < t)
-										max = t;
-
-									c = rgb.createBlueDataset(Dataset.INT16);
-									t = Stats.quantile(c, loThreshold);
-									if (min > t)
-										min = t;
-									t = c.max().doubleValue();
-									if (max < t)
-										max = t;
-									m = new double[] {min, max};
-								} else {
-									m = new double[] {Stats.quantile(ds, loThreshold), ds.max().doubleValue()};
-								}
-							} else {
-								if (ds instanceof RGBDataset) {
-									RGBDataset rgb = (RGBDataset) ds;
-									Dataset c = rgb.createRedDataset(Dataset.INT16);
-									double min = c.min().doubleValue();
-									double max = c.max().doubleValue();
-									double t;
-
-									c = rgb.createGreenDataset(Dataset.INT16);
-									t = c.min().doubleValue();
-									if (min > t)
-										min = t;
-									t = c.max().doubleValue();
-									if (max < t)
-										max = t;
-
-									c = rgb.createBlueDataset(Dataset.INT16);
-									t = c.min().doubleValue();
-									if (min > t)
-										min = t;
-									t = c.max().doubleValue();
-									if (max < t)
-										max = t;
-									m = new double[] {min, max};
-									
-								} else {
-									m = new double[] {ds.min().doubleValue(), ds.max().doubleValue()};
-								}
-							}
-						}
-						// Old mapping not necessary anymore 
-//						int redSelect = GlobalColourMaps.colourSelectList.get(colourMapChoice * 4);
-//						int greenSelect = GlobalColourMaps.colourSelectList.get(colourMapChoice * 4 + 1);
-//						int blueSelect = GlobalColourMaps.colourSelectList.get(colourMapChoice * 4 + 2);
-//						AbstractMapFunction redFunc = GlobalColourMaps.mappingFunctions.get(Math.abs(redSelect));
-//						AbstractMapFunction greenFunc = GlobalColourMaps.mappingFunctions.get(Math.abs(greenSelect));
-//						AbstractMapFunction blueFunc = GlobalColourMaps.mappingFunctions.get(Math.abs(blueSelect));
-//						ImageData imgD = SWTImageUtils.createImageData(ds, m[0], m[1], redFunc, greenFunc, blueFunc,
-//								(redSelect < 0), (greenSelect < 0), (blueSelect < 0));
-						ImageData imgD = SWTImageUtils.createImageData(ds, m[0], m[1], paletteData);
-						gridImage = new Image(canvas.getDisplay(), imgD);
-						imageDim = new Dimension(shape[1], shape[0]);
-						canvas.redraw();
-					} else {
-						setStatus(INVALIDSTATUS);
-					}
-				} catch (Exception e) {
-					setStatus(INVALIDSTATUS);
-					logger.debug(e.getMessage());
-				}
+				if (!imagePending || isDisposed) return;
+				imagePending = false;
+				imageDim = new Dimension(shape[1], shape[0]);
+				setImage(new Image(canvas.getDisplay(), imgD));
 			}
 		});
 	}
 
+	private void setImage(Image image) {
+		if (gridImage != null && !gridImage.isDisposed())
+			gridImage.dispose();
+		gridImage = image;
+	}
+
 	public void paint(GC gc, int posX, int posY, int xSize, int ySize)
 	{
 		if (gridImage != null &&
@@ -362,14 +286,15 @@ public class SWTGridEntry extends AbstractGridEntry {
 	}
 
 	public boolean hasThumbnailImage() {
-		return thumbnailFilename != null;
+		final ThumbnailStore.Key key = thumbnailKey;
+		return key != null && ThumbnailStore.getDefault().contains(key);
 	}
 	
 	public boolean hasImage() {
 		return (gridImage != null && !gridImage.isDisposed());
 	}
 
-	private boolean isDisposed = false;
+	private volatile boolean isDisposed = false;
 	@Override
 	public void dispose() {
 		isDisposed = true;
@@ -377,11 +302,9 @@ public class SWTGridEntry extends AbstractGridEntry {
 			!gridImage.isDisposed())
 			gridImage.dispose();
 		
-        if (thumbnailFilename != null)	
-        {
-        	java.io.File imageFile = new java.io.File(thumbnailFilename);
-        	imageFile.delete();
-        }
+        final ThumbnailStore.Key key = thumbnailKey;
+        if (additionalInfo != null && key != null) // cannot be used by another entry
+        	ThumbnailStore.getDefault().remove(key);
 	}
 
 	@Override
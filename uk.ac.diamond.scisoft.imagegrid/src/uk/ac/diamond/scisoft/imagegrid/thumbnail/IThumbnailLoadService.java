@@ -20,14 +20,29 @@ import uk.ac.diamond.scisoft.imagegrid.gridentry.AbstractGridEntry;
 
 /**
  * Interface used to make GridEntryMonitor more flexible
+ *
+ * The service is run by {@link #getThreadCount()} threads at the same time,
+ * each taking the next job to load until the service is shut down.
  */
 public interface IThumbnailLoadService extends Runnable {
 
 	public void addLoadJob(AbstractGridEntry entry, boolean highPriority);
 
+	/**
+	 * Removes the job for this entry if it is waiting, and stops the thumbnail
+	 * being given to the entry if it is being loaded
+	 * @param entry
+	 */
+	public void cancelLoadJob(AbstractGridEntry entry);
+
 	public void clearLowPriorityQueue();
-	
+
 	public void clearHighPriorityQueue();
 
+	/**
+	 * @return number of threads which should run this service
+	 */
+	public int getThreadCount();
+
 	public void shutdown();
 }
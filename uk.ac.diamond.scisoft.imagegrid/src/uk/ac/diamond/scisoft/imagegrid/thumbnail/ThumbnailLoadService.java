@@ -9,123 +9,225 @@
 package uk.ac.diamond.scisoft.imagegrid.thumbnail;
 
 import java.util.ArrayDeque;
-import java.util.concurrent.Semaphore;
+import java.util.HashMap;
+import java.util.Map;
 
 import org.eclipse.january.dataset.IDataset;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import uk.ac.diamond.scisoft.analysis.utils.ImageThumbnailLoader;
 import uk.ac.diamond.scisoft.imagegrid.gridentry.AbstractGridEntry;
 import uk.ac.diamond.scisoft.imagegrid.gridentry.SWTGridEntry;
 
 /**
+ * Loads the thumbnails of grid entries on several threads.
  *
+ * Each thread takes the next job from the high priority queue, which holds
+ * the entries in view, and then from the low priority queue. Thumbnails are
+ * taken from the {@link ThumbnailStore} if they are there, otherwise the
+ * images are read and made into thumbnails in the loading threads. The
+ * entries hand them over to the UI thread in batches. An entry has at most
+ * one job at a time and a job which is cancelled while it is being loaded
+ * does not give its thumbnail to the entry.
  */
 public class ThumbnailLoadService implements IThumbnailLoadService {
 
-	protected boolean terminate = false;
-	protected ArrayDeque<AbstractGridEntry> highPriorityQueue;
-	protected ArrayDeque<AbstractGridEntry> lowPriorityQueue;
-	protected final Semaphore locker = new Semaphore(1);
+	private static final Logger logger = LoggerFactory.getLogger(ThumbnailLoadService.class);
+
+	/**
+	 * Loading is mostly reading files and every thread may hold a full image,
+	 * so there is little to gain from more threads than this.
+	 */
+	private static final int MAX_THREADS = 8;
+
+	private static final int QUEUED    = 0;
+	private static final int LOADING   = 1;
+	private static final int CANCELLED = 2;
+
+	protected volatile boolean terminate = false;
+	protected final ArrayDeque<LoadJob> highPriorityQueue;
+	protected final ArrayDeque<LoadJob> lowPriorityQueue;
+	private final Map<AbstractGridEntry, LoadJob> jobs;
+	private final int threadCount;
 
 	public ThumbnailLoadService() {
-		highPriorityQueue = new ArrayDeque<AbstractGridEntry>();
-		lowPriorityQueue = new ArrayDeque<AbstractGridEntry>();
+		this(Math.max(1, Math.min(MAX_THREADS, Runtime.getRuntime().availableProcessors())));
+	}
+
+	/**
+	 * @param threadCount number of threads to load with
+	 */
+	public ThumbnailLoadService(int threadCount) {
+		this.threadCount = Math.max(1, threadCount);
+		highPriorityQueue = new ArrayDeque<LoadJob>();
+		lowPriorityQueue = new ArrayDeque<LoadJob>();
+		jobs = new HashMap<AbstractGridEntry, LoadJob>();
 	}
 
 	@Override
-	public void run() {
-		while (!terminate) {
+	public int getThreadCount() {
+		return threadCount;
+	}
 
-			AbstractGridEntry entry = null;
-			synchronized (highPriorityQueue) {
-				if (highPriorityQueue.size() > 0)
-					entry = highPriorityQueue.pop();
-			}
-			if (entry != null)
-				processJob(entry);
-			else {
-				synchronized (lowPriorityQueue) {
-					if (lowPriorityQueue.size() > 0)
-						entry = lowPriorityQueue.pop();
-				}
-				if (entry != null)
-					processJob(entry);
-				else {
-					try {
-						synchronized (this) {
-							wait();
-						}
-					} catch (InterruptedException ex) {
-					}
-				}
+	@Override
+	public void run() {
+		LoadJob job;
+		while ((job = takeJob()) != null) {
+			try {
+				processJob(job);
+			} catch (Exception e) {
+				logger.error("Cannot load thumbnail of {}", job.entry.getFilename(), e);
+			} finally {
+				finishJob(job);
 			}
 		}
 	}
 
-	protected void loadAndCreateThumbnailImage(AbstractGridEntry entry) {
+	/**
+	 * Reads the image of an entry and makes it into a thumbnail, called in a loading thread
+	 * @param entry
+	 * @return thumbnail
+	 */
+	protected IDataset loadThumbnail(AbstractGridEntry entry) {
 //		IDataset ds = ImageThumbnailLoader.loadImage(entry.getFilename(), true, false);
-		IDataset ds = ImageThumbnailLoader.getThumbnail(entry.getFilename(), (IDataset) entry.getAdditionalInfo());
-		entry.createImage(ds);
-		locker.release();
+		return ImageThumbnailLoader.getThumbnail(entry.getFilename(), (IDataset) entry.getAdditionalInfo());
 	}
 
-	private void processJob(AbstractGridEntry entry) {
-		try {
-			locker.acquire();
-		} catch (InterruptedException e1) {
-			e1.printStackTrace();
+	private void processJob(LoadJob job) {
+		if (job.entry instanceof SWTGridEntry) {
+			SWTGridEntry entry = (SWTGridEntry) job.entry;
+			if (!entry.loadThumbImage()) {
+				IDataset ds = loadThumbnail(entry);
+				if (!job.isCancelled())
+					entry.createImage(ds);
+			}
 		}
-		if (entry instanceof SWTGridEntry) {
-			if (!((SWTGridEntry) entry).hasThumbnailImage()) {
-				loadAndCreateThumbnailImage(entry);
-			} else {
-				((SWTGridEntry) entry).loadThumbImage();
-				try {
-					Thread.sleep(30);
-				} catch (InterruptedException ex) {
-				}
-				locker.release();
+	}
+
+	private synchronized LoadJob takeJob() {
+		while (!terminate) {
+			LoadJob job = nextJob(highPriorityQueue);
+			if (job == null)
+				job = nextJob(lowPriorityQueue);
+			if (job != null) {
+				job.state = LOADING;
+				return job;
+			}
+			try {
+				wait();
+			} catch (InterruptedException ex) {
+				return null;
 			}
 		}
+		return null;
+	}
+
+	/**
+	 * Jobs which have been cancelled, or moved to the other queue, are left
+	 * in the queues and skipped here.
+	 */
+	private LoadJob nextJob(ArrayDeque<LoadJob> queue) {
+		LoadJob job;
+		while ((job = queue.poll()) != null) {
+			if (queue == highPriorityQueue)
+				job.inHighPriorityQueue = false;
+			else
+				job.inLowPriorityQueue = false;
+			if (job.state == QUEUED)
+				return job;
+		}
+		return null;
+	}
+
+	private synchronized void finishJob(LoadJob job) {
+		if (jobs.get(job.entry) == job)
+			jobs.remove(job.entry);
 	}
 
 	@Override
 	public synchronized void addLoadJob(AbstractGridEntry entry, boolean highPriority) {
-		notify();
+		if (terminate)
+			return;
+		LoadJob job = jobs.get(entry);
+		if (job == null) {
+			job = new LoadJob(entry);
+			jobs.put(entry, job);
+		} else if (job.state != QUEUED || !highPriority || job.inHighPriorityQueue) {
+			return; // already being loaded or queued
+		}
 		if (highPriority) {
-			synchronized (highPriorityQueue) {
-				highPriorityQueue.add(entry);
-			}
+			job.inHighPriorityQueue = true;
+			highPriorityQueue.add(job);
 		} else {
-			synchronized (lowPriorityQueue) {
-				lowPriorityQueue.add(entry);
-			}
+			job.inLowPriorityQueue = true;
+			lowPriorityQueue.add(job);
 		}
+		notify();
+	}
+
+	@Override
+	public synchronized void cancelLoadJob(AbstractGridEntry entry) {
+		LoadJob job = jobs.remove(entry);
+		if (job != null)
+			job.state = CANCELLED;
 	}
 
 	@Override
 	public synchronized void clearLowPriorityQueue() {
-		synchronized (lowPriorityQueue) {
-			lowPriorityQueue.clear();
+		for (LoadJob job : lowPriorityQueue) {
+			job.inLowPriorityQueue = false;
+			if (!job.inHighPriorityQueue)
+				cancelQueued(job);
 		}
+		lowPriorityQueue.clear();
 	}
 
 	@Override
 	public synchronized void clearHighPriorityQueue() {
-		synchronized (highPriorityQueue) {
-			highPriorityQueue.clear();
+		for (LoadJob job : highPriorityQueue) {
+			job.inHighPriorityQueue = false;
+			if (!job.inLowPriorityQueue)
+				cancelQueued(job);
+		}
+		highPriorityQueue.clear();
+	}
+
+	private void cancelQueued(LoadJob job) {
+		if (job.state == QUEUED) {
+			job.state = CANCELLED;
+			if (jobs.get(job.entry) == job)
+				jobs.remove(job.entry);
 		}
 	}
 
 	@Override
 	public synchronized void shutdown() {
-		notify();
-		synchronized (highPriorityQueue) {
-			highPriorityQueue.clear();
+		terminate = true;
+		for (LoadJob job : jobs.values())
+			job.state = CANCELLED;
+		jobs.clear();
+		highPriorityQueue.clear();
+		lowPriorityQueue.clear();
+		notifyAll();
+	}
+
+	protected static class LoadJob {
+		private final AbstractGridEntry entry;
+		private volatile int state = QUEUED;
+		private boolean inHighPriorityQueue;
+		private boolean inLowPriorityQueue;
+
+		private LoadJob(AbstractGridEntry entry) {
+			this.entry = entry;
 		}
-		synchronized (lowPriorityQueue) {
-			lowPriorityQueue.clear();
+
+		public AbstractGridEntry getEntry() {
+			return entry;
+		}
+
+		public boolean isCancelled() {
+			return state == CANCELLED;
 		}
-		terminate = true;
 	}
 }
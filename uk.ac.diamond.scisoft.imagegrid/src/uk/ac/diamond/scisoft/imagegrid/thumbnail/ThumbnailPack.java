@@ -0,0 +1,399 @@
+/*-
+ * Copyright (c) 2012-2016 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package uk.ac.diamond.scisoft.imagegrid.thumbnail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.swt.graphics.PaletteData;
+import org.eclipse.swt.graphics.RGB;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import uk.ac.diamond.scisoft.imagegrid.thumbnail.ThumbnailStore.Key;
+import uk.ac.diamond.scisoft.imagegrid.thumbnail.ThumbnailStore.Thumbnail;
+
+/**
+ * Keeps thumbnails between sessions in one file.
+ *
+ * Thumbnails are appended to the file as records holding their key, which
+ * includes the modification time and size of the image file, and then
+ * their pixels. The index of where each thumbnail is, is read from the
+ * keys when the pack is opened and kept in memory, so finding a thumbnail
+ * does not touch the pack and reading one is a single read of it.
+ * A record left half written is cut off when the pack is opened. When a
+ * file changes its new thumbnail is appended and the old one is dropped
+ * from the index; the pack is written again without the dropped records
+ * when they take more room than the rest, or when the pack is over its
+ * size, in which case the oldest thumbnails are left out too.
+ */
+public class ThumbnailPack {
+
+	private static final Logger logger = LoggerFactory.getLogger(ThumbnailPack.class);
+
+	private static final long MAGIC = 0x444c53544d42504bL;
+	private static final int VERSION = 1;
+	private static final int HEADER_SIZE = 12;
+	private static final int MAX_RECORD_SIZE = 16 * 1024 * 1024;
+
+	private final Path file;
+	private final long maxBytes;
+	private final Map<Key, Record> index;
+	/**
+	 * Latest key of each file and mapping
+	 */
+	private final Map<String, Key> latest;
+
+	private FileChannel channel;
+	private long end;
+	private long garbage;
+	private boolean full;
+
+	/**
+	 * Opens the pack, making it if it does not exist
+	 * @param file
+	 * @param maxBytes size the pack is kept to
+	 * @throws IOException
+	 */
+	public ThumbnailPack(File file, long maxBytes) throws IOException {
+		this.file = file.toPath();
+		this.maxBytes = maxBytes;
+		this.index = new HashMap<Key, Record>(1024);
+		this.latest = new HashMap<String, Key>(1024);
+		final File dir = file.getAbsoluteFile().getParentFile();
+		if (dir != null && !dir.exists())
+			dir.mkdirs();
+		open();
+		if (garbage > end - garbage || end > maxBytes)
+			compact();
+	}
+
+	public synchronized boolean contains(Key key) {
+		return index.containsKey(key);
+	}
+
+	/**
+	 * @return number of thumbnails in the pack
+	 */
+	public synchronized int getCount() {
+		return index.size();
+	}
+
+	/**
+	 * @return size of the pack file in bytes
+	 */
+	public synchronized long getSize() {
+		return end;
+	}
+
+	/**
+	 * @param key
+	 * @return thumbnail or null if it is not in the pack
+	 */
+	Thumbnail read(Key key) {
+		final Record record;
+		final FileChannel c;
+		synchronized (this) {
+			record = index.get(key);
+			c = channel;
+		}
+		if (record == null || c == null)
+			return null;
+		try {
+			final ByteBuffer buffer = ByteBuffer.allocate(record.length);
+			while (buffer.hasRemaining()) {
+				if (c.read(buffer, record.offset + buffer.position()) < 0)
+					throw new IOException("Thumbnail pack is shorter than its index");
+			}
+			final DataInputStream in = new DataInputStream(new ByteArrayInputStream(buffer.array()));
+			in.readInt();
+			in.readInt();
+			if (!key.equals(readKey(in)))
+				throw new IOException("Thumbnail pack does not match its index");
+			return readThumbnail(in);
+		} catch (IOException e) {
+			logger.error("Cannot read thumbnail of {} from {}", key.filename, file, e);
+			synchronized (this) {
+				index.remove(key);
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * Appends the thumbnail, unless the pack is full
+	 * @param key
+	 * @param thumbnail
+	 */
+	synchronized void write(Key key, Thumbnail thumbnail) {
+		if (channel == null || full || index.containsKey(key))
+			return;
+		try {
+			final byte[] record = toRecord(key, thumbnail);
+			if (end + record.length > maxBytes) {
+				logger.debug("Thumbnail pack {} is full until it is opened again", file);
+				full = true;
+				return;
+			}
+			final ByteBuffer buffer = ByteBuffer.wrap(record);
+			long position = end;
+			while (buffer.hasRemaining())
+				position += channel.write(buffer, position);
+			add(key, new Record(end, record.length));
+			end = position;
+		} catch (IOException e) {
+			logger.error("Cannot write thumbnail of {} to {}", key.filename, file, e);
+			full = true;
+		}
+	}
+
+	/**
+	 * Closes the file, the pack cannot be used afterwards
+	 */
+	public synchronized void close() {
+		if (channel == null)
+			return;
+		try {
+			channel.close();
+		} catch (IOException e) {
+			logger.error("Cannot close thumbnail pack {}", file, e);
+		}
+		channel = null;
+		index.clear();
+		latest.clear();
+	}
+
+	private void add(Key key, Record record) {
+		final Key old = latest.put(getMapping(key), key);
+		if (old != null) {
+			final Record r = index.remove(old);
+			if (r != null)
+				garbage += r.length;
+		}
+		index.put(key, record);
+	}
+
+	private void open() throws IOException {
+		channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		final long size = channel.size();
+		if (size < HEADER_SIZE || !hasHeader()) {
+			if (size > 0)
+				logger.warn("Thumbnail pack {} is not readable and will be written again", file);
+			channel.truncate(0);
+			writeHeader(channel);
+			end = HEADER_SIZE;
+			return;
+		}
+
+		long position = HEADER_SIZE;
+		final ByteBuffer lengths = ByteBuffer.allocate(8);
+		while (position < size) {
+			lengths.clear();
+			if (readFully(lengths, position) < 8)
+				break;
+			final int recordLength = lengths.getInt(0);
+			final int keyLength = lengths.getInt(4);
+			if (recordLength <= 8 || recordLength > MAX_RECORD_SIZE || position + recordLength > size
+					|| keyLength <= 0 || keyLength > recordLength - 8)
+				break;
+			final ByteBuffer keyBytes = ByteBuffer.allocate(keyLength);
+			if (readFully(keyBytes, position + 8) < keyLength)
+				break;
+			final Key key;
+			try {
+				key = readKey(new DataInputStream(new ByteArrayInputStream(keyBytes.array())));
+			} catch (IOException e) {
+				break;
+			}
+			add(key, new Record(position, recordLength));
+			position += recordLength;
+		}
+		if (position < size) {
+			logger.warn("Thumbnail pack {} has an unfinished thumbnail at its end, which is removed", file);
+			channel.truncate(position);
+		}
+		end = position;
+	}
+
+	private int readFully(ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, position + buffer.position()) < 0)
+				break;
+		}
+		return buffer.position();
+	}
+
+	private boolean hasHeader() throws IOException {
+		final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		return readFully(header, 0) == HEADER_SIZE && header.getLong(0) == MAGIC && header.getInt(8) == VERSION;
+	}
+
+	private static void writeHeader(FileChannel c) throws IOException {
+		final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		header.putLong(MAGIC).putInt(VERSION).flip();
+		long position = 0;
+		while (header.hasRemaining())
+			position += c.write(header, position);
+	}
+
+	/**
+	 * Writes the pack again with only the newest thumbnails which fit in half its size
+	 */
+	private void compact() throws IOException {
+		final List<Map.Entry<Key, Record>> records = new ArrayList<Map.Entry<Key, Record>>(index.entrySet());
+		Collections.sort(records, new Comparator<Map.Entry<Key, Record>>() {
+			@Override
+			public int compare(Map.Entry<Key, Record> a, Map.Entry<Key, Record> b) {
+				return Long.compare(b.getValue().offset, a.getValue().offset);
+			}
+		});
+		long kept = HEADER_SIZE;
+		int n = 0;
+		while (n < records.size() && kept + records.get(n).getValue().length <= maxBytes / 2) {
+			kept += records.get(n).getValue().length;
+			n++;
+		}
+		final List<Map.Entry<Key, Record>> keep = records.subList(0, n);
+		Collections.reverse(keep);
+
+		final Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+		try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			writeHeader(out);
+			out.position(HEADER_SIZE);
+			for (Map.Entry<Key, Record> e : keep) {
+				final Record r = e.getValue();
+				long done = 0;
+				while (done < r.length)
+					done += channel.transferTo(r.offset + done, r.length - done, out);
+			}
+		}
+		channel.close();
+		Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+
+		logger.debug("Thumbnail pack {} written again with {} of {} thumbnails", file, keep.size(), records.size());
+		index.clear();
+		latest.clear();
+		garbage = 0;
+		open();
+	}
+
+	private static byte[] toRecord(Key key, Thumbnail thumbnail) throws IOException {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream(thumbnail.pixels.length + 256);
+		final DataOutputStream out = new DataOutputStream(bytes);
+		out.writeInt(0); // length of record
+		out.writeInt(0); // length of key
+		out.writeUTF(key.filename);
+		out.writeLong(key.modified);
+		out.writeLong(key.length);
+		out.writeBoolean(key.colourScheme != null);
+		if (key.colourScheme != null)
+			out.writeUTF(key.colourScheme);
+		out.writeDouble(key.loThreshold);
+		out.writeDouble(key.hiThreshold);
+		final int keyLength = out.size() - 8;
+
+		out.writeInt(thumbnail.width);
+		out.writeInt(thumbnail.height);
+		out.writeInt(thumbnail.depth);
+		out.writeInt(thumbnail.scanlinePad);
+		writePalette(out, thumbnail.palette);
+		out.writeBoolean(thumbnail.compressed);
+		out.writeInt(thumbnail.length);
+		out.writeInt(thumbnail.pixels.length);
+		out.write(thumbnail.pixels);
+		out.close();
+
+		final byte[] record = bytes.toByteArray();
+		ByteBuffer.wrap(record).putInt(0, record.length).putInt(4, keyLength);
+		return record;
+	}
+
+	private static String getMapping(Key key) {
+		return key.filename + '\n' + key.colourScheme + '\n' + key.loThreshold + '\n' + key.hiThreshold;
+	}
+
+	private static Key readKey(DataInputStream in) throws IOException {
+		final String filename = in.readUTF();
+		final long modified = in.readLong();
+		final long length = in.readLong();
+		final String colourScheme = in.readBoolean() ? in.readUTF() : null;
+		final double lo = in.readDouble();
+		final double hi = in.readDouble();
+		return new Key(filename, modified, length, colourScheme, lo, hi);
+	}
+
+	private static Thumbnail readThumbnail(DataInputStream in) throws IOException {
+		final int width = in.readInt();
+		final int height = in.readInt();
+		final int depth = in.readInt();
+		final int scanlinePad = in.readInt();
+		final PaletteData palette = readPalette(in);
+		final boolean compressed = in.readBoolean();
+		final int length = in.readInt();
+		final byte[] pixels = new byte[in.readInt()];
+		in.readFully(pixels);
+		return new Thumbnail(width, height, depth, scanlinePad, palette, length, pixels, compressed);
+	}
+
+	private static void writePalette(DataOutputStream out, PaletteData palette) throws IOException {
+		out.writeBoolean(palette != null);
+		if (palette == null)
+			return;
+		out.writeBoolean(palette.isDirect);
+		if (palette.isDirect) {
+			out.writeInt(palette.redMask);
+			out.writeInt(palette.greenMask);
+			out.writeInt(palette.blueMask);
+		} else {
+			out.writeInt(palette.colors.length);
+			for (RGB rgb : palette.colors) {
+				out.writeByte(rgb.red);
+				out.writeByte(rgb.green);
+				out.writeByte(rgb.blue);
+			}
+		}
+	}
+
+	private static PaletteData readPalette(DataInputStream in) throws IOException {
+		if (!in.readBoolean())
+			return null;
+		if (in.readBoolean())
+			return new PaletteData(in.readInt(), in.readInt(), in.readInt());
+		final RGB[] colors = new RGB[in.readInt()];
+		for (int i = 0; i < colors.length; i++)
+			colors[i] = new RGB(in.readUnsignedByte(), in.readUnsignedByte(), in.readUnsignedByte());
+		return new PaletteData(colors);
+	}
+
+	private static class Record {
+		private final long offset;
+		private final int length;
+
+		Record(long offset, int length) {
+			this.offset = offset;
+			this.length = length;
+		}
+	}
+}
@@ -0,0 +1,357 @@
+/*-
+ * Copyright (c) 2012-2016 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package uk.ac.diamond.scisoft.imagegrid.thumbnail;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.eclipse.swt.graphics.ImageData;
+import org.eclipse.swt.graphics.PaletteData;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps the pixels of thumbnails in memory so that entries scrolled out of
+ * view, or shown again in another grid, do not have to be read and mapped
+ * again.
+ *
+ * Thumbnails are kept by file, modification time and size of the file,
+ * colour scheme and thresholds, so a thumbnail is only reused for the same
+ * version of a file mapped in the same way. The pixels may be deflated,
+ * which for colour mapped detector images saves most of the memory for
+ * little time. The least recently used thumbnails are removed when the
+ * total size goes over the budget. The default store is shared by all
+ * image grids and may be used from any thread.
+ *
+ * If the store has a {@link ThumbnailPack} thumbnails of files are also
+ * written to it, and thumbnails which are not in memory are looked for
+ * in it.
+ */
+public class ThumbnailStore {
+
+	private static final Logger logger = LoggerFactory.getLogger(ThumbnailStore.class);
+
+	private static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+
+	/**
+	 * Rough size of a stored thumbnail other than its pixels
+	 */
+	private static final int ENTRY_OVERHEAD = 128;
+
+	private static ThumbnailStore defaultStore;
+
+	/**
+	 * @return store shared by all image grids
+	 */
+	public static synchronized ThumbnailStore getDefault() {
+		if (defaultStore == null)
+			defaultStore = new ThumbnailStore(DEFAULT_MAX_BYTES, true);
+		return defaultStore;
+	}
+
+	private final long maxBytes;
+	private final boolean compress;
+	private final LinkedHashMap<Key, Thumbnail> thumbnails;
+	private long size;
+	private volatile ThumbnailPack pack;
+
+	/**
+	 * @param maxBytes memory to keep thumbnails in
+	 * @param compress true to deflate the pixels
+	 */
+	public ThumbnailStore(long maxBytes, boolean compress) {
+		this.maxBytes = maxBytes;
+		this.compress = compress;
+		this.thumbnails = new LinkedHashMap<Key, Thumbnail>(256, 0.75f, true);
+	}
+
+	/**
+	 * Keeps thumbnails in a pack file as well, so they can be used in later sessions
+	 * @param pack may be null to stop, the old pack is closed
+	 */
+	public void setPack(ThumbnailPack pack) {
+		final ThumbnailPack old = this.pack;
+		this.pack = pack;
+		if (old != null && old != pack)
+			old.close();
+	}
+
+	public ThumbnailPack getPack() {
+		return pack;
+	}
+
+	/**
+	 * @param key
+	 * @return image data of thumbnail or null if it is not stored
+	 */
+	public ImageData get(Key key) {
+		Thumbnail thumbnail;
+		synchronized (thumbnails) {
+			thumbnail = thumbnails.get(key);
+		}
+		if (thumbnail == null) {
+			final ThumbnailPack p = pack;
+			if (p != null && key.isPersistent())
+				thumbnail = p.read(key);
+			if (thumbnail == null)
+				return null;
+			keep(key, thumbnail);
+		}
+		try {
+			return thumbnail.toImageData();
+		} catch (DataFormatException e) {
+			logger.error("Cannot expand stored thumbnail of {}", key.filename, e);
+			remove(key);
+			return null;
+		}
+	}
+
+	public boolean contains(Key key) {
+		synchronized (thumbnails) {
+			if (thumbnails.containsKey(key))
+				return true;
+		}
+		final ThumbnailPack p = pack;
+		return p != null && key.isPersistent() && p.contains(key);
+	}
+
+	/**
+	 * Stores the thumbnail, the image data is not kept so may be changed afterwards
+	 * @param key
+	 * @param data
+	 */
+	public void put(Key key, ImageData data) {
+		final Thumbnail thumbnail = new Thumbnail(data, compress);
+		keep(key, thumbnail);
+		final ThumbnailPack p = pack;
+		if (p != null && key.isPersistent())
+			p.write(key, thumbnail);
+	}
+
+	private void keep(Key key, Thumbnail thumbnail) {
+		if (thumbnail.getSize() > maxBytes)
+			return;
+		synchronized (thumbnails) {
+			final Thumbnail old = thumbnails.put(key, thumbnail);
+			if (old != null)
+				size -= old.getSize();
+			size += thumbnail.getSize();
+			final Iterator<Thumbnail> it = thumbnails.values().iterator();
+			while (size > maxBytes && it.hasNext()) {
+				size -= it.next().getSize();
+				it.remove();
+			}
+		}
+	}
+
+	public void remove(Key key) {
+		synchronized (thumbnails) {
+			final Thumbnail old = thumbnails.remove(key);
+			if (old != null)
+				size -= old.getSize();
+		}
+	}
+
+	public void clear() {
+		synchronized (thumbnails) {
+			thumbnails.clear();
+			size = 0;
+		}
+	}
+
+	/**
+	 * @return bytes used by the thumbnails
+	 */
+	public long getSize() {
+		synchronized (thumbnails) {
+			return size;
+		}
+	}
+
+	public int getCount() {
+		synchronized (thumbnails) {
+			return thumbnails.size();
+		}
+	}
+
+	/**
+	 * Identifies a thumbnail of a version of a file mapped in one way
+	 */
+	public static final class Key {
+		final String filename;
+		final long modified;
+		final long length;
+		final String colourScheme;
+		final double loThreshold;
+		final double hiThreshold;
+		final long id;
+
+		/**
+		 * Key for a thumbnail which does not come from reading a version of the file
+		 * @param filename
+		 * @param colourScheme
+		 * @param loThreshold
+		 * @param hiThreshold
+		 * @param id to tell apart thumbnails which do not come from reading the file
+		 */
+		public Key(String filename, String colourScheme, double loThreshold, double hiThreshold, long id) {
+			this.filename = filename;
+			this.modified = 0;
+			this.length = 0;
+			this.colourScheme = colourScheme;
+			this.loThreshold = loThreshold;
+			this.hiThreshold = hiThreshold;
+			this.id = id;
+		}
+
+		/**
+		 * Key for a version of a file. The file is not looked at, so the caller reads its
+		 * modification time and size once, off the UI thread
+		 * @param filename
+		 * @param modified time of the file
+		 * @param length of the file
+		 * @param colourScheme
+		 * @param loThreshold
+		 * @param hiThreshold
+		 */
+		public Key(String filename, long modified, long length, String colourScheme, double loThreshold, double hiThreshold) {
+			this.filename = filename;
+			this.modified = modified;
+			this.length = length;
+			this.colourScheme = colourScheme;
+			this.loThreshold = loThreshold;
+			this.hiThreshold = hiThreshold;
+			this.id = 0;
+		}
+
+		/**
+		 * @return true if the thumbnail comes from reading the file, so may be kept between sessions
+		 */
+		boolean isPersistent() {
+			return id == 0 && filename != null;
+		}
+
+		private boolean isSameMapping(Key other) {
+			return id == other.id
+					&& Double.doubleToLongBits(loThreshold) == Double.doubleToLongBits(other.loThreshold)
+					&& Double.doubleToLongBits(hiThreshold) == Double.doubleToLongBits(other.hiThreshold)
+					&& (filename == null ? other.filename == null : filename.equals(other.filename))
+					&& (colourScheme == null ? other.colourScheme == null : colourScheme.equals(other.colourScheme));
+		}
+
+		@Override
+		public int hashCode() {
+			final int prime = 31;
+			int result = 1;
+			result = prime * result + ((filename == null) ? 0 : filename.hashCode());
+			result = prime * result + (int) (modified ^ (modified >>> 32));
+			result = prime * result + (int) (length ^ (length >>> 32));
+			result = prime * result + ((colourScheme == null) ? 0 : colourScheme.hashCode());
+			long temp = Double.doubleToLongBits(loThreshold);
+			result = prime * result + (int) (temp ^ (temp >>> 32));
+			temp = Double.doubleToLongBits(hiThreshold);
+			result = prime * result + (int) (temp ^ (temp >>> 32));
+			result = prime * result + (int) (id ^ (id >>> 32));
+			return result;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (!(obj instanceof Key))
+				return false;
+			Key other = (Key) obj;
+			return modified == other.modified && length == other.length && isSameMapping(other);
+		}
+	}
+
+	static class Thumbnail {
+		final int width;
+		final int height;
+		final int depth;
+		final int scanlinePad;
+		final PaletteData palette;
+		final int length;
+		final byte[] pixels;
+		final boolean compressed;
+
+		Thumbnail(int width, int height, int depth, int scanlinePad, PaletteData palette, int length, byte[] pixels, boolean compressed) {
+			this.width = width;
+			this.height = height;
+			this.depth = depth;
+			this.scanlinePad = scanlinePad;
+			this.palette = palette;
+			this.length = length;
+			this.pixels = pixels;
+			this.compressed = compressed;
+		}
+
+		Thumbnail(ImageData data, boolean compress) {
+			width = data.width;
+			height = data.height;
+			depth = data.depth;
+			scanlinePad = data.scanlinePad;
+			palette = data.palette;
+			length = data.data.length;
+			if (compress) {
+				final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+				try {
+					deflater.setInput(data.data);
+					deflater.finish();
+					byte[] buffer = new byte[Math.max(64, length / 2)];
+					int used = 0;
+					while (!deflater.finished()) {
+						if (used == buffer.length)
+							buffer = Arrays.copyOf(buffer, buffer.length * 2);
+						used += deflater.deflate(buffer, used, buffer.length - used);
+					}
+					compressed = used < length;
+					pixels = compressed ? Arrays.copyOf(buffer, used) : data.data.clone();
+				} finally {
+					deflater.end();
+				}
+			} else {
+				compressed = false;
+				pixels = data.data.clone();
+			}
+		}
+
+		long getSize() {
+			return pixels.length + ENTRY_OVERHEAD;
+		}
+
+		ImageData toImageData() throws DataFormatException {
+			byte[] data;
+			if (compressed) {
+				data = new byte[length];
+				final Inflater inflater = new Inflater();
+				try {
+					inflater.setInput(pixels);
+					int used = 0;
+					while (used < length && !inflater.finished()) {
+						final int n = inflater.inflate(data, used, length - used);
+						if (n == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+							throw new DataFormatException("Stored thumbnail is too short");
+						used += n;
+					}
+				} finally {
+					inflater.end();
+				}
+			} else {
+				data = pixels.clone();
+			}
+			return new ImageData(width, height, depth, palette, scanlinePad, data);
+		}
+	}
+}
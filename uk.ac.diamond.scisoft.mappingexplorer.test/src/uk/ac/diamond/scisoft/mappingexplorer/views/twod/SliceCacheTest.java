@@ -0,0 +1,157 @@
+/*-
+ * Copyright © 2011 Diamond Light Source Ltd.
+ *
+ * This file is part of GDA.
+ *
+ * GDA is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License version 3 as published by the Free
+ * Software Foundation.
+ *
+ * GDA is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with GDA. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.ac.diamond.scisoft.mappingexplorer.views.twod;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.january.IMonitor;
+import org.eclipse.january.dataset.Dataset;
+import org.eclipse.january.dataset.DatasetFactory;
+import org.eclipse.january.dataset.IDataset;
+import org.eclipse.january.dataset.LazyDataset;
+import org.eclipse.january.dataset.SliceND;
+import org.eclipse.january.io.ILazyLoader;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test the slices kept and read ahead by the 2D page
+ */
+public class SliceCacheTest {
+
+	private static final int[] SHAPE = { 10, 8, 6 };
+	private static final long SLICE_BYTES = 8 * 6 * 8; // of a slice along the first dimension
+
+	/**
+	 * Loader of a range which is slow to read and counts the reads made in the test thread
+	 */
+	private static class CountingLoader implements ILazyLoader {
+		private final Dataset data = DatasetFactory.createRange(SHAPE[0] * SHAPE[1] * SHAPE[2], Dataset.FLOAT64)
+				.reshape(SHAPE);
+		private final Thread thread = Thread.currentThread();
+		private final AtomicInteger reads = new AtomicInteger();
+
+		@Override
+		public boolean isFileReadable() {
+			return true;
+		}
+
+		@Override
+		public IDataset getDataset(IMonitor mon, SliceND slice) throws IOException {
+			if (Thread.currentThread() == thread) {
+				reads.incrementAndGet();
+			}
+			try {
+				Thread.sleep(10);
+			} catch (InterruptedException e) {
+				throw new IOException(e);
+			}
+			return data.getSlice(slice);
+		}
+	}
+
+	private CountingLoader loader;
+	private LazyDataset dataset;
+
+	/**
+	 */
+	@Before
+	public void setUp() {
+		loader = new CountingLoader();
+		dataset = new LazyDataset("data", Dataset.FLOAT64, SHAPE, loader);
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	@Test
+	public void testSteppingForwardsReadsAhead() throws Exception {
+		SliceCache cache = new SliceCache();
+		cache.setDataset(dataset);
+		for (int i = 0; i < SHAPE[0]; i++) {
+			Dataset slice = cache.getSlice(0, i);
+			Assert.assertArrayEquals(new int[] { SHAPE[1], SHAPE[2] }, slice.getShape());
+			Assert.assertEquals(i * SHAPE[1] * SHAPE[2], slice.getDouble(0, 0), 0);
+			cache.prefetch(0, i, 1);
+		}
+		Assert.assertEquals("Only the first slice should be read when shown", 1, loader.reads.get());
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	@Test
+	public void testSteppingBackwardsReadsAhead() throws Exception {
+		SliceCache cache = new SliceCache();
+		cache.setDataset(dataset);
+		for (int i = SHAPE[2] - 1; i >= 0; i--) {
+			Dataset slice = cache.getSlice(2, i);
+			Assert.assertArrayEquals(new int[] { SHAPE[0], SHAPE[1] }, slice.getShape());
+			Assert.assertEquals(i, slice.getDouble(0, 0), 0);
+			cache.prefetch(2, i, -1);
+		}
+		Assert.assertEquals("Only the first slice should be read when shown", 1, loader.reads.get());
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	@Test
+	public void testLeastRecentlyUsedEvicted() throws Exception {
+		SliceCache cache = new SliceCache(2 * SLICE_BYTES);
+		cache.setDataset(dataset);
+		cache.getSlice(0, 0);
+		cache.getSlice(0, 1);
+		cache.getSlice(0, 0);
+		cache.getSlice(0, 2); // evicts 1
+		Assert.assertEquals(3, loader.reads.get());
+		cache.getSlice(0, 0);
+		cache.getSlice(0, 2);
+		Assert.assertEquals(3, loader.reads.get());
+		cache.getSlice(0, 1);
+		Assert.assertEquals(4, loader.reads.get());
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	@Test
+	public void testSliceOverBudgetNotKept() throws Exception {
+		SliceCache cache = new SliceCache(SLICE_BYTES - 1);
+		cache.setDataset(dataset);
+		cache.getSlice(0, 0);
+		cache.getSlice(0, 0);
+		Assert.assertEquals(2, loader.reads.get());
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	@Test
+	public void testChangingDatasetClears() throws Exception {
+		SliceCache cache = new SliceCache();
+		cache.setDataset(dataset);
+		cache.getSlice(0, 0);
+		cache.setDataset(new LazyDataset("other", Dataset.FLOAT64, SHAPE, loader));
+		cache.getSlice(0, 0);
+		Assert.assertEquals(2, loader.reads.get());
+	}
+}
@@ -0,0 +1,279 @@
+/*-
+ * Copyright © 2011 Diamond Light Source Ltd.
+ *
+ * This file is part of GDA.
+ *
+ * GDA is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License version 3 as published by the Free
+ * Software Foundation.
+ *
+ * GDA is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with GDA. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.ac.diamond.scisoft.mappingexplorer.views.twod;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+
+import org.eclipse.january.DatasetException;
+import org.eclipse.january.dataset.Dataset;
+import org.eclipse.january.dataset.DatasetUtils;
+import org.eclipse.january.dataset.ILazyDataset;
+import org.eclipse.january.dataset.Slice;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Cache of the 2D slices of a lazy dataset shown by the 2D page.
+ * <p>
+ * A slice of 3D data is the plane at one index of one dimension. Slices are kept, least recently used first out,
+ * while they fit in the byte budget, {@link #BUDGET} unless given. A slice bigger than the whole budget is never
+ * kept, so is read again each time it is shown. When the stepper moves, the next few slices in the direction it
+ * moved are read in the background so stepping on through the data does not wait for the file.
+ */
+class SliceCache {
+	private static final Logger logger = LoggerFactory.getLogger(SliceCache.class);
+
+	static final long BUDGET = 64L << 20; // default bytes of slices kept
+	private static final int PREFETCH = 2; // slices read ahead of the stepper
+
+	private static final ExecutorService prefetcher = Executors.newSingleThreadExecutor(new ThreadFactory() {
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, "Mapping slice prefetcher");
+			t.setDaemon(true);
+			return t;
+		}
+	});
+
+	private final long budget;
+
+	// guarded by this
+	private ILazyDataset dataset;
+	private final LinkedHashMap<Long, Dataset> slices = new LinkedHashMap<Long, Dataset>(16, 0.75f, true);
+	private final Map<Long, Prefetch> pending = new HashMap<Long, Prefetch>();
+	private long bytes;
+	private int generation; // changed when cleared
+
+	SliceCache() {
+		this(BUDGET);
+	}
+
+	/**
+	 * @param budget bytes of slices kept
+	 */
+	SliceCache(long budget) {
+		this.budget = budget;
+	}
+
+	/**
+	 * Clears the cache if the dataset is not the one cached
+	 * @param dataset
+	 */
+	synchronized void setDataset(ILazyDataset dataset) {
+		if (this.dataset != dataset) {
+			clear();
+			this.dataset = dataset;
+		}
+	}
+
+	synchronized void clear() {
+		final List<Prefetch> tasks = new ArrayList<Prefetch>(pending.values());
+		pending.clear();
+		for (Prefetch p : tasks) {
+			p.cancel(false);
+		}
+		slices.clear();
+		bytes = 0;
+		dataset = null;
+		generation++;
+	}
+
+	/**
+	 * @param dim dimension of 3D data to slice, ignored for 2D data
+	 * @param index along dimension
+	 * @return 2D slice, which is a view of the cached slice so its shape can be changed
+	 * @throws DatasetException
+	 */
+	Dataset getSlice(int dim, int index) throws DatasetException {
+		final Long key = getKey(dim, index);
+		final ILazyDataset d;
+		final int gen;
+		final Future<Dataset> f;
+		synchronized (this) {
+			final Dataset s = slices.get(key);
+			if (s != null) {
+				return s.getSliceView();
+			}
+			d = dataset;
+			gen = generation;
+			f = pending.get(key);
+		}
+		if (d == null) {
+			return null;
+		}
+
+		if (f != null) {
+			try {
+				final Dataset s = f.get();
+				if (s != null) {
+					return s.getSliceView();
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} catch (ExecutionException e) {
+				logger.debug("Prefetch of slice failed so reading it again", e.getCause());
+			} catch (Exception e) {
+				// cancelled so read it here
+			}
+		}
+
+		final Dataset s = read(d, dim, index);
+		put(gen, key, s);
+		return s.getSliceView();
+	}
+
+	/**
+	 * Reads slices after the given one in the direction the stepper moved. Reads still waiting for slices which are
+	 * not wanted now are dropped; those for slices which are still wanted are left to run.
+	 * @param dim dimension of 3D data
+	 * @param index along dimension
+	 * @param direction +1 or -1
+	 */
+	synchronized void prefetch(int dim, int index, int direction) {
+		final ILazyDataset d = dataset;
+		if (d == null || d.getRank() != 3) {
+			return;
+		}
+		final int length = d.getShape()[dim];
+		final Set<Long> wanted = new HashSet<Long>();
+		for (int i = 1; i <= PREFETCH; i++) {
+			final int next = index + i * direction;
+			if (next >= 0 && next < length) {
+				wanted.add(getKey(dim, next));
+			}
+		}
+
+		final Iterator<Map.Entry<Long, Prefetch>> it = pending.entrySet().iterator();
+		while (it.hasNext()) {
+			final Map.Entry<Long, Prefetch> e = it.next();
+			if (!wanted.contains(e.getKey())) {
+				it.remove();
+				e.getValue().cancel(false);
+			}
+		}
+
+		for (int i = 1; i <= PREFETCH; i++) {
+			final int next = index + i * direction;
+			final Long key = getKey(dim, next);
+			if (!wanted.contains(key) || slices.containsKey(key) || pending.containsKey(key)) {
+				continue;
+			}
+			final Prefetch p = new Prefetch(key, reader(d, dim, next, key));
+			pending.put(key, p);
+			prefetcher.execute(p);
+		}
+	}
+
+	/**
+	 * Read of a slice in the background, which takes itself out of the pending reads when done or cancelled
+	 */
+	private class Prefetch extends FutureTask<Dataset> {
+		private final Long key;
+
+		Prefetch(Long key, Callable<Dataset> reader) {
+			super(reader);
+			this.key = key;
+		}
+
+		@Override
+		protected void done() {
+			synchronized (SliceCache.this) {
+				if (pending.get(key) == this) {
+					pending.remove(key);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return reader of a slice which puts it in the cache unless cleared since
+	 */
+	private Callable<Dataset> reader(final ILazyDataset d, final int dim, final int index, final Long key) {
+		final int gen = generation;
+		return new Callable<Dataset>() {
+			@Override
+			public Dataset call() throws Exception {
+				final Dataset s = read(d, dim, index);
+				put(gen, key, s);
+				return s;
+			}
+		};
+	}
+
+	private synchronized void put(int gen, Long key, Dataset slice) {
+		if (gen != generation) {
+			return;
+		}
+		final long n = slice.getNbytes();
+		if (n > budget) {
+			return;
+		}
+		final Dataset old = slices.remove(key);
+		if (old != null) {
+			bytes -= old.getNbytes();
+		}
+		final Iterator<Dataset> it = slices.values().iterator();
+		while (bytes + n > budget && it.hasNext()) {
+			bytes -= it.next().getNbytes();
+			it.remove();
+		}
+		slices.put(key, slice);
+		bytes += n;
+	}
+
+	private static Long getKey(int dim, int index) {
+		return ((long) dim << 32) | (index & 0xffffffffL);
+	}
+
+	private static Dataset read(ILazyDataset dataset, int dim, int index) throws DatasetException {
+		final int[] shape = dataset.getShape();
+		if (shape.length != 3) {
+			return DatasetUtils.convertToDataset(dataset.getSlice(new Slice(null), new Slice(null)));
+		}
+
+		final Slice[] s = new Slice[] { new Slice(null), new Slice(null), new Slice(null) };
+		s[dim] = new Slice(index, index + 1);
+		final Dataset slice = DatasetUtils.convertToDataset(dataset.getSlice(s));
+		switch (dim) {
+		case 0:
+			slice.setShape(shape[1], shape[2]);
+			break;
+		case 1:
+			slice.setShape(shape[0], shape[2]);
+			break;
+		default:
+			slice.setShape(shape[0], shape[1]);
+		}
+		return slice;
+	}
+}
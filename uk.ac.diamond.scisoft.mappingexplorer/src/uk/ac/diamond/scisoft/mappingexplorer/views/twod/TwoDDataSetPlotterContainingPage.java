@@ -51,7 +51,6 @@ import org.eclipse.draw2d.IFigure;
 import org.eclipse.january.DatasetException;
 import org.eclipse.january.dataset.DatasetUtils;
 import org.eclipse.january.dataset.IDataset;
-import org.eclipse.january.dataset.ILazyDataset;
 import org.eclipse.january.dataset.Slice;
 import org.eclipse.jface.viewers.ISelection;
 import org.eclipse.jface.viewers.StructuredSelection;
@@ -647,12 +646,14 @@ public class TwoDDataSetPlotterContainingPage extends BaseViewPageComposite {
 		}
 	};
 	private IDataset currentSlice;
+	private final SliceCache sliceCache = new SliceCache();
 
 	@Override
 	public void dispose() {
 		if (!thirdDimensionScaler.isDisposed()) {
 			thirdDimensionScaler.removeStepperSelectionListener(stepperSelectionListener);
 		}
+		sliceCache.clear();
 		super.dispose();
 	}
 
@@ -688,6 +689,7 @@ public class TwoDDataSetPlotterContainingPage extends BaseViewPageComposite {
 
 		private final Display jobDisplay;
 		private int scalerValue;
+		private int direction = 1; // in which stepper last moved
 		private boolean radio1;
 		private boolean radio2;
 		private boolean radio3;
@@ -699,6 +701,9 @@ public class TwoDDataSetPlotterContainingPage extends BaseViewPageComposite {
 		}
 
 		public void setDimensionScaler(int scalerValue) {
+			if (scalerValue != this.scalerValue) {
+				direction = scalerValue < this.scalerValue ? -1 : 1;
+			}
 			this.scalerValue = scalerValue;
 		}
 
@@ -727,13 +732,11 @@ public class TwoDDataSetPlotterContainingPage extends BaseViewPageComposite {
 
 			try {
 				if (mapping3DData != null) {
-					ILazyDataset dataset = mapping3DData.getDataSet();
-					int[] shape = dataset.getShape();
+					sliceCache.setDataset(mapping3DData.getDataSet());
+					int dim = -1;
 	
 					if (radio1) {
-						currentSlice = dataset.getSlice(new Slice(scalerValue, scalerValue + 1),
-								new Slice(null), new Slice(null));
-						currentSlice.setShape(shape[1], shape[2]);
+						dim = 0;
 	
 						xAxisLabel = mapping3DData.getDimension3Label();
 						yAxisLabel = mapping3DData.getDimension2Label();
@@ -746,9 +749,7 @@ public class TwoDDataSetPlotterContainingPage extends BaseViewPageComposite {
 						}
 					}
 					if (radio2) {
-						currentSlice = dataset.getSlice(new Slice(null), new Slice(scalerValue,
-								scalerValue + 1), new Slice(null));
-						currentSlice.setShape(shape[0], shape[2]);
+						dim = 1;
 	
 						xAxisLabel = mapping3DData.getDimension3Label();
 						yAxisLabel = mapping3DData.getDimension1Label();
@@ -761,9 +762,7 @@ public class TwoDDataSetPlotterContainingPage extends BaseViewPageComposite {
 						}
 					}
 					if (radio3) {
-						currentSlice = dataset.getSlice(new Slice(null), new Slice(null), new Slice(
-								scalerValue, scalerValue + 1));
-						currentSlice.setShape(shape[0], shape[1]);
+						dim = 2;
 	
 						xAxisLabel = mapping3DData.getDimension2Label();
 						yAxisLabel = mapping3DData.getDimension1Label();
@@ -775,6 +774,10 @@ public class TwoDDataSetPlotterContainingPage extends BaseViewPageComposite {
 							yAxisValues = new AxisValues(mapping3DData.getDimension1Values());
 						}
 					}
+					if (dim >= 0) {
+						currentSlice = sliceCache.getSlice(dim, scalerValue);
+						sliceCache.prefetch(dim, scalerValue, direction);
+					}
 					if (isFlip) {
 						String tmp = yAxisLabel;
 						yAxisLabel = xAxisLabel;
@@ -789,7 +792,7 @@ public class TwoDDataSetPlotterContainingPage extends BaseViewPageComposite {
 						}
 					}
 				} else if (mapping2DData != null) {
-					ILazyDataset dataset = mapping2DData.getDataSet();
+					sliceCache.setDataset(mapping2DData.getDataSet());
 	
 					xAxisLabel = mapping2DData.getDimension2Label();
 					yAxisLabel = mapping2DData.getDimension1Label();
@@ -802,7 +805,7 @@ public class TwoDDataSetPlotterContainingPage extends BaseViewPageComposite {
 						yAxisValues = new AxisValues(mapping2DData.getDimension1Values());
 					}
 	
-					currentSlice = dataset.getSlice(new Slice(null), new Slice(null));
+					currentSlice = sliceCache.getSlice(-1, 0);
 				}
 	
 				final String xLabel = xAxisLabel;
@@ -1034,31 +1037,16 @@ public class TwoDDataSetPlotterContainingPage extends BaseViewPageComposite {
 	protected IDataset getEntireDataSlice() throws DatasetException {
 		IDataset slice = null;
 		if (mapping3DData != null) {
-			int[] shape = mapping3DData.getDataSet().getShape();
-			int thirdDim = thirdDimensionScaler.getSelection();
-			switch (getSelectedRdBtnVal()) {
-			case 1:
-				slice = mapping3DData.getDataSet().getSlice(new Slice(thirdDim, thirdDim + 1), new Slice(null),
-						new Slice(null));
-				slice.setShape(shape[1], shape[2]);
-				break;
-			case 2:
-				slice = mapping3DData.getDataSet().getSlice(new Slice(null), new Slice(thirdDim, thirdDim + 1),
-						new Slice(null));
-				slice.setShape(shape[0], shape[2]);
-				break;
-			case 3:
-				slice = mapping3DData.getDataSet().getSlice(new Slice(null), new Slice(null),
-						new Slice(thirdDim, thirdDim + 1));
-				slice.setShape(shape[0], shape[1]);
-			}
+			sliceCache.setDataset(mapping3DData.getDataSet());
+			slice = sliceCache.getSlice(getSelectedRdBtnVal() - 1, thirdDimensionScaler.getSelection());
 			if (slice != null) {
 				if (btnFlipAxis.getSelection()) {
 					slice = DatasetUtils.convertToDataset(slice).transpose();
 				}
 			}
 		} else if (mapping2DData != null) {
-			slice = mapping2DData.getDataSet().getSlice(new Slice(null), new Slice(null));
+			sliceCache.setDataset(mapping2DData.getDataSet());
+			slice = sliceCache.getSlice(-1, 0);
 		}
 		return slice;
 	}
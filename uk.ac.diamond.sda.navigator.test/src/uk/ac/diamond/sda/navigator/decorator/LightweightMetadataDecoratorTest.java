@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package uk.ac.diamond.sda.navigator.decorator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+
+import org.junit.Test;
+
+import uk.ac.diamond.sda.navigator.decorator.LightweightMetadataDecorator.FileMetadata;
+
+public class LightweightMetadataDecoratorTest {
+
+	@Test
+	public void testReadMetadata() throws Exception {
+		final Path file = Files.createTempFile("LightweightMetadataDecoratorTest", ".dat");
+		try {
+			Files.write(file, new byte[2048]);
+			final FileMetadata metadata = LightweightMetadataDecorator.readMetadata(file);
+			assertTrue(metadata.suffix, metadata.suffix.startsWith("  2 KB  "));
+			assertEquals(LightweightMetadataDecorator.getFilePermission(file.toFile()), metadata.permission);
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	@Test
+	public void testPermissionOfCurrentUser() throws Exception {
+		final Path file = Files.createTempFile("LightweightMetadataDecoratorTest", ".dat");
+		try {
+			if (!file.getFileSystem().supportedFileAttributeViews().contains("posix")) return;
+
+			// Whatever the bits, root or group membership may change what the user can do
+			for (String perms : new String[] { "rw-r-----", "r--r--r--", "---rw----", "---------", "rwxrwxrwx" }) {
+				Files.setPosixFilePermissions(file, PosixFilePermissions.fromString(perms));
+				assertEquals(perms, LightweightMetadataDecorator.getFilePermission(file.toFile()),
+						     LightweightMetadataDecorator.readMetadata(file).permission);
+			}
+		} finally {
+			Files.delete(file);
+		}
+	}
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package uk.ac.diamond.sda.navigator.views;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.Test;
+
+/**
+ * Tests the classes which keep the cached listings of ThreadingFileContentProvider
+ * up to date without listing directories again.
+ */
+public class DirectoryCacheTest {
+
+	@Test
+	public void testRemoveTree() {
+
+		final PathCache<String> cache = new PathCache<String>();
+		for (String path : new String[]{"/dls/i03", "/dls/i03/data", "/dls/i03/data/2016", "/dls/i03-1", "/dls/i03.x", "/dls/i04", "/dls"}) {
+			cache.put(Paths.get(path), path);
+		}
+
+		final List<String> removed = new ArrayList<String>();
+		assertEquals("/dls/i03", cache.removeTree(Paths.get("/dls/i03"), removed));
+		assertEquals(Arrays.asList("/dls/i03", "/dls/i03/data", "/dls/i03/data/2016"), removed);
+
+		assertEquals("/dls/i03-1", cache.get(Paths.get("/dls/i03-1")));
+		assertEquals("/dls/i03.x", cache.get(Paths.get("/dls/i03.x")));
+		assertEquals("/dls/i04",   cache.get(Paths.get("/dls/i04")));
+		assertEquals(4, cache.size());
+
+		assertNull(cache.removeTree(Paths.get("/dls/i05")));
+		assertEquals(4, cache.size());
+	}
+
+	@Test
+	public void testListingAddRemove() {
+
+		final Path dir = Paths.get("/dls/i03/data");
+		DirectoryListing listing = new DirectoryListing(paths(dir, "scan1", "scan10"),
+				                                        paths(dir, "ipp_2.cbf", "ipp_10.cbf"), true);
+
+		int index = listing.search(dir.resolve("scan2"), true);
+		assertEquals(-2, index);
+		listing = listing.add(-index-1, dir.resolve("scan2"), true);
+
+		index = listing.search(dir.resolve("ipp_9.cbf"), false);
+		assertEquals(-5, index);
+		listing = listing.add(-index-1, dir.resolve("ipp_9.cbf"), false);
+
+		assertEquals(paths(dir, "scan1", "scan2", "scan10", "ipp_2.cbf", "ipp_9.cbf", "ipp_10.cbf"), listing.getPaths());
+		assertEquals(1, listing.search(dir.resolve("scan2"), true));
+
+		index = listing.indexOf(dir.resolve("scan1"));
+		assertEquals(0, index);
+		listing = listing.remove(index);
+		assertEquals(paths(dir, "scan2", "scan10", "ipp_2.cbf", "ipp_9.cbf", "ipp_10.cbf"), listing.getPaths());
+
+		// Directories are still kept before files
+		index = listing.search(dir.resolve("scan3"), true);
+		assertEquals(-2, index);
+		assertEquals(-1, listing.indexOf(dir.resolve("scan3")));
+	}
+
+	@Test
+	public void testListingNamesNaturallyEqual() {
+
+		// natural order alone finds these the same, as it only counts the zeros of the last number
+		final Path dir = Paths.get("/dls/i03/data");
+		DirectoryListing listing = new DirectoryListing(Collections.<Path>emptyList(), paths(dir, "a012", "b"), true);
+
+		int index = listing.search(dir.resolve("a0012"), false);
+		assertTrue("a0012 is not listed yet", index<0);
+		listing = listing.add(-index-1, dir.resolve("a0012"), false);
+		assertEquals(paths(dir, "a0012", "a012", "b"), listing.getPaths());
+
+		assertEquals(0, listing.indexOf(dir.resolve("a0012")));
+		assertEquals(1, listing.indexOf(dir.resolve("a012")));
+		listing = listing.remove(listing.indexOf(dir.resolve("a012")));
+		assertEquals(paths(dir, "a0012", "b"), listing.getPaths());
+		assertEquals(-1, listing.indexOf(dir.resolve("a012")));
+	}
+
+	@Test
+	public void testWatcher() throws Exception {
+
+		final Path dir = Files.createTempDirectory("DirectoryCacheTest");
+		final List<Path> created = new CopyOnWriteArrayList<Path>();
+		final List<Path> deleted = new CopyOnWriteArrayList<Path>();
+		final DirectoryWatcher watcher = new DirectoryWatcher(10, new DirectoryWatcher.Listener() {
+			@Override
+			public void created(Path d, List<Path> children) {
+				created.addAll(children);
+			}
+			@Override
+			public void deleted(Path d, List<Path> children) {
+				deleted.addAll(children);
+			}
+			@Override
+			public void overflow(Path d) {
+			}
+		});
+		try {
+			assertTrue(watcher.watch(dir));
+			final Path frame = Files.createFile(dir.resolve("ipp_1.cbf"));
+			for (int i = 0; i < 200 && created.isEmpty(); i++) Thread.sleep(50); // Polling on some platforms
+			assertEquals(Collections.singletonList(frame), created);
+
+			Files.delete(frame);
+			for (int i = 0; i < 200 && deleted.isEmpty(); i++) Thread.sleep(50);
+			assertEquals(Collections.singletonList(frame), deleted);
+		} finally {
+			watcher.dispose();
+			Files.deleteIfExists(dir.resolve("ipp_1.cbf"));
+			Files.delete(dir);
+		}
+	}
+
+	private static List<Path> paths(Path dir, String... names) {
+		final List<Path> ret = new ArrayList<Path>(names.length);
+		for (String name : names) ret.add(dir.resolve(name));
+		return ret;
+	}
+}
@@ -0,0 +1,202 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package uk.ac.diamond.sda.navigator.views;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/**
+ * Tests that HDF5AttributeCache reads files in the background, reads them
+ * again when they change and keeps what it read between sessions, however
+ * long the title and scan command are.
+ *
+ * The file is not really read, the test cache gives its name and the
+ * number of times it has been read as the title and scan command.
+ */
+public class HDF5AttributeCacheTest {
+
+	@Test
+	public void testReadInBackground() throws Exception {
+
+		final Path dir = Files.createTempDirectory("HDF5AttributeCacheTest");
+		final Path nxs = Files.write(dir.resolve("i03-12345.nxs"), new byte[]{1, 2, 3});
+		final Path cbf = Files.write(dir.resolve("ipp_1.cbf"), new byte[]{1, 2, 3});
+		final List<Path>  read  = new CopyOnWriteArrayList<Path>();
+		final TestCache   cache = new TestCache(10, null, read);
+		try {
+			assertNull(cache.getAttributes(cbf));
+			assertNull(cache.getAttributes(nxs));
+			waitFor(read, 1);
+			assertArrayEquals(new String[]{"i03-12345.nxs", "1"}, cache.getAttributes(nxs));
+			assertEquals(1, cache.getReadCount());
+
+			// Written again
+			Files.write(nxs, new byte[]{1, 2, 3, 4});
+			assertNull(cache.getAttributes(nxs));
+			waitFor(read, 2);
+			assertArrayEquals(new String[]{"i03-12345.nxs", "2"}, cache.getAttributes(nxs));
+
+			Files.setLastModifiedTime(nxs, FileTime.fromMillis(Files.getLastModifiedTime(nxs).toMillis()-10000));
+			assertNull(cache.getAttributes(nxs));
+			waitFor(read, 3);
+			assertArrayEquals(new String[]{"i03-12345.nxs", "3"}, cache.getAttributes(nxs));
+		} finally {
+			cache.dispose();
+			Files.delete(nxs);
+			Files.delete(cbf);
+			Files.delete(dir);
+		}
+	}
+
+	@Test
+	public void testLeastRecentlyUsedAreRemoved() throws Exception {
+
+		final Path dir = Files.createTempDirectory("HDF5AttributeCacheTest");
+		final List<Path> read  = new CopyOnWriteArrayList<Path>();
+		final TestCache  cache = new TestCache(4, null, read);
+		try {
+			for (int i = 0; i < 10; i++) {
+				final Path file = Files.write(dir.resolve("scan_"+i+".h5"), new byte[]{1});
+				cache.getAttributes(file);
+				waitFor(read, i+1);
+			}
+			assertEquals(4, cache.size());
+			assertArrayEquals(new String[]{"scan_9.h5", "10"}, cache.getAttributes(dir.resolve("scan_9.h5")));
+			assertNull(cache.getAttributes(dir.resolve("scan_0.h5")));
+			waitFor(read, 11);
+		} finally {
+			cache.dispose();
+			for (int i = 0; i < 10; i++) Files.deleteIfExists(dir.resolve("scan_"+i+".h5"));
+			Files.delete(dir);
+		}
+	}
+
+	@Test
+	public void testSavedBetweenSessions() throws Exception {
+
+		final Path dir   = Files.createTempDirectory("HDF5AttributeCacheTest");
+		final Path store = dir.resolve("hdf5_attributes.cache");
+		final Path nxs   = Files.write(dir.resolve("i03-12345.nxs"), new byte[]{1, 2, 3});
+		final Path h5    = Files.write(dir.resolve("i03-12346.h5"), new byte[]{1, 2, 3});
+		try {
+			final List<Path> read  = new CopyOnWriteArrayList<Path>();
+			TestCache        cache = new TestCache(10, store, read);
+			cache.getAttributes(nxs);
+			waitFor(read, 1);
+			cache.getAttributes(h5);
+			waitFor(read, 2);
+			cache.dispose();
+
+			read.clear();
+			cache = new TestCache(10, store, read);
+			assertEquals(2, cache.size());
+			assertArrayEquals(new String[]{"i03-12345.nxs", "1"}, cache.getAttributes(nxs));
+			assertArrayEquals(new String[]{"i03-12346.h5",  "2"}, cache.getAttributes(h5));
+			cache.dispose();
+			assertEquals(0, cache.getReadCount());
+
+			// Changed while the view was closed
+			Files.write(h5, new byte[]{1, 2, 3, 4});
+			cache = new TestCache(10, store, read);
+			assertArrayEquals(new String[]{"i03-12345.nxs", "1"}, cache.getAttributes(nxs));
+			assertNull(cache.getAttributes(h5));
+			waitFor(read, 1);
+			assertArrayEquals(new String[]{"i03-12346.h5",  "1"}, cache.getAttributes(h5));
+			cache.dispose();
+
+		} finally {
+			Files.deleteIfExists(store);
+			Files.delete(nxs);
+			Files.delete(h5);
+			Files.delete(dir);
+		}
+	}
+
+	@Test
+	public void testLongAttributesSaved() throws Exception {
+
+		final Path dir   = Files.createTempDirectory("HDF5AttributeCacheTest");
+		final Path store = dir.resolve("hdf5_attributes.cache");
+		final Path nxs   = Files.write(dir.resolve("i03-12345.nxs"), new byte[]{1, 2, 3});
+		final StringBuilder buf = new StringBuilder();
+		for (int i = 0; i < 30000; i++) buf.append("\u00e5\u00c5"); // Two bytes each in UTF-8
+		final String title = buf.toString();
+		try {
+			final List<Path> read  = new CopyOnWriteArrayList<Path>();
+			TestCache        cache = new TestCache(10, store, read);
+			cache.title = title;
+			cache.getAttributes(nxs);
+			waitFor(read, 1);
+			cache.dispose();
+
+			cache = new TestCache(10, store, read);
+			assertArrayEquals(new String[]{title, "1"}, cache.getAttributes(nxs));
+			cache.dispose();
+			assertEquals(0, cache.getReadCount());
+		} finally {
+			Files.deleteIfExists(store);
+			Files.delete(nxs);
+			Files.delete(dir);
+		}
+	}
+
+	@Test
+	public void testExtensionInAnyCase() {
+		assertTrue(HDF5AttributeCache.isCandidate(Paths.get("i03-12345.NXS")));
+		assertTrue(HDF5AttributeCache.isCandidate(Paths.get("scan.Hdf5")));
+		assertTrue(HDF5AttributeCache.isCandidate(Paths.get("scan.H5")));
+		assertTrue(HDF5AttributeCache.isCandidate(Paths.get("scan.hdf")));
+		assertFalse(HDF5AttributeCache.isCandidate(Paths.get("ipp_1.cbf")));
+		assertFalse(HDF5AttributeCache.isCandidate(Paths.get("nxs")));
+	}
+
+	private static void waitFor(List<Path> read, int count) throws InterruptedException {
+		for (int i = 0; i < 200 && read.size() < count; i++) Thread.sleep(10);
+		assertEquals(count, read.size());
+	}
+
+	private static class TestCache extends HDF5AttributeCache {
+
+		private final AtomicInteger readCount = new AtomicInteger();
+		private volatile String title; // name of file if null
+
+		TestCache(int maxSize, Path store, final List<Path> read) {
+			super(maxSize, store, new Listener() {
+				@Override
+				public void attributesRead(Path file) {
+					read.add(file);
+				}
+			});
+		}
+
+		@Override
+		String[] read(String path) throws Exception {
+			final String name = path.substring(path.lastIndexOf(java.io.File.separatorChar)+1);
+			return new String[]{title!=null ? title : name, String.valueOf(readCount.incrementAndGet())};
+		}
+
+		int getReadCount() {
+			return readCount.get();
+		}
+	}
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package uk.ac.diamond.sda.navigator.views;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the time SortNatural and NaturalSortKey take to sort realistic
+ * detector file names. Not part of the unit tests, run it as a Java application.
+ *
+ * Sorts 1k to 100k names, give the argument large to add 1M which takes a
+ * long time with SortNatural.
+ */
+public class NaturalSortKeyBenchmark {
+
+	public static void main(String[] args) {
+
+		final List<Integer> sizes = new ArrayList<Integer>(Arrays.asList(1000, 10000, 100000));
+		if (args.length>0 && "large".equals(args[0])) sizes.add(1000000);
+
+		for (int size : sizes) {
+			final List<String> names = NaturalSortKeyTest.createNames(size, new Random(size));
+
+			// Warm up and check both give the same order
+			final List<String> bySortNatural = NaturalSortKeyTest.sortNatural(names);
+			final List<String> byKey         = NaturalSortKeyTest.sortByKey(names);
+			if (!bySortNatural.equals(byKey)) System.out.println("Sorted "+size+" names in a different order");
+
+			long start = System.nanoTime();
+			NaturalSortKeyTest.sortNatural(names);
+			final long natural = System.nanoTime()-start;
+
+			start = System.nanoTime();
+			NaturalSortKeyTest.sortByKey(names);
+			final long key = System.nanoTime()-start;
+
+			System.out.println("Sorted "+size+" names in "+TimeUnit.NANOSECONDS.toMillis(natural)+"ms with SortNatural, "
+			                   +TimeUnit.NANOSECONDS.toMillis(key)+"ms with NaturalSortKey");
+		}
+	}
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package uk.ac.diamond.sda.navigator.views;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks that NaturalSortKey sorts names in the same order as SortNatural.
+ * NaturalSortKeyBenchmark compares the time each takes.
+ */
+public class NaturalSortKeyTest {
+
+	@Test
+	public void testSameOrderAsSortNatural() {
+
+		final SortNatural<String> natural = new SortNatural<String>(false);
+		final List<String> names = Arrays.asList("ipp_12345_00001.cbf", "ipp_12345_00010.cbf", "ipp_12345_0002.cbf", "IPP_12345_00001.cbf",
+				                                 "scan", "scan1", "scan01", "scan001", "scan10", "scan9.nxs", "Scan9.nxs", "scan9a",
+				                                 "a0b", "a1", "a0", "a00", "x_0.cbf", "x_1.cbf", "x_0a", "x_1a", "i03-12345.nxs",
+				                                 "i03-12345-1.nxs", "12.3", "12.03", "1.5e3", "", "b", "B", "b_", "b.", "100", "99");
+		for (String a : names) {
+			for (String b : names) {
+				assertSameOrder(natural, a, b);
+			}
+		}
+
+		final List<String> random = createNames(2000, new Random(42));
+		for (int i = 1; i < random.size(); i++) {
+			final String a = random.get(i-1);
+			final String b = random.get(i);
+			assertSameOrder(natural, a, b);
+		}
+	}
+
+	@Test
+	public void testOnlySameNameEqual() {
+		final NaturalSortKey a = new NaturalSortKey("a012");
+		final NaturalSortKey b = new NaturalSortKey("a0012");
+		assertEquals(-1, Integer.signum(b.compareTo(a)));
+		assertEquals(1,  Integer.signum(a.compareTo(b)));
+		assertEquals(0,  a.compareTo(new NaturalSortKey("a012")));
+	}
+
+	/**
+	 * Names which SortNatural finds equal are in String order
+	 */
+	private static void assertSameOrder(SortNatural<String> natural, String a, String b) {
+		final int expected = natural.compare(a, b)!=0 ? natural.compare(a, b) : a.compareTo(b);
+		assertEquals(a+" compared to "+b, Integer.signum(expected),
+				     Integer.signum(new NaturalSortKey(a).compareTo(new NaturalSortKey(b))));
+	}
+
+	@Test
+	public void testBuilderMergesPages() {
+
+		final Path dir = Paths.get("/dls/i03/data");
+		final List<String> names = createNames(5000, new Random(7));
+		final DirectoryListingBuilder builder = new DirectoryListingBuilder(false);
+		for (int i = 0; i < names.size(); i++) {
+			builder.add(dir.resolve(names.get(i)), names.get(i), false);
+			if (i%1000==0) builder.build();
+		}
+		final List<Path> listed = builder.build().getPaths();
+
+		final List<String> sorted = new ArrayList<String>(names);
+		Collections.sort(sorted, new SortNatural<String>(false));
+		assertEquals(sorted.size(), listed.size());
+		for (int i = 0; i < sorted.size(); i++) {
+			assertEquals(sorted.get(i), listed.get(i).getFileName().toString());
+		}
+	}
+
+	@Test
+	public void testSortOrder() {
+
+		final List<String> names = Arrays.asList("scan10", "Scan2", "scan1", "ipp_12345_00010.cbf", "scan01", "ipp_12345_2.cbf",
+				                                 "scan", "ipp_12345_00001.cbf", "a0012", "a012", "scan2");
+		assertEquals(Arrays.asList("a0012", "a012", "ipp_12345_00001.cbf", "ipp_12345_2.cbf", "ipp_12345_00010.cbf",
+				                   "scan", "scan01", "scan1", "Scan2", "scan2", "scan10"), sortByKey(names));
+	}
+
+	static List<String> sortNatural(List<String> names) {
+		final List<String> copy = new ArrayList<String>(names);
+		Collections.sort(copy, new SortNatural<String>(false));
+		return copy;
+	}
+
+	static List<String> sortByKey(List<String> names) {
+		final List<NaturalSortKey> keys = new ArrayList<NaturalSortKey>(names.size());
+		for (String name : names) keys.add(new NaturalSortKey(name));
+		Collections.sort(keys);
+		final List<String> ret = new ArrayList<String>(names.size());
+		for (NaturalSortKey key : keys) ret.add(key.getName());
+		return ret;
+	}
+
+	/**
+	 * Names like those written by detectors and GDA, in directory order rather than sorted.
+	 */
+	static List<String> createNames(int size, Random random) {
+		final String[] prefixes   = {"ipp_", "pilatus_", "Merlin", "i03-", "scan_", "snapshot"};
+		final String[] extensions = {".cbf", ".tif", ".nxs", ".dat", ".h5", ""};
+		final List<String> names = new ArrayList<String>(size);
+		for (int i = 0; names.size() < size; i++) {
+			final String prefix = prefixes[random.nextInt(prefixes.length)];
+			final String ext    = extensions[random.nextInt(extensions.length)];
+			final int    scan   = 10000+random.nextInt(90000);
+			switch (random.nextInt(3)) {
+			case 0:
+				names.add(prefix+scan+"_"+String.format("%05d", i%100000)+ext);
+				break;
+			case 1:
+				names.add(prefix+scan+"_"+i+ext);
+				break;
+			default:
+				names.add(prefix+scan+ext);
+			}
+		}
+		return names;
+	}
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package uk.ac.diamond.sda.navigator.views;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares listing a synthetic 100k file tree with one thread and no
+ * coalescing, which is what ThreadingFileContentProvider used to do, against
+ * UpdateScheduler. Not part of the unit tests, run it as a Java application.
+ *
+ * Each directory is asked for once per row, as the tree does when scrolling,
+ * and each request lists the directory if it is not cached.
+ */
+public class UpdateSchedulerBenchmark {
+
+	private static final int DIRS         = 100;
+	private static final int FILES        = 1000;
+	private static final int ROWS_PER_DIR = 50;
+
+	public static void main(String[] args) throws Exception {
+
+		final Path root = Files.createTempDirectory("UpdateSchedulerBenchmark");
+		try {
+			final List<Path> dirs = createTree(root);
+
+			// One thread, every request queued and processed
+			Map<Path, Integer> cache = new ConcurrentHashMap<Path, Integer>();
+			long start = System.nanoTime();
+			int requests = 0;
+			for (int row = 0; row < ROWS_PER_DIR; row++) {
+				for (Path dir : dirs) {
+					new ListingRequest(dir, cache).list();
+					requests++;
+				}
+			}
+			final long single = System.nanoTime()-start;
+			check(cache);
+
+			// Scheduler with several threads
+			cache = new ConcurrentHashMap<Path, Integer>();
+			final UpdateScheduler scheduler = new UpdateScheduler("Benchmark", 4, Thread.NORM_PRIORITY, 1024);
+			try {
+				start = System.nanoTime();
+				for (int row = 0; row < ROWS_PER_DIR; row++) {
+					for (Path dir : dirs) {
+						scheduler.offer(new ListingRequest(dir, cache));
+					}
+				}
+				while (!scheduler.isIdle()) Thread.sleep(1);
+				final long pooled = System.nanoTime()-start;
+				check(cache);
+
+				System.out.println("Listed "+DIRS*FILES+" files from "+requests+" requests in "+TimeUnit.NANOSECONDS.toMillis(single)+"ms with one thread");
+				System.out.println("Listed "+DIRS*FILES+" files from "+scheduler.getReceivedCount()+" requests in "+TimeUnit.NANOSECONDS.toMillis(pooled)+"ms with scheduler, "
+				                   +scheduler.getCoalescedCount()+" coalesced, "+scheduler.getDroppedCount()+" dropped");
+			} finally {
+				scheduler.shutdown();
+			}
+		} finally {
+			deleteTree(root);
+		}
+	}
+
+	private static List<Path> createTree(Path root) throws IOException {
+		final List<Path> dirs = new ArrayList<Path>(DIRS);
+		for (int i = 0; i < DIRS; i++) {
+			final Path dir = Files.createDirectory(root.resolve("scan_"+i));
+			for (int j = 0; j < FILES; j++) {
+				Files.createFile(dir.resolve("ipp_"+i+"_"+String.format("%05d", j)+".cbf"));
+			}
+			dirs.add(dir);
+		}
+		return dirs;
+	}
+
+	private static void deleteTree(Path root) throws IOException {
+		Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+				Files.delete(file);
+				return FileVisitResult.CONTINUE;
+			}
+			@Override
+			public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+				Files.delete(dir);
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+
+	private static void check(Map<Path, Integer> cache) {
+		int count = 0;
+		for (Integer size : cache.values()) count+=size;
+		if (count!=DIRS*FILES) System.out.println("Listed "+count+" files rather than "+DIRS*FILES);
+	}
+
+	private static class ListingRequest implements UpdateScheduler.Request {
+		private final Path dir;
+		private final Map<Path, Integer> cache;
+		ListingRequest(Path dir, Map<Path, Integer> cache) {
+			this.dir   = dir;
+			this.cache = cache;
+		}
+		@Override
+		public Object getKey() {
+			return dir;
+		}
+		@Override
+		public boolean process() throws Exception {
+			list();
+			return true;
+		}
+		int list() throws IOException {
+			final Integer cached = cache.get(dir);
+			if (cached!=null) return cached;
+			int count = 0;
+			try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir)) {
+				for (Path p : ds) {
+					if (Files.isDirectory(p)) continue;
+					count++;
+				}
+			}
+			cache.put(dir, count);
+			return count;
+		}
+		@Override
+		public void dropped() {
+		}
+	}
+}
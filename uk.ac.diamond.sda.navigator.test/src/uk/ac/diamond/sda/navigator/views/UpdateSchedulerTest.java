@@ -0,0 +1,213 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package uk.ac.diamond.sda.navigator.views;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/**
+ * Checks the ordering, coalescing and dropping of UpdateScheduler.
+ * UpdateSchedulerBenchmark compares it with listing on one thread.
+ */
+public class UpdateSchedulerTest {
+
+	@Test
+	public void testCoalesce() throws Exception {
+
+		final UpdateScheduler scheduler = new UpdateScheduler("Test", 1, Thread.NORM_PRIORITY, 100);
+		final CountDownLatch  block     = new CountDownLatch(1);
+		final AtomicInteger   processed = new AtomicInteger();
+		try {
+			final BlockingRequest blocking = new BlockingRequest("block", block);
+			scheduler.offer(blocking); // Holds the only worker
+			blocking.started.await();
+
+			for (int i = 0; i < 10; i++) scheduler.offer(new CountingRequest("same", processed));
+			assertEquals(9, scheduler.getCoalescedCount());
+
+			block.countDown();
+			waitForIdle(scheduler);
+			assertEquals(1, processed.get());
+		} finally {
+			scheduler.shutdown();
+		}
+	}
+
+	@Test
+	public void testDropOldest() throws Exception {
+
+		final UpdateScheduler scheduler = new UpdateScheduler("Test", 1, Thread.NORM_PRIORITY, 10);
+		final CountDownLatch  block     = new CountDownLatch(1);
+		final AtomicInteger   processed = new AtomicInteger();
+		final AtomicInteger   dropped   = new AtomicInteger();
+		try {
+			final BlockingRequest blocking = new BlockingRequest("block", block);
+			scheduler.offer(blocking);
+			blocking.started.await();
+
+			final List<CountingRequest> reqs = new ArrayList<CountingRequest>();
+			for (int i = 0; i < 25; i++) {
+				final CountingRequest req = new CountingRequest(i, processed, dropped);
+				reqs.add(req);
+				scheduler.offer(req);
+			}
+			assertEquals(15, scheduler.getDroppedCount());
+			assertEquals(15, dropped.get());
+			for (int i = 0; i < 15; i++) assertTrue(reqs.get(i).wasDropped);
+
+			block.countDown();
+			waitForIdle(scheduler);
+			assertEquals(10, processed.get());
+		} finally {
+			scheduler.shutdown();
+		}
+	}
+
+	@Test
+	public void testReofferDoesNotGrowQueue() throws Exception {
+
+		final UpdateScheduler scheduler = new UpdateScheduler("Test", 1, Thread.NORM_PRIORITY, 100);
+		final CountDownLatch  block     = new CountDownLatch(1);
+		final AtomicInteger   processed = new AtomicInteger();
+		try {
+			final BlockingRequest blocking = new BlockingRequest("block", block);
+			scheduler.offer(blocking);
+			blocking.started.await();
+
+			for (int i = 0; i < 1000; i++) {
+				scheduler.offer(new CountingRequest("same", processed));
+				scheduler.offer(new CountingRequest("other", processed));
+			}
+			assertEquals(2, scheduler.size());
+			assertEquals(1998, scheduler.getCoalescedCount());
+			assertEquals(0, scheduler.getDroppedCount());
+
+			block.countDown();
+			waitForIdle(scheduler);
+			assertEquals(2, processed.get());
+			assertEquals(0, scheduler.size());
+		} finally {
+			scheduler.shutdown();
+		}
+	}
+
+	@Test
+	public void testNewestFirst() throws Exception {
+
+		final UpdateScheduler scheduler = new UpdateScheduler("Test", 1, Thread.NORM_PRIORITY, 100);
+		final CountDownLatch  block     = new CountDownLatch(1);
+		final List<Object>    order     = Collections.synchronizedList(new ArrayList<Object>());
+		try {
+			final BlockingRequest blocking = new BlockingRequest("block", block);
+			scheduler.offer(blocking);
+			blocking.started.await();
+
+			scheduler.offer(new OrderRequest("a", order));
+			scheduler.offer(new OrderRequest("b", order));
+			scheduler.offer(new OrderRequest("c", order));
+			scheduler.offer(new OrderRequest("a", order)); // Moves a to the front
+
+			block.countDown();
+			waitForIdle(scheduler);
+			assertEquals(3, order.size());
+			assertEquals("a", order.get(0));
+			assertEquals("c", order.get(1));
+			assertEquals("b", order.get(2));
+		} finally {
+			scheduler.shutdown();
+		}
+	}
+
+	private static void waitForIdle(UpdateScheduler scheduler) throws InterruptedException {
+		for (int i = 0; i < 6000 && !scheduler.isIdle(); i++) Thread.sleep(10);
+		assertTrue("Scheduler did not finish", scheduler.isIdle());
+	}
+
+	private static class BlockingRequest implements UpdateScheduler.Request {
+		private final Object key;
+		private final CountDownLatch latch;
+		private final CountDownLatch started = new CountDownLatch(1);
+		BlockingRequest(Object key, CountDownLatch latch) {
+			this.key   = key;
+			this.latch = latch;
+		}
+		@Override
+		public Object getKey() {
+			return key;
+		}
+		@Override
+		public boolean process() throws Exception {
+			started.countDown();
+			latch.await();
+			return true;
+		}
+		@Override
+		public void dropped() {
+		}
+	}
+
+	private static class CountingRequest implements UpdateScheduler.Request {
+		private final Object key;
+		private final AtomicInteger processed;
+		private final AtomicInteger dropped;
+		private boolean wasDropped;
+		CountingRequest(Object key, AtomicInteger processed) {
+			this(key, processed, new AtomicInteger());
+		}
+		CountingRequest(Object key, AtomicInteger processed, AtomicInteger dropped) {
+			this.key       = key;
+			this.processed = processed;
+			this.dropped   = dropped;
+		}
+		@Override
+		public Object getKey() {
+			return key;
+		}
+		@Override
+		public boolean process() throws Exception {
+			processed.incrementAndGet();
+			return true;
+		}
+		@Override
+		public void dropped() {
+			wasDropped = true;
+			dropped.incrementAndGet();
+		}
+	}
+
+	private static class OrderRequest implements UpdateScheduler.Request {
+		private final Object key;
+		private final List<Object> order;
+		OrderRequest(Object key, List<Object> order) {
+			this.key   = key;
+			this.order = order;
+		}
+		@Override
+		public Object getKey() {
+			return key;
+		}
+		@Override
+		public boolean process() throws Exception {
+			order.add(key);
+			return true;
+		}
+		@Override
+		public void dropped() {
+		}
+	}
+}
@@ -0,0 +1,231 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package uk.ac.diamond.sda.navigator.decorator;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.swt.widgets.Display;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Holds what the lightweight decorators show for workspace files so that
+ * decorating does not read the file system.
+ *
+ * decorate() is given the value read for the current version of the file,
+ * the local time stamp the workspace already holds for it, or null. If the
+ * value is missing or out of date the file is read on a small pool of
+ * threads shared by all decorators, and the listener is told in the UI
+ * thread, in batches, which files should be decorated again. A file is
+ * read at most once for each version of it; if it cannot be read it is
+ * given the failure value, so decorators stop waiting for it.
+ *
+ * @param <V> what is shown for a file
+ */
+class DecorationCache<V> {
+
+	private static final Logger logger = LoggerFactory.getLogger(DecorationCache.class);
+
+	interface Loader<V> {
+		/**
+		 * Called in a reading thread.
+		 * @param file
+		 * @return value to decorate file with, may be null if there is nothing to show.
+		 * @throws Exception
+		 */
+		V load(IFile file) throws Exception;
+	}
+
+	interface Listener {
+		/**
+		 * Called in the UI thread with the files which have been read.
+		 */
+		void loaded(IFile[] files);
+	}
+
+	private static final int THREAD_COUNT = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+	private static ExecutorService executor;
+
+	private static synchronized ExecutorService getExecutor() {
+		if (executor==null) {
+			executor = Executors.newFixedThreadPool(THREAD_COUNT, new ThreadFactory() {
+				private final AtomicInteger count = new AtomicInteger();
+				@Override
+				public Thread newThread(Runnable r) {
+					final Thread thread = new Thread(r, "Read decorations "+count.incrementAndGet());
+					thread.setPriority(Thread.MIN_PRIORITY);
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return executor;
+	}
+
+	private final Loader<V>                  loader;
+	private final Listener                   listener;
+	private final V                          failed;
+	private final Map<IFile, Entry<V>>       entries;
+	private final Map<IFile, Boolean>        reading;
+	private final ConcurrentLinkedQueue<IFile> loaded;
+	private final AtomicBoolean              notifyScheduled;
+	private final Runnable                   notifier;
+
+	private volatile boolean disposed;
+
+	/**
+	 * @param maxSize number of files to keep values for, the least recently decorated are removed.
+	 * @param loader
+	 * @param listener
+	 */
+	DecorationCache(final int maxSize, Loader<V> loader, Listener listener) {
+		this(maxSize, loader, listener, null);
+	}
+
+	/**
+	 * @param maxSize number of files to keep values for, the least recently decorated are removed.
+	 * @param loader
+	 * @param listener
+	 * @param failed value for files which could not be read, so it can be told apart from files still being read.
+	 */
+	DecorationCache(final int maxSize, Loader<V> loader, Listener listener, V failed) {
+		this.loader   = loader;
+		this.listener = listener;
+		this.failed   = failed;
+		this.entries  = new LinkedHashMap<IFile, Entry<V>>(Math.min(maxSize, 1024), 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<IFile, Entry<V>> eldest) {
+				return size()>maxSize;
+			}
+		};
+		this.reading         = new ConcurrentHashMap<IFile, Boolean>(89);
+		this.loaded          = new ConcurrentLinkedQueue<IFile>();
+		this.notifyScheduled = new AtomicBoolean(false);
+		this.notifier        = new Runnable() {
+			@Override
+			public void run() {
+				notifyLoaded();
+			}
+		};
+	}
+
+	/**
+	 * Does not read the file, if the value is not known for the current
+	 * version of the file it is read in the background.
+	 *
+	 * @param file
+	 * @return the value for the current version of file, or null
+	 */
+	V get(IFile file) {
+
+		final long stamp = file.getLocalTimeStamp();
+		if (stamp==IResource.NULL_STAMP) return null;
+
+		synchronized (entries) {
+			final Entry<V> entry = entries.get(file);
+			if (entry!=null && entry.stamp==stamp) return entry.value;
+		}
+		read(file, stamp);
+		return null;
+	}
+
+	void clear() {
+		synchronized (entries) {
+			entries.clear();
+		}
+	}
+
+	/**
+	 * Stops reading files for this cache, the shared threads are left for other decorators.
+	 */
+	void dispose() {
+		disposed = true;
+		clear();
+		loaded.clear();
+	}
+
+	private void read(final IFile file, final long stamp) {
+
+		if (disposed) return;
+		if (reading.put(file, Boolean.TRUE)!=null) return; // Already being read
+
+		try {
+			getExecutor().execute(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						if (disposed) return;
+						V value;
+						try {
+							value = loader.load(file);
+						} catch (Exception ne) {
+							logger.debug("Cannot read decoration of "+file, ne);
+							value = failed;
+						}
+						synchronized (entries) {
+							entries.put(file, new Entry<V>(stamp, value));
+						}
+					} finally {
+						reading.remove(file);
+					}
+					if (!disposed) {
+						loaded.add(file);
+						scheduleNotify();
+					}
+				}
+			});
+		} catch (RejectedExecutionException ne) {
+			reading.remove(file);
+		}
+	}
+
+	private void scheduleNotify() {
+		if (!notifyScheduled.compareAndSet(false, true)) return;
+		final Display display = Display.getDefault();
+		if (display==null || display.isDisposed()) {
+			notifyScheduled.set(false);
+			return;
+		}
+		display.asyncExec(notifier);
+	}
+
+	private void notifyLoaded() {
+		notifyScheduled.set(false);
+		final List<IFile> files = new ArrayList<IFile>(loaded.size());
+		IFile file;
+		while ((file = loaded.poll())!=null) files.add(file);
+		if (files.isEmpty() || disposed) return;
+		listener.loaded(files.toArray(new IFile[files.size()]));
+	}
+
+	private static class Entry<V> {
+		private final long stamp;
+		private final V    value;
+		Entry(long stamp, V value) {
+			this.stamp = stamp;
+			this.value = value;
+		}
+	}
+}
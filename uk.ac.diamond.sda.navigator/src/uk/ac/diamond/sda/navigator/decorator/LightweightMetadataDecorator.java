@@ -10,6 +10,9 @@
 package uk.ac.diamond.sda.navigator.decorator;
 
 import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.text.DecimalFormat;
 import java.text.SimpleDateFormat;
 import java.util.Date;
@@ -18,32 +21,53 @@ import org.eclipse.core.resources.IFile;
 import org.eclipse.core.runtime.IPath;
 import org.eclipse.jface.resource.ImageDescriptor;
 import org.eclipse.jface.viewers.IDecoration;
-import org.eclipse.jface.viewers.ILabelProviderListener;
 import org.eclipse.jface.viewers.ILightweightLabelDecorator;
-//import org.slf4j.Logger;
-//import org.slf4j.LoggerFactory;
 import org.eclipse.jface.viewers.LabelProvider;
+import org.eclipse.jface.viewers.LabelProviderChangedEvent;
 
+/**
+ * Decorates workspace files with their size and date of last modification,
+ * and files which cannot be read, written or executed with a lock overlay.
+ *
+ * The file attributes are read in the background by a DecorationCache, once
+ * for each version of the file, so decorating does not wait for the file system.
+ */
 public class LightweightMetadataDecorator extends LabelProvider implements ILightweightLabelDecorator {
 
 	public static final String ID = "uk.ac.diamond.sda.navigator.metadataDecorator";
 	
-	//private static final Logger logger = LoggerFactory.getLogger(LightweightMetadataDecorator.class);
-	
-	public LightweightMetadataDecorator() {
-		super();
-	}
+	private static final ImageDescriptor LOCK_OVERLAY = ImageDescriptor.createFromFile(LightweightMetadataDecorator.class,
+			"/icons/decorators/unconfigured_co.gif");
 
-	@Override
-	public void addListener(ILabelProviderListener listener) {
-		// TODO Auto-generated method stub
+	private static final ThreadLocal<SimpleDateFormat> DATE_FORMAT = new ThreadLocal<SimpleDateFormat>() {
+		@Override
+		protected SimpleDateFormat initialValue() {
+			return new SimpleDateFormat("dd/MM/yy hh:mm aaa");
+		}
+	};
 
+	private final DecorationCache<FileMetadata> cache;
+
+	public LightweightMetadataDecorator() {
+		super();
+		this.cache = new DecorationCache<FileMetadata>(10000, new DecorationCache.Loader<FileMetadata>() {
+			@Override
+			public FileMetadata load(IFile file) throws Exception {
+				final IPath path = file.getLocation();
+				return path!=null ? readMetadata(path.toFile().toPath()) : null;
+			}
+		}, new DecorationCache.Listener() {
+			@Override
+			public void loaded(IFile[] files) {
+				fireLabelProviderChanged(new LabelProviderChangedEvent(LightweightMetadataDecorator.this, files));
+			}
+		});
 	}
 
 	@Override
 	public void dispose() {
-		// TODO Auto-generated method stub
-
+		super.dispose();
+		cache.dispose();
 	}
 
 	@Override
@@ -52,32 +76,41 @@ public class LightweightMetadataDecorator extends LabelProvider implements ILigh
 		return false;
 	}
 
-	@Override
-	public void removeListener(ILabelProviderListener listener) {
-		// TODO Auto-generated method stub
-	}
-
 	@Override
 	public void decorate(Object element, IDecoration decoration) {
 		if (element instanceof IFile) {
-			IFile ifile = (IFile) element;
-			IPath path = ifile.getLocation();
-			if (path != null) {
-				File file = path.toFile();
-				String lastModified = new SimpleDateFormat("dd/MM/yy hh:mm aaa").format(new Date(file.lastModified()));
-				String filePermission = getFilePermission(file);
+			final FileMetadata metadata = cache.get((IFile) element);
+			if (metadata != null) {
 				// file size - date of last modification - file permissions
-				decoration.addSuffix("  " + readableFileSize(file.length()) + "  " + lastModified);// +"  "+filePermission);
+				decoration.addSuffix(metadata.suffix);
 				// Image overlay decoration according to file permission:
-				if (filePermission.equals("- - -")) {
-					ImageDescriptor lockOverlay = ImageDescriptor.createFromFile(this.getClass(),
-							"/icons/decorators/unconfigured_co.gif");
-					decoration.addOverlay(lockOverlay);
+				if (metadata.permission.equals("- - -")) {
+					decoration.addOverlay(LOCK_OVERLAY);
 				}
 			}
 		}
 	}
 
+	/**
+	 * Reads the size and date of a file in one call and its permissions for the
+	 * current user. Called on the cache's loader threads, not the UI thread.
+	 */
+	static FileMetadata readMetadata(Path path) throws Exception {
+		final BasicFileAttributes attr = Files.readAttributes(path, BasicFileAttributes.class);
+		final String permission = getFilePermission(path);
+		final String lastModified = DATE_FORMAT.get().format(new Date(attr.lastModifiedTime().toMillis()));
+		return new FileMetadata("  " + readableFileSize(attr.size()) + "  " + lastModified, permission);
+	}
+
+	static class FileMetadata {
+		final String suffix;
+		final String permission;
+		FileMetadata(String suffix, String permission) {
+			this.suffix     = suffix;
+			this.permission = permission;
+		}
+	}
+
 	public static String readableFileSize(long size) {
 		if (size <= 0)
 			return "0";
@@ -102,4 +135,22 @@ public class LightweightMetadataDecorator extends LabelProvider implements ILigh
 
 		return read + " " + write + " " + execute;
 	}
+
+	/**
+	 * Asks the file system what the current user may do, so group membership,
+	 * root and access control lists are taken into account.
+	 * @param path
+	 * @return permissions in the form of getFilePermission(File)
+	 */
+	public static String getFilePermission(Path path) {
+		String read = "-", write = "-", execute = "-";
+		if (Files.isReadable(path))
+			read = "r";
+		if (Files.isWritable(path))
+			write = "w";
+		if (Files.isExecutable(path))
+			execute = "x";
+
+		return read + " " + write + " " + execute;
+	}
 }
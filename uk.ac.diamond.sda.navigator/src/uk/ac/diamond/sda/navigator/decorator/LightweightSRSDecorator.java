@@ -9,8 +9,12 @@
 
 package uk.ac.diamond.sda.navigator.decorator;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.eclipse.core.resources.IFile;
 import org.eclipse.dawnsci.analysis.api.io.ScanFileHolderException;
@@ -21,6 +25,7 @@ import org.eclipse.january.dataset.ILazyDataset;
 import org.eclipse.jface.viewers.IDecoration;
 import org.eclipse.jface.viewers.ILightweightLabelDecorator;
 import org.eclipse.jface.viewers.LabelProvider;
+import org.eclipse.jface.viewers.LabelProviderChangedEvent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -31,39 +36,112 @@ import uk.ac.diamond.sda.navigator.srs.SRSTreeData;
 
 /**
  * Class used to decorate each of the sub-element of a DAT file with the corresponding data value (max, min, class...)
- * Not yet implemented
+ * 
+ * The file is loaded and the values of all its columns worked out in the background,
+ * once for each version of the file, rather than for each element decorated.
  */
 public class LightweightSRSDecorator extends LabelProvider implements ILightweightLabelDecorator {
 
 	private String decorator;
 	private String fileName;
 	private static final Logger logger = LoggerFactory.getLogger(LightweightSRSDecorator.class);
-	private SRSTreeData srsData;
 	private DataHolder data;
 
+	private final DecorationCache<Map<String, SRSTreeData>> cache;
+
+	/**
+	 * Elements decorated before their file had been read, decorated again once it is.
+	 */
+	private final ConcurrentMap<IFile, Set<SRSTreeData>> waiting;
+
+	public LightweightSRSDecorator() {
+		super();
+		this.waiting = new ConcurrentHashMap<IFile, Set<SRSTreeData>>(7);
+		this.cache   = new DecorationCache<Map<String, SRSTreeData>>(256, new DecorationCache.Loader<Map<String, SRSTreeData>>() {
+			@Override
+			public Map<String, SRSTreeData> load(IFile file) throws Exception {
+				return summarise(file);
+			}
+		}, new DecorationCache.Listener() {
+			@Override
+			public void loaded(IFile[] files) {
+				for (IFile file : files) {
+					final Set<SRSTreeData> elements = waiting.remove(file);
+					if (elements==null || elements.isEmpty()) continue;
+					fireLabelProviderChanged(new LabelProviderChangedEvent(LightweightSRSDecorator.this, elements.toArray()));
+				}
+			}
+		}, Collections.<String, SRSTreeData>emptyMap()); // nothing is shown for files which cannot be read
+	}
+
 	@Override
 	public void decorate(Object element, IDecoration decoration) {
 		setDecorator("");
 		if (element instanceof SRSTreeData) {
-			srsData = (SRSTreeData) element;
-			IFile ifile = srsData.getFile();
-
-			List<SRSTreeData> properties = new ArrayList<SRSTreeData>();
-			String[] names = data.getNames();
-
-			for (int i = 0; i < data.size(); i++) {
-				ILazyDataset lazyData = data.getLazyDataset(i);
-				if (lazyData instanceof Dataset)
-					properties.add(new SRSTreeData(names[i], data.getDataset(i).min().toString(), 
-							data.getDataset(i).max().toString(),
-							data.getDataset(i).getElementClass().toString(), ifile));
-				else {
-					properties.add(new SRSTreeData(names[i], "Not available", "Not available", "Not available", ifile));
-				}
+			final SRSTreeData srsData = (SRSTreeData) element;
+			final IFile ifile = srsData.getFile();
+			if (ifile == null) return;
+
+			// wait before looking in the cache, so a file read in between still decorates the element again
+			final Set<SRSTreeData> elements = addWaiting(ifile, srsData);
+			final Map<String, SRSTreeData> properties = cache.get(ifile);
+			if (properties == null) return;
+			elements.remove(srsData);
+			if (elements.isEmpty()) waiting.remove(ifile, elements);
+
+			final SRSTreeData property = properties.get(srsData.getName());
+			if (property == null) return;
+			setDecorator("  min: " + property.getMinValue() + "  max: " + property.getMaxValue() + "  " + property.getClassValue());
+			decoration.addSuffix(getDecorator());
+		}
+	}
+
+	/**
+	 * @return elements waiting for the file, which the element has been added to
+	 */
+	private Set<SRSTreeData> addWaiting(IFile ifile, SRSTreeData srsData) {
+		Set<SRSTreeData> elements;
+		do {
+			elements = waiting.get(ifile);
+			if (elements == null) {
+				elements = Collections.newSetFromMap(new ConcurrentHashMap<SRSTreeData, Boolean>());
+				final Set<SRSTreeData> existing = waiting.putIfAbsent(ifile, elements);
+				if (existing != null) elements = existing;
 			}
-			//SRSTreeData[] srsTreeData = (SRSTreeData[]) properties.toArray(new SRSTreeData[properties.size()]);
+			elements.add(srsData);
+		} while (waiting.get(ifile) != elements); // taken by loaded() before the element was added
+		return elements;
+	}
+
+	@Override
+	public void dispose() {
+		super.dispose();
+		cache.dispose();
+		waiting.clear();
+	}
 
+	/**
+	 * Loads the file and works out the min, max and class of each of its columns.
+	 * @param ifile
+	 * @return properties by name
+	 */
+	private Map<String, SRSTreeData> summarise(IFile ifile) {
+
+		final DataHolder holder = load(ifile);
+		final String[]   names  = holder.getNames();
+		final Map<String, SRSTreeData> properties = new HashMap<String, SRSTreeData>(holder.size());
+		for (int i = 0; i < holder.size(); i++) {
+			final String name = names[i].trim();
+			ILazyDataset lazyData = holder.getLazyDataset(i);
+			if (lazyData instanceof Dataset) {
+				final Dataset set = (Dataset) lazyData;
+				properties.put(name, new SRSTreeData(name, set.min().toString(), set.max().toString(),
+						set.getElementClass().toString(), ifile));
+			} else {
+				properties.put(name, new SRSTreeData(name, "Not available", "Not available", "Not available", ifile));
+			}
 		}
+		return properties;
 	}
 
 	/**
@@ -74,14 +152,20 @@ public class LightweightSRSDecorator extends LabelProvider implements ILightweig
 	 */
 	public void srsFileLoader(IFile file) {
 		fileName = file.getLocation().toString();
+		data = load(file);
+	}
+
+	private static DataHolder load(IFile file) {
+		DataHolder holder;
 		try {
-			SRSLoader dataLoader = new ExtendedSRSLoader(fileName);
-			data = dataLoader.loadFile();
+			SRSLoader dataLoader = new ExtendedSRSLoader(file.getLocation().toString());
+			holder = dataLoader.loadFile();
 		} catch (ScanFileHolderException e) {
-			data = new DataHolder();
-			data.addDataset("Failed to load File", DatasetFactory.zeros(DoubleDataset.class, 1));
+			holder = new DataHolder();
+			holder.addDataset("Failed to load File", DatasetFactory.zeros(DoubleDataset.class, 1));
 			logger.warn("Failed to load srs file");
 		}
+		return holder;
 	}
 
 	public String getDecorator() {
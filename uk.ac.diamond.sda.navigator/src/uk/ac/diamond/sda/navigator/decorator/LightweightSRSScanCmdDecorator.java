@@ -13,9 +13,9 @@ import org.eclipse.core.resources.IFile;
 import org.eclipse.january.metadata.IExtendedMetadata;
 import org.eclipse.january.metadata.IMetadata;
 import org.eclipse.jface.viewers.IDecoration;
-import org.eclipse.jface.viewers.ILabelProviderListener;
 import org.eclipse.jface.viewers.ILightweightLabelDecorator;
 import org.eclipse.jface.viewers.LabelProvider;
+import org.eclipse.jface.viewers.LabelProviderChangedEvent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -30,18 +30,27 @@ public class LightweightSRSScanCmdDecorator extends LabelProvider implements ILi
 	private String decorator = "";
 	private static final Logger logger = LoggerFactory.getLogger(LightweightSRSScanCmdDecorator.class);
 
+	private final DecorationCache<String> cache;
+
 	public LightweightSRSScanCmdDecorator() {
 		super();
-	}
-	
-	@Override
-	public void addListener(ILabelProviderListener listener) {
-		// TODO Auto-generated method stub
+		this.cache = new DecorationCache<String>(10000, new DecorationCache.Loader<String>() {
+			@Override
+			public String load(IFile file) throws Exception {
+				return getSuffix(file);
+			}
+		}, new DecorationCache.Listener() {
+			@Override
+			public void loaded(IFile[] files) {
+				fireLabelProviderChanged(new LabelProviderChangedEvent(LightweightSRSScanCmdDecorator.this, files));
+			}
+		});
 	}
 
 	@Override
 	public void dispose() {
-		// TODO Auto-generated method stub
+		super.dispose();
+		cache.dispose();
 	}
 
 	@Override
@@ -50,46 +59,36 @@ public class LightweightSRSScanCmdDecorator extends LabelProvider implements ILi
 		return true;
 	}
 
-	@Override
-	public void removeListener(ILabelProviderListener listener) {
-		// TODO Auto-generated method stub
-	}
-
 	@Override
 	public void decorate(Object element, IDecoration decoration) {
-		decorator = "";
 		if (element instanceof IFile) {
 			IFile modelFile = (IFile) element;
 			if (SRS_EXT.equals(modelFile.getFileExtension())) {
-				IFile ifile = (IFile) element;
-				
-				if (!ifile.exists())           return;
-				if (ifile.getLocation()==null) return;
-				srsMetaDataLoader(ifile.getLocation().toString());
+				if (!modelFile.exists())           return;
+				if (modelFile.getLocation()==null) return;
 
-				try {
-					if(metaData!=null){
-						decorator = metaData.getScanCommand();
-						if(decorator==null){
-							decorator=" * Scan Command: N/A";
-							decoration.addSuffix(decorator);
-						}else{
-							if (decorator.length() > 100) // restrict to 100 characters
-								decorator = decorator.substring(0, 100) + "...";
-							decorator = " * " + decorator;
-							decoration.addSuffix(decorator);
-						}
-					} else {
-						decorator=" * Scan Command: N/A";
-						decoration.addSuffix(decorator);
-						logger.warn("Could not read metadata from file {}",ifile.getFullPath());
-					}
-				}catch (Exception e) {
-					logger.error("Could not read metadata from {}: ", e);
-				}
+				// Read in the background, once for each version of the file
+				final String suffix = cache.get(modelFile);
+				if (suffix!=null) decoration.addSuffix(suffix);
 			}
 		}
 	}
+
+	/**
+	 * Called in a reading thread of the DecorationCache
+	 */
+	private static String getSuffix(IFile ifile) {
+		final IExtendedMetadata metaData = getMetaData(ifile.getLocation().toString());
+		if (metaData==null) {
+			logger.warn("Could not read metadata from file {}",ifile.getFullPath());
+			return " * Scan Command: N/A";
+		}
+		String decorator = metaData.getScanCommand();
+		if (decorator==null) return " * Scan Command: N/A";
+		if (decorator.length() > 100) // restrict to 100 characters
+			decorator = decorator.substring(0, 100) + "...";
+		return " * " + decorator;
+	}
 	
 	public IExtendedMetadata srsMyMetaDataLoader(String fullpath){
 		srsMetaDataLoader(fullpath);
@@ -97,17 +96,19 @@ public class LightweightSRSScanCmdDecorator extends LabelProvider implements ILi
 	}
 	
 	private void srsMetaDataLoader(String fullpath) {
-		
+		metaData = getMetaData(fullpath);
+		decorator = metaData==null ? " * Scan Command: N/A" : "";
+	}
+
+	private static IExtendedMetadata getMetaData(String fullpath) {
 		try {
 			IMetadata metaDataTest=LoaderFactory.getMetadata(fullpath, null);
 			if(metaDataTest instanceof IExtendedMetadata)
-				metaData = (IExtendedMetadata)LoaderFactory.getMetadata(fullpath, null);
-			else{
-				decorator=" * Scan Command: N/A";
-				logger.warn("Cannot decorate SRS decorator");
-			}
+				return (IExtendedMetadata)metaDataTest;
+			logger.warn("Cannot decorate SRS decorator");
 		} catch (Exception ne) {
 			logger.error("Cannot open dat file", ne);
 		}
+		return null;
 	}
 }
@@ -17,4 +17,6 @@ public class FileNavigatorPreferenceConstants {
 	public static final String SHOW_SCANCMD_COLUMN      = "show.scancmd.column.in.file.navigator";
 	public static final String SHOW_COMMENT_COLUMN      = "show.comment.column.in.file.navigator";
 	public static final String SHOW_COLLAPSED_FILES     = "show.collapsed.files.in.file.navigator";
+	public static final String UPDATE_THREAD_COUNT      = "update.thread.count.in.file.navigator";
+	public static final String UPDATE_QUEUE_SIZE        = "update.queue.size.in.file.navigator";
 }
@@ -29,5 +29,8 @@ public class FileNavigatorPreferenceInitializer extends AbstractPreferenceInitia
 
 		store.setDefault(FileNavigatorPreferenceConstants.SHOW_COLLAPSED_FILES, true);
 
+		store.setDefault(FileNavigatorPreferenceConstants.UPDATE_THREAD_COUNT, Math.min(4, Runtime.getRuntime().availableProcessors()));
+		store.setDefault(FileNavigatorPreferenceConstants.UPDATE_QUEUE_SIZE, 1024);
+
 	}
 }
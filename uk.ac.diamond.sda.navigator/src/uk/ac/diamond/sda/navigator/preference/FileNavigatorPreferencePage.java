@@ -12,6 +12,7 @@ package uk.ac.diamond.sda.navigator.preference;
 import org.eclipse.jface.preference.BooleanFieldEditor;
 import org.eclipse.jface.preference.FieldEditorPreferencePage;
 import org.eclipse.jface.preference.IPreferenceStore;
+import org.eclipse.jface.preference.IntegerFieldEditor;
 import org.eclipse.swt.layout.GridLayout;
 import org.eclipse.ui.IWorkbench;
 import org.eclipse.ui.IWorkbenchPreferencePage;
@@ -25,6 +26,8 @@ public class FileNavigatorPreferencePage extends FieldEditorPreferencePage imple
 	private BooleanFieldEditor showSize;
 	private BooleanFieldEditor showScanCmd;
 	private BooleanFieldEditor showComment;
+	private IntegerFieldEditor updateThreads;
+	private IntegerFieldEditor updateQueueSize;
 
 	public FileNavigatorPreferencePage() {
 		super(GRID);
@@ -47,6 +50,14 @@ public class FileNavigatorPreferencePage extends FieldEditorPreferencePage imple
 
 		showScanCmd = new BooleanFieldEditor(FileNavigatorPreferenceConstants.SHOW_SCANCMD_COLUMN, "Show scan command column",getFieldEditorParent());
 		addField(showScanCmd);
+
+		updateThreads = new IntegerFieldEditor(FileNavigatorPreferenceConstants.UPDATE_THREAD_COUNT, "Directories listed at the same time", getFieldEditorParent());
+		updateThreads.setValidRange(1, 64);
+		addField(updateThreads);
+
+		updateQueueSize = new IntegerFieldEditor(FileNavigatorPreferenceConstants.UPDATE_QUEUE_SIZE, "Maximum waiting row updates", getFieldEditorParent());
+		updateQueueSize.setValidRange(16, 1000000);
+		addField(updateQueueSize);
 	}
 
 	@Override
@@ -25,6 +25,7 @@ import org.eclipse.january.metadata.IMetadata;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import uk.ac.diamond.scisoft.analysis.io.HDF5Loader;
 import uk.ac.diamond.scisoft.analysis.io.LoaderFactory;
 
 public class NavigatorUtils {
@@ -44,14 +45,22 @@ public class NavigatorUtils {
 		if(extension.equals("dat") 
 				|| extension.equals("srs")) 
 			return getASCIIScanCommand(file);
-		else if(extension.equals("hdf5") 
-				|| extension.equals("hdf")
-				|| extension.equals("h5")
-				|| extension.equals("nxs")) 
+		else if(isHDF5Name(file.getName())) 
 			return getHDF5ScanCommand(file.getAbsolutePath());
 		else return "";
 	}
 
+	/**
+	 * Method that tells if a file has one of the extensions of the HDF5 files whose title and scan command are read,
+	 * in any case.<br>
+	 * @param name of the file or its full path
+	 * @return true if the name ends with .nxs, .h5, .hdf5 or .hdf
+	 */
+	public static boolean isHDF5Name(String name) {
+		final String lower = name.toLowerCase();
+		return lower.endsWith(".nxs") || lower.endsWith(".h5") || lower.endsWith(".hdf5") || lower.endsWith(".hdf");
+	}
+
 	/**
 	 * Method that returns a Scan Command given a particular file<br>
 	 * Files with .dat and .srs extensions are supported. So are .nxs files.<br>
@@ -199,12 +208,23 @@ public class NavigatorUtils {
 		return getHDF5ScanCommandOrTitle(fullpath, titleName, rootnode);
 	}
 
+	/**
+	 * Method that returns the title and the Scan Command of the nxs file being looked at.<br>
+	 * Only the tree of the file is loaded, not a data holder with its metadata.<br>
+	 * @param fullpath
+	 * @return a String array of the title and the Scan command
+	 * @throws Exception if the file cannot be read
+	 */
+	public static String[] getHDF5TitleAndScanCommand(String fullpath) throws Exception {
+		final Tree tree = new HDF5Loader(fullpath).loadTree(null);
+		final GroupNode rootnode = tree != null ? tree.getGroupNode() : null;
+		return new String[] {getHDF5ScanCommandOrTitle(fullpath, titleName, rootnode),
+				getHDF5ScanCommandOrTitle(fullpath, scanCmdName, rootnode)};
+	}
+
 	private static String getHDF5ScanCommandOrTitle(String fullpath, String type, GroupNode rootnode) {
 		// make it work just for nxs and hdf5 files
-		if(!fullpath.endsWith(".hdf5") 
-				&& !fullpath.endsWith(".hdf")
-				&& !fullpath.endsWith(".h5")
-				&& !fullpath.endsWith(".nxs")) return "";
+		if(!isHDF5Name(fullpath)) return "";
 
 		String result = "N/A";
 		List<String> comments = new ArrayList<String>();
@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package uk.ac.diamond.sda.navigator.views;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The naturally sorted contents of a directory as shown in the tree.
+ *
+ * A listing is not changed once it has been made, add and remove
+ * return a new listing so that threads reading the old one are not
+ * affected. The sort key of each path is kept with it so searching
+ * only makes a key for the path searched for.
+ */
+class DirectoryListing {
+
+	private final List<Path>           paths;
+	private final List<NaturalSortKey> keys;
+
+	/**
+	 * Number of directories at the start of paths, always 0 if
+	 * directories are sorted with the files.
+	 */
+	private final int     dirCount;
+	private final boolean dirsFirst;
+
+	/**
+	 * @param dirs sorted directories, must be empty if dirsFirst is false
+	 * @param files sorted files, or files and directories if dirsFirst is false
+	 * @param dirsFirst
+	 */
+	DirectoryListing(List<Path> dirs, List<Path> files, boolean dirsFirst) {
+		final List<Path> all = new ArrayList<Path>(dirs.size()+files.size());
+		all.addAll(dirs);
+		all.addAll(files);
+		final List<NaturalSortKey> allKeys = new ArrayList<NaturalSortKey>(all.size());
+		for (Path path : all) allKeys.add(getKey(path));
+		this.paths     = Collections.unmodifiableList(all);
+		this.keys      = allKeys;
+		this.dirCount  = dirs.size();
+		this.dirsFirst = dirsFirst;
+	}
+
+	/**
+	 * @param paths sorted directories, if dirsFirst, then sorted files
+	 * @param keys of paths, not copied
+	 * @param dirCount
+	 * @param dirsFirst
+	 */
+	DirectoryListing(List<Path> paths, List<NaturalSortKey> keys, int dirCount, boolean dirsFirst) {
+		this.paths     = Collections.unmodifiableList(paths);
+		this.keys      = keys;
+		this.dirCount  = dirCount;
+		this.dirsFirst = dirsFirst;
+	}
+
+	private static NaturalSortKey getKey(Path path) {
+		return new NaturalSortKey(path.getFileName().toString());
+	}
+
+	List<Path> getPaths() {
+		return paths;
+	}
+
+	int size() {
+		return paths.size();
+	}
+
+	/**
+	 * @param child
+	 * @param isDir
+	 * @return the index of child if it is listed, otherwise (-(insertion point) - 1)
+	 */
+	int search(Path child, boolean isDir) {
+		final boolean inDirs = dirsFirst && isDir;
+		final int     from   = inDirs ? 0 : dirCount;
+		final int     to     = inDirs ? dirCount : paths.size();
+		final int     found  = Collections.binarySearch(keys.subList(from, to), getKey(child));
+		return found<0 ? found-from : found+from;
+	}
+
+	/**
+	 * Finds a child which may be a file or directory, for instance because it has been deleted.
+	 * @param child
+	 * @return index or -1 if it is not listed
+	 */
+	int indexOf(Path child) {
+		int index = search(child, false);
+		if (index>-1 && paths.get(index).equals(child)) return index;
+		if (dirsFirst) {
+			index = search(child, true);
+			if (index>-1 && paths.get(index).equals(child)) return index;
+		}
+		return -1;
+	}
+
+	/**
+	 * @param other
+	 * @return the first index at which other lists a different path, or the size of the shorter listing.
+	 */
+	int firstDifference(DirectoryListing other) {
+		final int size = Math.min(paths.size(), other.paths.size());
+		for (int i = 0; i < size; i++) {
+			if (!paths.get(i).equals(other.paths.get(i))) return i;
+		}
+		return size;
+	}
+
+	DirectoryListing add(int index, Path child, boolean isDir) {
+		final List<Path> copy = new ArrayList<Path>(paths.size()+1);
+		copy.addAll(paths);
+		copy.add(index, child);
+		final List<NaturalSortKey> keyCopy = new ArrayList<NaturalSortKey>(keys.size()+1);
+		keyCopy.addAll(keys);
+		keyCopy.add(index, getKey(child));
+		return new DirectoryListing(copy, keyCopy, dirsFirst && isDir ? dirCount+1 : dirCount, dirsFirst);
+	}
+
+	DirectoryListing remove(int index) {
+		final List<Path> copy = new ArrayList<Path>(paths);
+		copy.remove(index);
+		final List<NaturalSortKey> keyCopy = new ArrayList<NaturalSortKey>(keys);
+		keyCopy.remove(index);
+		return new DirectoryListing(copy, keyCopy, index<dirCount ? dirCount-1 : dirCount, dirsFirst);
+	}
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package uk.ac.diamond.sda.navigator.views;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Collects the entries of a directory as they are read and makes
+ * naturally sorted listings of them.
+ *
+ * Each name is made into a NaturalSortKey once. Entries added since
+ * the last listing are sorted on their own and merged with the ones
+ * already sorted, so making a listing after every page of a large
+ * directory does not sort the whole directory again.
+ */
+class DirectoryListingBuilder {
+
+	private final boolean dirsFirst;
+
+	private List<Entry> sortedDirs;
+	private List<Entry> sortedFiles;
+	private List<Entry> newDirs;
+	private List<Entry> newFiles;
+
+	/**
+	 * @param dirsFirst true to list directories before files, otherwise they are sorted with the files.
+	 */
+	DirectoryListingBuilder(boolean dirsFirst) {
+		this.dirsFirst   = dirsFirst;
+		this.sortedDirs  = new ArrayList<Entry>(0);
+		this.sortedFiles = new ArrayList<Entry>(0);
+		this.newDirs     = new ArrayList<Entry>(89);
+		this.newFiles    = new ArrayList<Entry>(89);
+	}
+
+	void add(Path path, String name, boolean isDir) {
+		final Entry entry = new Entry(new NaturalSortKey(name), path);
+		if (isDir && dirsFirst) {
+			newDirs.add(entry);
+		} else {
+			newFiles.add(entry);
+		}
+	}
+
+	int size() {
+		return sortedDirs.size()+sortedFiles.size()+newDirs.size()+newFiles.size();
+	}
+
+	/**
+	 * @return a listing of everything added so far
+	 */
+	DirectoryListing build() {
+		sortedDirs  = merge(sortedDirs,  newDirs);
+		sortedFiles = merge(sortedFiles, newFiles);
+		newDirs.clear();
+		newFiles.clear();
+		final int size = sortedDirs.size()+sortedFiles.size();
+		final List<Path>           paths = new ArrayList<Path>(size);
+		final List<NaturalSortKey> keys  = new ArrayList<NaturalSortKey>(size);
+		addTo(sortedDirs,  paths, keys);
+		addTo(sortedFiles, paths, keys);
+		return new DirectoryListing(paths, keys, sortedDirs.size(), dirsFirst);
+	}
+
+	private static List<Entry> merge(List<Entry> sorted, List<Entry> added) {
+
+		if (added.isEmpty()) return sorted;
+		Collections.sort(added);
+		if (sorted.isEmpty()) return new ArrayList<Entry>(added);
+
+		final List<Entry> ret = new ArrayList<Entry>(sorted.size()+added.size());
+		int i = 0, j = 0;
+		while (i<sorted.size() && j<added.size()) {
+			if (sorted.get(i).compareTo(added.get(j))<=0) {
+				ret.add(sorted.get(i++));
+			} else {
+				ret.add(added.get(j++));
+			}
+		}
+		ret.addAll(sorted.subList(i, sorted.size()));
+		ret.addAll(added.subList(j, added.size()));
+		return ret;
+	}
+
+	private static void addTo(List<Entry> entries, List<Path> paths, List<NaturalSortKey> keys) {
+		for (Entry entry : entries) {
+			paths.add(entry.path);
+			keys.add(entry.key);
+		}
+	}
+
+	private static class Entry implements Comparable<Entry> {
+		private final NaturalSortKey key;
+		private final Path           path;
+		Entry(NaturalSortKey key, Path path) {
+			this.key  = key;
+			this.path = path;
+		}
+		@Override
+		public int compareTo(Entry other) {
+			return key.compareTo(other.key);
+		}
+	}
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package uk.ac.diamond.sda.navigator.views;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Watches the directories which have been listed in the tree and tells
+ * a listener which children have been created or deleted, so that the
+ * cached listings can be patched rather than listed again.
+ *
+ * Only up to maxWatched directories are watched because the operating
+ * system limits the number of watches, directories which are not watched
+ * still need refreshing by hand.
+ */
+class DirectoryWatcher {
+
+	private static final Logger logger = LoggerFactory.getLogger(DirectoryWatcher.class);
+
+	interface Listener {
+
+		void created(Path dir, List<Path> children);
+
+		void deleted(Path dir, List<Path> children);
+
+		/**
+		 * Events have been lost, dir should be listed again.
+		 */
+		void overflow(Path dir);
+	}
+
+	private final int                 maxWatched;
+	private final Listener            listener;
+	private final PathCache<WatchKey> keys;
+	private WatchService              service;
+	private Thread                    thread;
+
+	DirectoryWatcher(int maxWatched, Listener listener) {
+		this.maxWatched = maxWatched;
+		this.listener   = listener;
+		this.keys       = new PathCache<WatchKey>();
+	}
+
+	/**
+	 * Starts watching dir, this should be called before it is listed
+	 * so that no changes are missed.
+	 * @param dir
+	 * @return true if dir is being watched
+	 */
+	synchronized boolean watch(Path dir) {
+
+		if (keys.containsKey(dir)) return true;
+		if (keys.size()>=maxWatched) return false;
+		if (dir.getFileSystem()!=FileSystems.getDefault()) return false;
+		try {
+			if (service==null) start();
+			keys.put(dir, dir.register(service, ENTRY_CREATE, ENTRY_DELETE));
+			return true;
+		} catch (IOException | UnsupportedOperationException ne) {
+			logger.debug("Cannot watch "+dir, ne);
+			return false;
+		}
+	}
+
+	/**
+	 * Stops watching dir and everything below it.
+	 */
+	void unwatchTree(Path dir) {
+		final List<WatchKey> removed = new ArrayList<WatchKey>(1);
+		keys.removeTree(dir, removed);
+		for (WatchKey key : removed) key.cancel();
+	}
+
+	void unwatchAll() {
+		for (WatchKey key : keys.values()) key.cancel();
+		keys.clear();
+	}
+
+	synchronized void dispose() {
+		unwatchAll();
+		if (thread!=null) thread.interrupt();
+		thread = null;
+		try {
+			if (service!=null) service.close();
+		} catch (IOException ignored) {
+			// We are finished with it anyway
+		}
+		service = null;
+	}
+
+	private void start() throws IOException {
+
+		service = FileSystems.getDefault().newWatchService();
+
+		final WatchService watchService = service;
+		thread = new Thread("Watch directory contents") {
+			@Override
+			public void run() {
+				while(!isInterrupted()) {
+					try {
+						final Map<WatchKey, List<WatchEvent<?>>> events = new LinkedHashMap<WatchKey, List<WatchEvent<?>>>(7);
+						WatchKey key = watchService.take();
+						// Frames arrive quickly during a scan so we take every key which is ready.
+						while (key!=null) {
+							final List<WatchEvent<?>> list = events.get(key);
+							if (list==null) {
+								events.put(key, new ArrayList<WatchEvent<?>>(key.pollEvents()));
+							} else {
+								list.addAll(key.pollEvents());
+							}
+							if (!key.reset()) {
+								keys.remove((Path)key.watchable());
+							}
+							key = watchService.poll();
+						}
+						for (Map.Entry<WatchKey, List<WatchEvent<?>>> entry : events.entrySet()) {
+							fireEvents((Path)entry.getKey().watchable(), entry.getValue());
+						}
+
+					} catch (InterruptedException | ClosedWatchServiceException ne) {
+						break;
+					} catch (Exception ne) {
+						logger.error("Cannot process directory changes", ne);
+					}
+				}
+			}
+		};
+		thread.setPriority(Thread.MIN_PRIORITY);
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	private void fireEvents(Path dir, List<WatchEvent<?>> events) {
+
+		// Only the last event for each child matters
+		final Map<Path, WatchEvent.Kind<?>> last = new LinkedHashMap<Path, WatchEvent.Kind<?>>(events.size());
+		for (WatchEvent<?> event : events) {
+			if (event.kind()==OVERFLOW) {
+				listener.overflow(dir);
+				return;
+			}
+			final Path child = dir.resolve((Path)event.context());
+			last.remove(child);
+			last.put(child, event.kind());
+		}
+
+		final List<Path> created = new ArrayList<Path>(last.size());
+		final List<Path> deleted = new ArrayList<Path>(1);
+		for (Map.Entry<Path, WatchEvent.Kind<?>> entry : last.entrySet()) {
+			if (entry.getValue()==ENTRY_CREATE) {
+				created.add(entry.getKey());
+			} else if (entry.getValue()==ENTRY_DELETE) {
+				deleted.add(entry.getKey());
+			}
+		}
+		if (!deleted.isEmpty()) listener.deleted(dir, deleted);
+		if (!created.isEmpty()) listener.created(dir, created);
+	}
+}
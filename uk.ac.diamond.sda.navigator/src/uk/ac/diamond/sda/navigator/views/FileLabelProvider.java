@@ -13,18 +13,12 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.text.DecimalFormat;
 import java.text.SimpleDateFormat;
-import java.util.HashMap;
-import java.util.Map;
 import java.util.Set;
 import java.util.regex.Matcher;
 
 import org.dawb.common.services.ServiceManager;
 import org.dawb.common.util.io.FileUtils;
-import org.dawnsci.io.h5.H5Loader;
-import org.eclipse.dawnsci.analysis.api.io.IDataHolder;
 import org.eclipse.dawnsci.analysis.api.io.ILoaderService;
-import org.eclipse.dawnsci.analysis.api.tree.GroupNode;
-import org.eclipse.dawnsci.analysis.api.tree.Tree;
 import org.eclipse.dawnsci.plotting.api.image.IFileIconService;
 import org.eclipse.jface.preference.IPreferenceStore;
 import org.eclipse.jface.util.IPropertyChangeListener;
@@ -40,8 +34,6 @@ import uk.ac.diamond.scisoft.analysis.utils.OSUtils;
 import uk.ac.diamond.sda.intro.navigator.NavigatorRCPActivator;
 import uk.ac.diamond.sda.navigator.preference.FileNavigatorPreferenceConstants;
 import uk.ac.diamond.sda.navigator.util.NIOUtils;
-import uk.ac.diamond.sda.navigator.util.NavigatorUtils;
-import uk.ac.diamond.sda.navigator.util.ServiceHolder;
 
 class FileLabelProvider extends ColumnLabelProvider {
 
@@ -52,11 +44,13 @@ class FileLabelProvider extends ColumnLabelProvider {
 	private StructuredViewer viewer;
 	private boolean          showCollapsedFiles;
 	private IPropertyChangeListener propertyListenner;
+	private HDF5AttributeCache attributeCache;
 
-	public FileLabelProvider(StructuredViewer viewer, final int column) throws Exception {
+	public FileLabelProvider(StructuredViewer viewer, final int column, HDF5AttributeCache attributeCache) throws Exception {
 		
 		this.viewer      = viewer;
 		this.columnIndex = column;
+		this.attributeCache = attributeCache;
 		
 		this.dateFormat  = new SimpleDateFormat("dd/MM/yyyy HH:mm");
 		this.service     = (IFileIconService)ServiceManager.getService(IFileIconService.class);
@@ -120,7 +114,7 @@ class FileLabelProvider extends ColumnLabelProvider {
 			boolean showScanCmd = store.getBoolean(FileNavigatorPreferenceConstants.SHOW_SCANCMD_COLUMN);
 			
 			// Only read attributes if we need them!
-			Map<Integer, String> attr = showComment||showScanCmd ? getH5Attributes(node) : null;
+			String[] attr = (columnIndex==4&&showComment)||(columnIndex==5&&showScanCmd) ? attributeCache.getAttributes(node) : null;
 	
 			String ret;
 			switch(columnIndex) {
@@ -140,10 +134,10 @@ class FileLabelProvider extends ColumnLabelProvider {
 				ret = formatSize(Files.size(node));
 				break;
 			case 4:
-				ret = attr!=null&&showComment ? attr.get(4) : null;
+				ret = attr!=null ? attr[HDF5AttributeCache.TITLE] : null;
 				break;
 			case 5:
-				ret = attr!=null&&showScanCmd ? attr.get(5) : null;
+				ret = attr!=null ? attr[HDF5AttributeCache.SCAN_COMMAND] : null;
 				break;
 			default:
 				ret = null;
@@ -194,47 +188,10 @@ class FileLabelProvider extends ColumnLabelProvider {
 
 	}
 
-	private Map<Path, Map<Integer, String>> attributes;
-
-	private Map<Integer, String> getH5Attributes(Path node) throws Exception {
-		
-		if (Files.isDirectory(node))          return null;
-		if (!H5Loader.isH5(node.toAbsolutePath().toString())) return null;
-		
-		if (attributes==null) attributes = new HashMap<Path, Map<Integer, String>>(89);
-		if (attributes.containsKey(node)) return attributes.get(node);
-
-		IDataHolder dh = ServiceHolder.getLoaderService().getData(node.toAbsolutePath().toString(), null);
-		Tree tree = dh.getTree();
-		GroupNode rootnode = tree.getGroupNode();
-		final Map<Integer, String> attr = new HashMap<Integer, String>(3);
-		attributes.put(node, attr);
-
-		String comment;
-		try {
-			comment = NavigatorUtils.getHDF5Title(node.toAbsolutePath().toString(), rootnode);
-		} catch (Exception e) {
-			comment = "N/A";
-		}
-		attr.put(4, comment);
-
-		String scanCmd;
-		try {
-			scanCmd = NavigatorUtils.getHDF5ScanCommand(node.toAbsolutePath().toString(), rootnode);
-		} catch (Exception e) {
-			e.printStackTrace();
-			scanCmd = "N/A";
-		}
-		attr.put(5, scanCmd);
-
-		return attr;
-	}
-
 	@Override
 	public void dispose() {
 		super.dispose();
 	    if (store!=null)      store.removePropertyChangeListener(propertyListenner);
-		if (attributes!=null) attributes.clear();
 	}
 
 
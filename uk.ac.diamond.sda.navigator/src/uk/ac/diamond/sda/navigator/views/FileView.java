@@ -92,8 +92,14 @@ public final class FileView extends ViewPart implements IFileView {
 	public static final String ID = "uk.ac.diamond.sda.navigator.views.FileView";
 	
     private static final Logger logger = LoggerFactory.getLogger(FileView.class);
+
+	/**
+	 * Number of files the comment and scan command are kept for.
+	 */
+	private static final int ATTRIBUTE_CACHE_SIZE = 10000;
 	
 	private TreeViewer tree;
+	private HDF5AttributeCache attributeCache;
 
 	private Path savedSelection;
 	private Text filePath;
@@ -258,6 +264,14 @@ public final class FileView extends ViewPart implements IFileView {
 			}
 		});
 
+		final TreeUpdateBatcher attributeUpdates = new TreeUpdateBatcher(tree);
+		attributeCache = new HDF5AttributeCache(ATTRIBUTE_CACHE_SIZE, getAttributeStore(), new HDF5AttributeCache.Listener() {
+			@Override
+			public void attributesRead(Path file) {
+				attributeUpdates.update(file);
+			}
+		});
+
 		final String[] titles = { "Name", "Date", "Type", "Size", "Comment", "Scan Command" };
 
 		IPreferenceStore store = NavigatorRCPActivator.getDefault().getPreferenceStore();
@@ -299,7 +313,7 @@ public final class FileView extends ViewPart implements IFileView {
 			tCol.setText(titles[i]);
 			tCol.setWidth(widths[i]);
 			try {
-				tVCol.setLabelProvider(new FileLabelProvider(tree, i));
+				tVCol.setLabelProvider(new FileLabelProvider(tree, i, attributeCache));
 			} catch (Exception e1) {
 				logger.error("Cannot create label provider "+i, e1);
 			}
@@ -634,10 +648,22 @@ public final class FileView extends ViewPart implements IFileView {
 	@Override
 	public void dispose() {
 		super.dispose();
-		
+		if (attributeCache!=null) attributeCache.dispose();
 		// TODO Any other disposals?
 	}
 
+	/**
+	 * @return the file the comment and scan command columns are saved to between sessions, or null.
+	 */
+	private static Path getAttributeStore() {
+		try {
+			return NavigatorRCPActivator.getDefault().getStateLocation().append("hdf5_attributes.cache").toFile().toPath();
+		} catch (Exception ne) {
+			logger.debug("Cannot get the state location of the navigator", ne);
+			return null;
+		}
+	}
+
 	@Override
 	public void setFocus() {
 		tree.getControl().setFocus();
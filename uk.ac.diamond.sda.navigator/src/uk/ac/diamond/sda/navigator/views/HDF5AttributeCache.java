@@ -0,0 +1,290 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package uk.ac.diamond.sda.navigator.views;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.dawnsci.io.h5.H5Loader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import uk.ac.diamond.sda.navigator.util.NavigatorUtils;
+
+/**
+ * Holds the title and scan command of HDF5 files shown in the comment and
+ * scan command columns.
+ *
+ * Files are read on a background thread, the label provider is given
+ * nothing until the listener is told the attributes are there. Attributes
+ * are kept against the modification time and size of the file so that a
+ * file which is written again is read again. The most recently used
+ * entries are kept, up to maxSize, and may be saved to a file so that
+ * they are not read again when the view is next opened.
+ */
+class HDF5AttributeCache {
+
+	private static final Logger logger = LoggerFactory.getLogger(HDF5AttributeCache.class);
+
+	interface Listener {
+		/**
+		 * Called in the reading thread when the attributes of file are available.
+		 */
+		void attributesRead(Path file);
+	}
+
+	static final int TITLE        = 0;
+	static final int SCAN_COMMAND = 1;
+
+	private static final int      VERSION = 2;
+	private static final String[] NOT_H5  = new String[0];
+
+	private final Path                  store;
+	private final Listener              listener;
+	private final Map<Path, Entry>      entries;
+	private final UpdateScheduler       scheduler;
+
+	/**
+	 * Set when there are entries which are not in the store.
+	 */
+	private volatile boolean changed;
+
+	/**
+	 * @param maxSize the number of files to keep attributes for
+	 * @param store file the attributes are loaded from and saved to, may be null
+	 * @param listener told when attributes have been read
+	 */
+	HDF5AttributeCache(final int maxSize, Path store, Listener listener) {
+		this.store     = store;
+		this.listener  = listener;
+		this.entries   = new LinkedHashMap<Path, Entry>(Math.min(maxSize, 1024), 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Path, Entry> eldest) {
+				return size()>maxSize;
+			}
+		};
+		this.scheduler = new UpdateScheduler("Read HDF5 attributes", 1, Thread.MIN_PRIORITY, 1024);
+		if (store!=null) load();
+	}
+
+	/**
+	 * Only files with the extensions NavigatorUtils reads attributes from are looked at.
+	 * @param file
+	 * @return true if file may have a title and scan command
+	 */
+	static boolean isCandidate(Path file) {
+		final Path name = file.getFileName();
+		return name!=null && NavigatorUtils.isHDF5Name(name.toString());
+	}
+
+	/**
+	 * Does not read the contents of file, if its attributes are not cached
+	 * they are read in the background and null is returned.
+	 *
+	 * @param file
+	 * @return the attributes indexed by TITLE and SCAN_COMMAND, or null if file
+	 *         is not an HDF5 file or its attributes have not been read yet.
+	 * @throws IOException if the file cannot be looked at
+	 */
+	String[] getAttributes(Path file) throws IOException {
+
+		if (!isCandidate(file)) return null;
+		final BasicFileAttributes attr = Files.readAttributes(file, BasicFileAttributes.class);
+		if (attr.isDirectory()) return null;
+
+		final long modified = attr.lastModifiedTime().toMillis();
+		synchronized (entries) {
+			final Entry entry = entries.get(file);
+			if (entry!=null && entry.isFor(modified, attr.size())) {
+				return entry.attributes==NOT_H5 ? null : entry.attributes;
+			}
+		}
+		scheduler.offer(new ReadRequest(file));
+		return null;
+	}
+
+	int size() {
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+
+	/**
+	 * Stops reading files and saves the attributes read so far, if there is a store.
+	 */
+	void dispose() {
+		scheduler.shutdown();
+		if (store!=null && changed) save();
+	}
+
+	/**
+	 * Called in the reading thread.
+	 * @param path
+	 * @return title and scan command or null if path is not an HDF5 file.
+	 * @throws Exception
+	 */
+	String[] read(String path) throws Exception {
+		if (!H5Loader.isH5(path)) return null;
+		return NavigatorUtils.getHDF5TitleAndScanCommand(path);
+	}
+
+	private void put(Path file, long modified, long size, String[] attributes) {
+		synchronized (entries) {
+			entries.put(file, new Entry(modified, size, attributes));
+		}
+		changed = true;
+	}
+
+	private class ReadRequest implements UpdateScheduler.Request {
+
+		private final Path file;
+
+		ReadRequest(Path file) {
+			this.file = file;
+		}
+
+		@Override
+		public Object getKey() {
+			return file;
+		}
+
+		@Override
+		public boolean process() {
+
+			final BasicFileAttributes attr;
+			try {
+				attr = Files.readAttributes(file, BasicFileAttributes.class);
+			} catch (IOException ne) {
+				return true; // Deleted since it was shown
+			}
+
+			final long     modified = attr.lastModifiedTime().toMillis();
+			final String   path     = file.toAbsolutePath().toString();
+			String[]       attributes;
+			try {
+				attributes = read(path);
+				if (attributes==null) attributes = NOT_H5;
+			} catch (Exception ne) {
+				logger.debug("Cannot read title and scan command of "+path, ne);
+				attributes = new String[]{"N/A", "N/A"};
+			}
+
+			put(file, modified, attr.size(), attributes);
+			if (attributes!=NOT_H5) listener.attributesRead(file);
+			return true;
+		}
+
+		@Override
+		public void dropped() {
+			// Requested again when the row is next painted
+		}
+	}
+
+	private void load() {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(store)))) {
+			if (in.readInt()!=VERSION) return;
+			final int count = in.readInt();
+			synchronized (entries) {
+				for (int i = 0; i < count; i++) {
+					final Path   file     = Paths.get(readString(in));
+					final long   modified = in.readLong();
+					final long   size     = in.readLong();
+					final String title    = readString(in);
+					final String scanCmd  = readString(in);
+					entries.put(file, new Entry(modified, size, new String[]{title, scanCmd}));
+				}
+			}
+		} catch (NoSuchFileException ne) {
+			// Not saved yet
+		} catch (Exception ne) {
+			logger.debug("Cannot load HDF5 attributes from "+store, ne);
+		}
+	}
+
+	private void save() {
+
+		final List<Map.Entry<Path, Entry>> saved;
+		synchronized (entries) {
+			saved = new ArrayList<Map.Entry<Path, Entry>>(entries.size());
+			for (Map.Entry<Path, Entry> e : entries.entrySet()) {
+				if (e.getValue().attributes!=NOT_H5) saved.add(new AbstractMap.SimpleImmutableEntry<Path, Entry>(e));
+			}
+		}
+
+		try {
+			final Path tmp = store.resolveSibling(store.getFileName()+".tmp");
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+				out.writeInt(VERSION);
+				out.writeInt(saved.size());
+				// Least recently used first, so that loading keeps the same order
+				for (Map.Entry<Path, Entry> e : saved) {
+					final Entry entry = e.getValue();
+					writeString(out, e.getKey().toAbsolutePath().toString());
+					out.writeLong(entry.modified);
+					out.writeLong(entry.size);
+					writeString(out, entry.attributes[TITLE]);
+					writeString(out, entry.attributes[SCAN_COMMAND]);
+				}
+			}
+			Files.move(tmp, store, StandardCopyOption.REPLACE_EXISTING);
+			changed = false;
+		} catch (Exception ne) {
+			logger.debug("Cannot save HDF5 attributes to "+store, ne);
+		}
+	}
+
+	/**
+	 * Strings are written as their length in bytes then their UTF-8 bytes,
+	 * writeUTF cannot write titles or scan commands longer than 64k.
+	 */
+	private static void writeString(DataOutputStream out, String s) throws IOException {
+		final byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		final int length = in.readInt();
+		if (length<0) throw new IOException("Negative string length "+length);
+		final byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static class Entry {
+		private final long     modified;
+		private final long     size;
+		private final String[] attributes;
+		Entry(long modified, long size, String[] attributes) {
+			this.modified   = modified;
+			this.size       = size;
+			this.attributes = attributes;
+		}
+		boolean isFor(long modified, long size) {
+			return this.modified==modified && this.size==size;
+		}
+	}
+}
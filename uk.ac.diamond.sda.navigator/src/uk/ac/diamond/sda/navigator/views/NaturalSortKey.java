@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package uk.ac.diamond.sda.navigator.views;
+
+import java.util.Arrays;
+
+/**
+ * A file name prepared once for sorting in the same order as a case
+ * insensitive SortNatural. Names which SortNatural finds equal, such as
+ * a012 and a0012, are put in String order so that only the same name
+ * compares equal and a listing can be searched for a name.
+ *
+ * SortNatural lower cases both names and looks for the digit runs
+ * every time it compares them, which for a directory of n files happens
+ * O(n log n) times. The key holds the lower case characters and, for
+ * each character which starts a run of digits, where that run ends, so
+ * comparing two keys does not allocate or scan a digit run twice.
+ * A key is not changed once made, so listings can be read by several
+ * threads.
+ */
+class NaturalSortKey implements Comparable<NaturalSortKey> {
+
+	private final String name;
+	private final char[] lower;
+	private final int[]  lowerRuns;
+
+	/**
+	 * For names which differ just by case, the same arrays as lower if name is lower case
+	 */
+	private final char[] chars;
+	private final int[]  charRuns;
+
+	NaturalSortKey(String name) {
+		this.name      = name;
+		this.lower     = name.toLowerCase().toCharArray();
+		this.lowerRuns = findDigitRuns(lower);
+		final char[] c = name.toCharArray();
+		if (Arrays.equals(c, lower)) {
+			this.chars    = lower;
+			this.charRuns = lowerRuns;
+		} else {
+			this.chars    = c;
+			this.charRuns = findDigitRuns(c);
+		}
+	}
+
+	String getName() {
+		return name;
+	}
+
+	@Override
+	public int compareTo(NaturalSortKey other) {
+		final int c;
+		if (Arrays.equals(lower, other.lower)) {
+			if (name.equals(other.name)) return 0;
+			c = compare(chars, charRuns, other.chars, other.charRuns);
+		} else {
+			c = compare(lower, lowerRuns, other.lower, other.lowerRuns);
+		}
+		return c!=0 ? c : name.compareTo(other.name);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) return true;
+		if (!(obj instanceof NaturalSortKey)) return false;
+		return name.equals(((NaturalSortKey)obj).name);
+	}
+
+	@Override
+	public int hashCode() {
+		return name.hashCode();
+	}
+
+	@Override
+	public String toString() {
+		return name;
+	}
+
+	/**
+	 * @return for each index, the end of the run of digits starting there, or the index if it is not a digit.
+	 */
+	private static int[] findDigitRuns(char[] chars) {
+		final int[] runs = new int[chars.length];
+		int end = chars.length;
+		for (int i = chars.length-1; i >= 0; i--) {
+			if (!Character.isDigit(chars[i])) end = i;
+			runs[i] = end;
+		}
+		return runs;
+	}
+
+	private static char charAt(char[] s, int i) {
+		return i < s.length ? s[i] : 0;
+	}
+
+	/**
+	 * The same steps as SortNatural.compare
+	 */
+	private static int compare(char[] a, int[] aruns, char[] b, int[] bruns) {
+
+		int ia = 0, ib = 0;
+		int nza, nzb;
+		char ca, cb;
+
+		while (true) {
+			// only count the number of zeroes leading the last number compared
+			nza = nzb = 0;
+
+			ca = charAt(a, ia); cb = charAt(b, ib);
+
+			// skip over leading zeros
+			while (ca == '0') {
+				nza++;
+				ca = charAt(a, ++ia);
+			}
+			while (cb == '0') {
+				nzb++;
+				cb = charAt(b, ++ib);
+			}
+
+			// process run of digits, the longest run wins, then the first digit which differs
+			if (Character.isDigit(ca) && Character.isDigit(cb)) {
+				final int la = aruns[ia]-ia;
+				final int lb = bruns[ib]-ib;
+				if (la!=lb) return la < lb ? -1 : 1;
+				for (int i = 0; i < la; i++) {
+					final char da = a[ia+i];
+					final char db = b[ib+i];
+					if (da!=db) return da < db ? -1 : 1;
+				}
+			}
+
+			if (ca == 0 && cb == 0) {
+				return nza - nzb;
+			}
+
+			if (ca < cb) {
+				return -1;
+			} else if (ca > cb) {
+				return +1;
+			}
+
+			++ia; ++ib;
+		}
+	}
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package uk.ac.diamond.sda.navigator.views;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * A thread safe map from directory to cached data which can remove
+ * a directory and everything cached below it without looking at
+ * the rest of the cache.
+ *
+ * Paths are ordered name by name, so everything below a directory
+ * sorts straight after it and before any of its siblings.
+ */
+class PathCache<V> {
+
+	static final Comparator<Path> TREE_ORDER = new Comparator<Path>() {
+		@Override
+		public int compare(Path a, Path b) {
+			final Path ra = a.getRoot();
+			final Path rb = b.getRoot();
+			if (ra!=rb) {
+				if (ra==null) return -1;
+				if (rb==null) return 1;
+				final int c = ra.toString().compareTo(rb.toString());
+				if (c!=0) return c;
+			}
+			final int size = Math.min(a.getNameCount(), b.getNameCount());
+			for (int i = 0; i < size; i++) {
+				final int c = a.getName(i).compareTo(b.getName(i));
+				if (c!=0) return c;
+			}
+			return a.getNameCount()-b.getNameCount();
+		}
+	};
+
+	private final ConcurrentNavigableMap<Path, V> map;
+
+	PathCache() {
+		this.map = new ConcurrentSkipListMap<Path, V>(TREE_ORDER);
+	}
+
+	V get(Path path) {
+		return map.get(path);
+	}
+
+	boolean containsKey(Object path) {
+		return path instanceof Path && map.containsKey(path);
+	}
+
+	V put(Path path, V value) {
+		return map.put(path, value);
+	}
+
+	V putIfAbsent(Path path, V value) {
+		return map.putIfAbsent(path, value);
+	}
+
+	V remove(Path path) {
+		return map.remove(path);
+	}
+
+	/**
+	 * Removes path and everything below it.
+	 * @param path
+	 * @return the value which was cached for path itself, or null
+	 */
+	V removeTree(Path path) {
+		return removeTree(path, null);
+	}
+
+	/**
+	 * Removes path and everything below it.
+	 * @param path
+	 * @param removed if not null, the values removed are added to it
+	 * @return the value which was cached for path itself, or null
+	 */
+	V removeTree(Path path, List<V> removed) {
+		if (path==null) return null;
+		V ret = null;
+		for (Iterator<Map.Entry<Path, V>> it = map.tailMap(path, true).entrySet().iterator(); it.hasNext();) {
+			final Map.Entry<Path, V> entry = it.next();
+			if (!entry.getKey().startsWith(path)) break;
+			if (entry.getKey().equals(path)) ret = entry.getValue();
+			if (removed!=null) removed.add(entry.getValue());
+			it.remove();
+		}
+		return ret;
+	}
+
+	List<V> values() {
+		return new ArrayList<V>(map.values());
+	}
+
+	int size() {
+		return map.size();
+	}
+
+	void clear() {
+		map.clear();
+	}
+}
@@ -13,15 +13,13 @@ import java.io.IOException;
 import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.AbstractMap;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.TreeMap;
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.LinkedBlockingDeque;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.regex.Matcher;
 
@@ -29,8 +27,6 @@ import org.eclipse.dawnsci.analysis.api.io.ILoaderService;
 import org.eclipse.jface.preference.IPreferenceStore;
 import org.eclipse.jface.viewers.TreeViewer;
 import org.eclipse.jface.viewers.Viewer;
-import org.eclipse.swt.SWT;
-import org.eclipse.swt.graphics.Cursor;
 import org.eclipse.ui.PlatformUI;
 
 import uk.ac.diamond.sda.intro.navigator.NavigatorRCPActivator;
@@ -41,42 +37,52 @@ class ThreadingFileContentProvider implements IFileContentProvider {
 	
 
 	private TreeViewer treeViewer;
+	private TreeUpdateBatcher batcher;
 	private FileSortType sort = FileSortType.ALPHA_NUMERIC_DIRS_FIRST;
 	private boolean collapseDatacollections;
-	private LinkedBlockingDeque<UpdateRequest> elementQueue;
-	private LinkedBlockingDeque<UpdateRequest> childQueue;
 	
 	/**
-	 * Two threads with different priorities used.
+	 * Two schedulers with different priorities used. Element updates
+	 * only read the cache so one thread is enough, child updates list
+	 * directories and several siblings may be listed at once.
 	 */
-	private Thread updateElementThread;
-
-	/**
-	 * Two threads with different priorities used.
-	 */
-	private Thread updateChildThread;
+	private UpdateScheduler elementQueue;
+	private UpdateScheduler childQueue;
 
 	/**
 	 * Caching seems to be needed to keep the path sorting
 	 * fast. This used to be a soft reference cache but the 
 	 * file browsing does not really work if you start making the
 	 * cached
+	 * 
+	 * cachedStacks holds the first file of each data collection so
+	 * that files added later can be collapsed into it.
 	 */  
-	private Map<Path, List<Path>>    cachedSorting;
-	private Map<Path, Set<String>>   cachedStubs;
-	private Map<Path, ReentrantLock> cachedLocks;
+	private PathCache<DirectoryListing>  cachedSorting;
+	private PathCache<Set<String>>       cachedStubs;
+	private PathCache<Map<String, Path>> cachedStacks;
+	private PathCache<ReentrantLock>     cachedLocks;
 	
+	/**
+	 * Patches cachedSorting when files are created or deleted in listed directories.
+	 */
+	private DirectoryWatcher watcher;
+	private static final int MAX_WATCHED = 256;
 
 	public ThreadingFileContentProvider() {
-		this.cachedSorting = new ConcurrentHashMap<Path, List<Path>>(89);
-		this.cachedStubs   = new ConcurrentHashMap<Path, Set<String>>(89);
-		this.cachedLocks   = new ConcurrentHashMap<Path, ReentrantLock>(89);
-		
-		this.elementQueue  = new LinkedBlockingDeque<UpdateRequest>(Integer.MAX_VALUE);
-		this.childQueue    = new LinkedBlockingDeque<UpdateRequest>(Integer.MAX_VALUE);
+		this.cachedSorting = new PathCache<DirectoryListing>();
+		this.cachedStubs   = new PathCache<Set<String>>();
+		this.cachedStacks  = new PathCache<Map<String, Path>>();
+		this.cachedLocks   = new PathCache<ReentrantLock>();
+		this.watcher       = new DirectoryWatcher(MAX_WATCHED, new WatchListener());
 		
 		final IPreferenceStore store = NavigatorRCPActivator.getDefault().getPreferenceStore();
 		collapseDatacollections = store.getBoolean(FileNavigatorPreferenceConstants.SHOW_COLLAPSED_FILES);
+		
+		final int threads = store.getInt(FileNavigatorPreferenceConstants.UPDATE_THREAD_COUNT);
+		final int pending = store.getInt(FileNavigatorPreferenceConstants.UPDATE_QUEUE_SIZE);
+		this.elementQueue  = new UpdateScheduler("Update directory contents", 1,       ELEMENT_PRIORITY, pending);
+		this.childQueue    = new UpdateScheduler("Update child size",         threads, CHILD_PRIORITY,   pending);
 	}
 
 	
@@ -94,19 +100,15 @@ class ThreadingFileContentProvider implements IFileContentProvider {
 	private void clearAndStop(Path path, boolean blankQueue) {
 		
 		if (blankQueue) {
-			elementQueue.offerFirst(new BlankUpdateRequest()); // break the queue
-			updateElementThread = null;
-			
-			childQueue.offerFirst(new BlankUpdateRequest()); // break the queue
-			updateChildThread = null;
+			elementQueue.shutdown();
+			childQueue.shutdown();
+			watcher.dispose();
 		}
 
 		if (path!=null) {
 			if (elementQueue!=null)  elementQueue.clear();
 			if (childQueue!=null)    childQueue.clear();
-			removeCachedPath(cachedStubs, path);
-			removeCachedPath(cachedLocks, path);
-			Object old = removeCachedPath(cachedSorting, path);
+			Object old = removeCachedPath(path);
 			if (old==null) {
 				System.err.println("Unexpected clear in "+getClass().getSimpleName());
 				clear();
@@ -121,28 +123,32 @@ class ThreadingFileContentProvider implements IFileContentProvider {
 		if (paths==null || paths.length<1) {
 			if (elementQueue!=null)  elementQueue.clear();
 			if (childQueue!=null)    childQueue.clear();
+			if (batcher!=null)       batcher.clear();
 			if (cachedSorting!=null) cachedSorting.clear();
 			if (cachedStubs!=null)   cachedStubs.clear();
+			if (cachedStacks!=null)  cachedStacks.clear();
 			if (cachedLocks!=null)   cachedLocks.clear();
+			if (watcher!=null)       watcher.unwatchAll();
 
 		} else {
 			for (int i = 0; i < paths.length; i++) {
 				if (paths[i]==null) continue;
-				removeCachedPath(cachedStubs,   paths[i].getParent());
-				removeCachedPath(cachedLocks,   paths[i].getParent());
-				removeCachedPath(cachedSorting, paths[i].getParent());
+				removeCachedPath(paths[i].getParent());
 			}
 		}
 	}
 
-	private Object removeCachedPath(Map<Path, ?> cache, Path delete) {
-		Object ret = cache.remove(delete);
-		for (Path path : cache.keySet()) {
-			if (path.startsWith(delete) || !Files.exists(path)) {
-				cache.remove(path);
-			}
-		}
-		return ret;
+	/**
+	 * Removes delete and everything below it from the caches.
+	 * @param delete
+	 * @return the listing which was cached for delete, or null
+	 */
+	private DirectoryListing removeCachedPath(Path delete) {
+		watcher.unwatchTree(delete);
+		cachedStubs.removeTree(delete);
+		cachedStacks.removeTree(delete);
+		cachedLocks.removeTree(delete);
+		return cachedSorting.removeTree(delete);
 	}
 
 	
@@ -152,6 +158,8 @@ class ThreadingFileContentProvider implements IFileContentProvider {
 	@Override
 	public void inputChanged(Viewer viewer, Object oldInput, Object newInput) {
 		treeViewer = (TreeViewer) viewer;
+		if (batcher!=null) batcher.clear();
+		batcher    = new TreeUpdateBatcher(treeViewer);
 		treeViewer.refresh();
 	}
 
@@ -160,8 +168,7 @@ class ThreadingFileContentProvider implements IFileContentProvider {
 
 		if (elementQueue==null) return;
 		if (PlatformUI.isWorkbenchRunning()) {
-			if (updateElementThread==null) updateElementThread = createUpdateThread(elementQueue, ELEMENT_PRIORITY, "Update directory contents");
-			elementQueue.offerFirst(new ElementUpdateRequest(parent, index));
+			elementQueue.offer(new ElementUpdateRequest(parent, index));
 		} else {
 			final Path node = (Path) parent;
 			final List<Path> fa = getFileList(node);
@@ -196,8 +203,13 @@ class ThreadingFileContentProvider implements IFileContentProvider {
 		}
 		
 		if (PlatformUI.isWorkbenchRunning()) {
-			if (updateChildThread==null) updateChildThread = createUpdateThread(childQueue, CHILD_PRIORITY, "Update child size");
-			childQueue.offerFirst(new ChildUpdateRequest(element, true));
+			final DirectoryListing listing = element instanceof Path ? cachedSorting.get((Path)element) : null;
+			if (listing!=null) {
+				// Already listed, no need to wait behind other directories.
+				updateChildCountInternal(element, listing.size());
+				return;
+			}
+			childQueue.offer(new ChildUpdateRequest(element, true));
 		} else {
 			updateChildCountInternal(element, currentChildCount);
 		}
@@ -207,13 +219,16 @@ class ThreadingFileContentProvider implements IFileContentProvider {
 	private void updateChildCountInternal(Object element, int size) {
 		
 		if (element==null) return;
-		
+		treeViewer.setChildCount(element, getChildCount(element, size));
+	}
+	
+	private int getChildCount(Object element, int size) {
 		if (element instanceof Path && Files.isDirectory((Path)element)) {
-			treeViewer.setChildCount(element, size);
+			return size;
 		} else if (element instanceof String){
-			treeViewer.setChildCount(element, NIOUtils.getRoots().size());
+			return NIOUtils.getRoots().size();
 		} else {
-			treeViewer.setChildCount(element, 0);
+			return 0;
 		}
 	}
 
@@ -223,10 +238,8 @@ class ThreadingFileContentProvider implements IFileContentProvider {
 		if (!Files.isDirectory(node)) return null;
 		if (cachedSorting==null) return null;
 				
-		if (cachedSorting.containsKey(node)) {
-			List<Path> sorted = cachedSorting.get(node);
-			if (sorted!=null) return sorted;
-		}
+		final DirectoryListing sorted = cachedSorting.get(node);
+		if (sorted!=null) return sorted.getPaths();
 		
 		return null;
 	}
@@ -252,11 +265,8 @@ class ThreadingFileContentProvider implements IFileContentProvider {
 		this.sort = sort;
 	}
 	
-	
-	private static Cursor  busy;
-	private static boolean isBusy = false;
 
-	private abstract class UpdateRequest {
+	private abstract class UpdateRequest implements UpdateScheduler.Request {
 		
 		protected Object element;
 		protected int index;
@@ -264,7 +274,6 @@ class ThreadingFileContentProvider implements IFileContentProvider {
 		UpdateRequest() {
 			element=null;
 			index  =-1;
-			if (busy ==null) busy   = treeViewer.getControl().getDisplay().getSystemCursor(SWT.CURSOR_WAIT);
 		}
 
 		UpdateRequest(final Object element, final int index) {
@@ -280,46 +289,25 @@ class ThreadingFileContentProvider implements IFileContentProvider {
 			return index;
 		}
 
+		@Override
 		public abstract boolean process() throws Exception;
 		
-		protected synchronized void updateBusy(final BlockingQueue<UpdateRequest> queue, boolean start) {
-			
-			if (start) {
-				if (!isBusy) {
-					isBusy = true;
-					if (treeViewer.getControl().isDisposed()) return;
-					treeViewer.getControl().getDisplay().syncExec(new Runnable() {
-						@Override
-						public void run() {
-							if (treeViewer.getControl().isDisposed()) return;
-							treeViewer.getControl().setCursor(busy);
-						}
-					});
-	
-				}
-			} else {				
-				if (queue.isEmpty()) { // Nothing more in queue
-           			if (treeViewer.getControl().isDisposed()) return;
-                    treeViewer.getControl().getDisplay().syncExec(new Runnable() {
-						@Override
-						public void run() {
-							if (treeViewer.getControl().isDisposed()) return;
-							treeViewer.getControl().setCursor(null);
-							isBusy = false;
-						}
-        			});
-            	}
-			}
-		}
-	}
-	
-	private class BlankUpdateRequest extends UpdateRequest {
-
+		/**
+		 * The row for this request may be shown blank if it was dropped,
+		 * so we clear it which makes the tree ask again when it is next painted.
+		 */
 		@Override
-		public boolean process() throws Exception {
-			return false;
+		public void dropped() {
+			batcher.clearRow(getElement(), getIndex());
 		}
 		
+		protected void updateBusy(final UpdateScheduler queue, boolean start) {
+			if (start) {
+				batcher.setBusy(true);
+			} else if (queue.isLastRequest()) { // Nothing more in queue
+				batcher.setBusy(false);
+			}
+		}
 	}
 	
 	private class ElementUpdateRequest extends UpdateRequest {
@@ -328,36 +316,39 @@ class ThreadingFileContentProvider implements IFileContentProvider {
 			super(element, index);
 		}
 
+		@Override
+		public Object getKey() {
+			return new AbstractMap.SimpleImmutableEntry<Object, Integer>(element, index);
+		}
+
 		@Override
 		public boolean process() throws Exception {
 			
 			try {
 				updateBusy(elementQueue, true);
 				
+				// No lock needed, listings are not changed once cached and
+				// a directory being listed may have published its first rows.
 				final List<Path> fa;
 				if (getElement() instanceof String) {
 					fa = NIOUtils.getRoots();
 				} else {
-					final Path node = (Path) getElement();
-					ReentrantLock lock = getLock(node);
-					try {
-						lock.lock();
-						fa = getFileList(node);
-					} finally {
-						lock.unlock();
-					}
+					fa = getFileList((Path) getElement());
 				}
 	
 
 				if (treeViewer.getControl().isDisposed()) return false;
-				treeViewer.getControl().getDisplay().syncExec(new Runnable() {
-					@Override
-					public void run() {
-						if (treeViewer.getControl().isDisposed()) return;
-
-						updateElementInternal(getElement(), getIndex(), fa);
-					}
-				});
+				if (fa==null || getIndex()>=fa.size()) return true;
+				
+				// We find out if it is a directory here rather than in the UI thread
+				final Path child = fa.get(getIndex());
+				if (Files.isDirectory(child)) {
+					final DirectoryListing listed = cachedSorting.get(child);
+					batcher.replace(getElement(), getIndex(), child, listed!=null ? listed.size() : -1);
+					if (listed==null && childQueue!=null) childQueue.offer(new ChildUpdateRequest(child, true));
+				} else {
+					batcher.replace(getElement(), getIndex(), child, 0);
+				}
 
 				
 			} finally {
@@ -383,6 +374,11 @@ class ThreadingFileContentProvider implements IFileContentProvider {
 			this.updateBusyRequired = updateBusyRequired;
 		}
 
+		@Override
+		public Object getKey() {
+			return element;
+		}
+
 
 		@Override
 		public boolean process() throws Exception {
@@ -393,6 +389,7 @@ class ThreadingFileContentProvider implements IFileContentProvider {
 				if (updateBusyRequired) updateBusy(childQueue, true);
 				
 				int count = 0;
+				DirectoryListing published = null;
 				
 				if (element instanceof Path) {
 					final Path path = (Path)element;
@@ -401,28 +398,33 @@ class ThreadingFileContentProvider implements IFileContentProvider {
 					// Therefore as we find the number, we populate the cachedSorting as we go.
 					if (Files.isDirectory(path)) {
 						
+						// Before listing so that files added while we list are not missed
+						watcher.watch(path);
+						
 						ILoaderService lservice=null;
 						if (collapseDatacollections) {
 						    lservice = NavigatorRCPActivator.getService(ILoaderService.class);
 						}
 						
-		    		    final Map<String, Path> files = new TreeMap<String, Path>(new SortNatural<String>(false));
-		    		    final Map<String, Path> dirs  = new TreeMap<String, Path>(new SortNatural<String>(false));
+		    		    final DirectoryListingBuilder builder = new DirectoryListingBuilder(sort==FileSortType.ALPHA_NUMERIC_DIRS_FIRST);
 
 			        	// Faster way than File.list() in theory
 			        	// see http://www.rgagnon.com/javadetails/java-get-directory-content-faster-with-many-files.html						
 				        try (DirectoryStream<Path> ds = Files.newDirectoryStream(path)) {
 				        	
-				        	Set<String> tmp = null;
+				        	Map<String, Path> tmp = null;
 				        	
 							if (collapseDatacollections) {
-								tmp = new HashSet<String>(31);
-								cachedStubs.put(path, new HashSet<String>(31));
+								tmp = new HashMap<String, Path>(31);
+								cachedStacks.put(path, tmp);
+								cachedStubs.put(path, Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>(31)));
 							}
 			        	
+							// The lock keeps the watcher out until we have finished
 							ReentrantLock lock = getLock(path);
 							try {
 								lock.lock();
+								int nextPage = FIRST_PAGE;
 					        	for (Path p : ds) {
 					        		
 					        		final boolean isDir = Files.isDirectory(p);
@@ -435,34 +437,35 @@ class ThreadingFileContentProvider implements IFileContentProvider {
 					        					String id = matcher.group(1);
 
 					        					// If we already have an item for this scan:
-					        					if (tmp!=null && tmp.contains(id)) {
+					        					if (tmp!=null && tmp.containsKey(id)) {
 					        						// We have more than one of them, so they get truncated
 					        						cachedStubs.get(path).add(id);
 					        						continue;
 					        					}
 
 					        					// Otherwise allows its index to be added.
-					        					if (tmp!=null) tmp.add(id);
+					        					if (tmp!=null) tmp.put(id, p);
 					        				}
 					        			}
-						        		files.put(name, p);
-						        		
-					        		} else if (isDir && sort==FileSortType.ALPHA_NUMERIC_DIRS_FIRST) { // dirs separate
-					        			dirs.put(name, p);
-					        		} else {
-					        			files.put(name, p);
 					        		}
+					        		builder.add(p, name, isDir); // dirs kept separate if sorted first
 					        		count+=1; 
+					        		
+					        		if (count>=nextPage) {
+					        			// Show what is sorted so far rather than wait for a huge directory
+					        			published = publish(path, builder.build(), published);
+					        			nextPage *= PAGE_GROWTH;
+					        		}
 					        	}
 					        
 				        	
 				        		// We precache the directory contents now because we pared them down with the regexp
-					    	    final List<Path> ret = new ArrayList<Path>(files.size()+dirs.size());
-					    	    ret.addAll(dirs.values());
-					    	    ret.addAll(files.values());
-					    	    dirs.clear();
-					    	    files.clear();
-					    	    cachedSorting.put(path, ret);
+					    	    final DirectoryListing ret = builder.build();
+					    	    if (published!=null) {
+					    	    	published = publish(path, ret, published);
+					    	    } else {
+					    	    	cachedSorting.put(path, ret);
+					    	    }
 					    	    
 							} finally {
 								lock.unlock();
@@ -479,13 +482,7 @@ class ThreadingFileContentProvider implements IFileContentProvider {
 				final int size = count;
 		        
 				if (treeViewer.getControl().isDisposed()) return false;
-				treeViewer.getControl().getDisplay().syncExec(new Runnable() {
-					@Override
-					public void run() {
-						if (treeViewer.getControl().isDisposed()) return;
-						updateChildCountInternal(element, size);
-					}
-				});
+				if (published==null) batcher.setChildCount(element, getChildCount(element, size));
 				    
 				
 			} finally {
@@ -501,57 +498,166 @@ class ThreadingFileContentProvider implements IFileContentProvider {
 	
 
 	/**
-	 * Method creates a thread to process a queue
+	 * Number of entries read before the first rows of a directory are shown,
+	 * after that the rows are merged again each time the number read grows
+	 * by PAGE_GROWTH so that the copying is proportional to the directory size.
 	 */
-	private Thread createUpdateThread(final BlockingQueue<UpdateRequest> queue, final int priority, String name) {
-
-		final Thread thread = new Thread(name) {
-
-			@Override
-			public void run() {
+	private static final int FIRST_PAGE  = 256;
+	private static final int PAGE_GROWTH = 4;
 
-				while(!treeViewer.getControl().isDisposed() && queue!=null) {
-					try {
+	/**
+	 * Caches a partial or complete listing of dir and shows it.
+	 * @param dir
+	 * @param listing
+	 * @param previous listing shown, or null if this is the first
+	 * @return listing
+	 */
+	private DirectoryListing publish(Path dir, DirectoryListing listing, DirectoryListing previous) {
+		
+		cachedSorting.put(dir, listing);
+		if (previous==null) {
+			batcher.setChildCount(dir, listing.size());
+		} else {
+			// Rows before the first new one are unchanged unless a file has become
+			// a data collection, which changes its label.
+			final int first = collapseDatacollections ? 0 : previous.firstDifference(listing);
+			if (first<listing.size() || listing.size()!=previous.size()) {
+				batcher.childrenChanged(dir, first, listing.size());
+			}
+		}
+		return listing;
+	}
 
-						final UpdateRequest req = queue.take();
+	private ReentrantLock getLock(Path path) {
+		ReentrantLock lock = cachedLocks.get(path);
+		if (lock==null) {
+			lock = new ReentrantLock();
+			final ReentrantLock other = cachedLocks.putIfAbsent(path, lock);
+			if (other!=null) lock = other;
+		}
+		return lock;
+	}
 
-						// Blank object added to break the queue
-						if (req.getElement()==null && req.getIndex()==-1) return;
-                        if (req instanceof BlankUpdateRequest) return;
-                        
-						final boolean ok = req.process();
-						if (!ok) break;
+	/**
+	 * Patches the cached listings and the rows after them when files are
+	 * created or deleted, so that a directory does not have to be listed
+	 * again while a scan is writing to it.
+	 */
+	private class WatchListener implements DirectoryWatcher.Listener {
 
-					} catch (InterruptedException ne) {
-						break;
+		@Override
+		public void created(Path dir, List<Path> children) {
+			
+			final ILoaderService lservice = collapseDatacollections ? NavigatorRCPActivator.getService(ILoaderService.class) : null;
+			
+			int first = -1;
+			int size;
+			final ReentrantLock lock = getLock(dir);
+			try {
+				lock.lock();
+				DirectoryListing listing = cachedSorting.get(dir);
+				if (listing==null) return; // Not listed or cleared since
+				
+				for (Path child : children) {
+					final boolean isDir = Files.isDirectory(child);
+					if (!isDir && lservice!=null && isCollapsed(dir, child, lservice)) continue;
+					
+					int index = listing.search(child, isDir);
+					if (index>-1) continue; // We listed it already
+					index   = -index-1;
+					listing = listing.add(index, child, isDir);
+					first   = first<0 ? index : Math.min(first, index);
+				}
+				cachedSorting.put(dir, listing);
+				size = listing.size();
+			} finally {
+				lock.unlock();
+			}
+			if (first>-1) batcher.childrenChanged(dir, first, size);
+		}
 
-					} catch (org.eclipse.swt.SWTException swtE) {
-						queue.clear();
+		@Override
+		public void deleted(Path dir, List<Path> children) {
+			
+			int first = -1;
+			int size  = 0;
+			boolean relist = false;
+			final ReentrantLock lock = getLock(dir);
+			try {
+				lock.lock();
+				DirectoryListing listing = cachedSorting.get(dir);
+				for (Path child : children) {
+					removeCachedPath(child); // In case it was a directory we listed
+					if (listing==null) continue;
+					
+					final int index = listing.indexOf(child);
+					if (index<0) continue; // Was collapsed into a data collection
+					if (isStub(dir, child)) {
+						relist = true; // Whole data collection is shown by this file
 						break;
-
-					} catch (Exception ne) {
-						queue.clear();
-						continue;
 					}
+					listing = listing.remove(index);
+					first   = first<0 ? index : Math.min(first, index);
+					
+					final Map<String, Path> stacks = cachedStacks.get(dir);
+					if (stacks!=null) stacks.values().remove(child);
 				}
-			}	
-		};
-		thread.setPriority(priority);
-		thread.setDaemon(true);
-		thread.start();
+				if (listing!=null && !relist) {
+					cachedSorting.put(dir, listing);
+					size = listing.size();
+				}
+			} finally {
+				lock.unlock();
+			}
+			if (relist) {
+				overflow(dir);
+			} else if (first>-1) {
+				batcher.childrenChanged(dir, first, size);
+			}
+		}
 
-		return thread;
-	}
+		@Override
+		public void overflow(Path dir) {
+			removeCachedPath(dir);
+			batcher.refresh(dir);
+		}
 
-	private ReentrantLock getLock(Path path) {
-		ReentrantLock lock;
-		if (cachedLocks.containsKey(path)) {
-			lock = cachedLocks.get(path);
-		} else {
-			lock = new ReentrantLock();
-			cachedLocks.put(path, lock);
+		/**
+		 * @return true if child belongs to a data collection which is already shown.
+		 */
+		private boolean isCollapsed(Path dir, Path child, ILoaderService lservice) {
+			
+			final Matcher matcher = lservice.getStackMatcher(child.getFileName().toString());
+			if (matcher==null || !matcher.matches()) return false;
+			
+			final Set<String>       stubs  = cachedStubs.get(dir);
+			final Map<String, Path> stacks = cachedStacks.get(dir);
+			if (stubs==null || stacks==null) return false;
+			
+			final String id = matcher.group(1);
+			if (stubs.contains(id)) return true;
+			
+			final Path shown = stacks.get(id);
+			if (shown==null) {
+				stacks.put(id, child);
+				return false;
+			}
+			if (shown.equals(child)) return false;
+			
+			stubs.add(id);
+			batcher.update(shown); // It is labelled as the data collection now
+			return true;
+		}
+		
+		private boolean isStub(Path dir, Path child) {
+			final Set<String>       stubs  = cachedStubs.get(dir);
+			final Map<String, Path> stacks = cachedStacks.get(dir);
+			if (stubs==null || stacks==null) return false;
+			for (String id : stubs) {
+				if (child.equals(stacks.get(id))) return true;
+			}
+			return false;
 		}
-		return lock;
 	}
 
 
@@ -0,0 +1,271 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package uk.ac.diamond.sda.navigator.views;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.jface.viewers.TreeViewer;
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.widgets.Control;
+import org.eclipse.swt.widgets.Tree;
+import org.eclipse.swt.widgets.TreeItem;
+import org.eclipse.swt.widgets.Widget;
+
+/**
+ * Collects row updates resolved by the update threads and applies
+ * them to the TreeViewer in batches. There is at most one asyncExec
+ * waiting at any time and the update threads never wait for the
+ * UI thread.
+ *
+ * Each batch runs for at most about one frame so that painting and
+ * user input are not held up by a very large directory, anything left
+ * over goes in the next batch.
+ */
+class TreeUpdateBatcher {
+
+	/**
+	 * Time which one batch may take, in nanoseconds.
+	 */
+	private static final long FRAME_TIME = 20*1000*1000;
+
+	/**
+	 * Batches larger than this are applied with redraw switched off.
+	 */
+	private static final int  REDRAW_THRESHOLD = 32;
+
+	private final TreeViewer                     treeViewer;
+	private final ConcurrentLinkedQueue<Update>  updates;
+	private final AtomicInteger                  size;
+	private final AtomicBoolean                  scheduled;
+	private final AtomicBoolean                  busyRequested;
+	private final Runnable                       flush;
+
+	/**
+	 * Only used in the UI thread.
+	 */
+	private boolean busyShown;
+
+	TreeUpdateBatcher(TreeViewer treeViewer) {
+		this.treeViewer    = treeViewer;
+		this.updates       = new ConcurrentLinkedQueue<Update>();
+		this.size          = new AtomicInteger();
+		this.scheduled     = new AtomicBoolean(false);
+		this.busyRequested = new AtomicBoolean(false);
+		this.flush         = new Runnable() {
+			@Override
+			public void run() {
+				flush();
+			}
+		};
+	}
+
+	/**
+	 * Sets the element at index under parent and, if childCount is not -1, the number of children of element.
+	 */
+	void replace(Object parent, int index, Object element, int childCount) {
+		add(new Replace(parent, index, element, childCount));
+	}
+
+	void setChildCount(Object element, int childCount) {
+		add(new ChildCount(element, childCount));
+	}
+
+	/**
+	 * Sets the number of children of parent after children have been added or
+	 * removed, the rows from index on are cleared as they may have moved.
+	 */
+	void childrenChanged(Object parent, int index, int childCount) {
+		add(new ChildrenChanged(parent, index, childCount));
+	}
+
+	/**
+	 * Updates the label of element.
+	 */
+	void update(Object element) {
+		add(new Refresh(element, false));
+	}
+
+	/**
+	 * Refreshes element and its children, the content provider is asked for them again.
+	 */
+	void refresh(Object element) {
+		add(new Refresh(element, true));
+	}
+
+	/**
+	 * Clears the row showing element, or the row at index under element if index is
+	 * not -1, so that the virtual tree requests it again when it becomes visible.
+	 */
+	void clearRow(Object element, int index) {
+		add(new Clear(element, index));
+	}
+
+	/**
+	 * Shows or hides the wait cursor with the next batch.
+	 */
+	void setBusy(boolean busy) {
+		if (busyRequested.getAndSet(busy)!=busy) schedule();
+	}
+
+	/**
+	 * Discards any updates which have not been applied.
+	 */
+	void clear() {
+		updates.clear();
+		size.set(0);
+	}
+
+	private void add(Update update) {
+		updates.add(update);
+		size.incrementAndGet();
+		schedule();
+	}
+
+	private void schedule() {
+		final Control control = treeViewer.getControl();
+		if (control.isDisposed()) return;
+		if (scheduled.compareAndSet(false, true)) {
+			control.getDisplay().asyncExec(flush);
+		}
+	}
+
+	private void flush() {
+
+		scheduled.set(false);
+		final Control control = treeViewer.getControl();
+		if (control.isDisposed()) {
+			clear();
+			return;
+		}
+
+		final boolean large = size.get()>REDRAW_THRESHOLD;
+		if (large) control.setRedraw(false);
+		try {
+			final long end = System.nanoTime()+FRAME_TIME;
+			Update update;
+			while ((update = updates.poll())!=null) {
+				size.decrementAndGet();
+				update.apply();
+				if (System.nanoTime()>end) break;
+			}
+		} finally {
+			if (large) control.setRedraw(true);
+		}
+
+		final boolean busy = busyRequested.get();
+		if (busy!=busyShown) {
+			control.setCursor(busy ? control.getDisplay().getSystemCursor(SWT.CURSOR_WAIT) : null);
+			busyShown = busy;
+		}
+
+		if (!updates.isEmpty()) schedule();
+	}
+
+	private abstract class Update {
+		protected final Object element;
+		protected final int    index;
+		Update(Object element, int index) {
+			this.element = element;
+			this.index   = index;
+		}
+		abstract void apply();
+	}
+
+	private class Replace extends Update {
+		private final Object parent;
+		private final int    childCount;
+		Replace(Object parent, int index, Object element, int childCount) {
+			super(element, index);
+			this.parent     = parent;
+			this.childCount = childCount;
+		}
+		@Override
+		void apply() {
+			treeViewer.replace(parent, index, element);
+			if (childCount>-1) treeViewer.setChildCount(element, childCount);
+		}
+	}
+
+	private class ChildCount extends Update {
+		private final int childCount;
+		ChildCount(Object element, int childCount) {
+			super(element, -1);
+			this.childCount = childCount;
+		}
+		@Override
+		void apply() {
+			treeViewer.setChildCount(element, childCount);
+		}
+	}
+
+	private class ChildrenChanged extends Update {
+		private final int childCount;
+		ChildrenChanged(Object parent, int index, int childCount) {
+			super(parent, index);
+			this.childCount = childCount;
+		}
+		@Override
+		void apply() {
+			treeViewer.setChildCount(element, childCount);
+			final Widget item = treeViewer.testFindItem(element);
+			if (item instanceof TreeItem) {
+				final TreeItem parent = (TreeItem)item;
+				for (int i = index; i < parent.getItemCount(); i++) parent.clear(i, false);
+			} else if (item instanceof Tree) {
+				final Tree tree = (Tree)item;
+				for (int i = index; i < tree.getItemCount(); i++) tree.clear(i, false);
+			}
+		}
+	}
+
+	private class Refresh extends Update {
+		private final boolean structure;
+		Refresh(Object element, boolean structure) {
+			super(element, -1);
+			this.structure = structure;
+		}
+		@Override
+		void apply() {
+			if (structure) {
+				treeViewer.refresh(element);
+			} else {
+				treeViewer.update(element, null);
+			}
+		}
+	}
+
+	private class Clear extends Update {
+		Clear(Object element, int index) {
+			super(element, index);
+		}
+		@Override
+		void apply() {
+			final Widget item = treeViewer.testFindItem(element);
+			if (index<0) {
+				if (!(item instanceof TreeItem)) return;
+				final TreeItem  row    = (TreeItem)item;
+				final TreeItem  parent = row.getParentItem();
+				if (parent!=null) {
+					parent.clear(parent.indexOf(row), false);
+				} else {
+					row.getParent().clear(row.getParent().indexOf(row), false);
+				}
+			} else if (item instanceof TreeItem) {
+				final TreeItem parent = (TreeItem)item;
+				if (index<parent.getItemCount()) parent.clear(index, false);
+			} else if (item instanceof Tree) {
+				final Tree tree = (Tree)item;
+				if (index<tree.getItemCount()) tree.clear(index, false);
+			}
+		}
+	}
+}
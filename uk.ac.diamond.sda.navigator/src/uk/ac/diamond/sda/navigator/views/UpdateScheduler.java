@@ -0,0 +1,238 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package uk.ac.diamond.sda.navigator.views;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Processes lazy tree update requests on a fixed pool of worker threads.
+ *
+ * Requests are processed newest first, so rows the user is looking at are
+ * filled before rows they have scrolled past. A request whose key is already
+ * waiting replaces the waiting one, which is taken out of the queue, so at
+ * most one request for each key is ever queued. When more than maxPending
+ * requests are waiting the oldest are dropped and told so, they are almost
+ * always for rows which are no longer visible.
+ */
+class UpdateScheduler {
+
+	private static final Logger logger = LoggerFactory.getLogger(UpdateScheduler.class);
+
+	interface Request {
+
+		/**
+		 * Requests with equal keys are coalesced while they are waiting.
+		 */
+		Object getKey();
+
+		/**
+		 * @return false if the scheduler should stop processing requests
+		 */
+		boolean process() throws Exception;
+
+		/**
+		 * Called instead of process() if the request is evicted from the queue.
+		 */
+		void dropped();
+	}
+
+	private final String                        name;
+	private final int                           threadCount;
+	private final int                           priority;
+	private final int                           maxPending;
+	private final LinkedBlockingDeque<Request>  queue;
+	private final Map<Object, Request>          pending;
+	private final AtomicInteger                 active;
+
+	private final AtomicLong received  = new AtomicLong();
+	private final AtomicLong coalesced = new AtomicLong();
+	private final AtomicLong dropped   = new AtomicLong();
+
+	private volatile ExecutorService executor;
+	private volatile boolean running;
+
+	/**
+	 *
+	 * @param name used to name the worker threads
+	 * @param threadCount number of requests which may be processed at the same time
+	 * @param priority thread priority of the workers
+	 * @param maxPending number of requests which may wait before the oldest are dropped
+	 */
+	UpdateScheduler(String name, int threadCount, int priority, int maxPending) {
+		this.name        = name;
+		this.threadCount = Math.max(1, threadCount);
+		this.priority    = priority;
+		this.maxPending  = Math.max(1, maxPending);
+		this.queue       = new LinkedBlockingDeque<Request>();
+		this.pending     = new HashMap<Object, Request>(maxPending);
+		this.active      = new AtomicInteger();
+		this.running     = true;
+	}
+
+	/**
+	 * Adds a request, starting the workers if required.
+	 * @param req
+	 * @return false if the request replaced one already waiting or the scheduler is stopped.
+	 */
+	boolean offer(Request req) {
+
+		if (!running) return false;
+		received.incrementAndGet();
+
+		final Object  key = req.getKey();
+		final boolean replaced;
+		synchronized (pending) {
+			final Request old = pending.put(key, req);
+			replaced = old!=null;
+			if (replaced) {
+				queue.removeFirstOccurrence(old);
+				coalesced.incrementAndGet();
+			}
+			queue.offerFirst(req);
+
+			while (pending.size()>maxPending) {
+				final Request last = queue.pollLast();
+				if (last==null) break;
+				if (pending.get(last.getKey())!=last) continue; // Superseded
+				pending.remove(last.getKey());
+				dropped.incrementAndGet();
+				last.dropped();
+			}
+		}
+
+		if (executor==null) start();
+		return !replaced;
+	}
+
+	private synchronized void start() {
+		if (executor!=null || !running) return;
+		executor = Executors.newFixedThreadPool(threadCount, new ThreadFactory() {
+			private int count = 0;
+			@Override
+			public Thread newThread(Runnable r) {
+				final Thread thread = new Thread(r, name+" "+(++count));
+				thread.setPriority(priority);
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		for (int i = 0; i < threadCount; i++) {
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					processRequests();
+				}
+			});
+		}
+	}
+
+	private void processRequests() {
+
+		while(running) {
+			try {
+				final Request req = queue.takeFirst();
+				synchronized (pending) {
+					if (pending.get(req.getKey())!=req) continue; // Superseded or cleared
+					pending.remove(req.getKey());
+					active.incrementAndGet();
+				}
+				try {
+					final boolean ok = req.process();
+					if (!ok) {
+						clear();
+						break;
+					}
+				} finally {
+					active.decrementAndGet();
+				}
+
+			} catch (InterruptedException ne) {
+				break;
+
+			} catch (org.eclipse.swt.SWTException swtE) {
+				clear();
+				break;
+
+			} catch (Exception ne) {
+				logger.debug("Cannot process update request", ne);
+				clear();
+				continue;
+			}
+		}
+	}
+
+	/**
+	 * Removes all waiting requests without processing them.
+	 */
+	void clear() {
+		synchronized (pending) {
+			pending.clear();
+			queue.clear();
+		}
+	}
+
+	/**
+	 * Stops the workers, waiting requests are discarded.
+	 */
+	synchronized void shutdown() {
+		running = false;
+		clear();
+		if (executor!=null) executor.shutdownNow();
+		executor = null;
+	}
+
+	/**
+	 * @return number of requests waiting.
+	 */
+	int size() {
+		return queue.size();
+	}
+
+	/**
+	 * @return true if no requests are waiting or being processed.
+	 */
+	boolean isIdle() {
+		synchronized (pending) {
+			return pending.isEmpty() && active.get()==0;
+		}
+	}
+
+	/**
+	 * Called by a request while it is processed.
+	 * @return true if nothing is waiting and no other request is being processed.
+	 */
+	boolean isLastRequest() {
+		synchronized (pending) {
+			return pending.isEmpty() && active.get()<=1;
+		}
+	}
+
+	long getReceivedCount() {
+		return received.get();
+	}
+
+	long getCoalescedCount() {
+		return coalesced.get();
+	}
+
+	long getDroppedCount() {
+		return dropped.get();
+	}
+}
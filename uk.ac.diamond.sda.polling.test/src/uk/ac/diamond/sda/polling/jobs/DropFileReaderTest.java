@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package uk.ac.diamond.sda.polling.jobs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the drop file is read again when it is truncated or replaced, and
+ * that a last line without a new line is read again, by writing to the file
+ * between reads as the process writing it would.
+ */
+public class DropFileReaderTest {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private Path dir;
+	private Path file;
+	private DropFileReader reader;
+
+	@Before
+	public void createFile() throws IOException {
+		dir    = Files.createTempDirectory("DropFileReaderTest");
+		file   = dir.resolve("drop.txt");
+		write("");
+		reader = new DropFileReader(file, UTF8);
+	}
+
+	@After
+	public void deleteFiles() throws IOException {
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+			for (Path f : files) Files.delete(f);
+		}
+		Files.delete(dir);
+	}
+
+	private void write(String text) throws IOException {
+		Files.write(file, text.getBytes(UTF8));
+	}
+
+	private void append(String text) throws IOException {
+		Files.write(file, text.getBytes(UTF8), StandardOpenOption.APPEND);
+	}
+
+	private void assertLines(String... lines) {
+		assertEquals(Arrays.asList(lines), reader.getLines());
+	}
+
+	@Test
+	public void testAppend() throws IOException {
+		write("a\nb\n");
+		assertTrue(reader.read());
+		assertLines("a", "b");
+		assertEquals(0, reader.getFirstNew());
+
+		append("c\r\nd\n");
+		assertTrue(reader.read());
+		assertLines("a", "b", "c", "d");
+		assertEquals(2, reader.getFirstNew());
+
+		assertFalse(reader.read());
+		assertLines("a", "b", "c", "d");
+		assertEquals(4, reader.getFirstNew());
+	}
+
+	@Test
+	public void testPartialLine() throws IOException {
+		write("a\nb");
+		assertTrue(reader.read());
+		assertLines("a", "b");
+
+		assertFalse(reader.read()); // nothing more written
+		assertLines("a", "b");
+
+		append("c");
+		assertTrue(reader.read());
+		assertLines("a", "bc");
+		assertEquals(1, reader.getFirstNew());
+
+		append("\nd\n");
+		assertTrue(reader.read());
+		assertLines("a", "bc", "d");
+		assertEquals(1, reader.getFirstNew());
+	}
+
+	@Test
+	public void testTruncated() throws IOException {
+		write("a\nb\nc\n");
+		reader.read();
+
+		write("x\n");
+		assertTrue(reader.read());
+		assertLines("x");
+		assertEquals(0, reader.getFirstNew());
+
+		append("y\n");
+		assertTrue(reader.read());
+		assertLines("x", "y");
+		assertEquals(1, reader.getFirstNew());
+	}
+
+	@Test
+	public void testTruncatedToLastCompleteLine() throws IOException {
+		write("a\nb");
+		reader.read();
+
+		write("a\n");
+		assertTrue(reader.read());
+		assertLines("a");
+		assertEquals(0, reader.getFirstNew());
+	}
+
+	@Test
+	public void testRewrittenLonger() throws IOException {
+		write("a\nb\n");
+		reader.read();
+
+		write("c\nd\ne\n"); // same file, longer but with a different start
+		assertTrue(reader.read());
+		assertLines("c", "d", "e");
+		assertEquals(0, reader.getFirstNew());
+	}
+
+	@Test
+	public void testRotated() throws IOException {
+		write("a\nb\n");
+		reader.read();
+		if (Files.readAttributes(file, BasicFileAttributes.class).fileKey() == null) return; // cannot tell files apart
+
+		// a new file which starts the same as the old one and is longer
+		final Path next = dir.resolve("drop.next");
+		Files.write(next, "a\nb\nc\n".getBytes(UTF8));
+		Files.move(file, dir.resolve("drop.old"));
+		Files.move(next, file, StandardCopyOption.ATOMIC_MOVE);
+
+		assertTrue(reader.read());
+		assertLines("a", "b", "c");
+		assertEquals(0, reader.getFirstNew());
+	}
+}
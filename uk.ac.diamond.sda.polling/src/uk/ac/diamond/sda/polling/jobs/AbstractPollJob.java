@@ -16,10 +16,16 @@ import org.eclipse.core.runtime.jobs.Job;
 public abstract class AbstractPollJob extends Job {
 
 	private static final String POLL_TIME = "PollTime";
+	private static final long   MINIMUM_POLL_PERIOD = 1000000L;
 	private JobParameters jobParameters = null;
-	private long lastRun;
 	private String status = "Starting";
 
+	/**
+	 * The PollTime the poll period was last worked out from.
+	 */
+	private String pollTime;
+	private long   pollPeriod;
+
 	private void runJob() {
 		try {
 			jobParameters.refresh();
@@ -27,23 +33,37 @@ public abstract class AbstractPollJob extends Job {
 			// TODO Auto-generated catch block
 			e.printStackTrace();
 		}
-		lastRun = System.currentTimeMillis();
 		this.schedule();
 	}
 
-	public long timeToSchedule() {
-		long pollTime = (long) (Double.parseDouble(jobParameters.get(POLL_TIME)) * 1000.0);
-		long time = (lastRun + pollTime) - System.currentTimeMillis();
-		if (time < 0) {
-			runJob();
-			time = pollTime;
+	/**
+	 * Refreshes the job parameters and schedules the job, called by the PollScheduler on one of
+	 * its workers when the job is due as the parameter file may be read.
+	 */
+	public void poll() {
+		runJob();
+	}
+
+	/**
+	 * The PollTime is only parsed again when it has been changed.
+	 * @return the time between polls in nanoseconds
+	 */
+	public synchronized long getPollPeriod() {
+		final String time = jobParameters.get(POLL_TIME);
+		if (time==null || !time.equals(pollTime)) {
+			try {
+				pollPeriod = (long) (Double.parseDouble(time) * 1000000000.0);
+			} catch (NullPointerException | NumberFormatException ne) {
+				pollPeriod = 1000000000L; // Poll every second until the PollTime is fixed
+			}
+			pollPeriod = Math.max(MINIMUM_POLL_PERIOD, pollPeriod);
+			pollTime = time;
 		}
-		return time;
+		return pollPeriod;
 	}
 
 	public AbstractPollJob(String name) {
 		super(name);
-		lastRun = System.currentTimeMillis();
 	}
 
 	public JobParameters getJobParameters() {
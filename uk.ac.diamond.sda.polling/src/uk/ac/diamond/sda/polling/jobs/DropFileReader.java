@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package uk.ac.diamond.sda.polling.jobs;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Reads the lines of a drop file as it is appended to.
+ *
+ * Only the bytes written since the last read are read. The file is read
+ * again from the start if it has been truncated, replaced by another
+ * file or its first bytes have changed. A last line which does not end
+ * with a new line yet is listed, but read again with the next read
+ * in case it was still being written.
+ */
+class DropFileReader {
+
+	/**
+	 * Number of bytes at the start of the file checked to see if the file was rewritten.
+	 */
+	private static final int HEAD_SIZE = 256;
+
+	private final Path              file;
+	private final Charset           charset;
+	private final ArrayList<String> lines;
+
+	private Object  fileKey;
+	private long    offset;
+	private byte[]  head;
+	private boolean hasPartialLine;
+	private int     firstNew;
+
+	DropFileReader(Path file) {
+		this(file, Charset.defaultCharset());
+	}
+
+	DropFileReader(Path file, Charset charset) {
+		this.file    = file;
+		this.charset = charset;
+		this.lines   = new ArrayList<String>(89);
+		this.head    = new byte[0];
+	}
+
+	Path getFile() {
+		return file;
+	}
+
+	/**
+	 * All the lines read so far, this list is changed by the next read.
+	 */
+	ArrayList<String> getLines() {
+		return lines;
+	}
+
+	/**
+	 * @return index of the first line which was added or changed by the last read, 0 if the file was read from the start.
+	 */
+	int getFirstNew() {
+		return firstNew;
+	}
+
+	/**
+	 * Reads what has been written since the last read.
+	 * @return true if lines have been added or the file was read again from the start.
+	 * @throws IOException
+	 */
+	boolean read() throws IOException {
+
+		final BasicFileAttributes attr = Files.readAttributes(file, BasicFileAttributes.class);
+		final Object key = attr.fileKey();
+
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+
+			final long size = channel.size();
+			boolean reset = offset>0 && (size<offset || (key!=null && !key.equals(fileKey)) || !isSameHead(channel));
+			if (reset) {
+				lines.clear();
+				offset         = 0;
+				head           = new byte[0];
+				hasPartialLine = false;
+			}
+			fileKey = key;
+
+			if (size==offset) {
+				if (hasPartialLine) { // Truncated back to the last complete line
+					lines.remove(lines.size()-1);
+					hasPartialLine = false;
+					reset = true;
+				}
+				firstNew = reset ? 0 : lines.size();
+				return reset;
+			}
+
+			final String partial = hasPartialLine ? lines.remove(lines.size()-1) : null;
+			final int    complete = lines.size();
+			hasPartialLine = false;
+
+			final ByteBuffer buffer = ByteBuffer.allocate((int)Math.min(size-offset, 1<<20));
+			final ByteArrayOutputStream line = new ByteArrayOutputStream(256);
+			long position  = offset;
+			long lineStart = offset;
+			while (position<size) {
+				buffer.clear();
+				final int read = channel.read(buffer, position);
+				if (read<0) break;
+				buffer.flip();
+				while (buffer.hasRemaining()) {
+					final byte b = buffer.get();
+					position++;
+					if (b=='\n') {
+						lines.add(decode(line));
+						line.reset();
+						lineStart = position;
+					} else {
+						line.write(b);
+					}
+				}
+			}
+			final boolean added = lines.size()>complete;
+
+			String newPartial = null;
+			if (line.size()>0) {
+				newPartial = decode(line);
+				lines.add(newPartial);
+				hasPartialLine = true;
+			}
+			offset = lineStart;
+			if (head.length<HEAD_SIZE) readHead(channel);
+
+			if (reset) {
+				firstNew = 0;
+				return true;
+			}
+			if (added || (newPartial!=null && !newPartial.equals(partial))) {
+				firstNew = complete;
+				return true;
+			}
+			firstNew = lines.size();
+			return false;
+		}
+	}
+
+	private String decode(ByteArrayOutputStream line) {
+		String decoded = new String(line.toByteArray(), charset);
+		if (decoded.endsWith("\r")) decoded = decoded.substring(0, decoded.length()-1);
+		return decoded;
+	}
+
+	private void readHead(FileChannel channel) throws IOException {
+		final ByteBuffer buffer = ByteBuffer.allocate((int)Math.min(offset, HEAD_SIZE));
+		channel.read(buffer, 0);
+		head = Arrays.copyOf(buffer.array(), buffer.position());
+	}
+
+	private boolean isSameHead(FileChannel channel) throws IOException {
+		if (head.length==0) return true;
+		final ByteBuffer buffer = ByteBuffer.allocate(head.length);
+		channel.read(buffer, 0);
+		return buffer.position()==head.length && Arrays.equals(head, buffer.array());
+	}
+}
@@ -9,12 +9,9 @@
 
 package uk.ac.diamond.sda.polling.jobs;
 
-import java.io.BufferedInputStream;
-import java.io.BufferedReader;
-import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 
 import org.eclipse.core.runtime.IProgressMonitor;
@@ -31,31 +28,14 @@ public abstract class FilenameReaderJob extends AbstractPollJob {
 		super("Filename Reader Job");
 	}
 
+	private DropFileReader reader;
+
 	@Override
 	protected IStatus run(IProgressMonitor monitor) {
 		
 		try {
-			File file = new File(getJobParameters().get(FILE_NAME));
-			FileInputStream fin = new FileInputStream(file);
-			BufferedInputStream bis = new BufferedInputStream(fin);
-			BufferedReader br = new BufferedReader(new InputStreamReader(bis));
-			
-			ArrayList<String> filenames = new ArrayList<String>();
-			
-			String filename = br.readLine();
-			// if there is nothing there, throw an exception here to let the user know
-			if(filename == null) {
-				br.close();
-				throw new IOException("No File Specified in drop location");
-			}
-			
-			// otherwise try to load in all the image filenames
-			while(filename != null) {
-				filenames.add(filename);
-				filename = br.readLine();
-			}
-			br.close();
-			processFile(filenames);
+			readDropFile();
+			processDropFile();
 		
 		} catch (Exception e) {
 			setStatus(e.getLocalizedMessage());
@@ -67,5 +47,33 @@ public abstract class FilenameReaderJob extends AbstractPollJob {
 		
 	}
 
+	/**
+	 * Reads the lines appended to the drop file since the last poll.
+	 * @return true if filenames have been added since the last poll, or the drop file was started again.
+	 * @throws IOException if there are no filenames in the drop file
+	 */
+	protected boolean readDropFile() throws IOException {
+		final Path path = Paths.get(getJobParameters().get(FILE_NAME));
+		if (reader==null || !reader.getFile().equals(path)) reader = new DropFileReader(path);
+		final boolean changed = reader.read();
+		// if there is nothing there, throw an exception here to let the user know
+		if (reader.getLines().isEmpty()) throw new IOException("No File Specified in drop location");
+		return changed;
+	}
+
+	void processDropFile() {
+		processFile(reader.getLines(), reader.getFirstNew());
+	}
+
+	/**
+	 * Called with all the filenames read from the drop file. The list is kept
+	 * between polls and added to, it must not be changed.
+	 * @param filenames
+	 * @param firstNew index of the first filename added since the last poll, 0 if the drop file was started again
+	 */
+	protected void processFile(ArrayList<String> filenames, int firstNew) {
+		processFile(filenames);
+	}
+
 	protected abstract void processFile(ArrayList<String> filenames);
 }
@@ -9,14 +9,6 @@
 
 package uk.ac.diamond.sda.polling.jobs;
 
-import java.io.BufferedInputStream;
-import java.io.BufferedReader;
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.IOException;
-import java.io.InputStreamReader;
-import java.util.ArrayList;
-
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Status;
@@ -25,37 +17,12 @@ import uk.ac.diamond.sda.polling.Activator;
 
 public abstract class FilenameReaderUpdateOnlyJob extends FilenameReaderJob {
 
-	ArrayList<String>  oldFilenames = new ArrayList<String>();
-	
 	@Override
 	protected IStatus run(IProgressMonitor monitor) {
 		try {
-			File file = new File(getJobParameters().get(FILE_NAME));
-			FileInputStream fin = new FileInputStream(file);
-			BufferedInputStream bis = new BufferedInputStream(fin);
-			BufferedReader br = new BufferedReader(new InputStreamReader(bis));
-			
-			ArrayList<String> filenames = new ArrayList<String>();
-			
-			String filename = br.readLine();
-			if(filename == null) {
-				br.close();
-				throw new IOException("No File Specified in drop location");
-			}
-			
-			// otherwise try to load in all the image filenames
-			while(filename != null) {
-				filenames.add(filename);
-				filename = br.readLine();
-			}
-			br.close();
-			
-			if(newFilesPresent(oldFilenames, filenames)) {
-				processFile(filenames);
-				oldFilenames.clear();
-				for (String string : filenames) {
-					oldFilenames.add(string);
-				}
+			// Only the filenames added since the last poll are read
+			if (readDropFile()) {
+				processDropFile();
 			}
 		
 		} catch (Exception e) {
@@ -67,14 +34,4 @@ public abstract class FilenameReaderUpdateOnlyJob extends FilenameReaderJob {
 		return Status.OK_STATUS;
 	}
 
-	private boolean newFilesPresent(ArrayList<String> oldFilenames, ArrayList<String> filenames) {
-		if(oldFilenames.size() != filenames.size()) return true;
-		for(int i = 0; i < oldFilenames.size(); i++) {
-			if(filenames.get(i).compareTo(oldFilenames.get(i)) != 0) {
-				return true;
-			}
-		}
-		return false;
-	}
-
 }
@@ -9,61 +9,202 @@
 
 package uk.ac.diamond.sda.polling.server;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
 import uk.ac.diamond.sda.polling.jobs.AbstractPollJob;
 
+/**
+ * Runs each poll job when it is due.
+ *
+ * Every job has its own next fire time in a DelayQueue, so the scheduler
+ * thread sleeps until the first job is due and only wakes up for that job.
+ * The next fire time follows on from the time the job was due rather than
+ * the time it actually ran, so short poll times do not drift. A job which
+ * falls more than a poll behind, for instance while the scheduler was
+ * paused, runs once and then carries on from the current time.
+ *
+ * The scheduler thread only keeps the time. A job which is due is polled
+ * on a worker thread, as polling reads its parameter file, and the worker
+ * puts it back in the queue for its next poll. So a slow file does not
+ * hold up the other jobs, and a job is never polled twice at once.
+ */
 public class PollScheduler implements Runnable {
 
 	private static final int DEFAULT_MAXIMUM_POLL_TIME = 10000;
-	public static boolean SCHEDULER_RUNNING = false;
-	PollServer pollServer = null;
+
+	private final PollServer                                pollServer;
+	private final DelayQueue<ScheduledPoll>                 queue;
+	private final Map<AbstractPollJob, ScheduledPoll>       scheduled;
+	private final ExecutorService                           workers;
+
+	private volatile Thread  thread;
+	private volatile boolean running;
 
 	public PollScheduler(PollServer pollServer) {
 		this.pollServer = pollServer;
+		this.queue      = new DelayQueue<ScheduledPoll>();
+		this.scheduled  = new ConcurrentHashMap<AbstractPollJob, ScheduledPoll>(31);
+		this.workers    = Executors.newCachedThreadPool(new ThreadFactory() {
+			private int count = 0;
+			@Override
+			public Thread newThread(Runnable r) {
+				final Thread thread = new Thread(r, "Poll Worker "+(++count));
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
 	}
 
-	@Override
 	/**
-	 * check all jobs, if the time till the next poll is negative 
-	 * run the job, if its positive then log it
-	 * Finally wait until the next step
+	 * Adds a job which is first run after its poll time, may be called from any thread.
+	 * @param job
 	 */
-	public void run() {
+	public void add(AbstractPollJob job) {
+		final ScheduledPoll poll = new ScheduledPoll(job, System.nanoTime()+job.getPollPeriod());
+		final ScheduledPoll old  = scheduled.put(job, poll);
+		if (old!=null) queue.remove(old);
+		queue.add(poll);
+	}
 
-		SCHEDULER_RUNNING = true;
+	/**
+	 * Stops a job from being run again, may be called from any thread.
+	 * @param job
+	 */
+	public void remove(AbstractPollJob job) {
+		final ScheduledPoll poll = scheduled.remove(job);
+		if (poll!=null) queue.remove(poll);
+	}
 
-		// TODO should make this easily killable
-		while (SCHEDULER_RUNNING) {
+	public void clear() {
+		scheduled.clear();
+		queue.clear();
+	}
 
-			pollServer.pollMonitor.pollLoopStart();
-			long timeTillNextJob = processAllJobs();
+	public boolean isRunning() {
+		return running;
+	}
+
+	/**
+	 * Starts the scheduler thread if it is not already running.
+	 */
+	public synchronized void start() {
+		if (thread!=null) return;
+		running = true;
+		thread  = new Thread(this, "Poll Scheduler");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Stops the scheduler thread and waits for it to finish, the jobs are kept for when it is started again.
+	 * @throws InterruptedException
+	 */
+	public synchronized void stop() throws InterruptedException {
+		final Thread current = thread;
+		if (current==null) return;
+		running = false;
+		thread  = null;
+		current.interrupt();
+		if (current!=Thread.currentThread()) current.join();
+	}
+
+	@Override
+	/**
+	 * Wait for the next job to be due and give it to a worker
+	 * to poll.
+	 */
+	public void run() {
 
+		while (running) {
+
+			final ScheduledPoll poll;
 			try {
-				Thread.sleep(timeTillNextJob);
+				poll = queue.take();
 			} catch (InterruptedException e) {
-				// Kill the loop and carry on
+				// Stopped or a job was changed, check and carry on
 				continue;
 			}
+			if (!running) {
+				queue.add(poll); // Keep it for a restart
+				break;
+			}
+			if (scheduled.get(poll.job)!=poll) continue; // Removed
+
+			pollServer.pollMonitor.pollLoopStart();
+			pollServer.pollMonitor.processingJobs();
+			pollServer.pollMonitor.schedulingJob(poll.job);
+
+			workers.execute(new Runnable() {
+				@Override
+				public void run() {
+					poll(poll);
+				}
+			});
 
+			pollServer.pollMonitor.processingJobsComplete(getTimeTillNextJob());
 		}
 	}
 
-	private long processAllJobs() {
+	/**
+	 * Called in a worker, polls the job and schedules it
+	 * again for its next poll unless it has been removed.
+	 */
+	private void poll(ScheduledPoll poll) {
+		try {
+			poll.job.poll();
+		} finally {
+			final long period = poll.job.getPollPeriod();
+			final long now    = System.nanoTime();
+			long next = poll.due+period;
+			if (next-now<0) next = now+period; // Fallen behind, do not run several times to catch up
+			final ScheduledPoll again = new ScheduledPoll(poll.job, next);
+			if (scheduled.replace(poll.job, poll, again)) queue.add(again);
+		}
+	}
 
-		pollServer.pollMonitor.processingJobs();
+	/**
+	 * @return time in ms until the next job is due
+	 */
+	private long getTimeTillNextJob() {
+		final ScheduledPoll next = queue.peek();
+		if (next==null) return DEFAULT_MAXIMUM_POLL_TIME;
+		return Math.max(0, next.getDelay(TimeUnit.MILLISECONDS));
+	}
 
-		long timeTillNextJob = DEFAULT_MAXIMUM_POLL_TIME;
+	private static class ScheduledPoll implements Delayed {
 
-		for (AbstractPollJob pollJob : this.pollServer.getPollJobs()) {
-			pollServer.pollMonitor.schedulingJob(pollJob);
+		private final AbstractPollJob job;
 
-			long timeTillNextEvent = pollJob.timeToSchedule();
+		/**
+		 * In System.nanoTime()
+		 */
+		private final long due;
 
-			if (timeTillNextEvent > 0 && timeTillNextEvent < timeTillNextJob) {
-				timeTillNextJob = timeTillNextEvent;
+		ScheduledPoll(AbstractPollJob job, long due) {
+			this.job = job;
+			this.due = due;
+		}
+
+		@Override
+		public long getDelay(TimeUnit unit) {
+			return unit.convert(due-System.nanoTime(), TimeUnit.NANOSECONDS);
+		}
+
+		@Override
+		public int compareTo(Delayed other) {
+			if (other instanceof ScheduledPoll) {
+				final long diff = due-((ScheduledPoll)other).due;
+				return diff<0 ? -1 : diff>0 ? 1 : 0;
 			}
+			final long diff = getDelay(TimeUnit.NANOSECONDS)-other.getDelay(TimeUnit.NANOSECONDS);
+			return diff<0 ? -1 : diff>0 ? 1 : 0;
 		}
-		pollServer.pollMonitor.processingJobsComplete(timeTillNextJob);
-		return timeTillNextJob;
 	}
-
 }
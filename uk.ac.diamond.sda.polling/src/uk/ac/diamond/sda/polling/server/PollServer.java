@@ -18,6 +18,7 @@ import java.io.OutputStreamWriter;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IConfigurationElement;
@@ -41,9 +42,12 @@ public class PollServer implements IPropertyChangeListener {
 
 	private static PollServer pollServer = null;
 
-	private static Thread schedulerThread = null;
+	private final PollScheduler scheduler = new PollScheduler(this);
 
-	private Collection<AbstractPollJob> pollJobs = new ArrayList<AbstractPollJob>();
+	/**
+	 * Read by the polling view while jobs are added and removed.
+	 */
+	private Collection<AbstractPollJob> pollJobs = new CopyOnWriteArrayList<AbstractPollJob>();
 
 	private File pollFileDirectory;
 
@@ -77,6 +81,7 @@ public class PollServer implements IPropertyChangeListener {
 	}
 
 	private void clearAllJobs() {
+		scheduler.clear();
 		pollJobs.clear();
 	}
 
@@ -89,6 +94,7 @@ public class PollServer implements IPropertyChangeListener {
 
 		// need to associate this with a
 		pollJobs.add(job);
+		scheduler.add(job);
 	}
 
 	public void runSheduler() {
@@ -97,16 +103,11 @@ public class PollServer implements IPropertyChangeListener {
 		} catch (InterruptedException e) {
 			// Do nothing, it just means this may leave a thread lying around for a bit until it dies
 		}
-		schedulerThread = new Thread(new PollScheduler(this));
-		PollScheduler.SCHEDULER_RUNNING = true;
-		schedulerThread.start();
+		scheduler.start();
 	}
 
 	public void stopSheduler() throws InterruptedException {
-		if (schedulerThread != null) {
-			PollScheduler.SCHEDULER_RUNNING = false;
-			schedulerThread.join();
-		}
+		scheduler.stop();
 
 		for (AbstractPollJob job : pollJobs) {
 			job.setStatus("Paused");
@@ -238,6 +239,7 @@ public class PollServer implements IPropertyChangeListener {
 	}
 
 	public void removeJob(AbstractPollJob job) {
+		scheduler.remove(job);
 		pollJobs.remove(job);
 		deleteFile(job);
 	}
@@ -252,7 +254,7 @@ public class PollServer implements IPropertyChangeListener {
 			deleteFile(job);
 		}
 
-		pollJobs.clear();
+		clearAllJobs();
 	}
 
 	public void shutdown() throws InterruptedException {
@@ -271,6 +273,6 @@ public class PollServer implements IPropertyChangeListener {
 			}
 		}
 
-		pollJobs.clear();
+		clearAllJobs();
 	}
 }